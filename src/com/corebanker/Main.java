@@ -2,21 +2,47 @@ package com.corebanker;
 
 import com.corebanker.managers.BankAccountManager;
 import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
 import com.corebanker.models.Transaction;
 import com.corebanker.enums.TransactionStatus;
 import com.corebanker.enums.TransactionType;
+import com.corebanker.logging.EventLog;
+import com.corebanker.persistence.CheckpointManager;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.JournalRecovery;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.IOException;
+import java.time.Duration;
 
 public class Main {
     public static void main(String[] args) {
         System.out.println("======================================= Bienvenue dans l'application Core Banking =======================================");
 
+        // Reconstruction des comptes et de leur historique en une seule lecture du journal
+        try {
+            JournalRecovery.Result recovery = JournalRecovery.recover(JournalConfig.defaults().getDirectory(), 50);
+            System.out.printf("Journal relu : %d enregistrement(s), %d compte(s) restauré(s) en %d ms.%n",
+                    recovery.getRecordsRead(), recovery.getAccountsRestored(), recovery.getElapsedNanos() / 1_000_000);
+        } catch (IOException e) {
+            System.out.println("Erreur lors de la relecture du journal : " + e.getMessage());
+        }
+
+        // Points de reprise périodiques : le prochain démarrage ne relira que la fin du journal
+        TransactionJournal journal = TransactionJournal.getDefault();
+        CheckpointManager checkpoints = journal != null ? new CheckpointManager(journal, 50, false) : null;
+        if (checkpoints != null) {
+            checkpoints.start(Duration.ofMinutes(1));
+        }
+
         // Création de deux comptes bancaires avec des soldes initiaux
-        BankAccount account1 = new BankAccount("Bob", 1000);
-        BankAccount account2 = new BankAccount("Alice", 500);
+        BankAccount account1 = new BankAccount("Bob", Money.ofMajor(1000));
+        BankAccount account2 = new BankAccount("Alice", Money.ofMajor(500));
 
         // Ajout des comptes au gestionnaire
         BankAccountManager.addAccount(account1);
         BankAccountManager.addAccount(account2);
+        EventLog.flush();
 
         // Affichage des soldes initiaux des comptes
         System.out.println("\n=== Soldes initiaux ===");
@@ -26,26 +52,36 @@ public class Main {
         System.out.println("\n=== Exécution des transactions ===");
 
         // Transaction valide : Bob envoie 500€ à Alice
-        executeTransaction(account1, account2, 500);
+        executeTransaction(account1, account2, Money.ofMajor(500));
 
         // Transaction valide : Alice envoie 200€ à Bob
-        executeTransaction(account2, account1, 200);
+        executeTransaction(account2, account1, Money.ofMajor(200));
 
         // Transaction invalide : Alice tente d'envoyer 2000€ (fonds insuffisants)
-        executeTransaction(account2, account1, 2000);
+        executeTransaction(account2, account1, Money.ofMajor(2000));
 
         // Affichage de l'historique des transactions après exécution
         System.out.println("\n=== Historique des transactions après exécution ===");
-        account1.displayTransactionHistory();
-        account2.displayTransactionHistory();
+        account1.displayTransactionHistory(0, 20);
+        account2.displayTransactionHistory(0, 20);
+
+        if (checkpoints != null) {
+            try {
+                long covered = checkpoints.checkpoint();
+                System.out.println("\nPoint de reprise enregistré (séquence " + covered + ").");
+            } catch (IOException e) {
+                System.out.println("Erreur lors du point de reprise : " + e.getMessage());
+            }
+            checkpoints.close();
+        }
     }
 
     /**
      * Méthode utilitaire pour exécuter une transaction et afficher le résultat.
      */
-    private static void executeTransaction(BankAccount source, BankAccount target, double amount) {
+    private static void executeTransaction(BankAccount source, BankAccount target, long amount) {
         System.out.println("---------------------------------------------------");
-        System.out.println("🛠️ Nouvelle transaction : " + source.getOwner() + " → " + target.getOwner() + " | Montant : " + amount + "€");
+        System.out.println("🛠️ Nouvelle transaction : " + source.getOwner() + " → " + target.getOwner() + " | Montant : " + Money.format(amount) + "€");
 
         if (amount <= 0) {
             System.out.println("❌ Erreur : Le montant doit être supérieur à zéro.");
@@ -54,7 +90,10 @@ public class Main {
 
         Transaction transaction = new Transaction(source, target, amount, TransactionType.TRANSFER, TransactionStatus.PENDING);
 
-        if (transaction.processTransaction()) {  // ✅ Vérification du retour boolean
+        boolean succeeded = transaction.processTransaction();
+        EventLog.flush(); // Les événements de la transaction s'affichent avant le résultat
+
+        if (succeeded) {  // ✅ Vérification du retour boolean
             System.out.println("✅ Transaction réussie ! ID: " + transaction.getTransactionId());
         } else {
             System.out.println("❌ Transaction échouée !");
@@ -0,0 +1,477 @@
+package com.corebanker.api;
+
+import com.corebanker.engine.IdempotencyConflictException;
+import com.corebanker.enums.AccountClass;
+import com.corebanker.enums.ReplicationMode;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.fees.FeeSchedule;
+import com.corebanker.history.AccountAggregates;
+import com.corebanker.history.HistoryEntry;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.metrics.Metrics;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.CheckpointManager;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.JournalRecovery;
+import com.corebanker.persistence.TransactionJournal;
+import com.corebanker.replication.JournalReplicator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Service HTTP local exposant les opérations sur les comptes.
+ *
+ * Les connexions sont multiplexées par le répartiteur NIO de com.sun.net.httpserver ; chaque requête est
+ * traitée sur son propre thread virtuel (voir VirtualThreads) : des dizaines de milliers de clients simultanés
+ * ne mobilisent pas chacun un thread plateforme, y compris pendant l'attente de l'écriture du journal.
+ *
+ * Les paramètres sont lus dans la chaîne de requête ou dans un corps application/x-www-form-urlencoded ;
+ * les montants sont décimaux (par exemple 12.50). Les réponses sont en JSON :
+ * <pre>
+ * POST /accounts?owner=Bob&amp;balance=100.00       création d'un compte (accountClass=PREMIUM|BUSINESS, STANDARD par défaut)
+ * GET  /accounts/{numéro}                          solde
+ * POST /accounts/{numéro}/deposit?amount=10.00     dépôt
+ * POST /accounts/{numéro}/withdraw?amount=10.00    retrait
+ * GET  /accounts/{numéro}/history?page=0&amp;size=20 historique, du plus récent au plus ancien
+ * GET  /accounts/{numéro}/aggregates               totaux du jour et du mois, transferts récents (AccountAggregates)
+ * POST /transfers?from=..&amp;to=..&amp;amount=10.00    transfert (Transaction.processTransaction)
+ * GET  /fees                                       barème de frais en vigueur (voir FeeSchedule)
+ * POST /fees/reload                                relecture du fichier -Dcorebanker.fees.file
+ * GET  /metrics                                    métriques au format texte Prometheus (voir Metrics)
+ * </pre>
+ * Un transfert accompagné de l'en-tête Idempotency-Key (ou du paramètre idempotencyKey) peut être soumis
+ * plusieurs fois sans risque : les soumissions suivantes retournent le résultat de la première.
+ * La même clé soumise avec d'autres comptes ou un autre montant est refusée (422).
+ */
+public final class BankingServer implements AutoCloseable {
+    private static final int MAX_PAGE_SIZE = 1_000;
+    private static final int MAX_BODY_BYTES = 8_192;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Réponse d'un traitement : code HTTP et corps JSON.
+     */
+    private record Response(int status, String body) {
+        static Response error(int status, String message) {
+            StringBuilder json = new StringBuilder(64).append("{\"error\":");
+            appendString(json, message);
+            return new Response(status, json.append('}').toString());
+        }
+    }
+
+    /**
+     * Paramètre absent ou invalide : la requête est refusée avec le code 400.
+     */
+    private static final class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Ouvre le service sur le port donné (0 pour un port libre choisi par le système), sans le démarrer.
+     */
+    public BankingServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), Integer.getInteger("corebanker.http.backlog", 1024));
+        this.executor = VirtualThreads.newPerTaskExecutor("http");
+        server.setExecutor(executor);
+        server.createContext("/accounts", exchange -> handle(exchange, this::accounts));
+        server.createContext("/transfers", exchange -> handle(exchange, this::transfers));
+        server.createContext("/fees", exchange -> handle(exchange, this::fees));
+        server.createContext("/metrics", BankingServer::metrics);
+    }
+
+    public void start() {
+        server.start();
+        EventLog.log(EventCode.SERVER_STARTED, VirtualThreads.describe(), getPort(), 0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Arrête le service : les requêtes en cours disposent d'une seconde pour se terminer.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private interface Handler {
+        Response handle(String method, String[] path, Map<String, String> parameters) throws IOException;
+    }
+
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        Response response;
+        try {
+            String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+            Map<String, String> parameters = new HashMap<>();
+            parseParameters(exchange.getRequestURI().getRawQuery(), parameters);
+            parseParameters(readBody(exchange), parameters);
+            String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            if (idempotencyKey != null) {
+                parameters.put("idempotencyKey", idempotencyKey);
+            }
+            response = handler.handle(exchange.getRequestMethod(), path, parameters);
+        } catch (BadRequestException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (IdempotencyConflictException e) {
+            response = Response.error(422, e.getMessage());
+        } catch (NumberFormatException | ArithmeticException e) {
+            response = Response.error(400, "Montant ou nombre invalide");
+        } catch (IOException | RuntimeException e) {
+            EventLog.log(EventCode.SERVER_REQUEST_FAILED, exchange.getRequestURI().getPath(), String.valueOf(e.getMessage()), null);
+            response = Response.error(500, "Erreur interne");
+        }
+
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * GET /metrics : seule route dont la réponse n'est pas du JSON.
+     */
+    private static void metrics(HttpExchange exchange) throws IOException {
+        boolean get = exchange.getRequestMethod().equals("GET");
+        byte[] body = (get ? Metrics.toText() : "Méthode non autorisée\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(get ? 200 : 405, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * /accounts, /accounts/{numéro}, /accounts/{numéro}/deposit|withdraw|history|aggregates
+     */
+    private Response accounts(String method, String[] path, Map<String, String> parameters) throws IOException {
+        if (path.length == 1) {
+            if (!method.equals("POST")) {
+                return Response.error(405, "Méthode non autorisée");
+            }
+            String owner = required(parameters, "owner");
+            if (!JournalRecord.fitsOwner(owner)) {
+                throw new BadRequestException("Nom du propriétaire trop long (" + JournalRecord.MAX_OWNER_BYTES + " octets au plus)");
+            }
+            String initial = parameters.get("balance");
+            long balance = initial != null ? Money.parse(initial) : 0;
+            if (balance < 0) {
+                throw new BadRequestException("Le solde initial doit être positif");
+            }
+            BankAccount account = new BankAccount(owner, balance, accountClass(parameters.get("accountClass")));
+            BankAccountManager.addAccount(account);
+            return new Response(201, describe(account));
+        }
+
+        BankAccount account = BankAccountManager.findAccountByNumber(path[1]);
+        if (account == null) {
+            return Response.error(404, "Compte inconnu : " + path[1]);
+        }
+        String operation = path.length > 2 ? path[2] : "";
+        switch (operation) {
+            case "" -> {
+                return method.equals("GET") ? new Response(200, describe(account)) : Response.error(405, "Méthode non autorisée");
+            }
+            case "deposit" -> {
+                if (!method.equals("POST")) {
+                    return Response.error(405, "Méthode non autorisée");
+                }
+                account.deposit(positiveAmount(parameters));
+                return new Response(200, describe(account));
+            }
+            case "withdraw" -> {
+                if (!method.equals("POST")) {
+                    return Response.error(405, "Méthode non autorisée");
+                }
+                return account.withdraw(positiveAmount(parameters))
+                        ? new Response(200, describe(account))
+                        : Response.error(409, "Fonds insuffisants");
+            }
+            case "history" -> {
+                if (!method.equals("GET")) {
+                    return Response.error(405, "Méthode non autorisée");
+                }
+                int page = Integer.parseInt(parameters.getOrDefault("page", "0"));
+                int size = Integer.parseInt(parameters.getOrDefault("size", "20"));
+                if (page < 0 || size <= 0 || size > MAX_PAGE_SIZE) {
+                    throw new BadRequestException("Page invalide");
+                }
+                return new Response(200, describe(account.getHistory().page(page, size)));
+            }
+            case "aggregates" -> {
+                return method.equals("GET") ? new Response(200, describe(account.getAggregates())) : Response.error(405, "Méthode non autorisée");
+            }
+            default -> {
+                return Response.error(404, "Opération inconnue : " + operation);
+            }
+        }
+    }
+
+    private static AccountClass accountClass(String value) {
+        if (value == null) {
+            return AccountClass.STANDARD;
+        }
+        try {
+            return AccountClass.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Classe de compte inconnue : " + value);
+        }
+    }
+
+    /**
+     * /fees, /fees/reload
+     */
+    private Response fees(String method, String[] path, Map<String, String> parameters) throws IOException {
+        if (path.length == 1) {
+            return method.equals("GET") ? new Response(200, describe(FeeSchedule.getDefault())) : Response.error(405, "Méthode non autorisée");
+        }
+        if (path.length != 2 || !path[1].equals("reload")) {
+            return Response.error(404, "Opération inconnue : " + path[path.length - 1]);
+        }
+        if (!method.equals("POST")) {
+            return Response.error(405, "Méthode non autorisée");
+        }
+        try {
+            return new Response(200, describe(FeeSchedule.reload()));
+        } catch (IllegalStateException e) {
+            return Response.error(409, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage()); // Barème invalide : celui en vigueur est conservé
+        }
+    }
+
+    /**
+     * POST /transfers
+     */
+    private Response transfers(String method, String[] path, Map<String, String> parameters) {
+        if (!method.equals("POST") || path.length != 1) {
+            return Response.error(405, "Méthode non autorisée");
+        }
+        BankAccount source = BankAccountManager.findAccountByNumber(required(parameters, "from"));
+        BankAccount target = BankAccountManager.findAccountByNumber(required(parameters, "to"));
+        if (source == null || target == null) {
+            return Response.error(404, "Compte inconnu");
+        }
+        long amount = positiveAmount(parameters);
+        String idempotencyKey = parameters.get("idempotencyKey");
+        Transaction transaction = idempotencyKey == null || idempotencyKey.isEmpty()
+                ? new Transaction(source, target, amount, TransactionType.TRANSFER, TransactionStatus.PENDING)
+                : new Transaction(idempotencyKey, source, target, amount, TransactionType.TRANSFER, TransactionStatus.PENDING);
+        boolean succeeded = transaction.processTransaction();
+
+        StringBuilder json = new StringBuilder(160).append("{\"transactionId\":");
+        appendString(json, transaction.getTransactionId());
+        json.append(",\"status\":\"").append(transaction.getStatus()).append('"');
+        if (succeeded) {
+            json.append(",\"fee\":");
+            appendAmount(json, transaction.getFee());
+            json.append(",\"sequence\":").append(transaction.getSequence());
+        }
+        return new Response(succeeded ? 200 : 409, json.append('}').toString());
+    }
+
+    private static String describe(BankAccount account) {
+        StringBuilder json = new StringBuilder(96).append("{\"accountNumber\":");
+        appendString(json, account.getAccountNumber());
+        json.append(",\"owner\":");
+        appendString(json, account.getOwner());
+        json.append(",\"accountClass\":\"").append(account.getAccountClass()).append('"');
+        json.append(",\"balance\":");
+        appendAmount(json, account.getBalance());
+        return json.append('}').toString();
+    }
+
+    private static String describe(AccountAggregates aggregates) {
+        long now = System.currentTimeMillis();
+        StringBuilder json = new StringBuilder(320).append("{\"today\":");
+        describe(json, aggregates.getDailyTotals(now));
+        json.append(",\"month\":");
+        describe(json, aggregates.getMonthlyTotals(now));
+        json.append(",\"recentTransfers\":").append(aggregates.getRecentTransferCount(now));
+        json.append(",\"windowSeconds\":").append(AccountAggregates.VELOCITY_WINDOW_MILLIS / 1_000);
+        return json.append('}').toString();
+    }
+
+    private static String describe(FeeSchedule schedule) {
+        StringBuilder json = new StringBuilder(96).append("{\"source\":");
+        appendString(json, schedule.getSource());
+        json.append(",\"rules\":").append(schedule.getRuleCount());
+        return json.append('}').toString();
+    }
+
+    private static void describe(StringBuilder json, AccountAggregates.Totals totals) {
+        json.append("{\"outgoing\":");
+        appendAmount(json, totals.outgoing());
+        json.append(",\"incoming\":");
+        appendAmount(json, totals.incoming());
+        json.append(",\"fees\":");
+        appendAmount(json, totals.fees());
+        json.append(",\"outgoingCount\":").append(totals.outgoingCount());
+        json.append(",\"incomingCount\":").append(totals.incomingCount()).append('}');
+    }
+
+    private static String describe(List<HistoryEntry> entries) {
+        StringBuilder json = new StringBuilder(64 + entries.size() * 192).append('[');
+        for (int i = 0; i < entries.size(); i++) {
+            HistoryEntry entry = entries.get(i);
+            json.append(i > 0 ? ",{" : "{").append("\"transactionId\":");
+            appendString(json, entry.getTransactionId());
+            json.append(",\"timestamp\":").append(entry.getTimestamp());
+            json.append(",\"sequence\":").append(entry.getSequence());
+            json.append(",\"counterpart\":");
+            appendString(json, entry.getCounterpartAccountNumber());
+            json.append(",\"amount\":");
+            appendAmount(json, entry.getAmount());
+            json.append(",\"fee\":");
+            appendAmount(json, entry.getFee());
+            json.append(",\"type\":\"").append(entry.getType()).append('"');
+            json.append(",\"status\":\"").append(entry.getStatus()).append('"');
+            json.append(",\"outgoing\":").append(entry.isOutgoing()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Montant JSON : nombre décimal exact, sans passer par un double.
+     */
+    private static void appendAmount(StringBuilder json, long amount) {
+        Money.appendTo(json, amount);
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isBlank()) {
+            throw new BadRequestException("Paramètre manquant : " + name);
+        }
+        return value;
+    }
+
+    private static long positiveAmount(Map<String, String> parameters) {
+        long amount = Money.parse(required(parameters, "amount"));
+        if (amount <= 0) {
+            throw new BadRequestException("Le montant doit être supérieur à zéro");
+        }
+        return amount;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new BadRequestException("Corps de requête trop volumineux");
+            }
+            return body.length == 0 ? null : new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void parseParameters(String encoded, Map<String, String> parameters) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Démarre le service après avoir relu le journal, comme Main.
+     * Usage : java com.corebanker.api.BankingServer [port]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+
+        JournalRecovery.Result recovery = JournalRecovery.recover(JournalConfig.defaults().getDirectory(), 50);
+        System.out.printf("Journal relu : %d enregistrement(s), %d compte(s) restauré(s) en %d ms.%n",
+                recovery.getRecordsRead(), recovery.getAccountsRestored(), recovery.getElapsedNanos() / 1_000_000);
+        TransactionJournal journal = TransactionJournal.getDefault();
+        String socket = System.getProperty("corebanker.replication.socket");
+        if (journal != null && socket != null) {
+            ReplicationMode mode = ReplicationMode.valueOf(System.getProperty("corebanker.replication.mode", "ASYNC"));
+            JournalReplicator.start(journal, Paths.get(socket), mode);
+            System.out.printf("Réplication %s vers un nœud de secours sur %s.%n", mode, socket);
+        }
+        serve(port);
+    }
+
+    /**
+     * Démarre le service sur le journal par défaut, avec un point de reprise par minute
+     * (nœud principal, ou nœud de secours après sa promotion).
+     */
+    public static BankingServer serve(int port) throws IOException {
+        TransactionJournal journal = TransactionJournal.getDefault();
+        CheckpointManager checkpoints = journal != null ? new CheckpointManager(journal, 50, false) : null;
+        if (checkpoints != null) {
+            checkpoints.start(Duration.ofMinutes(1));
+        }
+
+        Metrics.registerMBean();
+        BankingServer server = new BankingServer(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            if (checkpoints != null) {
+                checkpoints.close();
+            }
+        }, "http-shutdown"));
+        server.start();
+        return server;
+    }
+}
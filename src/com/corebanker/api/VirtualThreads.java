@@ -0,0 +1,65 @@
+package com.corebanker.api;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécuteurs à un thread virtuel par tâche.
+ *
+ * Les threads virtuels n'existent qu'à partir de Java 21 : ils sont obtenus par réflexion, pour que le projet
+ * reste compilable et exécutable en Java 17. Sur une JVM plus ancienne, l'exécuteur de repli est un pool
+ * borné de threads plateforme (-Dcorebanker.http.platformThreads, 64 par défaut).
+ */
+public final class VirtualThreads {
+    private static final int PLATFORM_THREADS = Integer.getInteger("corebanker.http.platformThreads", 64);
+    private static final Method NEW_PER_TASK_EXECUTOR = findPerTaskExecutor();
+
+    private VirtualThreads() {
+    }
+
+    private static Method findPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true si la JVM fournit des threads virtuels.
+     */
+    public static boolean isAvailable() {
+        return NEW_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Crée un exécuteur lançant chaque tâche sur un nouveau thread virtuel, ou le pool de repli.
+     * @param name Préfixe du nom des threads du pool de repli
+     */
+    public static ExecutorService newPerTaskExecutor(String name) {
+        if (NEW_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Threads virtuels indisponibles : " + e.getMessage(), e);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(PLATFORM_THREADS, factory);
+    }
+
+    /**
+     * @return Une description de l'exécuteur utilisé, pour les journaux et les rapports.
+     */
+    public static String describe() {
+        return isAvailable() ? "threads virtuels" : PLATFORM_THREADS + " threads plateforme";
+    }
+}
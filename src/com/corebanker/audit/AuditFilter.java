@@ -0,0 +1,87 @@
+package com.corebanker.audit;
+
+import com.corebanker.enums.TransactionStatus;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Critères de sélection des enregistrements d'audit, immuables : chaque méthode with renvoie un nouveau filtre.
+ *
+ * Les critères sont comparés aux octets de l'enregistrement, sans le décoder : la partie recherchée est encodée
+ * une seule fois, comme à la conversion, puis comparée en trois longs à la source et à la cible.
+ */
+public final class AuditFilter {
+    public static final AuditFilter ALL = new AuditFilter(null, null, Long.MIN_VALUE, Long.MAX_VALUE, null);
+
+    private final String account;
+    private final long[] party;
+    private final long from;
+    private final long to;
+    private final TransactionStatus status;
+
+    private AuditFilter(String account, long[] party, long from, long to, TransactionStatus status) {
+        this.account = account;
+        this.party = party;
+        this.from = from;
+        this.to = to;
+        this.status = status;
+    }
+
+    /**
+     * Ne retient que les enregistrements dont la source ou la cible est la partie donnée :
+     * un numéro de compte (transactions.log) ou un nom de propriétaire (transaction_log.txt).
+     */
+    public AuditFilter withAccount(String account) {
+        return new AuditFilter(account, account != null ? AuditRecord.encodeParty(account) : null, from, to, status);
+    }
+
+    /**
+     * @param from Début inclus, en millisecondes
+     * @param to Fin exclue, en millisecondes
+     */
+    public AuditFilter withTimeRange(long from, long to) {
+        return new AuditFilter(account, party, from, to, status);
+    }
+
+    public AuditFilter withStatus(TransactionStatus status) {
+        return new AuditFilter(account, party, from, to, status);
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    boolean hasTimeRange() {
+        return from != Long.MIN_VALUE || to != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true si l'enregistrement situé à cette position satisfait tous les critères.
+     */
+    boolean matches(ByteBuffer buffer, int offset) {
+        long timestamp = buffer.getLong(offset + AuditRecord.OFF_TIMESTAMP);
+        if (timestamp < from || timestamp >= to) {
+            return false;
+        }
+        if (status != null && buffer.get(offset + AuditRecord.OFF_STATUS) != status.ordinal() + 1) {
+            return false;
+        }
+        return party == null || isParty(buffer, offset + AuditRecord.OFF_SOURCE) || isParty(buffer, offset + AuditRecord.OFF_TARGET);
+    }
+
+    private boolean isParty(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset) == party[0] && buffer.getLong(offset + 8) == party[1] && buffer.getLong(offset + 16) == party[2];
+    }
+}
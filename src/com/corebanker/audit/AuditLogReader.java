@@ -0,0 +1,257 @@
+package com.corebanker.audit;
+
+import com.corebanker.enums.LegacyLogFormat;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.models.Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Lecture filtrée d'un fichier d'audit produit par LegacyLogConverter.
+ *
+ * Le fichier est projeté en mémoire par fenêtres et parcouru avec un seul curseur {@link AuditRecord} :
+ * aucun objet n'est créé par enregistrement, quelle que soit la taille du fichier. Quand les horodatages sont
+ * croissants (indiqué par l'en-tête), la plage de dates est trouvée par dichotomie au lieu d'un parcours complet.
+ * Les enregistrements dont le CRC est faux sont ignorés et comptés.
+ */
+public final class AuditLogReader implements AutoCloseable {
+    private static final int WINDOW_SHIFT = 22; // 4 M enregistrements (384 Mo) par projection
+    private static final int WINDOW_RECORDS = 1 << WINDOW_SHIFT;
+
+    private final FileChannel channel;
+    private final ByteBuffer[] windows;
+    private final long records;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final boolean sorted;
+    private final LegacyLogFormat format;
+
+    /**
+     * Bilan d'un parcours : enregistrements retenus, somme de leurs montants et enregistrements corrompus rencontrés.
+     */
+    public record Summary(long count, long amount, long corrupt) {
+        Summary add(Summary other) {
+            return new Summary(count + other.count, amount + other.amount, corrupt + other.corrupt);
+        }
+    }
+
+    public AuditLogReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(AuditRecord.SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Lecture de l'en-tête complet
+            }
+            if (header.hasRemaining() || header.getInt(0) != LegacyLogConverter.MAGIC || header.getInt(4) != LegacyLogConverter.VERSION) {
+                throw new IOException("Fichier d'audit invalide : " + file);
+            }
+            long declared = header.getLong(LegacyLogConverter.HEADER_RECORDS);
+            // Un fichier tronqué est lu jusqu'à son dernier enregistrement complet
+            records = Math.min(declared, (channel.size() - AuditRecord.SIZE) / AuditRecord.SIZE);
+            minTimestamp = header.getLong(LegacyLogConverter.HEADER_MIN_TIMESTAMP);
+            maxTimestamp = header.getLong(LegacyLogConverter.HEADER_MAX_TIMESTAMP);
+            sorted = header.get(LegacyLogConverter.HEADER_SORTED) == 1;
+            int code = header.get(LegacyLogConverter.HEADER_FORMAT);
+            LegacyLogFormat[] formats = LegacyLogFormat.values();
+            format = code > 0 && code <= formats.length ? formats[code - 1] : null;
+
+            windows = new ByteBuffer[(int) ((records + WINDOW_RECORDS - 1) >>> WINDOW_SHIFT)];
+            for (int i = 0; i < windows.length; i++) {
+                long first = (long) i << WINDOW_SHIFT;
+                long count = Math.min(WINDOW_RECORDS, records - first);
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, AuditRecord.SIZE + first * AuditRecord.SIZE, count * AuditRecord.SIZE);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    public LegacyLogFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Parcourt dans l'ordre du fichier les enregistrements qui satisfont le filtre.
+     * @return Le bilan des enregistrements présentés au visiteur (le montant est celui des enregistrements qui en ont un).
+     */
+    public Summary scan(AuditFilter filter, AuditVisitor visitor) {
+        long[] range = range(filter);
+        ByteBuffer[] views = views();
+        AuditRecord cursor = new AuditRecord();
+        CRC32C crc = new CRC32C();
+        long count = 0;
+        long amount = 0;
+        long corrupt = 0;
+        for (long index = range[0]; index < range[1]; index++) {
+            ByteBuffer window = views[(int) (index >>> WINDOW_SHIFT)];
+            int offset = (int) (index & (WINDOW_RECORDS - 1)) * AuditRecord.SIZE;
+            if (!filter.matches(window, offset)) {
+                continue;
+            }
+            if (!AuditRecord.isValid(window, offset, crc)) {
+                corrupt++;
+                continue;
+            }
+            cursor.moveTo(window, offset);
+            count++;
+            amount += cursor.hasAmount() ? cursor.getAmount() : 0;
+            if (!visitor.visit(cursor)) {
+                break;
+            }
+        }
+        return new Summary(count, amount, corrupt);
+    }
+
+    /**
+     * Compte et totalise en parallèle les enregistrements qui satisfont le filtre.
+     */
+    public Summary summarize(AuditFilter filter) {
+        long[] range = range(filter);
+        long length = range[1] - range[0];
+        int parts = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4L, length / 65_536));
+        return IntStream.range(0, parts).parallel()
+                .mapToObj(part -> summarize(filter, range[0] + length * part / parts, range[0] + length * (part + 1) / parts))
+                .reduce(new Summary(0, 0, 0), Summary::add);
+    }
+
+    public long count(AuditFilter filter) {
+        return summarize(filter).count();
+    }
+
+    private Summary summarize(AuditFilter filter, long from, long to) {
+        ByteBuffer[] views = views();
+        CRC32C crc = new CRC32C();
+        long count = 0;
+        long amount = 0;
+        long corrupt = 0;
+        for (long index = from; index < to; index++) {
+            ByteBuffer window = views[(int) (index >>> WINDOW_SHIFT)];
+            int offset = (int) (index & (WINDOW_RECORDS - 1)) * AuditRecord.SIZE;
+            if (!filter.matches(window, offset)) {
+                continue;
+            }
+            if (!AuditRecord.isValid(window, offset, crc)) {
+                corrupt++;
+                continue;
+            }
+            count++;
+            if ((window.get(offset + AuditRecord.OFF_FLAGS) & AuditRecord.FLAG_AMOUNT) != 0) {
+                amount += window.getLong(offset + AuditRecord.OFF_AMOUNT);
+            }
+        }
+        return new Summary(count, amount, corrupt);
+    }
+
+    /**
+     * @return Les indices [premier, dernier) à parcourir : tout le fichier, ou la plage de dates s'il est trié.
+     */
+    private long[] range(AuditFilter filter) {
+        if (!sorted || !filter.hasTimeRange()) {
+            return new long[]{0, records};
+        }
+        return new long[]{lowerBound(filter.getFrom()), lowerBound(filter.getTo())};
+    }
+
+    /**
+     * @return L'indice du premier enregistrement dont l'horodatage est supérieur ou égal à la valeur donnée.
+     */
+    private long lowerBound(long timestamp) {
+        long low = 0;
+        long high = records;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            long value = windows[(int) (middle >>> WINDOW_SHIFT)]
+                    .getLong((int) (middle & (WINDOW_RECORDS - 1)) * AuditRecord.SIZE + AuditRecord.OFF_TIMESTAMP);
+            if (value < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Vues propres au thread appelant : le calcul du CRC déplace la position des tampons.
+     */
+    private ByteBuffer[] views() {
+        ByteBuffer[] views = new ByteBuffer[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            views[i] = windows[i].duplicate();
+        }
+        return views;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // Les projections restent valides jusqu'à leur libération par le ramasse-miettes
+    }
+
+    /**
+     * Usage : java com.corebanker.audit.AuditLogReader audit.cba [account=CB-...] [from=2025-02-20T00:00] [to=...] [status=FAILED]
+     * Affiche les enregistrements retenus au format CSV, puis leur nombre et leur total.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage : AuditLogReader <fichier d'audit> [account=...] [from=aaaa-mm-jjThh:mm] [to=...] [status=...]");
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        AuditFilter filter = AuditFilter.ALL;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (int i = 1; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            String name = separator > 0 ? args[i].substring(0, separator) : args[i];
+            String value = separator > 0 ? args[i].substring(separator + 1) : "";
+            switch (name) {
+                case "account" -> filter = filter.withAccount(value);
+                case "from" -> from = LocalDateTime.parse(value).atZone(zone).toInstant().toEpochMilli();
+                case "to" -> to = LocalDateTime.parse(value).atZone(zone).toInstant().toEpochMilli();
+                case "status" -> filter = filter.withStatus(TransactionStatus.valueOf(value));
+                default -> throw new IllegalArgumentException("Critère inconnu : " + name);
+            }
+        }
+        filter = filter.withTimeRange(from, to);
+
+        StringBuilder line = new StringBuilder(160);
+        try (AuditLogReader reader = new AuditLogReader(Paths.get(args[0]))) {
+            Summary summary = reader.scan(filter, record -> {
+                line.setLength(0);
+                record.appendTo(line, zone);
+                System.out.println(line);
+                return true;
+            });
+            System.out.println(summary.count() + " enregistrement(s), total " + Money.format(summary.amount()));
+            if (summary.corrupt() > 0) {
+                System.out.println(summary.corrupt() + " enregistrement(s) corrompu(s) ignoré(s)");
+            }
+        }
+    }
+}
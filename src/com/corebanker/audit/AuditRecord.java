@@ -0,0 +1,224 @@
+package com.corebanker.audit;
+
+import com.corebanker.enums.FailureReason;
+import com.corebanker.enums.LegacyLogFormat;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.models.Money;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Enregistrement d'audit de taille fixe (96 octets), produit par LegacyLogConverter à partir des anciens journaux texte.
+ * Les parties sont des numéros de compte (transactions.log) ou des noms de propriétaires (transaction_log.txt).
+ *
+ * <pre>
+ * 0   int    CRC32C des octets 4..95
+ * 4   byte   LegacyLogFormat d'origine (ordinal + 1)
+ * 5   byte   TransactionType (ordinal + 1, 0 si absent)
+ * 6   byte   TransactionStatus (ordinal + 1, 0 si absent)
+ * 7   byte   FailureReason (ordinal + 1, 0 si absent)
+ * 8   long   horodatage en millisecondes
+ * 16  long   identifiant de transaction (bits de poids fort)
+ * 24  long   identifiant de transaction (bits de poids faible)
+ * 32  long   montant en centimes
+ * 40  byte   indicateurs (montant présent, parties = numéros de compte, parties tronquées)
+ * 41  7 o.   réservé
+ * 48  24 o.  partie source (UTF-8, complétée par des zéros)
+ * 72  24 o.  partie cible (UTF-8, complétée par des zéros)
+ * </pre>
+ *
+ * Une instance est un curseur réutilisable : elle désigne un emplacement d'un tampon et ne lit un champ qu'à la demande,
+ * ce qui permet de parcourir et de filtrer un fichier entier sans créer d'objet par enregistrement.
+ */
+public final class AuditRecord {
+    public static final int SIZE = 96;
+
+    static final int OFF_CRC = 0;
+    static final int OFF_FORMAT = 4;
+    static final int OFF_TYPE = 5;
+    static final int OFF_STATUS = 6;
+    static final int OFF_REASON = 7;
+    static final int OFF_TIMESTAMP = 8;
+    static final int OFF_ID_MSB = 16;
+    static final int OFF_ID_LSB = 24;
+    static final int OFF_AMOUNT = 32;
+    static final int OFF_FLAGS = 40;
+    static final int OFF_SOURCE = 48;
+    static final int OFF_TARGET = 72;
+    static final int PARTY_FIELD = 24;
+
+    static final int FLAG_AMOUNT = 1;
+    static final int FLAG_SOURCE_ACCOUNT = 2;
+    static final int FLAG_TARGET_ACCOUNT = 4;
+    static final int FLAG_SOURCE_TRUNCATED = 8;
+    static final int FLAG_TARGET_TRUNCATED = 16;
+
+    private static final LegacyLogFormat[] FORMATS = LegacyLogFormat.values();
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final FailureReason[] REASONS = FailureReason.values();
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    AuditRecord() {
+    }
+
+    /**
+     * Place le curseur sur l'enregistrement situé à la position absolue donnée.
+     */
+    AuditRecord moveTo(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public LegacyLogFormat getFormat() {
+        int code = buffer.get(offset + OFF_FORMAT);
+        return code > 0 && code <= FORMATS.length ? FORMATS[code - 1] : null;
+    }
+
+    public TransactionType getType() {
+        int code = buffer.get(offset + OFF_TYPE);
+        return code > 0 && code <= TYPES.length ? TYPES[code - 1] : null;
+    }
+
+    public TransactionStatus getStatus() {
+        int code = buffer.get(offset + OFF_STATUS);
+        return code > 0 && code <= STATUSES.length ? STATUSES[code - 1] : null;
+    }
+
+    /**
+     * @return Le motif d'échec relevé dans le journal d'origine, ou null.
+     */
+    public FailureReason getFailureReason() {
+        int code = buffer.get(offset + OFF_REASON);
+        return code > 0 && code <= REASONS.length ? REASONS[code - 1] : null;
+    }
+
+    public long getTimestamp() {
+        return buffer.getLong(offset + OFF_TIMESTAMP);
+    }
+
+    public long getIdMostSigBits() {
+        return buffer.getLong(offset + OFF_ID_MSB);
+    }
+
+    public long getIdLeastSigBits() {
+        return buffer.getLong(offset + OFF_ID_LSB);
+    }
+
+    public String getTransactionId() {
+        return new UUID(getIdMostSigBits(), getIdLeastSigBits()).toString();
+    }
+
+    public boolean hasAmount() {
+        return (buffer.get(offset + OFF_FLAGS) & FLAG_AMOUNT) != 0;
+    }
+
+    /**
+     * @return Le montant en centimes (0 si le journal d'origine ne l'indiquait pas, voir {@link #hasAmount()}).
+     */
+    public long getAmount() {
+        return buffer.getLong(offset + OFF_AMOUNT);
+    }
+
+    /**
+     * @return true si les parties sont des numéros de compte, false si ce sont des noms de propriétaires.
+     */
+    public boolean isAccountNumbers() {
+        return (buffer.get(offset + OFF_FLAGS) & FLAG_SOURCE_ACCOUNT) != 0;
+    }
+
+    public String getSource() {
+        return getText(buffer, offset + OFF_SOURCE);
+    }
+
+    public String getTarget() {
+        return getText(buffer, offset + OFF_TARGET);
+    }
+
+    /**
+     * Ajoute l'enregistrement sous forme de ligne CSV : date, identifiant, source, cible, montant, type, statut, motif.
+     */
+    public void appendTo(StringBuilder out, ZoneId zone) {
+        out.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(getTimestamp()), zone)).append(',');
+        out.append(getTransactionId()).append(',');
+        out.append(nullToEmpty(getSource())).append(',').append(nullToEmpty(getTarget())).append(',');
+        if (hasAmount()) {
+            Money.appendTo(out, getAmount());
+        }
+        out.append(',').append(nullToEmpty(getType())).append(',').append(nullToEmpty(getStatus()));
+        out.append(',').append(nullToEmpty(getFailureReason()));
+    }
+
+    private static String nullToEmpty(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    /**
+     * @return true si l'emplacement contient un enregistrement dont le CRC est correct.
+     * @param crc Instance propre au thread appelant, réinitialisée ici
+     */
+    static boolean isValid(ByteBuffer buffer, int offset, CRC32C crc) {
+        byte format = buffer.get(offset + OFF_FORMAT);
+        return format > 0 && format <= FORMATS.length && buffer.getInt(offset + OFF_CRC) == checksum(buffer, offset, crc);
+    }
+
+    /**
+     * Calcule le CRC des octets 4..95 sans créer de vue du tampon : seules sa position et sa limite sont déplacées.
+     * Le tampon doit donc être propre au thread appelant.
+     */
+    static int checksum(ByteBuffer buffer, int offset, CRC32C crc) {
+        crc.reset();
+        int position = buffer.position();
+        int limit = buffer.limit();
+        buffer.limit(offset + SIZE).position(offset + OFF_FORMAT);
+        crc.update(buffer);
+        buffer.limit(limit).position(position);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Encode un texte comme le font les champs de partie, pour comparer un critère de recherche sans décoder les enregistrements.
+     * @return Trois longs (24 octets) ; un texte plus long est tronqué comme à la conversion.
+     */
+    static long[] encodeParty(String value) {
+        ByteBuffer field = ByteBuffer.allocate(PARTY_FIELD);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = utf8Prefix(bytes, 0, bytes.length, PARTY_FIELD);
+        field.put(bytes, 0, length);
+        return new long[]{field.getLong(0), field.getLong(8), field.getLong(16)};
+    }
+
+    /**
+     * @return La longueur du plus long préfixe d'au plus {@code width} octets qui ne coupe pas un caractère UTF-8.
+     */
+    static int utf8Prefix(byte[] bytes, int from, int to, int width) {
+        int length = Math.min(to - from, width);
+        while (length > 0 && length < to - from && (bytes[from + length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+
+    private static String getText(ByteBuffer buffer, int offset) {
+        int length = 0;
+        while (length < PARTY_FIELD && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
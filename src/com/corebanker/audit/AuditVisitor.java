@@ -0,0 +1,13 @@
+package com.corebanker.audit;
+
+/**
+ * Reçoit les enregistrements retenus par AuditLogReader.scan.
+ */
+@FunctionalInterface
+public interface AuditVisitor {
+    /**
+     * @param record Curseur réutilisé pour l'enregistrement suivant : à copier s'il doit être conservé
+     * @return false pour arrêter le parcours.
+     */
+    boolean visit(AuditRecord record);
+}
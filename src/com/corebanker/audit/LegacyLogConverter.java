@@ -0,0 +1,786 @@
+package com.corebanker.audit;
+
+import com.corebanker.enums.FailureReason;
+import com.corebanker.enums.LegacyLogFormat;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.models.Money;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32C;
+
+/**
+ * Conversion en flux des anciens journaux texte (transaction_log.txt, transactions.log) en fichier d'audit binaire.
+ *
+ * Le fichier source est découpé en blocs d'octets analysés en parallèle ; un enregistrement appartient au bloc
+ * où il commence et peut déborder sur le suivant. Seuls quelques blocs sont en mémoire à la fois et leurs
+ * résultats sont écrits dans l'ordre : la mémoire utilisée ne dépend pas de la taille du fichier.
+ * L'analyse travaille directement sur les octets UTF-8, sans créer de chaîne par ligne.
+ *
+ * Le fichier produit commence par un en-tête de {@link AuditRecord#SIZE} octets, suivi des enregistrements de taille fixe :
+ * il peut donc être découpé à n'importe quelle frontière d'enregistrement (voir AuditLogReader).
+ *
+ * <pre>
+ * 0   int    "CBA1"
+ * 4   int    version du format
+ * 8   long   nombre d'enregistrements
+ * 16  long   plus petit horodatage
+ * 24  long   plus grand horodatage
+ * 32  byte   1 si les horodatages sont croissants (recherche par dichotomie possible)
+ * 33  byte   LegacyLogFormat d'origine (ordinal + 1)
+ * </pre>
+ *
+ * Ambiguïtés des formats d'origine : transaction_log.txt désigne les parties par le nom du propriétaire
+ * (la source s'arrête au premier « à » entouré d'espaces, le montant suit le dernier « pour »), et un nom de plus
+ * de 24 octets est tronqué. Les dates, sans fuseau, sont interprétées dans le fuseau donné à la conversion.
+ */
+public final class LegacyLogConverter {
+    static final int MAGIC = 0x43424131; // "CBA1"
+    static final int VERSION = 1;
+    static final int HEADER_RECORDS = 8;
+    static final int HEADER_MIN_TIMESTAMP = 16;
+    static final int HEADER_MAX_TIMESTAMP = 24;
+    static final int HEADER_SORTED = 32;
+    static final int HEADER_FORMAT = 33;
+
+    private static final int CHUNK_BYTES = 8 << 20;
+    private static final int MAX_RECORD_BYTES = 64 << 10; // Un enregistrement plus long est ignoré
+    private static final int TIMESTAMP_LENGTH = 19; // yyyy-MM-dd HH:mm:ss
+
+    private static final byte[] SUCCEEDED_PREFIX = bytes("Transaction réussie. ID: ");
+    private static final byte[] FAILED_PREFIX = bytes("Échec de la transaction ");
+    private static final byte[] FROM = bytes(" de ");
+    private static final byte[] TO = bytes(" à ");
+    private static final byte[] FOR = bytes(" pour ");
+    private static final byte[] REASON_SEPARATOR = bytes(" : ");
+    private static final byte[] AMOUNT_INVALID = bytes("Montant invalide");
+    private static final byte[] INSUFFICIENT_FUNDS = bytes("Fonds insuffisants");
+    private static final byte[] ACCOUNT_MISSING = bytes("Impossible de retrouver");
+    private static final byte[] EURO = bytes("€");
+    private static final byte[] BLOCK_START = bytes("🆔");
+    private static final byte[] BLOCK_SEPARATOR = bytes("═");
+    private static final byte[] LABEL_DATE = bytes("📅");
+    private static final byte[] LABEL_SOURCE = bytes("📤");
+    private static final byte[] LABEL_TARGET = bytes("📥");
+    private static final byte[] LABEL_AMOUNT = bytes("💰");
+    private static final byte[] LABEL_TYPE = bytes("🔄");
+    private static final byte[] LABEL_STATUS = bytes("✔");
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final byte[][] TYPE_NAMES = names(TYPES);
+    private static final byte[][] STATUS_NAMES = names(STATUSES);
+
+    private LegacyLogConverter() {
+    }
+
+    /**
+     * Bilan d'une conversion.
+     */
+    public static final class Result {
+        private final LegacyLogFormat format;
+        private final long records;
+        private final long skipped;
+        private final boolean sorted;
+        private final long elapsedNanos;
+
+        private Result(LegacyLogFormat format, long records, long skipped, boolean sorted, long elapsedNanos) {
+            this.format = format;
+            this.records = records;
+            this.skipped = skipped;
+            this.sorted = sorted;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public LegacyLogFormat getFormat() {
+            return format;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return Le nombre de lignes (ou de blocs) non reconnues, ignorées.
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return true si les horodatages du fichier produit sont croissants.
+         */
+        public boolean isSorted() {
+            return sorted;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    /**
+     * Enregistrements produits par un bloc du fichier source.
+     */
+    private record ChunkOutput(byte[] records, int count, long skipped, long firstTimestamp, long lastTimestamp,
+                               long minTimestamp, long maxTimestamp, boolean sorted) {
+    }
+
+    /**
+     * Convertit un journal texte ; le format est reconnu d'après son contenu.
+     * Le fichier produit est écrit à côté de sa destination puis renommé : il n'est jamais visible à moitié écrit.
+     * @param zone Fuseau des dates du journal d'origine
+     */
+    public static Result convert(Path input, Path output, ZoneId zone) throws IOException {
+        long start = System.nanoTime();
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            LegacyLogFormat format = detect(in);
+            long size = in.size();
+            out.position(AuditRecord.SIZE); // L'en-tête est écrit en dernier
+
+            // Au plus deux blocs par cœur en cours d'analyse ; le plus ancien est écrit dès qu'il est prêt
+            int window = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+            Deque<CompletableFuture<ChunkOutput>> pending = new ArrayDeque<>();
+            long records = 0;
+            long skipped = 0;
+            long minTimestamp = Long.MAX_VALUE;
+            long maxTimestamp = Long.MIN_VALUE;
+            long lastTimestamp = Long.MIN_VALUE;
+            boolean sorted = true;
+            for (long chunkStart = 0; chunkStart < size || !pending.isEmpty(); ) {
+                if (chunkStart < size && pending.size() < window) {
+                    long from = chunkStart;
+                    long to = Math.min(size, chunkStart + CHUNK_BYTES);
+                    pending.add(CompletableFuture.supplyAsync(() -> parseChunk(in, size, from, to, format, zone)));
+                    chunkStart = to;
+                    continue;
+                }
+                ChunkOutput chunk = join(pending.poll());
+                out.write(ByteBuffer.wrap(chunk.records(), 0, chunk.count() * AuditRecord.SIZE));
+                if (chunk.count() > 0) {
+                    sorted &= chunk.sorted() && lastTimestamp <= chunk.firstTimestamp();
+                    lastTimestamp = chunk.lastTimestamp();
+                    minTimestamp = Math.min(minTimestamp, chunk.minTimestamp());
+                    maxTimestamp = Math.max(maxTimestamp, chunk.maxTimestamp());
+                }
+                records += chunk.count();
+                skipped += chunk.skipped();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(AuditRecord.SIZE);
+            header.putInt(0, MAGIC).putInt(4, VERSION).putLong(HEADER_RECORDS, records);
+            header.putLong(HEADER_MIN_TIMESTAMP, records > 0 ? minTimestamp : 0).putLong(HEADER_MAX_TIMESTAMP, records > 0 ? maxTimestamp : 0);
+            header.put(HEADER_SORTED, (byte) (sorted ? 1 : 0)).put(HEADER_FORMAT, (byte) (format.ordinal() + 1));
+            out.write(header, 0);
+            out.force(true);
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Result(format, records, skipped, sorted, System.nanoTime() - start);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static ChunkOutput join(CompletableFuture<ChunkOutput> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedChunkException failure) {
+                throw failure.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reconnaît le format d'après la première ligne non vide : bloc décoré ou ligne horodatée.
+     */
+    static LegacyLogFormat detect(FileChannel in) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(in.size(), 4_096));
+        in.read(head, 0);
+        byte[] bytes = head.array();
+        int p = 0;
+        while (p < head.position() && (bytes[p] == '\n' || bytes[p] == '\r' || bytes[p] == ' ')) {
+            p++;
+        }
+        if (startsWith(bytes, p, head.position(), BLOCK_SEPARATOR) || startsWith(bytes, p, head.position(), BLOCK_START)) {
+            return LegacyLogFormat.TRANSACTIONS_LOG;
+        }
+        return LegacyLogFormat.TRANSACTION_LOG_TXT;
+    }
+
+    /**
+     * Analyse les enregistrements qui commencent dans [from, to).
+     */
+    private static ChunkOutput parseChunk(FileChannel in, long size, long from, long to, LegacyLogFormat format, ZoneId zone) {
+        try {
+            // Un octet avant le bloc, pour savoir s'il commence en début de ligne, et de quoi finir son dernier enregistrement
+            long readFrom = Math.max(0, from - 1);
+            long readTo = Math.min(size, to + MAX_RECORD_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (readTo - readFrom));
+            while (buffer.hasRemaining() && in.read(buffer, readFrom + buffer.position()) >= 0) {
+                // Lecture positionnelle : le canal est partagé entre les threads sans déplacer sa position
+            }
+            ChunkParser parser = new ChunkParser(buffer.array(), buffer.position(), (int) (from - readFrom), (int) (to - readFrom),
+                    readTo == size, format, zone);
+            return parser.parse();
+        } catch (IOException e) {
+            throw new UncheckedChunkException(e);
+        }
+    }
+
+    /**
+     * Transporte une erreur de lecture hors d'une tâche asynchrone.
+     */
+    private static final class UncheckedChunkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedChunkException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Analyse d'un bloc, propre à un thread : tampon d'entrée, enregistrements produits et cache de conversion des dates.
+     */
+    private static final class ChunkParser {
+        private final byte[] in;
+        private final int length;
+        private final int start;
+        private final int end;
+        private final boolean endOfFile;
+        private final LegacyLogFormat format;
+        private final ZoneId zone;
+        private final CRC32C crc = new CRC32C();
+
+        private byte[] out;
+        private ByteBuffer outBuffer;
+        private int count;
+        private long skipped;
+        private long firstTimestamp;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private boolean sorted = true;
+
+        // Les journaux sont chronologiques : l'heure précédente est presque toujours la bonne
+        private long cachedHourKey = -1;
+        private long cachedHourMillis;
+
+        // Champs de l'enregistrement en cours
+        private long timestamp;
+        private long idMsb;
+        private long idLsb;
+        private long amount;
+        private int flags;
+        private int type;
+        private int status;
+        private int reason;
+        private int sourceFrom;
+        private int sourceTo;
+        private int targetFrom;
+        private int targetTo;
+
+        ChunkParser(byte[] in, int length, int start, int end, boolean endOfFile, LegacyLogFormat format, ZoneId zone) {
+            this.in = in;
+            this.length = length;
+            this.start = start;
+            this.end = end;
+            this.endOfFile = endOfFile;
+            this.format = format;
+            this.zone = zone;
+            this.out = new byte[Math.max(AuditRecord.SIZE * 64, (end - start) / 64 * AuditRecord.SIZE)];
+            this.outBuffer = ByteBuffer.wrap(out);
+        }
+
+        ChunkOutput parse() {
+            int line = start;
+            if (line > 0 && in[line - 1] != '\n') {
+                line = nextLine(line); // Le début appartient à l'enregistrement du bloc précédent
+            }
+            if (format == LegacyLogFormat.TRANSACTIONS_LOG) {
+                parseBlocks(line);
+            } else {
+                parseLines(line);
+            }
+            return new ChunkOutput(out, count, skipped, firstTimestamp, lastTimestamp, minTimestamp, maxTimestamp, sorted);
+        }
+
+        // --- transaction_log.txt -------------------------------------------------------------------------------
+
+        private void parseLines(int line) {
+            while (line < end) {
+                int lineEnd = lineEnd(line);
+                if (lineEnd < 0) {
+                    skipped++; // Ligne plus longue que la marge de lecture
+                    return;
+                }
+                int contentEnd = trimEnd(line, lineEnd);
+                if (contentEnd > line) {
+                    if (parseLine(line, contentEnd)) {
+                        emit();
+                    } else {
+                        skipped++;
+                    }
+                }
+                line = lineEnd + 1;
+            }
+        }
+
+        private boolean parseLine(int from, int to) {
+            reset();
+            if (to - from < TIMESTAMP_LENGTH + 3 || !parseTimestamp(from) || in[from + TIMESTAMP_LENGTH + 1] != '-') {
+                return false;
+            }
+            int p = from + TIMESTAMP_LENGTH + 3;
+            if (startsWith(in, p, to, SUCCEEDED_PREFIX)) {
+                p += SUCCEEDED_PREFIX.length;
+                if (!parseUuid(p, to) || !startsWith(in, p + 36, to, FROM)) {
+                    return false;
+                }
+                int source = p + 36 + FROM.length;
+                int toMarker = indexOf(source, to, TO);
+                int forMarker = lastIndexOf(source, to, FOR);
+                if (toMarker < 0 || forMarker < toMarker) {
+                    return false;
+                }
+                sourceFrom = source;
+                sourceTo = toMarker;
+                targetFrom = toMarker + TO.length;
+                targetTo = forMarker;
+                int amountTo = indexOf(forMarker, to, EURO);
+                if (!parseAmount(forMarker + FOR.length, amountTo >= 0 ? amountTo : to)) {
+                    return false;
+                }
+                status = TransactionStatus.SUCCEEDED.ordinal() + 1;
+            } else if (startsWith(in, p, to, FAILED_PREFIX)) {
+                p += FAILED_PREFIX.length;
+                if (!parseUuid(p, to)) {
+                    return false;
+                }
+                int text = p + 36;
+                if (startsWith(in, text, to, REASON_SEPARATOR)) {
+                    text += REASON_SEPARATOR.length;
+                    if (startsWith(in, text, to, AMOUNT_INVALID)) {
+                        reason = FailureReason.AMOUNT_INVALID.ordinal() + 1;
+                    } else if (startsWith(in, text, to, INSUFFICIENT_FUNDS)) {
+                        reason = FailureReason.INSUFFICIENT_FUNDS.ordinal() + 1;
+                    } else if (indexOf(text, to, ACCOUNT_MISSING) >= 0) {
+                        reason = FailureReason.ACCOUNT_MISSING.ordinal() + 1;
+                    }
+                }
+                status = TransactionStatus.FAILED.ordinal() + 1;
+            } else {
+                return false;
+            }
+            type = TransactionType.TRANSFER.ordinal() + 1; // L'ancien journal ne contenait que des transferts
+            return true;
+        }
+
+        // --- transactions.log ----------------------------------------------------------------------------------
+
+        private void parseBlocks(int line) {
+            // Premier début de bloc du morceau : ce qui précède appartient au bloc du morceau précédent
+            while (line < end && !startsWith(in, line, length, BLOCK_START)) {
+                int lineEnd = lineEnd(line);
+                if (lineEnd < 0) {
+                    return;
+                }
+                if (start == 0) {
+                    countStray(line, lineEnd);
+                }
+                line = lineEnd + 1;
+            }
+            while (line < end) {
+                line = parseBlock(line);
+                if (line < 0) {
+                    skipped++; // Bloc tronqué au-delà de la marge de lecture
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Analyse le bloc qui commence à la ligne donnée.
+         * @return Le début du bloc suivant (ou la fin du morceau), -1 si le bloc dépasse la marge de lecture.
+         */
+        private int parseBlock(int line) {
+            reset();
+            boolean valid = true;
+            boolean dated = false;
+            boolean identified = false;
+            while (true) {
+                int lineEnd = lineEnd(line);
+                if (lineEnd < 0) {
+                    return -1;
+                }
+                int contentEnd = trimEnd(line, lineEnd);
+                int value = valueStart(line, contentEnd);
+                if (startsWith(in, line, contentEnd, BLOCK_START)) {
+                    if (identified) {
+                        break; // Bloc suivant sans séparateur
+                    }
+                    identified = value >= 0 && parseUuid(value, contentEnd);
+                    valid &= identified;
+                } else if (startsWith(in, line, contentEnd, BLOCK_SEPARATOR)) {
+                    line = lineEnd + 1;
+                    break;
+                } else if (value >= 0 && startsWith(in, line, contentEnd, LABEL_DATE)) {
+                    dated = contentEnd - value >= TIMESTAMP_LENGTH && parseTimestamp(value);
+                    valid &= dated;
+                } else if (value >= 0 && startsWith(in, line, contentEnd, LABEL_SOURCE)) {
+                    sourceFrom = value;
+                    sourceTo = accountEnd(value, contentEnd);
+                    flags |= AuditRecord.FLAG_SOURCE_ACCOUNT;
+                } else if (value >= 0 && startsWith(in, line, contentEnd, LABEL_TARGET)) {
+                    targetFrom = value;
+                    targetTo = accountEnd(value, contentEnd);
+                    flags |= AuditRecord.FLAG_TARGET_ACCOUNT;
+                } else if (value >= 0 && startsWith(in, line, contentEnd, LABEL_AMOUNT)) {
+                    int amountTo = indexOf(value, contentEnd, EURO);
+                    valid &= parseAmount(value, trimEnd(value, amountTo >= 0 ? amountTo : contentEnd));
+                } else if (value >= 0 && startsWith(in, line, contentEnd, LABEL_TYPE)) {
+                    type = match(value, contentEnd, TYPE_NAMES);
+                } else if (value >= 0 && startsWith(in, line, contentEnd, LABEL_STATUS)) {
+                    status = match(value, contentEnd, STATUS_NAMES);
+                }
+                line = lineEnd + 1;
+                if (line >= length) {
+                    break;
+                }
+            }
+            if (valid && identified && dated) {
+                emit();
+            } else {
+                skipped++;
+            }
+            // Lignes hors bloc (séparateurs, lignes vides) jusqu'au prochain début de bloc
+            while (line < end && !startsWith(in, line, length, BLOCK_START)) {
+                int lineEnd = lineEnd(line);
+                if (lineEnd < 0) {
+                    return end;
+                }
+                countStray(line, lineEnd);
+                line = lineEnd + 1;
+            }
+            return line;
+        }
+
+        private void countStray(int line, int lineEnd) {
+            int contentEnd = trimEnd(line, lineEnd);
+            if (contentEnd > line && !startsWith(in, line, contentEnd, BLOCK_SEPARATOR)) {
+                skipped++;
+            }
+        }
+
+        /**
+         * @return Le début de la valeur après « | », ou -1.
+         */
+        private int valueStart(int from, int to) {
+            for (int p = from; p < to; p++) {
+                if (in[p] == '|') {
+                    p++;
+                    while (p < to && in[p] == ' ') {
+                        p++;
+                    }
+                    return p;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * « CB-1234abcd (Bob) » : le numéro de compte s'arrête à la parenthèse.
+         */
+        private int accountEnd(int from, int to) {
+            int parenthesis = indexOf(from, to, new byte[]{' ', '('});
+            return parenthesis >= 0 ? parenthesis : to;
+        }
+
+        private int match(int from, int to, byte[][] names) {
+            for (int i = 0; i < names.length; i++) {
+                if (to - from == names[i].length && startsWith(in, from, to, names[i])) {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        // --- champs communs ------------------------------------------------------------------------------------
+
+        private void reset() {
+            timestamp = 0;
+            idMsb = 0;
+            idLsb = 0;
+            amount = 0;
+            flags = 0;
+            type = 0;
+            status = 0;
+            reason = 0;
+            sourceFrom = sourceTo = targetFrom = targetTo = 0;
+        }
+
+        /**
+         * yyyy-MM-dd HH:mm:ss, converti dans le fuseau de la conversion.
+         */
+        private boolean parseTimestamp(int p) {
+            int year = digits(p, 4);
+            int month = digits(p + 5, 2);
+            int day = digits(p + 8, 2);
+            int hour = digits(p + 11, 2);
+            int minute = digits(p + 14, 2);
+            int second = digits(p + 17, 2);
+            if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0 || in[p + 4] != '-' || in[p + 7] != '-'
+                    || in[p + 10] != ' ' || in[p + 13] != ':' || in[p + 16] != ':' || minute > 59 || second > 59) {
+                return false;
+            }
+            long hourKey = ((year * 100L + month) * 100 + day) * 100 + hour;
+            if (hourKey != cachedHourKey) {
+                try {
+                    cachedHourMillis = LocalDateTime.of(year, month, day, hour, 0).atZone(zone).toInstant().toEpochMilli();
+                } catch (DateTimeException e) {
+                    return false;
+                }
+                cachedHourKey = hourKey;
+            }
+            timestamp = cachedHourMillis + minute * 60_000L + second * 1_000L;
+            return true;
+        }
+
+        private int digits(int p, int count) {
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                int digit = in[p + i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private boolean parseUuid(int p, int to) {
+            if (to - p < 36 || in[p + 8] != '-' || in[p + 13] != '-' || in[p + 18] != '-' || in[p + 23] != '-') {
+                return false;
+            }
+            long msb = 0;
+            long lsb = 0;
+            for (int i = 0; i < 36; i++) {
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    continue;
+                }
+                int nibble = Character.digit(in[p + i], 16);
+                if (nibble < 0) {
+                    return false;
+                }
+                if (i < 19) {
+                    msb = msb << 4 | nibble;
+                } else {
+                    lsb = lsb << 4 | nibble;
+                }
+            }
+            idMsb = msb;
+            idLsb = lsb;
+            return true;
+        }
+
+        /**
+         * Montant décimal des anciens journaux (double affiché, par exemple « 200.0 ») converti en centimes.
+         * Les écritures inhabituelles (notation scientifique, plus de deux décimales) passent par Money.parse.
+         */
+        private boolean parseAmount(int from, int to) {
+            while (from < to && in[from] == ' ') {
+                from++;
+            }
+            to = trimEnd(from, to);
+            if (from >= to) {
+                return false;
+            }
+            boolean negative = in[from] == '-';
+            int p = negative ? from + 1 : from;
+            long units = 0;
+            int fraction = -1;
+            long cents = 0;
+            for (; p < to; p++) {
+                byte c = in[p];
+                if (c == '.' && fraction < 0) {
+                    fraction = 0;
+                } else if (c >= '0' && c <= '9' && fraction < 0 && units < Long.MAX_VALUE / 1_000) {
+                    units = units * 10 + (c - '0');
+                } else if (c >= '0' && c <= '9' && fraction >= 0 && fraction < 2) {
+                    cents = cents * 10 + (c - '0');
+                    fraction++;
+                } else {
+                    return parseAmountSlow(from, to);
+                }
+            }
+            for (int i = Math.max(fraction, 0); i < 2; i++) {
+                cents *= 10;
+            }
+            amount = (negative ? -1 : 1) * (units * 100 + cents);
+            flags |= AuditRecord.FLAG_AMOUNT;
+            return true;
+        }
+
+        private boolean parseAmountSlow(int from, int to) {
+            try {
+                amount = Money.parse(new String(in, from, to - from, StandardCharsets.US_ASCII), RoundingMode.HALF_EVEN);
+                flags |= AuditRecord.FLAG_AMOUNT;
+                return true;
+            } catch (NumberFormatException | ArithmeticException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Ajoute l'enregistrement en cours au tampon de sortie.
+         */
+        private void emit() {
+            int offset = count * AuditRecord.SIZE;
+            if (offset + AuditRecord.SIZE > out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+                outBuffer = ByteBuffer.wrap(out);
+            }
+            Arrays.fill(out, offset, offset + AuditRecord.SIZE, (byte) 0);
+            flags |= party(offset + AuditRecord.OFF_SOURCE, sourceFrom, sourceTo) ? AuditRecord.FLAG_SOURCE_TRUNCATED : 0;
+            flags |= party(offset + AuditRecord.OFF_TARGET, targetFrom, targetTo) ? AuditRecord.FLAG_TARGET_TRUNCATED : 0;
+            out[offset + AuditRecord.OFF_FORMAT] = (byte) (format.ordinal() + 1);
+            out[offset + AuditRecord.OFF_TYPE] = (byte) type;
+            out[offset + AuditRecord.OFF_STATUS] = (byte) status;
+            out[offset + AuditRecord.OFF_REASON] = (byte) reason;
+            out[offset + AuditRecord.OFF_FLAGS] = (byte) flags;
+            outBuffer.putLong(offset + AuditRecord.OFF_TIMESTAMP, timestamp);
+            outBuffer.putLong(offset + AuditRecord.OFF_ID_MSB, idMsb);
+            outBuffer.putLong(offset + AuditRecord.OFF_ID_LSB, idLsb);
+            outBuffer.putLong(offset + AuditRecord.OFF_AMOUNT, amount);
+            crc.reset();
+            crc.update(out, offset + AuditRecord.OFF_FORMAT, AuditRecord.SIZE - AuditRecord.OFF_FORMAT);
+            outBuffer.putInt(offset + AuditRecord.OFF_CRC, (int) crc.getValue());
+
+            if (count == 0) {
+                firstTimestamp = timestamp;
+            }
+            sorted &= timestamp >= lastTimestamp;
+            lastTimestamp = timestamp;
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            count++;
+        }
+
+        /**
+         * Copie une partie dans son champ, sans couper de caractère UTF-8.
+         * @return true si elle a été tronquée.
+         */
+        private boolean party(int offset, int from, int to) {
+            int copied = AuditRecord.utf8Prefix(in, from, to, AuditRecord.PARTY_FIELD);
+            System.arraycopy(in, from, out, offset, copied);
+            return copied < to - from;
+        }
+
+        // --- lignes --------------------------------------------------------------------------------------------
+
+        /**
+         * @return La position du saut de ligne qui termine la ligne, la fin des données en fin de fichier, ou -1.
+         */
+        private int lineEnd(int from) {
+            for (int p = from; p < length; p++) {
+                if (in[p] == '\n') {
+                    return p;
+                }
+            }
+            return endOfFile ? length : -1;
+        }
+
+        private int nextLine(int from) {
+            int lineEnd = lineEnd(from);
+            return lineEnd < 0 ? length : lineEnd + 1;
+        }
+
+        private int trimEnd(int from, int to) {
+            while (to > from && (in[to - 1] == '\r' || in[to - 1] == ' ' || in[to - 1] == '.')) {
+                to--;
+            }
+            return to;
+        }
+
+        private int indexOf(int from, int to, byte[] pattern) {
+            for (int p = from; p <= to - pattern.length; p++) {
+                if (startsWith(in, p, to, pattern)) {
+                    return p;
+                }
+            }
+            return -1;
+        }
+
+        private int lastIndexOf(int from, int to, byte[] pattern) {
+            for (int p = to - pattern.length; p >= from; p--) {
+                if (startsWith(in, p, to, pattern)) {
+                    return p;
+                }
+            }
+            return -1;
+        }
+    }
+
+    static boolean startsWith(byte[] bytes, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] names(Enum<?>[] values) {
+        byte[][] names = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = bytes(values[i].name());
+        }
+        return names;
+    }
+
+    /**
+     * Usage : java com.corebanker.audit.LegacyLogConverter journal.txt audit.cba [fuseau]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage : LegacyLogConverter <journal texte> <fichier d'audit> [fuseau, par défaut celui du système]");
+            return;
+        }
+        ZoneId zone = args.length > 2 ? ZoneId.of(args[2]) : ZoneId.systemDefault();
+        Result result = convert(Paths.get(args[0]), Paths.get(args[1]), zone);
+        System.out.printf("%s : %d enregistrement(s) converti(s), %d ligne(s) ignorée(s), %s, en %d ms.%n",
+                result.getFormat(), result.getRecords(), result.getSkipped(),
+                result.isSorted() ? "ordre chronologique" : "ordre non chronologique", result.getElapsedNanos() / 1_000_000);
+    }
+}
@@ -0,0 +1,141 @@
+package com.corebanker.bench;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.managers.AccountCache;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.metrics.Metrics;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalRecovery;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Chargement des comptes à la demande et mise en sommeil sous budget d'historique.
+ *
+ * 1. Démarrage complet puis démarrage paresseux sur le même journal : durée et tas occupé.
+ * 2. Premier accès (reconstruction du compte) comparé aux accès suivants.
+ * 3. Dépôts sur des comptes tirés selon une loi très concentrée, avec un budget réduit : taux de succès du cache,
+ *    historique des comptes éveillés, comptes chargés (jamais libérés), puis vérification de tous les soldes.
+ *
+ * Usage : java com.corebanker.bench.AccountCacheBenchmark [enregistrements] [comptes] [répertoire] [budget en Ko] [opérations]
+ */
+public class AccountCacheBenchmark {
+    private static final int HISTORY_WINDOW = 16;
+    private static final int TOUCHES = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        long records = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        Path directory = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("corebanker-cache");
+        long budgetBytes = (args.length > 3 ? Long.parseLong(args[3]) : 4096) << 10;
+        int operations = args.length > 4 ? Integer.parseInt(args[4]) : 1_000_000;
+
+        EventLog.setLevel(Level.WARN);
+        TransactionJournal.install(null); // Les dépôts de la mesure ne sont pas journalisés
+        if (TransactionJournal.listSegments(directory).isEmpty()) {
+            RecoveryBenchmark.generate(directory, records, accountCount);
+        }
+
+        // 1. Démarrage complet, qui sert aussi de référence pour les soldes
+        BankAccountManager.clear();
+        long heapBefore = usedHeap();
+        JournalRecovery.Result eager = JournalRecovery.recover(directory, HISTORY_WINDOW, false);
+        long eagerHeap = usedHeap() - heapBefore;
+        List<BankAccount> all = BankAccountManager.getAllAccounts();
+        String[] numbers = new String[all.size()];
+        long[] expected = new long[all.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = all.get(i).getAccountNumber();
+            expected[i] = all.get(i).getBalance();
+        }
+        all = null;
+        BankAccountManager.clear();
+
+        heapBefore = usedHeap();
+        JournalRecovery.Result lazy = JournalRecovery.recover(directory, HISTORY_WINDOW, true);
+        long lazyHeap = usedHeap() - heapBefore;
+        System.out.printf("Démarrage complet   : %d compte(s) en %.2f s, tas +%d Mo%n",
+                eager.getAccountsRestored(), eager.getElapsedNanos() / 1e9, eagerHeap >> 20);
+        System.out.printf("Démarrage paresseux : %d compte(s) en %.2f s, tas +%d Mo%n",
+                lazy.getAccountsRestored(), lazy.getElapsedNanos() / 1e9, lazyHeap >> 20);
+
+        // 2. Premier accès et accès suivants
+        SplittableRandom random = new SplittableRandom(11);
+        String[] touched = new String[TOUCHES];
+        for (int i = 0; i < TOUCHES; i++) {
+            touched[i] = numbers[random.nextInt(numbers.length)];
+        }
+        long first = touch(touched);
+        long again = touch(touched);
+        System.out.printf("Premier accès : %.1f µs | accès suivant : %.2f µs (moyennes sur %d comptes)%n",
+                first / 1e3 / TOUCHES, again / 1e3 / TOUCHES, TOUCHES);
+
+        // 3. Accès concentrés sous un budget réduit
+        AccountCache previous = AccountCache.getDefault();
+        AccountCache cache = new AccountCache(budgetBytes);
+        AccountCache.install(cache);
+        BankAccountManager.clear();
+        JournalRecovery.recover(directory, HISTORY_WINDOW, true);
+        Metrics.reset();
+        long amount = Money.ofMajor(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            int index = (int) (numbers.length * Math.pow(random.nextDouble(), 4)); // Quelques comptes très sollicités
+            BankAccount account = BankAccountManager.findAccountByNumber(numbers[index]);
+            Transaction deposit = new Transaction(null, account, amount, TransactionType.DEPOSIT, TransactionStatus.PENDING);
+            deposit.processTransaction();
+            if (deposit.getStatus() == TransactionStatus.SUCCEEDED) {
+                expected[index] += amount - deposit.getFee();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d dépôt(s) en %.2f s : taux de succès %.1f %%, %d compte(s) éveillé(s) sur %d chargé(s), "
+                        + "historique %d Ko / %d Ko%n",
+                operations, seconds, 100 * Metrics.getAccountCacheHitRatio(), cache.getAwakeCount(),
+                BankAccountManager.getAllAccounts().size(), cache.getUsedBytes() >> 10, budgetBytes >> 10);
+
+        int mismatches = 0;
+        for (int i = 0; i < numbers.length; i++) {
+            BankAccount account = BankAccountManager.findAccountByNumber(numbers[i]);
+            if (account == null || account.getBalance() != expected[i]) {
+                mismatches++;
+            }
+        }
+        System.out.printf("Soldes vérifiés : %d compte(s), %d écart(s).%n", numbers.length, mismatches);
+        AccountCache.install(previous);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return La durée totale des accès, en nanosecondes.
+     */
+    private static long touch(String[] accountNumbers) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (String accountNumber : accountNumbers) {
+            sum += BankAccountManager.findAccountByNumber(accountNumber).getBalance();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sum == Long.MIN_VALUE) {
+            System.out.println(sum); // Empêche l'élimination des lectures
+        }
+        return elapsed;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
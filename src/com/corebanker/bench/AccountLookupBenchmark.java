@@ -0,0 +1,108 @@
+package com.corebanker.bench;
+
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Mesure la latence de BankAccountManager.findAccountByNumber pour des registres de 1k à 10M comptes.
+ *
+ * La recherche n'est pas à coût constant : la table de hachage ne fait qu'un nombre d'accès borné, mais ces accès
+ * sortent des caches du processeur quand le registre grandit (environ ×12 de 1k à 1M comptes dans benchmarks/baseline.txt).
+ * Le rapport entre la plus grande et la plus petite taille est affiché en fin de mesure.
+ *
+ * Usage : java com.corebanker.bench.AccountLookupBenchmark [tailleMax]
+ * Pour 10M comptes, prévoir un tas d'au moins 4 Go (-Xmx4g).
+ */
+public class AccountLookupBenchmark {
+    private static final int LOOKUPS = 2_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        TransactionJournal.install(null); // Seules les recherches sont mesurées : pas de persistance
+        EventLog.setLevel(Level.WARN); // Sans la trace de chaque compte recréé après une collision
+
+        System.out.printf("%12s %14s %14s %12s%n", "comptes", "ns/recherche", "ns/échec", "collisions");
+        double first = 0;
+        double last = 0;
+        int lastSize = 0;
+        for (int size = 1_000; size <= maxSize; size *= 10) {
+            BankAccountManager.clear();
+            int[] collisions = new int[1];
+            String[] keys = populate(size, collisions);
+            double hit = measure(keys, false);
+            double miss = measure(keys, true);
+            System.out.printf("%12d %14.1f %14.1f %12d%n", BankAccountManager.getAccountCount(), hit, miss, collisions[0]);
+            first = first == 0 ? hit : first;
+            last = hit;
+            lastSize = size;
+        }
+        if (lastSize > 1_000) {
+            System.out.printf("Recherche %.1f fois plus lente à %d comptes qu'à 1000 : le coût croît avec la taille du registre.%n",
+                    last / first, lastSize);
+        }
+    }
+
+    /**
+     * Enregistre `size` comptes via l'enregistrement groupé et retourne leurs numéros.
+     * Les numéros (32 bits) tirés deux fois dans le lot sont refusés par l'enregistrement : les comptes concernés
+     * sont recréés un à un, avec un numéro absent du registre, jusqu'à atteindre `size` comptes enregistrés.
+     * @param collisions Reçoit en [0] le nombre de comptes refusés puis recréés.
+     */
+    static String[] populate(int size, int[] collisions) {
+        List<BankAccount> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(new BankAccount("Client-" + i, 0));
+        }
+        int added = BankAccountManager.addAccounts(batch);
+        collisions[0] = size - added;
+
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            BankAccount account = batch.get(i);
+            if (added < size && BankAccountManager.findAccountByNumber(account.getAccountNumber()) != account) {
+                account = new BankAccount("Client-" + i, 0); // Numéro déjà attribué dans le lot
+                BankAccountManager.addAccount(account);
+            }
+            keys[i] = account.getAccountNumber();
+        }
+        return keys;
+    }
+
+    /**
+     * Exécute des recherches aléatoires et retourne la meilleure moyenne en nanosecondes.
+     */
+    private static double measure(String[] keys, boolean missing) {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] probes = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String key = keys[random.nextInt(keys.length)];
+            probes[i] = missing ? key + "-X" : key;
+        }
+
+        double best = Double.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String probe : probes) {
+                BankAccount account = BankAccountManager.findAccountByNumber(probe);
+                if (account != null) {
+                    sink++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, (double) elapsed / LOOKUPS);
+        }
+        if (sink == -1) {
+            System.out.println(sink);
+        }
+        return best;
+    }
+}
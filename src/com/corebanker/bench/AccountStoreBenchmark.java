@@ -0,0 +1,142 @@
+package com.corebanker.bench;
+
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.persistence.TransactionJournal;
+import com.corebanker.store.AccountStore;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Compare le modèle objet (BankAccount dans BankAccountManager) au stockage en colonnes hors tas (AccountStore) :
+ * tas occupé par le registre, durée d'un GC complet (proportionnelle aux objets vivants à parcourir),
+ * et coût d'une recherche par numéro suivie de la lecture du solde.
+ * Usage : java -Xmx4g com.corebanker.bench.AccountStoreBenchmark [comptes] [recherches] [objects|store|both]
+ * Pour des mesures de tas exactes, lancer chaque modèle dans sa propre JVM (objects, puis store).
+ */
+public class AccountStoreBenchmark {
+    private static final int GC_ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        EventLog.setLevel(Level.OFF);
+        HistorySpill.install(null);
+        TransactionJournal.install(null);
+
+        System.out.printf("%-16s %10s %12s %14s %14s %12s%n", "modèle", "comptes", "tas (Mo)", "hors tas (Mo)", "GC complet ms", "ns/recherche");
+        String model = args.length > 2 ? args[2] : "both";
+        if (!model.equals("store")) {
+            measureObjects(accounts, lookups);
+        }
+        if (!model.equals("objects")) {
+            measureStore(accounts, lookups);
+        }
+    }
+
+    private static void measureObjects(int count, int lookups) {
+        long before = usedHeapAfterGc();
+        List<BankAccount> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new BankAccount("Client-" + i, Money.ofMajor(100)));
+        }
+        BankAccountManager.addAccounts(batch);
+        String[] keys = sampleKeys(batch.stream().map(BankAccount::getAccountNumber).toArray(String[]::new));
+        batch = null; // Seul le registre reste vivant
+        long heap = usedHeapAfterGc() - before;
+        double gcMillis = fullGcMillis();
+
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            checksum += BankAccountManager.findAccountByNumber(keys[i & (keys.length - 1)]).getBalance();
+        }
+        double nanos = (double) (System.nanoTime() - start) / lookups;
+        report("BankAccount", count, heap, 0, gcMillis, nanos, checksum);
+        BankAccountManager.clear();
+    }
+
+    private static void measureStore(int count, int lookups) throws Exception {
+        Path directory = Files.createTempDirectory("corebanker-bench-store");
+        Path file = directory.resolve("accounts.store");
+        long before = usedHeapAfterGc();
+        try (AccountStore store = AccountStore.open(file, count)) {
+            String[] numbers = new String[Math.min(count, 1 << 16)];
+            for (int i = 0; i < count; i++) {
+                int id = store.create("Client-" + i, Money.ofMajor(100));
+                if (i < numbers.length) {
+                    numbers[i] = store.getAccountNumber(id);
+                }
+            }
+            String[] keys = sampleKeys(numbers);
+            long heap = usedHeapAfterGc() - before;
+            double gcMillis = fullGcMillis();
+
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                checksum += store.getBalance(store.find(keys[i & (keys.length - 1)]));
+            }
+            double nanos = (double) (System.nanoTime() - start) / lookups;
+            report("AccountStore", count, heap, Files.size(file), gcMillis, nanos, checksum);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Tire 65 536 numéros au hasard (puissance de deux : indexation par masque dans la boucle mesurée).
+     */
+    private static String[] sampleKeys(String[] numbers) {
+        String[] keys = new String[1 << 16];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = numbers[random.nextInt(numbers.length)];
+        }
+        return keys;
+    }
+
+    private static void report(String model, int count, long heap, long offHeap, double gcMillis, double nanos, long checksum) {
+        System.out.printf("%-16s %10d %12.1f %14.1f %14.1f %12.1f%n", model, count, heap / 1048576.0, offHeap / 1048576.0, gcMillis, nanos);
+        if (checksum == 42) {
+            System.out.println(); // Empêche l'élimination de la boucle mesurée
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return La durée moyenne d'un GC complet explicite, d'après les compteurs des collecteurs.
+     */
+    private static double fullGcMillis() {
+        long before = totalGcMillis();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return (double) (totalGcMillis() - before) / GC_ROUNDS;
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
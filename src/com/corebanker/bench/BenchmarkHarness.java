@@ -0,0 +1,115 @@
+package com.corebanker.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Petit harnais de micro-benchmark : itérations de préchauffage puis de mesure, à durée fixe,
+ * sur un ou plusieurs threads. Pour chaque variante, il rapporte le débit, la latence moyenne,
+ * et l'allocation par opération et par seconde (équivalent de gc.alloc.rate), mesurée par thread
+ * avec com.sun.management.ThreadMXBean.
+ */
+final class BenchmarkHarness {
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationMillis;
+    private final StringBuilder report = new StringBuilder();
+
+    /**
+     * Opération mesurée. Appelée en boucle par chaque thread ; `thread` permet d'utiliser des données propres au thread.
+     */
+    interface Operation {
+        void run(int thread, long iteration) throws Exception;
+    }
+
+    BenchmarkHarness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationMillis = iterationMillis;
+        line(String.format("%-44s %7s %14s %12s %10s %10s", "benchmark", "threads", "ops/s", "ns/op", "B/op", "Mo/s alloc"));
+    }
+
+    /**
+     * Mesure une opération et ajoute la ligne de résultat au rapport.
+     * Le débit retenu est la moyenne des itérations de mesure.
+     */
+    void measure(String name, int threads, Operation operation) throws InterruptedException {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(threads, operation);
+        }
+        long operations = 0;
+        long nanos = 0;
+        long allocated = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long[] result = runIteration(threads, operation);
+            operations += result[0];
+            nanos += result[1];
+            allocated += result[2];
+        }
+        double seconds = nanos / 1e9;
+        double opsPerSecond = operations / seconds;
+        line(String.format("%-44s %7d %14.0f %12.1f %10.0f %10.1f", name, threads, opsPerSecond,
+                threads / opsPerSecond * 1e9, (double) allocated / operations, allocated / seconds / (1 << 20)));
+    }
+
+    /**
+     * @return {opérations, durée en nanosecondes, octets alloués}
+     */
+    private long[] runIteration(int threads, Operation operation) throws InterruptedException {
+        long[] counts = new long[threads];
+        long[] allocated = new long[threads];
+        Throwable[] failure = new Throwable[1];
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = iterationMillis * 1_000_000L;
+        long[] begin = new long[1];
+        Thread[] pool = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            pool[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    long allocatedBefore = allocatedBytes();
+                    long count = 0;
+                    do {
+                        operation.run(worker, count++);
+                    } while (System.nanoTime() - begin[0] < deadline);
+                    counts[worker] = count;
+                    allocated[worker] = allocatedBytes() - allocatedBefore;
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            }, "bench-" + t);
+            pool[t].start();
+        }
+        begin[0] = System.nanoTime();
+        start.countDown();
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin[0];
+        if (failure[0] != null) {
+            throw new IllegalStateException("Échec du benchmark : " + failure[0], failure[0]);
+        }
+
+        long[] totals = new long[3];
+        for (int t = 0; t < threads; t++) {
+            totals[0] += counts[t];
+            totals[2] += allocated[t];
+        }
+        totals[1] = elapsed;
+        return totals;
+    }
+
+    void line(String text) {
+        System.out.println(text);
+        report.append(text).append('\n');
+    }
+
+    String getReport() {
+        return report.toString();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,199 @@
+package com.corebanker.bench;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.fees.FeeSchedule;
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.metrics.Metrics;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.JournalRecovery;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Suite de benchmarks des chemins critiques, à relancer avant et après une modification :
+ * recherche de compte, transferts (un thread et en concurrence), journalisation durable, et redémarrage
+ * (reconstruction des comptes et de leur historique depuis le journal).
+ * Les lignes « sans métriques » mesurent le même chemin instrumentation désactivée : l'écart est le coût de Metrics.
+ *
+ * Usage : java -Xmx2g com.corebanker.bench.BenchmarkSuite [fichier de résultats] [taille max du registre]
+ * Les résultats sont affichés et écrits dans le fichier (benchmarks/latest.txt par défaut), précédés de l'environnement
+ * de mesure : seules des mesures issues de la même machine sont comparables.
+ */
+public class BenchmarkSuite {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 1_000;
+    private static final int TRANSFER_ACCOUNTS = 1_000;
+    private static final int CONTENDED_ACCOUNTS = 16;
+    private static final int CONTENDED_THREADS = 4;
+    private static final int JOURNAL_THREADS = 8;
+    private static final long RECOVERY_RECORDS = 200_000;
+    private static final int RECOVERY_ACCOUNTS = 10_000;
+    private static final int RECOVERY_HISTORY = 50;
+
+    public static void main(String[] args) throws Exception {
+        Path output = Paths.get(args.length > 0 ? args[0] : "benchmarks/latest.txt");
+        int maxRegistry = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        // Les événements applicatifs sont désactivés : seul le chemin métier est mesuré.
+        // Sans fichier de débordement, l'historique reste borné en mémoire et les millions de transferts ne remplissent pas le disque.
+        EventLog.setLevel(Level.OFF);
+        HistorySpill.install(null);
+        String environment = describeEnvironment();
+        System.out.print(environment);
+        BenchmarkHarness harness = new BenchmarkHarness(WARMUP_ITERATIONS, MEASUREMENT_ITERATIONS, ITERATION_MILLIS);
+
+        benchmarkLookups(harness, maxRegistry);
+        benchmarkTransfers(harness);
+        benchmarkJournal(harness);
+        benchmarkRecovery(harness);
+
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        Files.writeString(output, environment + harness.getReport());
+        System.out.println("Résultats écrits dans " + output);
+    }
+
+    /**
+     * BankAccountManager.findAccountByNumber, comptes existants tirés dans tout le registre.
+     */
+    private static void benchmarkLookups(BenchmarkHarness harness, int maxRegistry) throws InterruptedException {
+        TransactionJournal.install(null);
+        for (int size = 1_000; size <= maxRegistry; size *= 10) {
+            BankAccountManager.clear();
+            String[] keys = AccountLookupBenchmark.populate(size, new int[1]); // Exactement `size` comptes enregistrés
+            harness.measure("findAccountByNumber (" + size + " comptes)", 1,
+                    (thread, iteration) -> BankAccountManager.findAccountByNumber(keys[index(iteration, keys.length)]));
+            if (size == 1_000) {
+                Metrics.setEnabled(false);
+                harness.measure("findAccountByNumber sans métriques (" + size + ")", 1,
+                        (thread, iteration) -> BankAccountManager.findAccountByNumber(keys[index(iteration, keys.length)]));
+                Metrics.setEnabled(true);
+            }
+        }
+        BankAccountManager.clear();
+    }
+
+    /**
+     * Transaction.processTransaction sans persistance : validation, frais, transfert sous verrous et historique.
+     */
+    private static void benchmarkTransfers(BenchmarkHarness harness) throws InterruptedException {
+        TransactionJournal.install(null);
+        BankAccount[] accounts = createAccounts(TRANSFER_ACCOUNTS);
+        harness.measure("processTransaction (" + TRANSFER_ACCOUNTS + " comptes)", 1,
+                (thread, iteration) -> transfer(accounts, thread, iteration));
+        Metrics.setEnabled(false);
+        harness.measure("processTransaction sans métriques", 1,
+                (thread, iteration) -> transfer(accounts, thread, iteration));
+        Metrics.setEnabled(true);
+        FeeSchedule.install(FeeBenchmark.largeSchedule(4_096));
+        harness.measure("processTransaction barème 4096 règles", 1,
+                (thread, iteration) -> transfer(accounts, thread, iteration));
+        FeeSchedule.install(null);
+
+        BankAccount[] contended = createAccounts(CONTENDED_ACCOUNTS);
+        harness.measure("processTransaction concurrent (" + CONTENDED_ACCOUNTS + " comptes)", CONTENDED_THREADS,
+                (thread, iteration) -> transfer(contended, thread, iteration));
+        BankAccountManager.clear();
+    }
+
+    /**
+     * processTransaction avec journal durable : chaque appel attend son fsync, regroupé avec ceux des autres threads.
+     * Remplace la mesure de l'ancien saveTransactionToFile.
+     */
+    private static void benchmarkJournal(BenchmarkHarness harness) throws Exception {
+        for (boolean fsync : new boolean[]{true, false}) {
+            Path directory = Files.createTempDirectory("corebanker-bench-journal");
+            try (TransactionJournal journal = TransactionJournal.open(new JournalConfig(directory, 64L << 20, 1024, 0, fsync))) {
+                TransactionJournal.install(journal);
+                BankAccount[] accounts = createAccounts(TRANSFER_ACCOUNTS);
+                String label = fsync ? "fsync" : "sans fsync";
+                harness.measure("processTransaction + journal (" + label + ")", 1,
+                        (thread, iteration) -> transfer(accounts, thread, iteration));
+                harness.measure("processTransaction + journal (" + label + ")", JOURNAL_THREADS,
+                        (thread, iteration) -> transfer(accounts, thread, iteration));
+            } finally {
+                TransactionJournal.install(null);
+                BankAccountManager.clear();
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    /**
+     * Redémarrage : reconstruction des comptes et de leur historique récent depuis un journal synthétique.
+     * L'analyse du journal est parallèle : l'allocation des threads du pool commun n'est pas comptée.
+     */
+    private static void benchmarkRecovery(BenchmarkHarness harness) throws Exception {
+        Path directory = Files.createTempDirectory("corebanker-bench-recovery");
+        try {
+            RecoveryBenchmark.generate(directory, RECOVERY_RECORDS, RECOVERY_ACCOUNTS);
+            harness.measure("recover (" + RECOVERY_RECORDS + " enreg., historique " + RECOVERY_HISTORY + ")", 1,
+                    (thread, iteration) -> {
+                        BankAccountManager.clear();
+                        JournalRecovery.recover(directory, RECOVERY_HISTORY);
+                    });
+        } finally {
+            BankAccountManager.clear();
+            deleteRecursively(directory);
+        }
+    }
+
+    private static BankAccount[] createAccounts(int count) {
+        BankAccount[] accounts = new BankAccount[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = new BankAccount("Bench-" + i, Money.ofMajor(1_000_000_000));
+            BankAccountManager.addAccount(accounts[i]);
+        }
+        return accounts;
+    }
+
+    private static void transfer(BankAccount[] accounts, int thread, long iteration) {
+        int source = index(iteration * 31 + thread, accounts.length);
+        int target = index(iteration * 17 + thread + 1, accounts.length);
+        new Transaction(accounts[source], accounts[target], 1_000 + (iteration & 1023), TransactionType.TRANSFER,
+                TransactionStatus.PENDING).processTransaction();
+    }
+
+    /**
+     * Indice pseudo-aléatoire sans allocation (hachage multiplicatif de l'itération).
+     */
+    private static int index(long iteration, int length) {
+        return (int) Math.floorMod(iteration * 0x9E3779B97F4A7C15L >>> 16, (long) length);
+    }
+
+    private static String describeEnvironment() {
+        return String.format("# CoreBanker BenchmarkSuite — %s%n# JVM : %s %s (%s) | OS : %s %s | CPU : %d | Tas max : %d Mo%n"
+                        + "# Préchauffage : %d x %d ms | Mesure : %d x %d ms | Arguments JVM : %s%n",
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                System.getProperty("java.vm.name"), System.getProperty("java.version"), System.getProperty("java.vendor"),
+                System.getProperty("os.name"), System.getProperty("os.arch"), Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory() >> 20, WARMUP_ITERATIONS, ITERATION_MILLIS, MEASUREMENT_ITERATIONS, ITERATION_MILLIS,
+                ManagementFactory.getRuntimeMXBean().getInputArguments());
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.corebanker.bench;
+
+import com.corebanker.enums.ReplicationMode;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.JournalRecovery;
+import com.corebanker.persistence.TransactionJournal;
+import com.corebanker.replication.JournalReplicator;
+import com.corebanker.replication.StandbyNode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bascule sur nœud de secours, avec deux processus sur la même machine.
+ *
+ * Le processus principal ouvre son journal, crée les comptes, active la réplication puis exécute une charge mixte
+ * (transferts, dépôts, retraits) pendant la durée demandée ; le nœud de secours peut se connecter en cours de charge.
+ * À la fin, il attend que le nœud de secours ait tout confirmé, écrit les soldes attendus à côté de la socket et
+ * s'arrête brutalement (Runtime.halt, sans fermeture du journal). Le nœud de secours prend alors le relais, compare
+ * ses soldes aux soldes attendus, puis relit son propre journal et compare de nouveau.
+ *
+ * Usage :
+ * java com.corebanker.bench.FailoverBenchmark primary socket répertoire [ASYNC|SYNC] [secondes] [comptes] [threads]
+ * java com.corebanker.bench.FailoverBenchmark standby socket répertoire
+ */
+public class FailoverBenchmark {
+    private static final long INITIAL_BALANCE = Money.ofMajor(10_000);
+    private static final long DRAIN_TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage : FailoverBenchmark primary|standby socket répertoire [ASYNC|SYNC] [secondes] [comptes] [threads]");
+            return;
+        }
+        EventLog.setLevel(Level.WARN);
+        HistorySpill.install(null);
+        Path socket = Paths.get(args[1]);
+        JournalConfig config = JournalConfig.defaults().withDirectory(Paths.get(args[2]));
+        if (args[0].equals("primary")) {
+            ReplicationMode mode = args.length > 3 ? ReplicationMode.valueOf(args[3]) : ReplicationMode.ASYNC;
+            int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+            int accounts = args.length > 5 ? Integer.parseInt(args[5]) : 10_000;
+            int threads = args.length > 6 ? Integer.parseInt(args[6]) : 8;
+            primary(socket, config, mode, seconds, accounts, threads);
+        } else {
+            standby(socket, config);
+        }
+    }
+
+    private static void primary(Path socket, JournalConfig config, ReplicationMode mode, int seconds, int accountCount, int threads)
+            throws Exception {
+        TransactionJournal journal = TransactionJournal.open(config);
+        TransactionJournal.install(journal);
+        List<BankAccount> created = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            created.add(new BankAccount("Failover-" + i, INITIAL_BALANCE));
+        }
+        BankAccountManager.addAccounts(created);
+        BankAccount[] accounts = created.toArray(new BankAccount[0]);
+        JournalReplicator replicator = JournalReplicator.start(journal, socket, mode);
+        System.out.printf("Nœud principal prêt (%s), en attente du nœud de secours sur %s.%n", mode, socket);
+
+        LongAdder executed = new LongAdder();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] pool = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            pool[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(worker);
+                while (System.nanoTime() < end) {
+                    next(random, accounts).processTransaction();
+                    executed.increment();
+                }
+            }, "producer-" + t);
+            pool[t].start();
+        }
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        System.out.printf("%d transaction(s) en %d s : %.0f transactions/s (réplication %s).%n",
+                executed.sum(), seconds, executed.sum() / (double) seconds, mode);
+
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (replicator.getLag() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200); // Laisse passer un dernier lot vide et son accusé
+        StringBuilder expected = new StringBuilder();
+        for (BankAccount account : accounts) {
+            expected.append(account.getAccountNumber()).append(' ').append(account.getBalance()).append('\n');
+        }
+        Files.writeString(expectedFile(socket), expected);
+        System.out.printf("Soldes attendus écrits, retard du nœud de secours : %d enregistrement(s). Arrêt brutal.%n",
+                replicator.getLag());
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static void standby(Path socket, JournalConfig config) throws Exception {
+        StandbyNode node = StandbyNode.connect(socket, config);
+        System.out.printf("Nœud de secours connecté : %d compte(s).%n", BankAccountManager.getAccountCount());
+        node.awaitPrimaryLoss();
+        long elapsed = node.promote();
+        System.out.printf("Relais pris en %.3f ms après %d enregistrement(s) répliqué(s).%n", elapsed / 1e6, node.getApplied());
+
+        Map<String, Long> expected = new HashMap<>();
+        for (String line : Files.readAllLines(expectedFile(socket))) {
+            String[] fields = line.split(" ");
+            expected.put(fields[0], Long.parseLong(fields[1]));
+        }
+        boolean verified = matches(expected, "en mémoire");
+
+        // Le nœud promu continue de servir, puis son propre journal est relu
+        BankAccount first = BankAccountManager.findAccountByNumber(expected.keySet().iterator().next());
+        Transaction deposit = new Transaction(null, first, Money.ofMajor(1), TransactionType.DEPOSIT, TransactionStatus.PENDING);
+        deposit.processTransaction();
+        expected.put(first.getAccountNumber(), expected.get(first.getAccountNumber()) + Money.ofMajor(1) - deposit.getFee());
+        TransactionJournal.getDefault().close();
+        TransactionJournal.install(null);
+        BankAccountManager.clear();
+        JournalRecovery.recover(config.getDirectory(), 0);
+        verified &= matches(expected, "relus depuis le journal local");
+        System.exit(verified ? 0 : 1);
+    }
+
+    private static boolean matches(Map<String, Long> expected, String label) {
+        int mismatches = 0;
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            BankAccount account = BankAccountManager.findAccountByNumber(entry.getKey());
+            if (account == null || account.getBalance() != entry.getValue()) {
+                mismatches++;
+            }
+        }
+        System.out.printf("Soldes %s : %d compte(s), %d écart(s).%n", label, expected.size(), mismatches);
+        return mismatches == 0;
+    }
+
+    private static Path expectedFile(Path socket) {
+        return socket.resolveSibling(socket.getFileName() + ".soldes");
+    }
+
+    private static Transaction next(SplittableRandom random, BankAccount[] accounts) {
+        BankAccount account = accounts[random.nextInt(accounts.length)];
+        long amount = 1 + random.nextInt(100_000);
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return new Transaction(null, account, amount, TransactionType.DEPOSIT, TransactionStatus.PENDING);
+        }
+        if (kind == 1) {
+            return new Transaction(account, null, amount, TransactionType.WITHDRAWAL, TransactionStatus.PENDING);
+        }
+        return new Transaction(account, accounts[random.nextInt(accounts.length)], amount, TransactionType.TRANSFER, TransactionStatus.PENDING);
+    }
+}
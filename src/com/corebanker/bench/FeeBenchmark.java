@@ -0,0 +1,92 @@
+package com.corebanker.bench;
+
+import com.corebanker.enums.AccountClass;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.fees.FeeRule;
+import com.corebanker.fees.FeeSchedule;
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare le calcul des frais par barème compilé au taux de 2 % codé en dur qu'il remplace,
+ * puis le coût de processTransaction selon la taille du barème en vigueur.
+ * Usage : java com.corebanker.bench.FeeBenchmark [nombre de règles]
+ */
+public class FeeBenchmark {
+    private static final int ACCOUNTS = 1_000;
+    private static final AccountClass[] CLASSES = AccountClass.values();
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    public static void main(String[] args) throws Exception {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 4_096;
+        EventLog.setLevel(Level.OFF);
+        HistorySpill.install(null);
+        TransactionJournal.install(null);
+
+        long start = System.nanoTime();
+        FeeSchedule large = largeSchedule(ruleCount);
+        System.out.printf("Compilation de %s : %.1f ms%n", large, (System.nanoTime() - start) / 1e6);
+
+        BenchmarkHarness harness = new BenchmarkHarness(3, 5, 1_000);
+        long[] sink = new long[1];
+        harness.measure("applyRate 2 % (référence codée en dur)", 1, (thread, iteration) ->
+                sink[0] += Money.applyRate(amount(iteration), BankAccount.TRANSFER_FEE_BASIS_POINTS, BankAccount.FEE_ROUNDING));
+        harness.measure("feeFor barème standard", 1, (thread, iteration) ->
+                sink[0] += FeeSchedule.STANDARD.feeFor(AccountClass.STANDARD, TransactionType.TRANSFER, amount(iteration)));
+        harness.measure("feeFor barème " + ruleCount + " règles", 1, (thread, iteration) ->
+                sink[0] += large.feeFor(CLASSES[(int) (iteration % CLASSES.length)], TYPES[(int) (iteration / 3 % TYPES.length)],
+                        amount(iteration)));
+
+        BankAccount[] accounts = new BankAccount[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new BankAccount("Bench-" + i, Money.ofMajor(1_000_000_000), CLASSES[i % CLASSES.length]);
+            BankAccountManager.addAccount(accounts[i]);
+        }
+        FeeSchedule.install(FeeSchedule.STANDARD);
+        harness.measure("processTransaction barème standard", 1, (thread, iteration) -> transfer(accounts, iteration));
+        FeeSchedule.install(large);
+        harness.measure("processTransaction barème " + ruleCount + " règles", 1, (thread, iteration) -> transfer(accounts, iteration));
+        FeeSchedule.install(null);
+        BankAccountManager.clear();
+        if (sink[0] == -1) {
+            System.out.println(sink[0]);
+        }
+    }
+
+    /**
+     * Barème synthétique : les règles sont réparties entre tous les couples (classe, type), en paliers de 10,00 €.
+     */
+    static FeeSchedule largeSchedule(int ruleCount) {
+        List<FeeRule> rules = new ArrayList<>(ruleCount);
+        int cells = CLASSES.length * TYPES.length;
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(new FeeRule(CLASSES[i % CLASSES.length], TYPES[i / CLASSES.length % TYPES.length],
+                    (long) (i / cells) * 1_000, 50 + i % 150, i % 7 * 10, 0, Money.ofMajor(50)));
+        }
+        return FeeSchedule.compile(rules, "barème synthétique");
+    }
+
+    /**
+     * Montant pseudo-aléatoire entre 0,01 € et 10 000 €, sans allocation.
+     */
+    private static long amount(long iteration) {
+        return 1 + Math.floorMod(iteration * 0x9E3779B97F4A7C15L >>> 20, 1_000_000L);
+    }
+
+    private static void transfer(BankAccount[] accounts, long iteration) {
+        int source = (int) Math.floorMod(iteration * 31, (long) accounts.length);
+        int target = (int) Math.floorMod(iteration * 17 + 1, (long) accounts.length);
+        new Transaction(accounts[source], accounts[target], 1_000 + (iteration & 1023), TransactionType.TRANSFER,
+                TransactionStatus.PENDING).processTransaction();
+    }
+}
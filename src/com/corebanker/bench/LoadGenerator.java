@@ -0,0 +1,188 @@
+package com.corebanker.bench;
+
+import com.corebanker.api.BankingServer;
+import com.corebanker.api.VirtualThreads;
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Générateur de charge pour le service HTTP (BankingServer) : des clients concurrents enchaînent
+ * consultations de solde (BankAccountManager.findAccountByNumber) et transferts (Transaction.processTransaction),
+ * puis le débit et les latences p50/p99/p999 sont affichés.
+ *
+ * Usage : java com.corebanker.bench.LoadGenerator [url|embedded] [clients] [durée en s] [comptes] [part de transferts en %]
+ * En mode embedded (par défaut), un service est démarré dans la JVM sur un port libre, sans journal ni débordement
+ * de l'historique sur disque : seul le chemin de la requête est mesuré.
+ */
+public class LoadGenerator {
+    private static final Pattern ACCOUNT_NUMBER = Pattern.compile("\"accountNumber\":\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "embedded";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int accountCount = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+        int transferPercent = args.length > 4 ? Integer.parseInt(args[4]) : 50;
+
+        BankingServer embedded = null;
+        String base = target;
+        if (target.equals("embedded")) {
+            EventLog.setLevel(Level.WARN);
+            HistorySpill.install(null);
+            TransactionJournal.install(null);
+            embedded = new BankingServer(0);
+            embedded.start();
+            base = "http://localhost:" + embedded.getPort();
+        }
+
+        // Un thread par client : virtuel si possible, sinon plateforme (le pool de repli borné de VirtualThreads
+        // ne suffirait pas à faire tourner tous les clients). Le client HTTP garde son propre exécuteur interne.
+        ExecutorService executor = VirtualThreads.isAvailable()
+                ? VirtualThreads.newPerTaskExecutor("load")
+                : Executors.newFixedThreadPool(clients);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        try {
+            String[] accounts = createAccounts(client, base, accountCount);
+            System.out.printf("%d compte(s) créé(s) sur %s ; %d client(s), %d %% de transferts, %s.%n",
+                    accounts.length, base, clients, transferPercent, VirtualThreads.describe());
+
+            // Préchauffage puis mesure
+            run(client, executor, base, accounts, clients, Math.max(1, seconds / 5), transferPercent);
+            Report report = run(client, executor, base, accounts, clients, seconds, transferPercent);
+            report.print();
+        } finally {
+            executor.shutdownNow();
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    private static String[] createAccounts(HttpClient client, String base, int count) throws Exception {
+        String[] numbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            HttpResponse<String> response = client.send(post(base + "/accounts?owner=Charge-" + i + "&balance=1000000.00"),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher matcher = ACCOUNT_NUMBER.matcher(response.body());
+            if (response.statusCode() != 201 || !matcher.find()) {
+                throw new IllegalStateException("Création de compte refusée : " + response.statusCode() + " " + response.body());
+            }
+            numbers[i] = matcher.group(1);
+        }
+        return numbers;
+    }
+
+    /**
+     * Lance les clients pendant la durée donnée ; chacun attend sa réponse avant d'envoyer la requête suivante.
+     */
+    private static Report run(HttpClient client, ExecutorService executor, String base, String[] accounts, int clients,
+                              int seconds, int transferPercent) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        int[] errors = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        long begin = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int worker = c;
+            executor.execute(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request;
+                        String account = accounts[random.nextInt(accounts.length)];
+                        if (random.nextInt(100) < transferPercent) {
+                            String other = accounts[random.nextInt(accounts.length)];
+                            request = post(base + "/transfers?from=" + account + "&to=" + other + "&amount=" + (1 + random.nextInt(100)) + ".00");
+                        } else {
+                            request = HttpRequest.newBuilder(URI.create(base + "/accounts/" + account)).GET().build();
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status >= 500) {
+                                errors[worker]++;
+                            }
+                        } catch (IOException e) {
+                            errors[worker]++;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latencies[worker] = samples;
+                    counts[worker] = count;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return new Report(latencies, counts, errors, System.nanoTime() - begin);
+    }
+
+    private static HttpRequest post(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    /**
+     * Latences fusionnées de tous les clients.
+     */
+    private static final class Report {
+        private final long[] sorted;
+        private final int errors;
+        private final long elapsedNanos;
+
+        Report(long[][] latencies, int[] counts, int[] errors, long elapsedNanos) {
+            int total = Arrays.stream(counts).sum();
+            this.sorted = new long[total];
+            int offset = 0;
+            for (int c = 0; c < latencies.length; c++) {
+                System.arraycopy(latencies[c], 0, sorted, offset, counts[c]);
+                offset += counts[c];
+            }
+            Arrays.sort(sorted);
+            this.errors = Arrays.stream(errors).sum();
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private double percentileMillis(double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        void print() {
+            System.out.printf("%10s %12s %10s %10s %10s %10s %8s%n", "requêtes", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "erreurs");
+            System.out.printf("%10d %12.0f %10.3f %10.3f %10.3f %10.3f %8d%n", sorted.length, sorted.length / (elapsedNanos / 1e9),
+                    percentileMillis(50), percentileMillis(99), percentileMillis(99.9),
+                    sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0, errors);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.corebanker.bench;
+
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.logging.LogSink;
+import com.corebanker.models.Money;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Mesure le coût d'un événement journalisé sur le thread appelant :
+ * niveau désactivé, niveau activé (tampon circulaire), et l'ancienne approche (concaténation + println synchronisé).
+ * La sortie est jetée dans les trois cas pour ne mesurer que le chemin de l'appelant.
+ * Usage : java com.corebanker.bench.LoggingBenchmark [événements par thread] [threads]
+ */
+public class LoggingBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        EventLog.setSink(new LogSink() {
+            @Override
+            public void write(StringBuilder line) {
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        String id = "3bcb1de3-a89c-487e-a244-df5d5404432a";
+
+        System.out.printf("%-28s %8s %12s %14s%n", "variante", "threads", "ns/événement", "octets/événement");
+        for (int t = 1; t <= threads; t *= 2) {
+            EventLog.setLevel(Level.OFF);
+            report("EventLog désactivé", t, events, () -> EventLog.log(EventCode.TRANSACTION_FEE, 200, 9_800));
+            EventLog.setLevel(Level.INFO);
+            report("EventLog activé", t, events, () -> EventLog.log(EventCode.TRANSACTION_FEE, 200, 9_800));
+            report("println + concaténation", t, events,
+                    () -> discard.println("Frais de transaction : " + Money.format(200) + " €. Transaction " + id));
+        }
+    }
+
+    /**
+     * Exécute la variante sur `threads` threads et affiche la meilleure moyenne par événement, vue par un thread.
+     */
+    private static void report(String name, int threads, int events, Runnable body) throws InterruptedException {
+        double bestNanos = Double.MAX_VALUE;
+        double bytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long[] elapsed = new long[threads];
+            long[] allocated = new long[threads];
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] pool = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                pool[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    long allocatedBefore = allocatedBytes();
+                    long begin = System.nanoTime();
+                    for (int i = 0; i < events; i++) {
+                        body.run();
+                    }
+                    elapsed[worker] = System.nanoTime() - begin;
+                    allocated[worker] = allocatedBytes() - allocatedBefore;
+                });
+                pool[t].start();
+            }
+            start.countDown();
+            for (Thread thread : pool) {
+                thread.join();
+            }
+            EventLog.flush();
+
+            long totalElapsed = 0;
+            long totalAllocated = 0;
+            for (int t = 0; t < threads; t++) {
+                totalElapsed += elapsed[t];
+                totalAllocated += allocated[t];
+            }
+            bestNanos = Math.min(bestNanos, (double) totalElapsed / threads / events);
+            bytes = (double) totalAllocated / threads / events;
+        }
+        System.out.printf("%-28s %8d %12.1f %14.1f%n", name, threads, bestNanos, bytes);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,150 @@
+package com.corebanker.bench;
+
+import com.corebanker.engine.TransactionPipeline;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.JournalRecovery;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * Compare le pipeline (TransactionPipeline) à processTransaction sur plusieurs threads, avec journal durable :
+ * charge mixte de transferts (80 %), dépôts (10 %) et retraits (10 %) entre comptes aléatoires.
+ * Chaque exécution est vérifiée : soldes positifs, et soldes relus par JournalRecovery identiques aux soldes en mémoire.
+ * Usage : java com.corebanker.bench.PipelineBenchmark [transactions] [comptes] [threads] [fsync]
+ */
+public class PipelineBenchmark {
+    private static final long INITIAL_BALANCE = Money.ofMajor(10_000);
+    private static final int QUEUE_CAPACITY = 1_024;
+    private static final int JOURNAL_IN_FLIGHT = 8_192;
+
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        boolean fsync = args.length <= 3 || Boolean.parseBoolean(args[3]);
+        EventLog.setLevel(Level.OFF);
+        HistorySpill.install(null);
+
+        System.out.printf("%-28s %16s %10s%n", "exécution", "transactions/s", "vérifié");
+        boolean verified = run("processTransaction x" + threads, transactions, accountCount, threads, fsync, false);
+        verified &= run("pipeline", transactions, accountCount, threads, fsync, true);
+        if (!verified) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param threads Nombre de threads producteurs (un seul suffit au pipeline, qui a ses propres threads)
+     */
+    private static boolean run(String name, int transactions, int accountCount, int threads, boolean fsync, boolean pipelined)
+            throws Exception {
+        Path directory = Files.createTempDirectory("corebanker-bench-pipeline");
+        try {
+            TransactionJournal journal = TransactionJournal.open(new JournalConfig(directory, 256L << 20, 1024, 0, fsync));
+            TransactionJournal.install(journal);
+            BankAccountManager.clear();
+            List<BankAccount> created = new ArrayList<>(accountCount);
+            for (int i = 0; i < accountCount; i++) {
+                created.add(new BankAccount("Pipeline-" + i, INITIAL_BALANCE));
+            }
+            BankAccountManager.addAccounts(created);
+            BankAccount[] accounts = created.toArray(new BankAccount[0]);
+
+            int producers = pipelined ? 1 : threads;
+            int perThread = transactions / producers;
+            TransactionPipeline pipeline = pipelined ? new TransactionPipeline(QUEUE_CAPACITY, JOURNAL_IN_FLIGHT) : null;
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] pool = new Thread[producers];
+            for (int t = 0; t < producers; t++) {
+                int worker = t;
+                pool[t] = new Thread(() -> {
+                    SplittableRandom random = new SplittableRandom(worker);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        Transaction transaction = next(random, accounts);
+                        if (pipeline != null) {
+                            pipeline.submit(transaction); // Bloque quand le pipeline est saturé
+                        } else {
+                            transaction.processTransaction();
+                        }
+                    }
+                }, "producer-" + t);
+                pool[t].start();
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Thread thread : pool) {
+                thread.join();
+            }
+            if (pipeline != null) {
+                pipeline.close(); // Attend la publication des transactions en cours
+            }
+            long elapsed = System.nanoTime() - begin;
+            journal.close();
+            TransactionJournal.install(null);
+
+            boolean verified = true;
+            long[] balances = new long[accounts.length];
+            for (int i = 0; i < accounts.length; i++) {
+                balances[i] = accounts[i].getBalance();
+                verified &= balances[i] >= 0;
+            }
+            BankAccountManager.clear();
+            JournalRecovery.recover(directory, 0);
+            for (int i = 0; i < accounts.length; i++) {
+                BankAccount recovered = BankAccountManager.findAccountByNumber(accounts[i].getAccountNumber());
+                verified &= recovered != null && recovered.getBalance() == balances[i];
+            }
+            System.out.printf("%-28s %16.0f %10s%n", name, (double) perThread * producers / (elapsed / 1e9), verified ? "oui" : "NON");
+            return verified;
+        } finally {
+            TransactionJournal.install(null);
+            BankAccountManager.clear();
+            deleteRecursively(directory);
+        }
+    }
+
+    private static Transaction next(SplittableRandom random, BankAccount[] accounts) {
+        BankAccount account = accounts[random.nextInt(accounts.length)];
+        long amount = 1 + random.nextInt(100_000);
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return new Transaction(null, account, amount, TransactionType.DEPOSIT, TransactionStatus.PENDING);
+        }
+        if (kind == 1) {
+            return new Transaction(account, null, amount, TransactionType.WITHDRAWAL, TransactionStatus.PENDING);
+        }
+        return new Transaction(account, accounts[random.nextInt(accounts.length)], amount, TransactionType.TRANSFER, TransactionStatus.PENDING);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
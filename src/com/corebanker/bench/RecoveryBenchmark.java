@@ -0,0 +1,91 @@
+package com.corebanker.bench;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.JournalRecovery;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Mesure le temps de démarrage (relecture du journal) en fonction du nombre d'enregistrements.
+ * Usage : java com.corebanker.bench.RecoveryBenchmark [enregistrements] [comptes] [répertoire] [historique]
+ * (historique = nombre de transactions rechargées en mémoire par compte, 0 par défaut : seul l'index est construit)
+ * 100M enregistrements occupent environ 12,8 Go sur disque ; prévoir -Xmx en conséquence pour l'index d'historique.
+ */
+public class RecoveryBenchmark {
+    private static final int BATCH = 4096;
+
+    public static void main(String[] args) throws IOException {
+        long records = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Path directory = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("corebanker-recovery");
+        int historyWindow = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        if (TransactionJournal.listSegments(directory).isEmpty()) {
+            generate(directory, records, accountCount);
+        }
+        BankAccountManager.clear();
+
+        long heapBefore = usedHeap();
+        JournalRecovery.Result result = JournalRecovery.recover(directory, historyWindow);
+        long heapAfter = usedHeap();
+
+        double seconds = result.getElapsedNanos() / 1e9;
+        System.out.printf("Enregistrements relus : %d | Comptes : %d | Durée : %.2f s | %.1f M enreg./s | Tas : +%d Mo%n",
+                result.getRecordsRead(), result.getAccountsRestored(), seconds,
+                result.getRecordsRead() / seconds / 1e6, (heapAfter - heapBefore) >> 20);
+    }
+
+    /**
+     * Écrit un journal synthétique : ouverture des comptes puis transferts aléatoires.
+     */
+    static void generate(Path directory, long records, int accountCount) throws IOException {
+        JournalConfig config = new JournalConfig(directory, 1L << 30, BATCH, 0, false);
+        try (TransactionJournal journal = TransactionJournal.open(config)) {
+            BankAccount[] accounts = new BankAccount[accountCount];
+            List<JournalRecord> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < accountCount; i++) {
+                accounts[i] = new BankAccount("Client-" + i, Money.ofMajor(1_000_000));
+                batch.add(JournalRecord.forAccountOpened(accounts[i]));
+                if (batch.size() == BATCH) {
+                    journal.appendAll(batch);
+                    batch.clear();
+                }
+            }
+
+            SplittableRandom random = new SplittableRandom(7);
+            long amount = Money.ofMajor(10);
+            for (long written = accountCount; written < records; written++) {
+                BankAccount source = accounts[random.nextInt(accountCount)];
+                BankAccount target = accounts[random.nextInt(accountCount)];
+                Transaction transaction = new Transaction(source, target, amount, TransactionType.TRANSFER, TransactionStatus.SUCCEEDED);
+                batch.add(JournalRecord.forTransaction(transaction, source.calculateTransactionFee(amount, TransactionType.TRANSFER)));
+                if (batch.size() == BATCH) {
+                    journal.appendAll(batch).join(); // Contre-pression sur le générateur
+                    batch.clear();
+                }
+            }
+            journal.appendAll(batch).join();
+        }
+        System.out.println("Journal généré dans " + directory);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,118 @@
+package com.corebanker.bench;
+
+import com.corebanker.engine.ShardedEngine;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compare le moteur partitionné (ShardedEngine) au chemin à verrous (Transaction.processTransaction) :
+ * débit de transferts entre comptes aléatoires selon le nombre de partitions / threads,
+ * puis vérification de la conservation des soldes (somme des soldes + frais inchangée).
+ * Usage : java com.corebanker.bench.ShardedTransferBenchmark [transferts] [comptes] [partitions max]
+ */
+public class ShardedTransferBenchmark {
+    private static final long INITIAL_BALANCE = Money.ofMajor(1_000_000);
+    private static final long MAX_IN_FLIGHT = 65_536; // Borne les files des partitions
+
+    public static void main(String[] args) throws InterruptedException {
+        int transfers = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int maxShards = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        EventLog.setLevel(Level.OFF);
+        HistorySpill.install(null);
+        TransactionJournal.install(null);
+
+        boolean conserved = true;
+        System.out.printf("%-14s %10s %16s %12s%n", "moteur", "threads", "transferts/s", "conservé");
+        for (int n = 1; n <= maxShards; n *= 2) {
+            conserved &= run("verrous", n, transfers, accountCount, false);
+            conserved &= run("partitionné", n, transfers, accountCount, true);
+        }
+        if (!conserved) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param threads Nombre de threads producteurs ; en mode partitionné, également le nombre de partitions
+     */
+    private static boolean run(String name, int threads, int transfers, int accountCount, boolean sharded) throws InterruptedException {
+        BankAccount[] accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = new BankAccount("Shard-" + i, INITIAL_BALANCE);
+        }
+        LongAdder fees = new LongAdder();
+        LongAdder done = new LongAdder();
+        ShardedEngine engine = sharded ? new ShardedEngine(threads) : null;
+        int perThread = transfers / threads;
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] pool = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            pool[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(worker);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    BankAccount source = accounts[random.nextInt(accountCount)];
+                    BankAccount target = accounts[random.nextInt(accountCount)];
+                    long amount = 1 + random.nextInt(2_000_000);
+                    long fee = source.calculateTransactionFee(amount, TransactionType.TRANSFER);
+                    Transaction transaction = new Transaction(source, target, amount, TransactionType.TRANSFER, TransactionStatus.PENDING);
+                    if (engine == null) {
+                        if (transaction.processTransaction()) {
+                            fees.add(fee);
+                        }
+                        continue;
+                    }
+                    while ((long) i * threads - done.sum() > MAX_IN_FLIGHT) {
+                        LockSupport.parkNanos(10_000);
+                    }
+                    engine.transfer(transaction).thenAccept(applied -> {
+                        if (applied) {
+                            fees.add(fee);
+                        }
+                        done.increment();
+                    });
+                }
+            }, "producer-" + t);
+            pool[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        if (engine != null) {
+            engine.close(); // Attend la fin des transferts en cours
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long total = 0;
+        boolean negative = false;
+        for (BankAccount account : accounts) {
+            total += account.getBalance();
+            negative |= account.getBalance() < 0;
+        }
+        boolean conserved = total + fees.sum() == INITIAL_BALANCE * accountCount && !negative;
+        System.out.printf("%-14s %10d %16.0f %12s%n", name, threads, (double) perThread * threads / (elapsed / 1e9), conserved ? "oui" : "NON");
+        return conserved;
+    }
+}
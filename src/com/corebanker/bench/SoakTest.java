@@ -0,0 +1,345 @@
+package com.corebanker.bench;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.logging.EventLog;
+import com.corebanker.logging.Level;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.metrics.LatencyHistogram;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.TransactionJournal;
+import com.corebanker.workload.WorkloadFile;
+import com.corebanker.workload.WorkloadGenerator;
+import com.corebanker.workload.WorkloadProfile;
+
+import com.sun.management.GcInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Essai d'endurance du cœur transactionnel : rejoue une charge enregistrée (WorkloadGenerator) sur BankAccountManager
+ * et Transaction, à débit fixe et aussi longtemps que demandé (la charge est rejouée en boucle).
+ *
+ * À chaque intervalle, les producteurs sont suspendus entre deux opérations pour vérifier les invariants sur un état
+ * stable : aucun solde négatif, et somme des soldes égale aux soldes d'ouverture plus les dépôts, moins les retraits
+ * et les frais. Sont affichés pour l'intervalle le débit, les latences p50/p99/p99,9 et le tas occupé après le dernier GC.
+ * Les latences partent de l'instant prévu de chaque opération : un retard pris par le système compte pour toutes
+ * les opérations qui l'attendent. La durée des vérifications est reportée sur le calendrier. Le premier intervalle sert
+ * de préchauffage : il n'entre pas dans les latences de l'ensemble de l'essai.
+ *
+ * Avec une durée de 0, le fichier est rejoué une seule fois : deux rejeux mono-thread d'un même fichier produisent alors
+ * les mêmes soldes (empreinte affichée en fin d'essai). Avec plusieurs threads, l'ordre des opérations et donc les refus
+ * peuvent varier, mais les invariants tiennent.
+ *
+ * Usage :
+ * java com.corebanker.bench.SoakTest record fichier [opérations] [comptes] [graine] [zipf]
+ * java com.corebanker.bench.SoakTest replay fichier [opérations/s, 0 = au plus vite] [minutes, 0 = un passage] [threads] [journal|none] [intervalle en s]
+ */
+public class SoakTest {
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final WorkloadFile workload;
+    private final String[] accountNumbers;
+    private final long period; // Intervalle entre deux opérations, en nanosecondes (0 = au plus vite)
+    private final int threads;
+
+    private final Phaser checkpoint = new Phaser(1); // Le thread de contrôle, puis un participant par producteur
+    private volatile boolean pause;
+    private volatile long pausedNanos;
+    private long deadline;
+    private long limit; // Nombre d'opérations à rejouer
+    private long start;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram intervalLatency = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deposited = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+    private final LongAdder fees = new LongAdder();
+    private int violations;
+
+    private SoakTest(WorkloadFile workload, String[] accountNumbers, long rate, int threads) {
+        this.workload = workload;
+        this.accountNumbers = accountNumbers;
+        this.period = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage : SoakTest record fichier [opérations] [comptes] [graine] [zipf]");
+            System.out.println("        SoakTest replay fichier [opérations/s] [minutes] [threads] [journal|none] [intervalle en s]");
+            return;
+        }
+        Path file = Paths.get(args[1]);
+        if (args[0].equals("record")) {
+            long operations = args.length > 2 ? Long.parseLong(args[2]) : 10_000_000L;
+            WorkloadProfile profile = WorkloadProfile.defaults();
+            if (args.length > 3) {
+                profile = profile.withAccounts(Integer.parseInt(args[3]));
+            }
+            if (args.length > 4) {
+                profile = profile.withSeed(Long.parseLong(args[4]));
+            }
+            if (args.length > 5) {
+                profile = profile.withZipfExponent(Double.parseDouble(args[5]));
+            }
+            long begin = System.nanoTime();
+            WorkloadGenerator.record(file, profile, operations);
+            System.out.printf("%d opération(s) sur %d compte(s) écrites dans %s (%d Mo) en %.1f s.%n", operations,
+                    profile.getAccounts(), file, Files.size(file) >> 20, (System.nanoTime() - begin) / 1e9);
+            return;
+        }
+
+        long rate = args.length > 2 ? Long.parseLong(args[2]) : 10_000;
+        double minutes = args.length > 3 ? Double.parseDouble(args[3]) : 1;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        String journalDirectory = args.length > 5 ? args[5] : "none";
+        long intervalMillis = (long) ((args.length > 6 ? Double.parseDouble(args[6]) : 10) * 1000);
+
+        EventLog.setLevel(Level.ERROR); // Les refus attendus (rafales de découverts) sont journalisés en WARN
+        TransactionJournal journal = null;
+        if (journalDirectory.equals("none")) {
+            TransactionJournal.install(null);
+        } else {
+            journal = TransactionJournal.open(JournalConfig.defaults().withDirectory(Paths.get(journalDirectory)));
+            TransactionJournal.install(journal);
+        }
+        boolean verified;
+        try (WorkloadFile workload = WorkloadFile.open(file)) {
+            String[] accountNumbers = openAccounts(workload);
+            System.out.printf("%s : %d opération(s), %d compte(s) de %s, graine %d ; %s, %d thread(s), journal %s.%n",
+                    file, workload.size(), workload.getAccounts(), Money.format(workload.getInitialBalance()), workload.getSeed(),
+                    rate > 0 ? rate + " opérations/s" : "au plus vite", threads, journalDirectory);
+            SoakTest soak = new SoakTest(workload, accountNumbers, rate, threads);
+            verified = soak.run((long) (minutes * 60_000), intervalMillis);
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+        System.exit(verified ? 0 : 1);
+    }
+
+    /**
+     * Ouvre les comptes de la charge, dans l'ordre de leur rang.
+     * @return Les numéros des comptes, indexés par rang
+     */
+    private static String[] openAccounts(WorkloadFile workload) {
+        List<BankAccount> accounts = new ArrayList<>(workload.getAccounts());
+        String[] numbers = new String[workload.getAccounts()];
+        for (int i = 0; i < numbers.length; i++) {
+            BankAccount account = new BankAccount("Soak-" + i, workload.getInitialBalance());
+            accounts.add(account);
+            numbers[i] = account.getAccountNumber();
+        }
+        BankAccountManager.addAccounts(accounts);
+        return numbers;
+    }
+
+    private boolean run(long durationMillis, long intervalMillis) throws InterruptedException {
+        start = System.nanoTime();
+        deadline = start + (durationMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(durationMillis) : Long.MAX_VALUE / 2);
+        limit = durationMillis > 0 ? Long.MAX_VALUE : workload.size();
+        CountDownLatch finished = new CountDownLatch(threads);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            checkpoint.register();
+            producers[t] = new Thread(() -> {
+                try {
+                    produce(worker);
+                } finally {
+                    finished.countDown();
+                }
+            }, "soak-" + t);
+            producers[t].start();
+        }
+
+        System.out.printf("%8s %12s %10s %10s %10s %10s %10s %10s  %s%n",
+                "temps", "opérations", "op/s", "p50 µs", "p99 µs", "p99,9 µs", "refus", "tas Mo", "invariants");
+        long firstHeap = -1;
+        long lastHeap = 0;
+        long lastCount = 0;
+        long lastCheck = start;
+        while (System.nanoTime() - deadline < 0) {
+            long wait = Math.min(TimeUnit.MILLISECONDS.toNanos(intervalMillis), deadline - System.nanoTime());
+            if (finished.await(wait, TimeUnit.NANOSECONDS)) {
+                break; // Passage unique terminé
+            }
+            // Suspend les producteurs entre deux opérations, vérifie, puis reporte la pause sur le calendrier
+            long pausedAt = System.nanoTime();
+            pause = true;
+            checkpoint.arriveAndAwaitAdvance();
+            long now = System.nanoTime();
+            long count = succeeded.sum() + rejected.sum();
+            String verdict = check();
+            lastHeap = heapAfterGc();
+            if (firstHeap < 0) {
+                firstHeap = lastHeap;
+                latency.reset(); // Fin du préchauffage
+            }
+            System.out.printf("%7.0fs %12d %10.0f %10.1f %10.1f %10.1f %10d %10d  %s%n",
+                    (now - start) / 1e9, count, (count - lastCount) / ((now - lastCheck) / 1e9),
+                    intervalLatency.valueAt(QUANTILES[0]) / 1e3, intervalLatency.valueAt(QUANTILES[1]) / 1e3,
+                    intervalLatency.valueAt(QUANTILES[2]) / 1e3, rejected.sum(), lastHeap >> 20, verdict);
+            intervalLatency.reset();
+            lastCount = count;
+            lastCheck = System.nanoTime();
+            pausedNanos += lastCheck - pausedAt;
+            pause = false;
+            checkpoint.arriveAndAwaitAdvance();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        String verdict = check();
+        long elapsed = System.nanoTime() - start;
+        long count = succeeded.sum() + rejected.sum();
+        System.out.printf("Total : %d opération(s) en %.1f s (%.0f op/s), %d refus%n", count, elapsed / 1e9,
+                count / (elapsed / 1e9), rejected.sum());
+        System.out.printf("Latences hors préchauffage : p50 %.1f µs, p99 %.1f µs, p99,9 %.1f µs, max %.1f ms%n",
+                latency.valueAt(QUANTILES[0]) / 1e3, latency.valueAt(QUANTILES[1]) / 1e3, latency.valueAt(QUANTILES[2]) / 1e3,
+                latency.getMax() / 1e6);
+        if (firstHeap >= 0) {
+            double hours = (lastCheck - start) / 3.6e12;
+            System.out.printf("Tas après GC : %d Mo → %d Mo (%+.1f Mo/h)%n", firstHeap >> 20, lastHeap >> 20,
+                    hours > 0 ? ((lastHeap - firstHeap) >> 20) / hours : 0);
+        }
+        System.out.printf("Invariants : %s ; empreinte des soldes %016x%n", verdict, fingerprint());
+        return violations == 0;
+    }
+
+    /**
+     * Boucle d'un producteur : rejoue les opérations n ≡ worker (mod threads), chacune à son instant prévu.
+     */
+    private void produce(int worker) {
+        try {
+            long n = worker;
+            while (true) {
+                if (pause) {
+                    checkpoint.arriveAndAwaitAdvance(); // Vérification en cours
+                    checkpoint.arriveAndAwaitAdvance(); // Reprise
+                    continue;
+                }
+                long scheduled = period > 0 ? start + pausedNanos + n * period : System.nanoTime();
+                if (n >= limit || scheduled - deadline >= 0 || System.nanoTime() - deadline >= 0) {
+                    return;
+                }
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0 && !pause) {
+                    LockSupport.parkNanos(Math.min(wait, TimeUnit.MILLISECONDS.toNanos(10)));
+                }
+                if (pause) {
+                    continue; // L'opération sera replanifiée après la vérification
+                }
+                execute((int) (n % workload.size()));
+                long elapsed = System.nanoTime() - scheduled;
+                latency.record(elapsed);
+                intervalLatency.record(elapsed);
+                n += threads;
+            }
+        } finally {
+            checkpoint.arriveAndDeregister();
+        }
+    }
+
+    private void execute(int operation) {
+        TransactionType type = workload.type(operation);
+        int source = workload.source(operation);
+        int target = workload.target(operation);
+        long amount = workload.amount(operation);
+        Transaction transaction = new Transaction(
+                source >= 0 ? BankAccountManager.findAccountByNumber(accountNumbers[source]) : null,
+                target >= 0 ? BankAccountManager.findAccountByNumber(accountNumbers[target]) : null,
+                amount, type, TransactionStatus.PENDING);
+        if (!transaction.processTransaction()) {
+            rejected.increment();
+            return;
+        }
+        succeeded.increment();
+        fees.add(transaction.getFee());
+        if (type == TransactionType.DEPOSIT) {
+            deposited.add(amount);
+        } else if (type == TransactionType.WITHDRAWAL) {
+            withdrawn.add(amount - transaction.getFee()); // Les frais restent à la banque
+        }
+    }
+
+    /**
+     * Vérifie les invariants ; à appeler quand aucun producteur n'est en cours d'opération.
+     * @return Le verdict, à afficher.
+     */
+    private String check() {
+        long total = 0;
+        int negative = 0;
+        for (String accountNumber : accountNumbers) {
+            long balance = BankAccountManager.findAccountByNumber(accountNumber).getBalance();
+            total += balance;
+            if (balance < 0) {
+                negative++;
+            }
+        }
+        long expected = workload.getInitialBalance() * accountNumbers.length + deposited.sum() - withdrawn.sum() - fees.sum();
+        if (total == expected && negative == 0) {
+            return "ok";
+        }
+        violations++;
+        return String.format("ÉCHEC : somme %s au lieu de %s, %d solde(s) négatif(s)", Money.format(total),
+                Money.format(expected), negative);
+    }
+
+    /**
+     * @return Une empreinte des soldes, dans l'ordre des rangs : identique pour deux rejeux mono-thread d'un même fichier.
+     */
+    private long fingerprint() {
+        long hash = 1125899906842597L;
+        for (String accountNumber : accountNumbers) {
+            hash = 31 * hash + BankAccountManager.findAccountByNumber(accountNumber).getBalance();
+        }
+        return hash;
+    }
+
+    /**
+     * @return Le tas occupé à l'issue du GC le plus récent (le tas courant si aucun GC n'a encore eu lieu).
+     */
+    private static long heapAfterGc() {
+        GcInfo latest = null;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            GcInfo info = collector instanceof com.sun.management.GarbageCollectorMXBean extended ? extended.getLastGcInfo() : null;
+            if (info != null && (latest == null || info.getEndTime() > latest.getEndTime())) {
+                latest = info;
+            }
+        }
+        if (latest == null) {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? latest.getMemoryUsageAfterGc().get(pool.getName()) : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+}
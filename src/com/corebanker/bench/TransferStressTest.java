@@ -0,0 +1,151 @@
+package com.corebanker.bench;
+
+import com.corebanker.engine.TransferEngine;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Harnais de stress du moteur de transfert.
+ * 1) Conservation : des millions de transferts concurrents entre comptes aléatoires,
+ *    puis vérification que la somme des soldes plus les frais prélevés est inchangée.
+ * 2) Passage à l'échelle : débit par nombre de threads sur des comptes disjoints.
+ * Usage : java com.corebanker.bench.TransferStressTest [transferts] [comptes] [threads]
+ */
+public class TransferStressTest {
+    private static final long INITIAL_BALANCE = Money.ofMajor(1_000_000);
+
+    public static void main(String[] args) throws InterruptedException {
+        int transfers = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int accountCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        TransactionJournal.install(null); // Seul le moteur de transfert est éprouvé : pas de persistance
+
+        boolean conserved = checkConservation(transfers, accountCount, Math.max(2, threads));
+        measureScaling(transfers, accountCount, threads);
+
+        if (!conserved) {
+            System.exit(1);
+        }
+    }
+
+    private static BankAccount[] createAccounts(int count) {
+        BankAccount[] accounts = new BankAccount[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = new BankAccount("Stress-" + i, INITIAL_BALANCE);
+        }
+        return accounts;
+    }
+
+    /**
+     * Exécute des transferts concurrents entre comptes tirés au hasard et vérifie les invariants.
+     */
+    private static boolean checkConservation(int transfers, int accountCount, int threads) throws InterruptedException {
+        BankAccount[] accounts = createAccounts(accountCount);
+        LongAdder feesCollected = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        int perThread = transfers / threads;
+
+        long elapsed = runThreads(threads, worker -> {
+            SplittableRandom random = new SplittableRandom(worker);
+            for (int i = 0; i < perThread; i++) {
+                BankAccount source = accounts[random.nextInt(accountCount)];
+                BankAccount target = accounts[random.nextInt(accountCount)];
+                // Montants quelconques au centime près : l'arithmétique en centimes est exacte
+                long amount = 1 + random.nextInt(2_000_000);
+                long fee = source.calculateTransactionFee(amount, TransactionType.TRANSFER);
+                if (TransferEngine.transfer(source, target, amount, amount - fee) != TransferEngine.REJECTED) {
+                    feesCollected.add(fee);
+                } else {
+                    rejected.increment();
+                }
+            }
+        });
+
+        long total = 0;
+        boolean negative = false;
+        for (BankAccount account : accounts) {
+            total += account.getBalance();
+            negative |= account.getBalance() < 0;
+        }
+        long expected = INITIAL_BALANCE * accountCount;
+        boolean conserved = total + feesCollected.sum() == expected && !negative;
+
+        System.out.println("=== Conservation des soldes ===");
+        System.out.printf("Transferts : %d sur %d threads (%d rejetés pour fonds insuffisants) en %d ms%n",
+                (long) perThread * threads, threads, rejected.sum(), elapsed / 1_000_000);
+        System.out.printf("Total attendu : %s | Soldes : %s | Frais : %s | Solde négatif : %s%n",
+                Money.format(expected), Money.format(total), Money.format(feesCollected.sum()), negative);
+        System.out.println(conserved ? "✅ Invariants respectés." : "❌ Invariants violés !");
+        return conserved;
+    }
+
+    /**
+     * Mesure le débit de transferts quand chaque thread travaille sur ses propres comptes.
+     */
+    private static void measureScaling(int transfers, int accountCount, int maxThreads) throws InterruptedException {
+        System.out.println("=== Passage à l'échelle (comptes disjoints) ===");
+        System.out.printf("%8s %16s %10s%n", "threads", "transferts/s", "accél.");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            int perThreadAccounts = Math.max(2, accountCount / threads);
+            BankAccount[][] partitions = new BankAccount[threads][];
+            for (int t = 0; t < threads; t++) {
+                partitions[t] = createAccounts(perThreadAccounts);
+            }
+            int perThread = transfers / threads;
+
+            long elapsed = runThreads(threads, worker -> {
+                BankAccount[] own = partitions[worker];
+                SplittableRandom random = new SplittableRandom(worker);
+                for (int i = 0; i < perThread; i++) {
+                    BankAccount source = own[random.nextInt(own.length)];
+                    BankAccount target = own[random.nextInt(own.length)];
+                    TransferEngine.transfer(source, target, Money.ofMajor(50), Money.ofMajor(49));
+                }
+            });
+
+            double rate = (double) perThread * threads / (elapsed / 1e9);
+            if (threads == 1) {
+                baseline = rate;
+            }
+            System.out.printf("%8d %16.0f %9.2fx%n", threads, rate, rate / baseline);
+        }
+    }
+
+    private interface Worker {
+        void run(int worker);
+    }
+
+    /**
+     * Lance les threads simultanément et retourne la durée totale en nanosecondes.
+     */
+    private static long runThreads(int threads, Worker body) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] pool = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            pool[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                body.run(worker);
+            }, "stress-" + t);
+            pool[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        return System.nanoTime() - begin;
+    }
+}
@@ -0,0 +1,102 @@
+package com.corebanker.engine;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verrous par tranche (lock striping) indexés sur le numéro de compte.
+ * Deux comptes d'une même tranche partagent un verrou ; les verrous sont toujours
+ * acquis dans l'ordre croissant des tranches, ce qui exclut tout interblocage.
+ */
+public final class AccountLocks {
+    private static final int STRIPES = stripeCount(Integer.getInteger("corebanker.lockStripes", 1024));
+    private static final int MASK = STRIPES - 1;
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private AccountLocks() {
+    }
+
+    /**
+     * Arrondit le nombre de tranches à la puissance de deux supérieure.
+     */
+    private static int stripeCount(int requested) {
+        int n = Math.max(1, Math.min(requested, 1 << 20));
+        int power = Integer.highestOneBit(n);
+        return power == n ? n : power << 1;
+    }
+
+    /**
+     * @return L'indice de tranche associé au numéro de compte.
+     */
+    public static int stripeOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & MASK;
+    }
+
+    /**
+     * @return Le verrou protégeant le compte donné.
+     */
+    public static ReentrantLock lockFor(String accountNumber) {
+        return LOCKS[stripeOf(accountNumber)];
+    }
+
+    /**
+     * Acquiert les verrous de deux comptes dans l'ordre des tranches.
+     */
+    public static void lockBoth(String first, String second) {
+        int a = stripeOf(first);
+        int b = stripeOf(second);
+        if (a == b) {
+            LOCKS[a].lock();
+        } else if (a < b) {
+            LOCKS[a].lock();
+            LOCKS[b].lock();
+        } else {
+            LOCKS[b].lock();
+            LOCKS[a].lock();
+        }
+    }
+
+    /**
+     * Libère les verrous acquis par {@link #lockBoth(String, String)}.
+     */
+    public static void unlockBoth(String first, String second) {
+        int a = stripeOf(first);
+        int b = stripeOf(second);
+        LOCKS[a].unlock();
+        if (a != b) {
+            LOCKS[b].unlock();
+        }
+    }
+
+    /**
+     * Acquiert les verrous d'un ensemble de tranches.
+     * @param stripes Indices de tranches distincts, triés par ordre croissant
+     */
+    public static void lockStripes(int[] stripes) {
+        for (int stripe : stripes) {
+            LOCKS[stripe].lock();
+        }
+    }
+
+    /**
+     * Libère les verrous acquis par {@link #lockStripes(int[])}.
+     */
+    public static void unlockStripes(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            LOCKS[stripes[i]].unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre de tranches configurées.
+     */
+    public static int getStripeCount() {
+        return STRIPES;
+    }
+}
@@ -0,0 +1,503 @@
+package com.corebanker.engine;
+
+import com.corebanker.enums.BatchMode;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.enums.TransferOutcome;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.JournalWriteException;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exécution d'un lot de virements (fichier de paiements) en une seule passe.
+ *
+ * Les virements sont validés ensemble, puis compensés par compte : chaque compte touché reçoit un seul
+ * débit ou crédit net, sous les verrous de ses tranches pris une seule fois pour tout le lot.
+ * Le lot est découpé en sous-lots indépendants (aucune tranche de verrou en commun), exécutés en parallèle
+ * sur le pool fork-join commun. Tous les virements appliqués sont ensuite écrits dans le journal en une seule écriture,
+ * sous un même en-tête de groupe : après un arrêt brutal pendant cette écriture, le lot est relu entier ou pas du tout,
+ * jamais en partie (voir JournalRecord).
+ *
+ * En mode {@link BatchMode#ATOMIC}, le lot est appliqué entièrement ou pas du tout : il est rejeté si un virement
+ * est invalide ou si un compte finirait à découvert après compensation (compensation multilatérale : un débit
+ * peut être couvert par un crédit du même lot).
+ * En mode {@link BatchMode#PER_ITEM}, chaque virement est accepté ou refusé individuellement, dans l'ordre du lot,
+ * comme s'ils avaient été traités un par un.
+ *
+ * Les virements idempotents (clé du client) ne passent pas par IdempotencyCache : ils sont refusés (INVALID)
+ * et doivent être soumis un par un par Transaction.processTransaction.
+ */
+public final class BatchTransfer {
+    private BatchTransfer() {
+    }
+
+    /**
+     * Résultat d'un lot : issue de chaque virement, dans l'ordre de soumission.
+     */
+    public static final class Result {
+        private final TransferOutcome[] outcomes;
+        private final int appliedCount;
+        private final long totalFees;
+        private final long lastSequence;
+        private final int subBatchCount;
+
+        private Result(TransferOutcome[] outcomes, long totalFees, long lastSequence, int subBatchCount) {
+            this.outcomes = outcomes;
+            int applied = 0;
+            for (TransferOutcome outcome : outcomes) {
+                if (outcome == TransferOutcome.APPLIED) {
+                    applied++;
+                }
+            }
+            this.appliedCount = applied;
+            this.totalFees = totalFees;
+            this.lastSequence = lastSequence;
+            this.subBatchCount = subBatchCount;
+        }
+
+        public TransferOutcome getOutcome(int index) {
+            return outcomes[index];
+        }
+
+        public int size() {
+            return outcomes.length;
+        }
+
+        public int getAppliedCount() {
+            return appliedCount;
+        }
+
+        public int getRejectedCount() {
+            return outcomes.length - appliedCount;
+        }
+
+        /**
+         * @return Le total des frais prélevés sur les virements appliqués, en centimes.
+         */
+        public long getTotalFees() {
+            return totalFees;
+        }
+
+        /**
+         * @return La plus grande séquence réservée dans le journal (0 si aucune).
+         */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        /**
+         * @return Le nombre de sous-lots indépendants exécutés.
+         */
+        public int getSubBatchCount() {
+            return subBatchCount;
+        }
+    }
+
+    /**
+     * Exécute un lot de virements.
+     * @param transfers Les virements (type TRANSFER), traités dans l'ordre de la liste
+     * @param mode Atomique, ou virement par virement
+     * @return L'issue de chaque virement
+     * @throws JournalWriteException si le lot n'a pas pu être rendu durable (il est alors annulé, virements FAILED)
+     */
+    public static Result execute(List<Transaction> transfers, BatchMode mode) {
+        int size = transfers.size();
+        Transaction[] items = transfers.toArray(new Transaction[0]);
+        TransferOutcome[] outcomes = new TransferOutcome[size];
+        long[] fees = new long[size];
+
+        // Validation de l'ensemble du lot avant toute prise de verrou
+        String invalid = null;
+        for (int i = 0; i < size; i++) {
+            Transaction transfer = items[i];
+            if (!isValid(transfer)) {
+                outcomes[i] = TransferOutcome.INVALID;
+                invalid = invalid == null ? (transfer == null ? "virement " + i : transfer.getTransactionId()) : invalid;
+            } else {
+                fees[i] = transfer.getSourceAccount().calculateTransactionFee(transfer.getAmount(), transfer.getTransactionType());
+            }
+        }
+        if (mode == BatchMode.ATOMIC && invalid != null) {
+            return reject(items, outcomes, "virement invalide " + invalid);
+        }
+
+        TransactionJournal journal = TransactionJournal.getDefault();
+        // Lot déclaré au journal comme mouvement en cours jusqu'à sa durabilité ou son annulation (voir CheckpointManager)
+        int move = journal != null ? journal.openMove() : 0;
+        boolean durable = true;
+        try {
+            SubBatch[] subBatches = partition(items, outcomes, fees, journal);
+            if (mode == BatchMode.ATOMIC) {
+                String refused = settleAtomically(subBatches, items, outcomes, fees, journal);
+                if (refused != null) {
+                    return reject(items, outcomes, refused);
+                }
+            } else {
+                ForkJoinTask.invokeAll(subBatches); // Chaque sous-lot se règle sous ses propres verrous
+            }
+
+            long totalFees = 0;
+            long lastSequence = 0;
+            List<JournalRecord> records = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (outcomes[i] == TransferOutcome.APPLIED) {
+                    totalFees += fees[i];
+                    lastSequence = Math.max(lastSequence, items[i].getSequence());
+                    if (journal != null) {
+                        records.add(JournalRecord.forTransaction(items[i], fees[i]));
+                    }
+                } else if (items[i] != null) {
+                    items[i].setStatus(TransactionStatus.FAILED);
+                }
+            }
+            if (!records.isEmpty()) {
+                try {
+                    journal.appendAll(records).join(); // Une seule écriture pour tout le lot
+                } catch (CompletionException e) {
+                    durable = false;
+                    revert(items, outcomes, fees);
+                    EventLog.log(EventCode.JOURNAL_WRITE_FAILED, String.valueOf(e.getCause().getMessage()));
+                    throw new JournalWriteException(e.getCause());
+                }
+            }
+            // Lot durable : historiques des comptes mis à jour en parallèle, hors verrous
+            for (SubBatch subBatch : subBatches) {
+                subBatch.reinitialize();
+            }
+            ForkJoinTask.invokeAll(subBatches);
+            Result result = new Result(outcomes, totalFees, lastSequence, subBatches.length);
+            EventLog.log(EventCode.BATCH_EXECUTED, size, result.getAppliedCount());
+            return result;
+        } finally {
+            if (journal != null) {
+                journal.closeMove(move, durable);
+            }
+        }
+    }
+
+    private static boolean isValid(Transaction transfer) {
+        return transfer != null && transfer.getSourceAccount() != null && transfer.getTargetAccount() != null
+                && transfer.getTransactionType() == TransactionType.TRANSFER && transfer.getAmount() > 0
+                && transfer.getStatus() == TransactionStatus.PENDING && !transfer.isIdempotent();
+    }
+
+    /**
+     * Annule en mémoire les virements appliqués d'un lot qui n'a pas pu être journalisé : le mouvement net inverse
+     * est appliqué sous les verrous de toutes les tranches concernées. Les comptes gardent leur séquence.
+     */
+    private static void revert(Transaction[] items, TransferOutcome[] outcomes, long[] fees) {
+        int[] stripes = new int[items.length * 2];
+        int count = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (outcomes[i] == TransferOutcome.APPLIED) {
+                stripes[count++] = AccountLocks.stripeOf(items[i].getSourceAccount().getAccountNumber());
+                stripes[count++] = AccountLocks.stripeOf(items[i].getTargetAccount().getAccountNumber());
+            }
+        }
+        stripes = Arrays.stream(stripes, 0, count).sorted().distinct().toArray();
+        AccountLocks.lockStripes(stripes);
+        try {
+            Netting netting = new Netting();
+            for (int i = 0; i < items.length; i++) {
+                if (outcomes[i] == TransferOutcome.APPLIED) {
+                    netting.add(items[i], fees[i]);
+                    items[i].setStatus(TransactionStatus.FAILED);
+                }
+            }
+            netting.undo();
+        } finally {
+            AccountLocks.unlockStripes(stripes);
+        }
+    }
+
+    private static Result reject(Transaction[] items, TransferOutcome[] outcomes, String reason) {
+        for (int i = 0; i < items.length; i++) {
+            if (outcomes[i] == null || outcomes[i] == TransferOutcome.APPLIED) {
+                outcomes[i] = TransferOutcome.BATCH_REJECTED;
+            }
+            if (items[i] != null) {
+                items[i].setStatus(TransactionStatus.FAILED);
+            }
+        }
+        EventLog.log(EventCode.BATCH_REJECTED, reason, items.length, 0);
+        return new Result(outcomes, 0, 0, 0);
+    }
+
+    /**
+     * Regroupe les virements valides en sous-lots dont les ensembles de tranches de verrous sont disjoints
+     * (union-find sur les tranches). L'ordre du lot est conservé à l'intérieur de chaque sous-lot.
+     */
+    private static SubBatch[] partition(Transaction[] items, TransferOutcome[] outcomes, long[] fees, TransactionJournal journal) {
+        Map<Integer, Integer> parent = new HashMap<>();
+        int[] sourceStripes = new int[items.length];
+        int[] targetStripes = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            if (outcomes[i] == null) {
+                sourceStripes[i] = AccountLocks.stripeOf(items[i].getSourceAccount().getAccountNumber());
+                targetStripes[i] = AccountLocks.stripeOf(items[i].getTargetAccount().getAccountNumber());
+                union(parent, sourceStripes[i], targetStripes[i]);
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items.length; i++) {
+            if (outcomes[i] == null) {
+                groups.computeIfAbsent(find(parent, sourceStripes[i]), root -> new ArrayList<>()).add(i);
+            }
+        }
+        SubBatch[] subBatches = new SubBatch[groups.size()];
+        int next = 0;
+        for (List<Integer> group : groups.values()) {
+            int[] indices = group.stream().mapToInt(Integer::intValue).toArray();
+            int[] stripes = new int[indices.length * 2];
+            for (int k = 0; k < indices.length; k++) {
+                stripes[2 * k] = sourceStripes[indices[k]];
+                stripes[2 * k + 1] = targetStripes[indices[k]];
+            }
+            subBatches[next++] = new SubBatch(items, outcomes, fees, indices, Arrays.stream(stripes).sorted().distinct().toArray(), journal);
+        }
+        return subBatches;
+    }
+
+    private static int find(Map<Integer, Integer> parent, int stripe) {
+        int root = stripe;
+        Integer up;
+        while ((up = parent.get(root)) != null && up != root) {
+            root = up;
+        }
+        parent.put(stripe, root); // Compression partielle du chemin
+        return root;
+    }
+
+    private static void union(Map<Integer, Integer> parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent.put(Math.max(rootA, rootB), Math.min(rootA, rootB));
+        }
+    }
+
+    /**
+     * Règlement atomique : toutes les tranches du lot sont verrouillées dans l'ordre croissant,
+     * les soldes nets sont vérifiés pour tous les comptes, puis appliqués.
+     * @return Le motif du rejet (découvert ou solde hors limites), ou null si le lot a été appliqué
+     */
+    private static String settleAtomically(SubBatch[] subBatches, Transaction[] items, TransferOutcome[] outcomes,
+                                           long[] fees, TransactionJournal journal) {
+        int[] stripes = Arrays.stream(subBatches).flatMapToInt(subBatch -> Arrays.stream(subBatch.stripes)).sorted().toArray();
+        AccountLocks.lockStripes(stripes);
+        try {
+            Netting netting = new Netting();
+            for (SubBatch subBatch : subBatches) {
+                for (int i : subBatch.indices) {
+                    try {
+                        netting.add(items[i], fees[i]);
+                    } catch (ArithmeticException e) {
+                        return "solde hors limites pour " + items[i].getTransactionId(); // Aucun compte modifié
+                    }
+                }
+            }
+            String overdrawn = netting.findOverdrawn();
+            if (overdrawn != null) {
+                return "fonds insuffisants sur " + overdrawn;
+            }
+            netting.apply();
+            for (SubBatch subBatch : subBatches) {
+                subBatch.markApplied(true);
+            }
+            return null;
+        } finally {
+            AccountLocks.unlockStripes(stripes);
+        }
+    }
+
+    /**
+     * Soldes courants des comptes d'un lot ou d'un sous-lot, compensés virement par virement.
+     * N'est utilisé que sous les verrous des tranches concernées.
+     */
+    private static final class Netting {
+        private final Map<BankAccount, Integer> index = new IdentityHashMap<>();
+        private final List<BankAccount> accounts = new ArrayList<>();
+        private long[] opening = new long[16];
+        private long[] running = new long[16];
+
+        private int slot(BankAccount account) {
+            Integer slot = index.get(account);
+            if (slot != null) {
+                return slot;
+            }
+            int created = accounts.size();
+            if (created == opening.length) {
+                opening = Arrays.copyOf(opening, created * 2);
+                running = Arrays.copyOf(running, created * 2);
+            }
+            accounts.add(account);
+            index.put(account, created);
+            opening[created] = account.getBalance();
+            running[created] = opening[created];
+            return created;
+        }
+
+        /**
+         * Compense un virement sans contrôle de solde (le contrôle porte sur le solde net, en mode atomique).
+         * @throws ArithmeticException si un solde courant sort des limites (aucun compte n'est encore modifié)
+         */
+        void add(Transaction transfer, long fee) {
+            int source = slot(transfer.getSourceAccount());
+            int target = slot(transfer.getTargetAccount()); // Avant tout accès au tableau, qui peut être réalloué
+            running[source] = Money.subtract(running[source], transfer.getAmount());
+            running[target] = Money.add(running[target], transfer.getAmount() - fee);
+        }
+
+        /**
+         * Compense un virement si le solde courant de la source le couvre, comme un traitement un par un.
+         * @return APPLIED si le virement est accepté, INSUFFICIENT_FUNDS, ou INVALID si le solde cible sortirait des limites
+         */
+        TransferOutcome tryAdd(Transaction transfer, long fee) {
+            int source = slot(transfer.getSourceAccount());
+            int target = slot(transfer.getTargetAccount());
+            long before = running[source];
+            if (before < transfer.getAmount()) {
+                return TransferOutcome.INSUFFICIENT_FUNDS;
+            }
+            running[source] -= transfer.getAmount();
+            try {
+                running[target] = Money.add(running[target], transfer.getAmount() - fee);
+            } catch (ArithmeticException e) {
+                running[source] = before;
+                return TransferOutcome.INVALID;
+            }
+            return TransferOutcome.APPLIED;
+        }
+
+        String findOverdrawn() {
+            for (int k = 0; k < accounts.size(); k++) {
+                if (running[k] < 0) {
+                    return accounts.get(k).getAccountNumber();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Applique un seul mouvement net par compte. Les soldes courants ont été calculés sans dépassement
+         * et ne sont pas négatifs : aucun mouvement ne peut échouer à mi-parcours.
+         */
+        void apply() {
+            for (int k = 0; k < accounts.size(); k++) {
+                long delta = running[k] - opening[k];
+                if (delta > 0) {
+                    accounts.get(k).credit(delta);
+                } else if (delta < 0 && !accounts.get(k).debit(-delta)) {
+                    // Impossible sous verrou : le solde net a été vérifié
+                    throw new IllegalStateException("Solde net incohérent pour " + accounts.get(k).getAccountNumber());
+                }
+            }
+        }
+
+        /**
+         * Retire de chaque compte le mouvement net compensé, sans contrôle de solde (annulation d'un lot appliqué).
+         */
+        void undo() {
+            for (int k = 0; k < accounts.size(); k++) {
+                accounts.get(k).credit(opening[k] - running[k]);
+            }
+        }
+    }
+
+    /**
+     * Sous-lot indépendant : ses tranches de verrous ne sont partagées avec aucun autre sous-lot du même lot.
+     */
+    private static final class SubBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Transaction[] items;
+        private final TransferOutcome[] outcomes;
+        private final long[] fees;
+        private final int[] indices; // Virements du sous-lot, dans l'ordre du lot
+        private final int[] stripes; // Tranches distinctes, triées
+        private final TransactionJournal journal;
+        private boolean settled;
+
+        SubBatch(Transaction[] items, TransferOutcome[] outcomes, long[] fees, int[] indices, int[] stripes, TransactionJournal journal) {
+            this.items = items;
+            this.outcomes = outcomes;
+            this.fees = fees;
+            this.indices = indices;
+            this.stripes = stripes;
+            this.journal = journal;
+        }
+
+        @Override
+        protected void compute() {
+            if (!settled) {
+                settle();
+                return;
+            }
+            // Lot durable, hors verrous : historiques des comptes
+            for (int i : indices) {
+                if (outcomes[i] == TransferOutcome.APPLIED) {
+                    items[i].getSourceAccount().addTransactionToHistory(items[i]);
+                    items[i].getTargetAccount().addTransactionToHistory(items[i]);
+                }
+            }
+        }
+
+        /**
+         * Règlement virement par virement sous les verrous du sous-lot.
+         */
+        private void settle() {
+            AccountLocks.lockStripes(stripes);
+            try {
+                Netting netting = new Netting();
+                boolean any = false;
+                for (int i : indices) {
+                    outcomes[i] = netting.tryAdd(items[i], fees[i]);
+                    any |= outcomes[i] == TransferOutcome.APPLIED;
+                }
+                netting.apply();
+                markApplied(any);
+            } finally {
+                AccountLocks.unlockStripes(stripes);
+            }
+        }
+
+        /**
+         * Réserve une séquence par virement appliqué et la reporte sur les comptes.
+         * Appelé sous les verrous du sous-lot, après l'application des soldes nets.
+         */
+        void markApplied(boolean applied) {
+            settled = true;
+            if (!applied) {
+                return;
+            }
+            for (int i : indices) {
+                if (outcomes[i] == null) {
+                    outcomes[i] = TransferOutcome.APPLIED;
+                }
+                if (outcomes[i] == TransferOutcome.APPLIED) {
+                    long sequence = journal != null ? journal.reserveSequence() : 0;
+                    items[i].markExecuted(fees[i], sequence);
+                    items[i].getSourceAccount().markApplied(sequence);
+                    items[i].getTargetAccount().markApplied(sequence);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.corebanker.engine;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache de déduplication des transferts soumis avec une clé d'idempotence.
+ *
+ * La clé du client est convertie en identifiant de transaction stable (UUID version 3, voir {@link #transactionIdFor}) :
+ * une nouvelle soumission de la même clé retrouve le résultat de la première au lieu d'exécuter un second transfert.
+ * Chaque entrée garde l'empreinte de la demande (comptes, montant, type, voir {@link #payloadDigest}) : une clé réutilisée
+ * pour une autre demande est refusée au lieu de retourner le résultat de la première.
+ * Les entrées expirent après un délai fixe et leur nombre est borné ; les plus anciennes sont évincées en premier.
+ * Une entrée PROCESSING n'expire pas et n'est jamais évincée : elle ne disparaît qu'avec complete ou release.
+ *
+ * Le cache est découpé en segments indépendants, chacun protégé par son propre verrou. Un segment range ses entrées
+ * dans un anneau de longs (ordre d'insertion, donc d'expiration) indexé par une table à adressage ouvert :
+ * recherche, insertion et éviction se font en temps constant, sans allocation hors du résultat d'un doublon.
+ */
+public final class IdempotencyCache {
+    public static final long DEFAULT_TTL_MILLIS = Long.getLong("corebanker.idempotency.ttlSeconds", 900) * 1000;
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("corebanker.idempotency.capacity", 1 << 20);
+
+    private static final int SEGMENTS = 64;
+    private static final int STRIDE = 6;
+    private static final int HI = 0;
+    private static final int LO = 1;
+    private static final int SEQUENCE = 2;
+    private static final int FEE = 3;
+    private static final int META = 4; // horodatage << 8 | statut (ordinal + 1)
+    private static final int DIGEST = 5;
+    private static final long PROCESSING = TransactionStatus.PROCESSING.ordinal() + 1;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final int UUID_VERSION_NAME_BASED = 3;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private static volatile IdempotencyCache defaultCache = new IdempotencyCache(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlMillis;
+
+    /**
+     * Résultat mémorisé d'une transaction. Le statut vaut PROCESSING tant que la première soumission est en cours.
+     * @param digest Empreinte de la demande qui a réservé la clé
+     */
+    public record Outcome(TransactionStatus status, long sequence, long fee, long timestamp, long digest) {
+    }
+
+    /**
+     * @param capacity Nombre maximal d'entrées conservées (réparti entre les segments)
+     * @param ttlMillis Durée de conservation d'une entrée, en millisecondes
+     */
+    public IdempotencyCache(int capacity, long ttlMillis) {
+        if (capacity <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("La capacité et la durée de conservation doivent être positives");
+        }
+        this.ttlMillis = ttlMillis;
+        int perSegment = Math.max(16, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * @return Le cache utilisé par Transaction, ou null si la déduplication est désactivée.
+     */
+    public static IdempotencyCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Remplace le cache par défaut (null pour désactiver la déduplication).
+     */
+    public static void install(IdempotencyCache cache) {
+        defaultCache = cache;
+    }
+
+    /**
+     * Convertit une clé d'idempotence en identifiant de transaction : la même clé donne toujours le même identifiant.
+     */
+    public static UUID transactionIdFor(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            throw new IllegalArgumentException("La clé d'idempotence ne peut pas être vide");
+        }
+        return UUID.nameUUIDFromBytes(idempotencyKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return true si l'identifiant a été dérivé d'une clé d'idempotence (les identifiants aléatoires sont en version 4).
+     */
+    public static boolean isKeyed(long idMostSigBits) {
+        return ((idMostSigBits >>> 12) & 0xF) == UUID_VERSION_NAME_BASED;
+    }
+
+    /**
+     * Empreinte d'une demande (FNV-1a sur 64 bits) : deux soumissions d'une même clé doivent avoir la même.
+     * Le compte débité en fait partie : une clé n'est reprise que pour le même client payeur.
+     */
+    public static long payloadDigest(String sourceAccountNumber, String targetAccountNumber, long amount, TransactionType type) {
+        long h = mix(FNV_OFFSET, sourceAccountNumber);
+        h = mix(h, targetAccountNumber);
+        h = (h ^ amount) * FNV_PRIME;
+        return (h ^ (type != null ? type.ordinal() + 1 : 0)) * FNV_PRIME;
+    }
+
+    private static long mix(long h, String text) {
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                h = (h ^ text.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return (h ^ 0xFFFF) * FNV_PRIME; // Séparateur : ("ab", "c") et ("a", "bc") diffèrent
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Réserve l'identifiant pour une première exécution.
+     * @param digest Empreinte de la demande (voir {@link #payloadDigest}), à comparer à celle du résultat retourné
+     * @return null si l'identifiant était inconnu (il est alors marqué PROCESSING),
+     *         sinon le résultat mémorisé de la soumission précédente.
+     * @throws IllegalStateException si le segment est plein de réservations en cours
+     */
+    public Outcome reserve(long hi, long lo, long digest) {
+        long now = System.currentTimeMillis();
+        Segment segment = segmentFor(hi, lo);
+        segment.lock.lock();
+        try {
+            int entry = segment.find(hi, lo, now - ttlMillis);
+            if (entry >= 0) {
+                return segment.outcome(entry);
+            }
+            if (!segment.insert(hi, lo, digest, TransactionStatus.PROCESSING, 0, 0, now, now - ttlMillis)) {
+                throw new IllegalStateException("Cache d'idempotence saturé de transactions en cours");
+            }
+            return null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Enregistre le résultat d'une exécution réservée par {@link #reserve}.
+     */
+    public void complete(long hi, long lo, long digest, TransactionStatus status, long sequence, long fee) {
+        long now = System.currentTimeMillis();
+        Segment segment = segmentFor(hi, lo);
+        segment.lock.lock();
+        try {
+            int entry = segment.find(hi, lo, now - ttlMillis);
+            if (entry >= 0) {
+                segment.update(entry, status, sequence, fee);
+            } else {
+                segment.insert(hi, lo, digest, status, sequence, fee, now, now - ttlMillis); // Entrée libérée entre-temps
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Libère une réservation dont l'exécution a été interrompue : une nouvelle soumission pourra être exécutée.
+     */
+    public void release(long hi, long lo) {
+        Segment segment = segmentFor(hi, lo);
+        segment.lock.lock();
+        try {
+            int entry = segment.find(hi, lo, Long.MIN_VALUE);
+            if (entry >= 0) {
+                segment.forget(entry);
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Mémorise un résultat relu dans le journal au démarrage, s'il n'a pas encore expiré.
+     * Une entrée déjà présente pour cet identifiant est conservée.
+     */
+    public void remember(long hi, long lo, long digest, TransactionStatus status, long sequence, long fee, long timestamp) {
+        long expiredBefore = System.currentTimeMillis() - ttlMillis;
+        if (timestamp < expiredBefore) {
+            return;
+        }
+        Segment segment = segmentFor(hi, lo);
+        segment.lock.lock();
+        try {
+            if (segment.find(hi, lo, expiredBefore) < 0) {
+                segment.insert(hi, lo, digest, status, sequence, fee, timestamp, expiredBefore);
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre d'entrées conservées, expirées comprises tant qu'elles n'ont pas été évincées.
+     */
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                total += segment.count;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Segment segmentFor(long hi, long lo) {
+        return segments[hash(hi, lo) >>> 26]; // 6 bits de poids fort : 64 segments
+    }
+
+    /**
+     * Segment du cache : anneau d'entrées dans l'ordre d'insertion et index à adressage ouvert.
+     * Un emplacement d'index contient la position + 1 d'une entrée de l'anneau (0 : libre). Les emplacements
+     * qui désignent une entrée évincée sont périmés : ils sont réutilisés à l'insertion et purgés à la reconstruction.
+     */
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] ring;
+        private final int[] index;
+        private final int capacity;
+        private final int mask;
+        private int head; // Entrée la plus ancienne
+        private int count;
+        private int occupied; // Emplacements d'index non libres, périmés compris
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.ring = new long[capacity * STRIDE];
+            this.index = new int[Integer.highestOneBit(capacity * 2 - 1) << 1]; // Au moins deux fois la capacité
+            this.mask = index.length - 1;
+        }
+
+        /**
+         * @return La position de l'entrée non expirée de l'identifiant, ou -1.
+         */
+        int find(long hi, long lo, long expiredBefore) {
+            for (int i = hash(hi, lo) & mask; index[i] != 0; i = (i + 1) & mask) {
+                int entry = index[i] - 1;
+                if (isLive(entry) && ring[entry * STRIDE + HI] == hi && ring[entry * STRIDE + LO] == lo) {
+                    return isExpired(entry, expiredBefore) ? -1 : entry;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return false si l'anneau est plein d'entrées PROCESSING : rien n'est alors inséré.
+         */
+        boolean insert(long hi, long lo, long digest, TransactionStatus status, long sequence, long fee, long timestamp, long expiredBefore) {
+            while (count == capacity || (count > 0 && isExpired(head, expiredBefore))) {
+                if (isProcessing(head)) { // Seulement à pleine capacité : on garde l'entrée en l'échangeant avec une entrée terminée
+                    int settled = firstSettled();
+                    if (settled < 0) {
+                        return false;
+                    }
+                    swap(head, settled);
+                }
+                head = head + 1 == capacity ? 0 : head + 1;
+                count--;
+            }
+            int entry = head + count < capacity ? head + count : head + count - capacity;
+            int base = entry * STRIDE;
+            ring[base + HI] = hi;
+            ring[base + LO] = lo;
+            ring[base + SEQUENCE] = sequence;
+            ring[base + FEE] = fee;
+            ring[base + META] = timestamp << 8 | (status.ordinal() + 1);
+            ring[base + DIGEST] = digest;
+            count++;
+
+            // Priorité à l'emplacement d'une entrée expirée du même identifiant, puis au premier emplacement périmé
+            int reusable = -1;
+            int i = hash(hi, lo) & mask;
+            for (; index[i] != 0; i = (i + 1) & mask) {
+                int other = index[i] - 1;
+                if (other == entry) {
+                    continue; // Ancien emplacement de la position que l'on vient de réécrire
+                }
+                if (!isLive(other)) {
+                    if (reusable < 0) {
+                        reusable = i;
+                    }
+                } else if (ring[other * STRIDE + HI] == hi && ring[other * STRIDE + LO] == lo) {
+                    reusable = i;
+                    break;
+                }
+            }
+            if (reusable >= 0) {
+                index[reusable] = entry + 1;
+                return true;
+            }
+            index[i] = entry + 1;
+            if (++occupied > index.length * 3 / 4) {
+                rebuildIndex();
+            }
+            return true;
+        }
+
+        void update(int entry, TransactionStatus status, long sequence, long fee) {
+            int base = entry * STRIDE;
+            ring[base + SEQUENCE] = sequence;
+            ring[base + FEE] = fee;
+            ring[base + META] = (ring[base + META] & ~0xFFL) | (status.ordinal() + 1);
+        }
+
+        /**
+         * Retire l'entrée de l'index en effaçant son identifiant et son statut ; sa place dans l'anneau est libérée
+         * à l'éviction suivante.
+         */
+        void forget(int entry) {
+            ring[entry * STRIDE + HI] = 0;
+            ring[entry * STRIDE + LO] = 0;
+            ring[entry * STRIDE + META] = 0;
+        }
+
+        Outcome outcome(int entry) {
+            int base = entry * STRIDE;
+            long meta = ring[base + META];
+            return new Outcome(STATUSES[(int) (meta & 0xFF) - 1], ring[base + SEQUENCE], ring[base + FEE], meta >> 8, ring[base + DIGEST]);
+        }
+
+        private boolean isProcessing(int entry) {
+            return (ring[entry * STRIDE + META] & 0xFF) == PROCESSING;
+        }
+
+        private boolean isExpired(int entry, long expiredBefore) {
+            return !isProcessing(entry) && (ring[entry * STRIDE + META] >> 8) < expiredBefore;
+        }
+
+        /**
+         * @return La position de la plus ancienne entrée qui n'est pas PROCESSING, ou -1.
+         */
+        private int firstSettled() {
+            for (int n = 0; n < count; n++) {
+                int entry = head + n < capacity ? head + n : head + n - capacity;
+                if (!isProcessing(entry)) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Échange deux entrées de l'anneau. L'emplacement d'index de la première (PROCESSING) suit son entrée ;
+         * celui de la seconde, qui va être évincée, désigne désormais une entrée d'un autre identifiant et est ignoré par find.
+         */
+        private void swap(int processing, int settled) {
+            int a = processing * STRIDE;
+            int b = settled * STRIDE;
+            for (int k = 0; k < STRIDE; k++) {
+                long value = ring[a + k];
+                ring[a + k] = ring[b + k];
+                ring[b + k] = value;
+            }
+            for (int i = hash(ring[b + HI], ring[b + LO]) & mask; index[i] != 0; i = (i + 1) & mask) {
+                if (index[i] == processing + 1) {
+                    index[i] = settled + 1;
+                    return;
+                }
+            }
+        }
+
+        private boolean isLive(int entry) {
+            int age = entry - head;
+            return (age < 0 ? age + capacity : age) < count;
+        }
+
+        /**
+         * Reconstruit l'index à partir des seules entrées présentes dans l'anneau ; au plus la moitié des emplacements est alors occupée.
+         */
+        private void rebuildIndex() {
+            Arrays.fill(index, 0);
+            for (int n = 0; n < count; n++) {
+                int entry = head + n < capacity ? head + n : head + n - capacity;
+                int i = hash(ring[entry * STRIDE + HI], ring[entry * STRIDE + LO]) & mask;
+                while (index[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                index[i] = entry + 1;
+            }
+            occupied = count;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.corebanker.engine;
+
+/**
+ * Une clé d'idempotence déjà utilisée a été soumise avec une autre demande (comptes, montant ou type différents) :
+ * rien n'a été exécuté.
+ */
+public final class IdempotencyConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyConflictException(String transactionId) {
+        super("Clé d'idempotence déjà utilisée pour une autre demande (transaction " + transactionId + ")");
+    }
+}
@@ -0,0 +1,440 @@
+package com.corebanker.engine;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.JournalWriteException;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moteur d'exécution partitionné.
+ *
+ * Les tranches de verrous (AccountLocks) sont réparties entre N partitions : une tranche, et donc chacun de ses comptes,
+ * appartient à une seule partition. Chaque partition est possédée par un seul thread, qui applique dans l'ordre
+ * toutes les mutations de ses comptes, reçues par une file non bloquante.
+ * Un transfert entre deux partitions se fait en deux étapes : débit sur la partition source (la transaction passe
+ * de PENDING à PROCESSING), puis crédit sur la partition cible (SUCCEEDED). Si le crédit échoue, le débit est
+ * remboursé sur la partition source (FAILED).
+ *
+ * Chaque mouvement passe par TransferEngine : il est appliqué sous le verrou de la tranche de son compte, avec une
+ * séquence réservée dans la même section critique, ce qui garde les instantanés cohérents. Les partitions ne se disputent
+ * jamais un verrou : chaque thread ne prend que ceux de ses propres tranches, et jamais deux à la fois. Le verrou
+ * n'est disputé que par les lecteurs ponctuels (instantanés, réplication, AccountCache) ou par un autre moteur
+ * (processTransaction, pipeline) qui modifierait les mêmes comptes ; il est conservé pour eux.
+ * L'enregistrement d'un transfert porte la séquence du débit et celle du crédit ; un débit remboursé est journalisé
+ * lui aussi (statut CANCELLED). Chaque enregistrement est soumis au journal par le thread de la partition, sans verrou.
+ * Le futur de l'appelant n'est complété qu'une fois l'enregistrement durable ; si l'écriture échoue, l'opération
+ * est annulée en mémoire et le futur échoue (JournalWriteException). Les transactions idempotentes ne sont pas
+ * acceptées : elles passent par Transaction.processTransaction.
+ * Chaque opération est déclarée au journal comme mouvement en cours (openMove) jusqu'à la complétion de son futur :
+ * un point de reprise attend donc la durabilité d'un débit qu'il a capturé, crédit compris.
+ */
+public final class ShardedEngine implements AutoCloseable {
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long PARK_NANOS = 1_000_000;
+
+    private final Shard[] shards;
+    private final TransactionJournal journal;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private volatile boolean accepting = true;
+
+    /**
+     * Démarre un moteur avec un thread par partition.
+     * @param shardCount Nombre de partitions (par exemple le nombre de cœurs)
+     */
+    public ShardedEngine(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Le nombre de partitions doit être positif");
+        }
+        this.journal = TransactionJournal.getDefault();
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return L'indice de la partition qui possède le compte : celle de sa tranche de verrou.
+     */
+    public int shardOf(String accountNumber) {
+        return AccountLocks.stripeOf(accountNumber) % shards.length;
+    }
+
+    private Shard shardFor(BankAccount account) {
+        return account != null ? shards[shardOf(account.getAccountNumber())] : null;
+    }
+
+    /**
+     * Dépose un montant sur le compte, frais déduits, sur le thread de sa partition.
+     * @return Un futur complété avec true une fois le dépôt appliqué et journalisé.
+     */
+    public CompletableFuture<Boolean> deposit(BankAccount account, long amount) {
+        CompletableFuture<Boolean> result = begin();
+        if (amount <= 0) {
+            EventLog.log(EventCode.DEPOSIT_INVALID, account.getAccountNumber());
+            finish(result, false);
+            return result;
+        }
+        start(new Transaction(null, account, amount, TransactionType.DEPOSIT, TransactionStatus.PENDING), result);
+        return result;
+    }
+
+    /**
+     * Retire un montant du compte, frais inclus, si le solde est suffisant, sur le thread de sa partition.
+     * @return Un futur complété avec true une fois le retrait appliqué et journalisé.
+     */
+    public CompletableFuture<Boolean> withdraw(BankAccount account, long amount) {
+        CompletableFuture<Boolean> result = begin();
+        if (amount <= 0) {
+            EventLog.log(EventCode.WITHDRAWAL_INVALID, account.getAccountNumber());
+            finish(result, false);
+            return result;
+        }
+        start(new Transaction(account, null, amount, TransactionType.WITHDRAWAL, TransactionStatus.PENDING), result);
+        return result;
+    }
+
+    /**
+     * Soumet un transfert. Les frais sont calculés par l'appelant, le débit et le crédit par les partitions.
+     * @param transaction Un transfert au statut PENDING, sans clé d'idempotence
+     * @return Un futur complété avec true une fois le transfert appliqué et journalisé, false s'il a échoué.
+     */
+    public CompletableFuture<Boolean> transfer(Transaction transaction) {
+        if (transaction.isIdempotent()) {
+            throw new IllegalArgumentException("Transaction idempotente : utiliser processTransaction");
+        }
+        CompletableFuture<Boolean> result = begin();
+        if (transaction.getSourceAccount() == null || transaction.getTargetAccount() == null
+                || transaction.getTransactionType() != TransactionType.TRANSFER
+                || transaction.getAmount() <= 0 || transaction.getStatus() != TransactionStatus.PENDING) {
+            EventLog.log(EventCode.TRANSACTION_CANCELLED, transaction.getTransactionId());
+            transaction.setStatus(TransactionStatus.FAILED);
+            finish(result, false);
+            return result;
+        }
+        start(transaction, result);
+        return result;
+    }
+
+    /**
+     * Première étape : le débit sur la partition source, ou le crédit d'un dépôt sur la partition cible.
+     */
+    private void start(Transaction transaction, CompletableFuture<Boolean> result) {
+        long fee = transaction.calculateFee();
+        Steps steps = new Steps(transaction, fee, shardFor(transaction.getSourceAccount()), shardFor(transaction.getTargetAccount()), result);
+        if (steps.sourceShard != null) {
+            steps.on(steps.sourceShard, steps::debit);
+        } else {
+            steps.on(steps.targetShard, steps::credit);
+        }
+    }
+
+    /**
+     * Enregistre une opération soumise ; refusée si le moteur est en cours d'arrêt.
+     */
+    private CompletableFuture<Boolean> begin() {
+        submitted.increment(); // Avant la lecture de accepting : close() attend cette opération
+        if (!accepting) {
+            completed.increment();
+            throw new IllegalStateException("Le moteur partitionné est arrêté");
+        }
+        return new CompletableFuture<>();
+    }
+
+    private void finish(CompletableFuture<Boolean> result, boolean succeeded) {
+        completed.increment();
+        result.complete(succeeded);
+    }
+
+    private void finish(CompletableFuture<Boolean> result, Throwable error) {
+        completed.increment();
+        result.completeExceptionally(error);
+    }
+
+    /**
+     * Refuse les nouvelles opérations, attend la fin de celles en cours (journalisation comprise), puis arrête les threads.
+     */
+    @Override
+    public void close() {
+        accepting = false;
+        while (completed.sum() < submitted.sum()) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Étapes d'une opération, exécutées chacune sur le thread de la partition concernée.
+     * Chaque étape complète le futur de l'opération si elle échoue, y compris sur une exception.
+     */
+    private final class Steps {
+        private final Transaction transaction;
+        private final long fee;
+        private final Shard sourceShard; // null pour un dépôt
+        private final Shard targetShard; // null pour un retrait
+        private final CompletableFuture<Boolean> result;
+        private long sequence;       // Séquence du débit, ou du dépôt
+        private long secondSequence; // Séquence du crédit d'un transfert, ou du remboursement de son débit
+        private boolean debited;
+        private boolean applied; // Tous les mouvements appliqués, ou le débit remboursé
+        private RuntimeException failure;
+        private final int move; // Jeton du mouvement déclaré au journal, clos avec le futur
+
+        Steps(Transaction transaction, long fee, Shard sourceShard, Shard targetShard, CompletableFuture<Boolean> result) {
+            this.transaction = transaction;
+            this.fee = fee;
+            this.sourceShard = sourceShard;
+            this.targetShard = targetShard;
+            this.result = result;
+            this.move = journal != null ? journal.openMove() : 0;
+        }
+
+        private void done(boolean succeeded) {
+            if (journal != null) {
+                journal.closeMove(move, true);
+            }
+            finish(result, succeeded);
+        }
+
+        /**
+         * @param durable false si l'opération a été annulée en mémoire faute d'avoir pu être journalisée
+         */
+        private void done(Throwable error, boolean durable) {
+            if (journal != null) {
+                journal.closeMove(move, durable);
+            }
+            finish(result, error);
+        }
+
+        /**
+         * Soumet une étape à une partition. Une exception fait échouer l'opération ; un débit déjà appliqué
+         * sans crédit est d'abord remboursé.
+         */
+        void on(Shard shard, Runnable step) {
+            shard.submit(() -> {
+                try {
+                    step.run();
+                } catch (RuntimeException e) {
+                    EventLog.log(EventCode.SHARD_STEP_FAILED, shard.thread.getName(), String.valueOf(e.getMessage()), null);
+                    abort(e);
+                }
+            });
+        }
+
+        private void abort(RuntimeException e) {
+            transaction.setStatus(TransactionStatus.FAILED);
+            if (debited && !applied && failure == null) {
+                failure = e;
+                on(sourceShard, this::compensate);
+            } else {
+                done(e, true);
+            }
+        }
+
+        /**
+         * Étape 1, partition source : débit du montant frais inclus, avec sa séquence.
+         */
+        void debit() {
+            BankAccount source = transaction.getSourceAccount();
+            sequence = TransferEngine.withdraw(source, transaction.getAmount());
+            if (sequence == TransferEngine.REJECTED) {
+                if (targetShard == null) {
+                    EventLog.log(EventCode.WITHDRAWAL_INSUFFICIENT_FUNDS, source.getAccountNumber(), transaction.getAmount(), source.getBalance());
+                } else {
+                    EventLog.log(EventCode.TRANSACTION_REJECTED, transaction.getTransactionId());
+                }
+                transaction.setStatus(TransactionStatus.FAILED);
+                done(false);
+                return;
+            }
+            debited = true;
+            if (targetShard == null) {
+                applied = true;
+                succeed(sourceShard); // Retrait : le débit suffit
+                return;
+            }
+            transaction.setStatus(TransactionStatus.PROCESSING);
+            if (targetShard == sourceShard) {
+                credit();
+            } else {
+                on(targetShard, this::credit);
+            }
+        }
+
+        /**
+         * Étape 2, partition cible : crédit du montant après frais, avec sa propre séquence.
+         */
+        void credit() {
+            BankAccount target = transaction.getTargetAccount();
+            long creditSequence = TransferEngine.deposit(target, transaction.getAmount() - fee);
+            if (creditSequence == TransferEngine.REJECTED) { // Dépassement de capacité du solde
+                if (sourceShard == null) {
+                    EventLog.log(EventCode.TRANSACTION_REJECTED, transaction.getTransactionId());
+                    transaction.setStatus(TransactionStatus.FAILED);
+                    done(false);
+                } else if (targetShard == sourceShard) {
+                    compensate();
+                } else {
+                    on(sourceShard, this::compensate);
+                }
+                return;
+            }
+            applied = true;
+            if (sourceShard == null) {
+                sequence = creditSequence; // Dépôt : une seule étape
+            } else {
+                secondSequence = creditSequence;
+            }
+            succeed(targetShard);
+        }
+
+        /**
+         * Compensation, partition source : le débit de l'étape 1 est remboursé avec une nouvelle séquence, et journalisé.
+         */
+        void compensate() {
+            BankAccount source = transaction.getSourceAccount();
+            long refundSequence = TransferEngine.deposit(source, transaction.getAmount());
+            if (refundSequence == TransferEngine.REJECTED) {
+                throw new IllegalStateException("Remboursement impossible sur " + source.getAccountNumber());
+            }
+            secondSequence = refundSequence;
+            applied = true; // Plus rien à rembourser
+            EventLog.log(EventCode.TRANSACTION_CANCELLED, transaction.getTransactionId());
+            transaction.setStatus(TransactionStatus.FAILED);
+            if (journal == null) {
+                complete();
+                return;
+            }
+            // Le thread de la partition n'attend pas l'écriture
+            journal.append(JournalRecord.forCompensation(transaction, fee, sequence, refundSequence)).whenComplete((written, error) ->
+                    on(sourceShard, () -> {
+                        if (error != null) {
+                            EventLog.log(EventCode.JOURNAL_WRITE_FAILED, String.valueOf(error.getMessage()));
+                            done(new JournalWriteException(error), false);
+                        } else {
+                            complete();
+                        }
+                    }));
+        }
+
+        private void complete() {
+            if (failure != null) {
+                done(failure, true);
+            } else {
+                done(false);
+            }
+        }
+
+        /**
+         * Tous les mouvements sont appliqués : journalisation, puis, une fois l'enregistrement durable et sur la
+         * partition de la dernière étape, historique des comptes et complétion du futur.
+         */
+        private void succeed(Shard home) {
+            transaction.markExecuted(fee, sequence);
+            if (journal == null) {
+                publish();
+                return;
+            }
+            journal.append(JournalRecord.forTransaction(transaction, fee, secondSequence)).whenComplete((written, error) ->
+                    on(home, () -> {
+                        if (error != null) {
+                            TransferEngine.revert(transaction.getSourceAccount(), transaction.getTargetAccount(),
+                                    transaction.getAmount(), transaction.getAmount() - fee);
+                            transaction.setStatus(TransactionStatus.FAILED);
+                            EventLog.log(EventCode.JOURNAL_WRITE_FAILED, String.valueOf(error.getMessage()));
+                            done(new JournalWriteException(error), false);
+                        } else {
+                            publish();
+                        }
+                    }));
+        }
+
+        private void publish() {
+            BankAccount account = transaction.getTargetAccount() != null ? transaction.getTargetAccount() : transaction.getSourceAccount();
+            switch (transaction.getTransactionType()) {
+                case DEPOSIT -> EventLog.log(EventCode.DEPOSIT_SUCCEEDED, account.getAccountNumber(), transaction.getAmount(), account.getBalance());
+                case WITHDRAWAL -> EventLog.log(EventCode.WITHDRAWAL_SUCCEEDED, account.getAccountNumber(), transaction.getAmount(), account.getBalance());
+                case TRANSFER -> EventLog.log(EventCode.TRANSACTION_SUCCEEDED, transaction.getTransactionId());
+            }
+            transaction.addToHistories();
+            done(true);
+        }
+    }
+
+    /**
+     * Partition : une file d'entrée et le thread qui la consomme.
+     */
+    private static final class Shard {
+        private final Queue<Runnable> inbound = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private volatile boolean parked;
+        private volatile boolean running = true;
+
+        Shard(int index) {
+            this.thread = new Thread(this::run, "shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Runnable step) {
+            inbound.offer(step);
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            int idle = 0;
+            while (true) {
+                Runnable step = inbound.poll();
+                if (step != null) {
+                    idle = 0;
+                    try {
+                        step.run();
+                    } catch (RuntimeException e) { // Filet de sécurité : les étapes complètent elles-mêmes leur futur (Steps.on)
+                        EventLog.log(EventCode.SHARD_STEP_FAILED, thread.getName(), String.valueOf(e.getMessage()), null);
+                    }
+                } else if (!running) {
+                    return;
+                } else if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    // Le producteur lit parked après avoir déposé son étape : elle est vue ici, ou il réveille le thread
+                    parked = true;
+                    if (inbound.isEmpty() && running) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    parked = false;
+                }
+            }
+        }
+    }
+}
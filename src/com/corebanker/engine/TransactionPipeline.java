@@ -0,0 +1,422 @@
+package com.corebanker.engine;
+
+import com.corebanker.enums.FailureReason;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.metrics.Metrics;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.JournalWriteException;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Exécution en pipeline des transferts, dépôts et retraits : validation, réservation, application, journalisation
+ * puis publication du résultat.
+ *
+ * Chaque étape a son propre thread et transmet les transactions à la suivante, dans l'ordre, par une file bornée :
+ * la validation des unes et l'écriture du journal des autres se recouvrent avec l'application. Une transaction en
+ * échec traverse les étapes suivantes sans y être traitée.
+ * <pre>
+ * validation      comptes, montant, solde (sans verrou), frais
+ * réservation     débit du compte source et séquence du journal (transfert, retrait)
+ * application     crédit du compte cible (transfert, dépôt) ; débit remboursé si le crédit est impossible
+ * journalisation  soumission des enregistrements au journal par lots, sans attendre leur écriture
+ * publication     attente de la durabilité, historique, métriques, complétion du futur de l'appelant
+ * </pre>
+ * Contre-pression : au plus maxJournalInFlight enregistrements peuvent avoir été soumis au journal sans être durables.
+ * Au-delà, la journalisation attend, les files se remplissent de proche en proche et {@link #submit} bloque l'appelant.
+ *
+ * Le débit et le crédit d'un transfert réservent chacun leur séquence sous le verrou de leur compte, et l'enregistrement
+ * porte les deux (voir JournalRecord) : la relecture après un instantané compare chaque mouvement à la séquence capturée
+ * pour son compte. Un débit remboursé est journalisé lui aussi (statut CANCELLED), avec la séquence du remboursement.
+ * Si l'écriture échoue, l'opération est annulée en mémoire et le futur de l'appelant échoue (JournalWriteException).
+ * Chaque transaction est déclarée au journal comme mouvement en cours (openMove) de sa soumission à sa publication :
+ * un point de reprise attend donc la durabilité d'un débit qu'il a capturé, crédit compris.
+ */
+public final class TransactionPipeline implements AutoCloseable {
+    private static final long PARK_NANOS = 1_000_000;
+    private static final Step STOP = new Step(null, null, 0); // Marque de fin, transmise d'étape en étape
+
+    private final TransactionJournal journal;
+    private final BlockingQueue<Step> validating;
+    private final BlockingQueue<Step> reserving;
+    private final BlockingQueue<Step> applying;
+    private final BlockingQueue<Step> journaling;
+    private final BlockingQueue<Step> publishing;
+    private final Semaphore journalInFlight;
+    private final int journalBatch;
+    private final List<Thread> threads = new ArrayList<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private volatile boolean accepting = true;
+
+    /**
+     * Transaction en cours de traitement et futur de son appelant.
+     */
+    private static final class Step {
+        final Transaction transaction;
+        final CompletableFuture<Boolean> result;
+        final long start; // Valeur de Metrics.startTransaction()
+        int move;           // Jeton du mouvement déclaré au journal
+        long fee;
+        long sequence;      // Séquence du débit (transfert, retrait) ou du dépôt
+        long creditSequence; // Séquence du crédit d'un transfert, ou du remboursement de son débit
+        boolean debited;
+        boolean applied;    // Tous les mouvements de l'opération sont appliqués
+        boolean compensated; // Débit remboursé, à journaliser
+        boolean failed;
+        CompletableFuture<Long> durable; // Écriture du lot de journal qui contient la transaction
+
+        Step(Transaction transaction, CompletableFuture<Boolean> result, long start) {
+            this.transaction = transaction;
+            this.result = result;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Démarre un pipeline sur le journal par défaut.
+     * @param queueCapacity Capacité de chacune des files entre étapes
+     * @param maxJournalInFlight Nombre maximal d'enregistrements soumis au journal et pas encore durables
+     */
+    public TransactionPipeline(int queueCapacity, int maxJournalInFlight) {
+        if (queueCapacity <= 0 || maxJournalInFlight <= 0) {
+            throw new IllegalArgumentException("Les capacités du pipeline doivent être positives");
+        }
+        this.journal = TransactionJournal.getDefault();
+        this.validating = new ArrayBlockingQueue<>(queueCapacity);
+        this.reserving = new ArrayBlockingQueue<>(queueCapacity);
+        this.applying = new ArrayBlockingQueue<>(queueCapacity);
+        this.journaling = new ArrayBlockingQueue<>(queueCapacity);
+        this.publishing = new ArrayBlockingQueue<>(queueCapacity);
+        this.journalInFlight = new Semaphore(maxJournalInFlight);
+        this.journalBatch = Math.min(queueCapacity, maxJournalInFlight);
+
+        start("validation", () -> run(validating, reserving, this::validate));
+        start("reservation", () -> run(reserving, applying, this::reserve));
+        start("application", () -> run(applying, journaling, this::apply));
+        start("journalisation", this::journalLoop);
+        start("publication", () -> run(publishing, null, this::publish));
+    }
+
+    private void start(String stage, Runnable loop) {
+        Thread thread = new Thread(() -> {
+            try {
+                loop.run();
+            } catch (IllegalStateException e) {
+                if (!(e.getCause() instanceof InterruptedException)) {
+                    throw e;
+                }
+            }
+        }, "pipeline-" + stage);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    /**
+     * Soumet une transaction au statut PENDING. Bloque tant que le pipeline est saturé.
+     * Les transactions idempotentes ne sont pas acceptées : elles passent par Transaction.processTransaction.
+     * @return Un futur complété avec true une fois la transaction appliquée et journalisée, false si elle a échoué,
+     *         ou en échec (JournalWriteException) si elle n'a pas pu être rendue durable et a été annulée.
+     */
+    public CompletableFuture<Boolean> submit(Transaction transaction) {
+        if (transaction.isIdempotent()) {
+            throw new IllegalArgumentException("Transaction idempotente : utiliser processTransaction");
+        }
+        submitted.increment(); // Avant la lecture de accepting : close() attend cette transaction
+        if (!accepting) {
+            completed.increment();
+            throw new IllegalStateException("Le pipeline est arrêté");
+        }
+        Step step = new Step(transaction, new CompletableFuture<>(), Metrics.startTransaction());
+        step.move = journal != null ? journal.openMove() : 0;
+        try {
+            validating.put(step);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeMove(step, true);
+            completed.increment();
+            step.result.completeExceptionally(e);
+        }
+        return step.result;
+    }
+
+    /**
+     * @return Le nombre de transactions soumises et pas encore publiées.
+     */
+    public long getPending() {
+        return submitted.sum() - completed.sum();
+    }
+
+    /**
+     * Boucle d'une étape : chaque transaction reçue est traitée puis transmise à l'étape suivante.
+     * Une transaction dont l'étape lève une exception échoue ; si elle a déjà débité son compte source,
+     * le débit est remboursé (et journalisé).
+     */
+    private void run(BlockingQueue<Step> inbound, BlockingQueue<Step> outbound, Consumer<Step> action) {
+        while (true) {
+            Step step = take(inbound);
+            if (step != STOP) {
+                try {
+                    action.accept(step);
+                } catch (RuntimeException e) {
+                    EventLog.log(EventCode.PIPELINE_STEP_FAILED, Thread.currentThread().getName(), String.valueOf(e.getMessage()), null);
+                    if (step.debited && !step.applied && !step.compensated) {
+                        try {
+                            compensate(step);
+                        } catch (RuntimeException refundFailure) {
+                            EventLog.log(EventCode.PIPELINE_STEP_FAILED, Thread.currentThread().getName(),
+                                    String.valueOf(refundFailure.getMessage()), null);
+                        }
+                    }
+                    fail(step);
+                    if (outbound == null) {
+                        finish(step);
+                    }
+                }
+            }
+            if (outbound != null) {
+                put(outbound, step);
+            }
+            if (step == STOP) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Étape 1 : préconditions et frais. Le solde est vérifié sans verrou, il le sera de nouveau au débit.
+     */
+    private void validate(Step step) {
+        Transaction transaction = step.transaction;
+        if (transaction.getStatus() != TransactionStatus.PENDING || !transaction.validateTransaction()) {
+            EventLog.log(EventCode.TRANSACTION_CANCELLED, transaction.getTransactionId());
+            fail(step);
+            return;
+        }
+        step.fee = transaction.calculateFee();
+    }
+
+    /**
+     * Étape 2 : débit du compte source, frais inclus, et réservation de la séquence sous son verrou.
+     */
+    private void reserve(Step step) {
+        Transaction transaction = step.transaction;
+        if (step.failed || transaction.getTransactionType() == TransactionType.DEPOSIT) {
+            return;
+        }
+        step.sequence = TransferEngine.withdraw(transaction.getSourceAccount(), transaction.getAmount());
+        if (step.sequence == TransferEngine.REJECTED) {
+            EventLog.log(EventCode.TRANSACTION_REJECTED, transaction.getTransactionId());
+            Metrics.recordFailure(FailureReason.INSUFFICIENT_FUNDS); // Solde modifié depuis la validation
+            fail(step);
+            return;
+        }
+        step.debited = true;
+        transaction.setStatus(TransactionStatus.PROCESSING);
+    }
+
+    /**
+     * Étape 3 : crédit du compte cible, frais déduits, avec sa propre séquence.
+     */
+    private void apply(Step step) {
+        if (step.failed) {
+            return;
+        }
+        Transaction transaction = step.transaction;
+        long credit = transaction.getAmount() - step.fee;
+        switch (transaction.getTransactionType()) {
+            case TRANSFER -> {
+                long creditSequence = TransferEngine.deposit(transaction.getTargetAccount(), credit);
+                if (creditSequence == TransferEngine.REJECTED) {
+                    compensate(step); // Solde cible hors limites
+                    fail(step);
+                    return;
+                }
+                step.creditSequence = creditSequence;
+            }
+            case DEPOSIT -> {
+                step.sequence = TransferEngine.deposit(transaction.getTargetAccount(), credit);
+                if (step.sequence == TransferEngine.REJECTED) {
+                    EventLog.log(EventCode.TRANSACTION_REJECTED, transaction.getTransactionId());
+                    Metrics.recordFailure(FailureReason.AMOUNT_INVALID); // Solde hors limites
+                    fail(step);
+                    return;
+                }
+            }
+            case WITHDRAWAL -> {
+                // Le débit de l'étape 2 suffit
+            }
+        }
+        step.applied = true;
+        transaction.markExecuted(step.fee, step.sequence);
+    }
+
+    /**
+     * Rembourse le débit de l'étape 2 sous le verrou du compte source, avec une nouvelle séquence.
+     */
+    private void compensate(Step step) {
+        Transaction transaction = step.transaction;
+        long refundSequence = TransferEngine.deposit(transaction.getSourceAccount(), transaction.getAmount());
+        if (refundSequence == TransferEngine.REJECTED) {
+            throw new IllegalStateException("Remboursement impossible sur " + transaction.getSourceAccount().getAccountNumber());
+        }
+        step.creditSequence = refundSequence;
+        step.compensated = true;
+        EventLog.log(EventCode.TRANSACTION_CANCELLED, transaction.getTransactionId());
+    }
+
+    private static JournalRecord recordOf(Step step) {
+        return step.compensated
+                ? JournalRecord.forCompensation(step.transaction, step.fee, step.sequence, step.creditSequence)
+                : JournalRecord.forTransaction(step.transaction, step.fee, step.creditSequence);
+    }
+
+    /**
+     * Étape 4 : regroupe les transactions exécutées et les soumet au journal, dans la limite des écritures en vol.
+     */
+    private void journalLoop() {
+        List<Step> batch = new ArrayList<>(journalBatch);
+        List<JournalRecord> records = new ArrayList<>(journalBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            batch.add(take(journaling));
+            journaling.drainTo(batch, journalBatch - 1);
+            for (Step step : batch) {
+                if (step == STOP) {
+                    stopping = true;
+                } else if ((!step.failed || step.compensated) && journal != null) {
+                    records.add(recordOf(step));
+                }
+            }
+            if (!records.isEmpty()) {
+                int permits = records.size();
+                try {
+                    journalInFlight.acquire(permits); // Contre-pression : attend que le journal rattrape son retard
+                } catch (InterruptedException e) {
+                    throw interrupted(e);
+                }
+                CompletableFuture<Long> durable = journal.appendAll(records);
+                durable.whenComplete((sequence, error) -> journalInFlight.release(permits));
+                for (Step step : batch) {
+                    if (step != STOP && (!step.failed || step.compensated)) {
+                        step.durable = durable;
+                    }
+                }
+            }
+            for (Step step : batch) {
+                put(publishing, step);
+            }
+            batch.clear();
+            records.clear();
+        }
+    }
+
+    /**
+     * Étape 5 : attend que la transaction soit durable (les lots sont écrits dans l'ordre), met à jour l'historique
+     * des comptes, puis complète son futur. Une transaction qui n'a pas pu être rendue durable est annulée en mémoire.
+     */
+    private void publish(Step step) {
+        if (step.durable != null) {
+            try {
+                step.durable.join();
+            } catch (CompletionException e) {
+                EventLog.log(EventCode.JOURNAL_WRITE_FAILED, String.valueOf(e.getCause().getMessage()));
+                if (!step.failed) {
+                    Transaction transaction = step.transaction;
+                    TransferEngine.revert(transaction.getSourceAccount(), transaction.getTargetAccount(),
+                            transaction.getAmount(), transaction.getAmount() - step.fee);
+                    fail(step);
+                }
+                closeMove(step, false);
+                finish(step, new JournalWriteException(e.getCause()));
+                return;
+            }
+        }
+        if (!step.failed) {
+            EventLog.log(EventCode.TRANSACTION_SUCCEEDED, step.transaction.getTransactionId());
+            step.transaction.addToHistories();
+        }
+        finish(step);
+    }
+
+    private void fail(Step step) {
+        step.failed = true;
+        step.transaction.setStatus(TransactionStatus.FAILED);
+    }
+
+    private void closeMove(Step step, boolean durable) {
+        if (journal != null) {
+            journal.closeMove(step.move, durable);
+        }
+    }
+
+    private void finish(Step step) {
+        closeMove(step, true);
+        Metrics.recordTransaction(step.transaction.getTransactionType(), step.transaction.getStatus(), step.start);
+        completed.increment();
+        step.result.complete(!step.failed);
+    }
+
+    private void finish(Step step, Throwable error) {
+        Metrics.recordTransaction(step.transaction.getTransactionType(), step.transaction.getStatus(), step.start);
+        completed.increment();
+        step.result.completeExceptionally(error);
+    }
+
+    private static Step take(BlockingQueue<Step> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    private static void put(BlockingQueue<Step> queue, Step step) {
+        try {
+            queue.put(step);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    private static IllegalStateException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new IllegalStateException("Étape du pipeline interrompue", e);
+    }
+
+    /**
+     * Refuse les nouvelles transactions, attend la publication de celles en cours (journalisation comprise),
+     * puis arrête les étapes.
+     */
+    @Override
+    public void close() {
+        accepting = false;
+        while (completed.sum() < submitted.sum()) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        put(validating, STOP);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
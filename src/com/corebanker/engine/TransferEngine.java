@@ -0,0 +1,130 @@
+package com.corebanker.engine;
+
+import com.corebanker.models.BankAccount;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moteur de transfert concurrent : débite et crédite deux comptes de façon atomique
+ * sous les verrous de leurs tranches, pris dans un ordre fixe. Les dépôts et retraits ne prennent
+ * que le verrou de leur compte.
+ */
+public final class TransferEngine {
+    /** Valeur retournée par {@link #transfer} lorsque les fonds sont insuffisants. */
+    public static final long REJECTED = -1;
+
+    private TransferEngine() {
+    }
+
+    /**
+     * Transfère un montant entre deux comptes.
+     * Le solde du compte source est vérifié sous verrou, ce qui empêche tout découvert
+     * et toute mise à jour perdue en cas d'accès concurrent. Le numéro de séquence du journal est
+     * réservé sous ces mêmes verrous et reporté sur les deux comptes, ce qui permet aux instantanés
+     * de savoir quels mouvements chaque compte a déjà intégrés.
+     * @param source Le compte débité
+     * @param target Le compte crédité
+     * @param debitAmount Le montant retiré du compte source (frais inclus), en centimes
+     * @param creditAmount Le montant versé sur le compte cible, en centimes
+     * @return La séquence réservée dans le journal (0 si la persistance est désactivée),
+     *         ou {@link #REJECTED} si les fonds sont insuffisants ou si le crédit dépasserait le solde maximal
+     *         (rien n'est alors modifié)
+     */
+    public static long transfer(BankAccount source, BankAccount target, long debitAmount, long creditAmount) {
+        String sourceNumber = source.getAccountNumber();
+        String targetNumber = target.getAccountNumber();
+        TransactionJournal journal = TransactionJournal.getDefault();
+
+        AccountLocks.lockBoth(sourceNumber, targetNumber);
+        try {
+            if (!source.debit(debitAmount)) {
+                return REJECTED;
+            }
+            try {
+                target.credit(creditAmount);
+            } catch (ArithmeticException e) {
+                source.credit(debitAmount); // Rétablit le solde d'avant le débit : ne peut pas déborder
+                return REJECTED;
+            }
+            long sequence = journal != null ? journal.reserveSequence() : 0;
+            source.markApplied(sequence);
+            target.markApplied(sequence);
+            return sequence;
+        } finally {
+            AccountLocks.unlockBoth(sourceNumber, targetNumber);
+        }
+    }
+
+    /**
+     * Dépose un montant sur un compte ; la séquence du journal est réservée sous le verrou du compte.
+     * Sert aussi de seconde étape à un transfert en deux temps (crédit de la cible, ou remboursement de la source
+     * si le crédit est impossible), avec sa propre séquence : voir {@link #withdraw}.
+     * @param creditAmount Le montant versé sur le compte (frais déduits), en centimes
+     * @return La séquence réservée (0 si la persistance est désactivée), ou {@link #REJECTED} en cas de dépassement du solde
+     */
+    public static long deposit(BankAccount target, long creditAmount) {
+        TransactionJournal journal = TransactionJournal.getDefault();
+        ReentrantLock lock = AccountLocks.lockFor(target.getAccountNumber());
+        lock.lock();
+        try {
+            target.credit(creditAmount);
+            long sequence = journal != null ? journal.reserveSequence() : 0;
+            target.markApplied(sequence);
+            return sequence;
+        } catch (ArithmeticException e) {
+            return REJECTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retire un montant d'un compte si le solde est suffisant ; la séquence du journal est réservée sous le verrou du compte.
+     * Sert aussi de première étape à un transfert en deux temps : entre les deux étapes, le montant n'est plus
+     * sur le compte source et pas encore sur le compte cible. Chaque compte reporte la séquence réservée sous son verrou,
+     * dans la même section critique que son mouvement ; l'enregistrement du transfert porte les deux séquences.
+     * @param debitAmount Le montant retiré du compte (frais inclus), en centimes
+     * @return La séquence réservée (0 si la persistance est désactivée), ou {@link #REJECTED} si les fonds sont insuffisants
+     */
+    public static long withdraw(BankAccount source, long debitAmount) {
+        TransactionJournal journal = TransactionJournal.getDefault();
+        ReentrantLock lock = AccountLocks.lockFor(source.getAccountNumber());
+        lock.lock();
+        try {
+            if (!source.debit(debitAmount)) {
+                return REJECTED;
+            }
+            long sequence = journal != null ? journal.reserveSequence() : 0;
+            source.markApplied(sequence);
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Annule en mémoire un mouvement déjà appliqué dont l'enregistrement n'a pas pu être rendu durable.
+     * La séquence des comptes est conservée : aucun enregistrement ne la porte, et un instantané capture le solde rétabli.
+     * Le compte crédité peut devenir débiteur s'il a entre-temps dépensé les fonds.
+     * @param source Le compte débité (null pour un dépôt)
+     * @param target Le compte crédité (null pour un retrait)
+     * @param debitAmount Le montant retiré du compte source, en centimes
+     * @param creditAmount Le montant versé sur le compte cible, en centimes
+     */
+    public static void revert(BankAccount source, BankAccount target, long debitAmount, long creditAmount) {
+        if (source != null && target != null) {
+            AccountLocks.lockBoth(source.getAccountNumber(), target.getAccountNumber());
+            try {
+                target.credit(-creditAmount);
+                source.credit(debitAmount);
+            } finally {
+                AccountLocks.unlockBoth(source.getAccountNumber(), target.getAccountNumber());
+            }
+        } else if (target != null) {
+            target.credit(-creditAmount); // Sous le verrou du compte (credit)
+        } else if (source != null) {
+            source.credit(debitAmount);
+        }
+    }
+}
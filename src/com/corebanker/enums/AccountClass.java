@@ -0,0 +1,16 @@
+package com.corebanker.enums;
+
+public enum AccountClass {
+    STANDARD,  // Compte de particulier, par défaut
+    PREMIUM,   // Offre haut de gamme
+    BUSINESS;  // Compte professionnel
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case STANDARD -> "STANDARD";
+            case PREMIUM -> "PREMIUM";
+            case BUSINESS -> "BUSINESS";
+        };
+    }
+}
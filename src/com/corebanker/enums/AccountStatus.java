@@ -0,0 +1,16 @@
+package com.corebanker.enums;
+
+public enum AccountStatus {
+    ACTIVE, // Compte ouvert
+    FROZEN, // Compte gelé : aucun mouvement accepté
+    CLOSED; // Compte clôturé
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case ACTIVE -> "ACTIVE";
+            case FROZEN -> "FROZEN";
+            case CLOSED -> "CLOSED";
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package com.corebanker.enums;
+
+public enum BatchMode {
+    ATOMIC,   // Tout le lot est appliqué, ou aucun virement
+    PER_ITEM; // Chaque virement est accepté ou refusé individuellement, dans l'ordre du lot
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case ATOMIC -> "ATOMIC";
+            case PER_ITEM -> "PER_ITEM";
+        };
+    }
+}
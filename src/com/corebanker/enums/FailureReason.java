@@ -0,0 +1,18 @@
+package com.corebanker.enums;
+
+public enum FailureReason {
+    ACCOUNT_MISSING,    // Compte source ou cible introuvable
+    AMOUNT_INVALID,     // Montant nul ou négatif
+    INSUFFICIENT_FUNDS, // Solde insuffisant, à la validation ou sous verrou
+    UNSUPPORTED_TYPE;   // Transaction sans type
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case ACCOUNT_MISSING -> "ACCOUNT_MISSING";
+            case AMOUNT_INVALID -> "AMOUNT_INVALID";
+            case INSUFFICIENT_FUNDS -> "INSUFFICIENT_FUNDS";
+            case UNSUPPORTED_TYPE -> "UNSUPPORTED_TYPE";
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package com.corebanker.enums;
+
+public enum LegacyLogFormat {
+    TRANSACTION_LOG_TXT, // transaction_log.txt : une ligne horodatée par événement
+    TRANSACTIONS_LOG;    // transactions.log : un bloc décoré de plusieurs lignes par transaction
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case TRANSACTION_LOG_TXT -> "transaction_log.txt";
+            case TRANSACTIONS_LOG -> "transactions.log";
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package com.corebanker.enums;
+
+public enum ReplicationMode {
+    ASYNC,  // Le nœud principal n'attend pas le nœud de secours
+    SYNC;   // Une transaction n'est confirmée qu'après accusé de réception du nœud de secours
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case ASYNC -> "ASYNC";
+            case SYNC -> "SYNC";
+        };
+    }
+}
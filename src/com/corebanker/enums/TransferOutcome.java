@@ -0,0 +1,18 @@
+package com.corebanker.enums;
+
+public enum TransferOutcome {
+    APPLIED,            // Virement appliqué
+    INVALID,            // Compte manquant, montant ou type invalide, clé d'idempotence, solde cible hors limites
+    INSUFFICIENT_FUNDS, // Fonds insuffisants au moment du virement
+    BATCH_REJECTED;     // Virement valide, mais lot atomique rejeté
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case APPLIED -> "APPLIED";
+            case INVALID -> "INVALID";
+            case INSUFFICIENT_FUNDS -> "INSUFFICIENT_FUNDS";
+            case BATCH_REJECTED -> "BATCH_REJECTED";
+        };
+    }
+}
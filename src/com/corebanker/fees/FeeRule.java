@@ -0,0 +1,32 @@
+package com.corebanker.fees;
+
+import com.corebanker.enums.AccountClass;
+import com.corebanker.enums.TransactionType;
+
+/**
+ * Règle du barème de frais : palier à partir duquel elle s'applique, pour une classe de compte et un type de transaction.
+ * Les frais valent fixedFee + basisPoints × montant, bornés par [minimumFee, maximumFee], et ne dépassent jamais le montant.
+ *
+ * @param accountClass Classe du compte source, ou null pour toutes
+ * @param type Type de transaction, ou null pour tous
+ * @param fromAmount Montant minimal, en centimes, à partir duquel le palier s'applique (à tout le montant)
+ * @param basisPoints Taux en points de base (200 = 2 %)
+ * @param fixedFee Part fixe, en centimes
+ * @param minimumFee Frais minimaux, en centimes
+ * @param maximumFee Frais maximaux, en centimes (Long.MAX_VALUE : sans plafond)
+ */
+public record FeeRule(AccountClass accountClass, TransactionType type, long fromAmount, long basisPoints,
+                      long fixedFee, long minimumFee, long maximumFee) {
+    public FeeRule {
+        if (fromAmount < 0 || basisPoints < 0 || fixedFee < 0 || minimumFee < 0 || maximumFee < minimumFee) {
+            throw new IllegalArgumentException("Règle de frais invalide : montants et taux positifs, minimum inférieur au maximum.");
+        }
+    }
+
+    /**
+     * Règle proportionnelle sans part fixe ni bornes.
+     */
+    public static FeeRule rate(AccountClass accountClass, TransactionType type, long fromAmount, long basisPoints) {
+        return new FeeRule(accountClass, type, fromAmount, basisPoints, 0, 0, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,261 @@
+package com.corebanker.fees;
+
+import com.corebanker.enums.AccountClass;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Money;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Barème de frais compilé : une table immuable de paliers par classe de compte et type de transaction.
+ *
+ * Les règles sont résolues une fois pour toutes à la compilation : pour chaque couple (classe, type), les paliers
+ * viennent des règles les plus spécifiques qui existent — classe et type, puis type seul, puis classe seule, puis
+ * règles générales. Le calcul des frais se réduit alors à un accès de tableau et une recherche dichotomique parmi
+ * les paliers de ce couple, sans allocation ni verrou, quel que soit le nombre total de règles.
+ *
+ * Le barème en vigueur ({@link #getDefault()}) est remplacé d'un bloc par {@link #install(FeeSchedule)} :
+ * chaque transaction lit une seule fois la référence, et voit donc l'ancien barème ou le nouveau, jamais un mélange.
+ * Au démarrage, il est lu dans le fichier -Dcorebanker.fees.file s'il est défini (voir {@link #parse(List)}).
+ */
+public final class FeeSchedule {
+    private static final String FILE_PROPERTY = "corebanker.fees.file";
+    private static final AccountClass[] CLASSES = AccountClass.values();
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final int STRIDE = 4;
+    private static final int RATE = 0;
+    private static final int FIXED = 1;
+    private static final int MINIMUM = 2;
+    private static final int MAXIMUM = 3;
+    private static final long[] NO_TIERS = new long[0];
+
+    // Initialisé après les constantes dont compile a besoin
+    /** Barème historique : 2 % sur les transferts, aucun frais sur les autres opérations. */
+    public static final FeeSchedule STANDARD = compile(List.of(
+            FeeRule.rate(null, TransactionType.TRANSFER, 0, BankAccount.TRANSFER_FEE_BASIS_POINTS)), "barème standard");
+
+    private static volatile FeeSchedule defaultSchedule = initialSchedule();
+
+    private final long[][] thresholds; // Par couple (classe, type) : seuils croissants des paliers
+    private final long[][] terms; // Par couple : STRIDE longs par palier (taux, part fixe, minimum, maximum)
+    private final int ruleCount;
+    private final String source;
+
+    private FeeSchedule(long[][] thresholds, long[][] terms, int ruleCount, String source) {
+        this.thresholds = thresholds;
+        this.terms = terms;
+        this.ruleCount = ruleCount;
+        this.source = source;
+    }
+
+    /**
+     * @return Le barème appliqué aux transactions.
+     */
+    public static FeeSchedule getDefault() {
+        return defaultSchedule;
+    }
+
+    /**
+     * Remplace le barème appliqué aux transactions suivantes, sans redémarrage.
+     * @param schedule Le nouveau barème (null rétablit le barème STANDARD)
+     */
+    public static void install(FeeSchedule schedule) {
+        defaultSchedule = schedule != null ? schedule : STANDARD;
+    }
+
+    /**
+     * Relit le fichier -Dcorebanker.fees.file et l'installe. En cas d'erreur, le barème en vigueur est conservé.
+     * @return Le barème installé.
+     * @throws IllegalStateException si aucun fichier n'est configuré
+     */
+    public static FeeSchedule reload() throws IOException {
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file == null) {
+            throw new IllegalStateException("Aucun fichier de barème configuré (-D" + FILE_PROPERTY + ").");
+        }
+        FeeSchedule schedule = load(Paths.get(file));
+        install(schedule);
+        return schedule;
+    }
+
+    private static FeeSchedule initialSchedule() {
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file == null) {
+            return STANDARD;
+        }
+        try {
+            return load(Paths.get(file));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Barème de frais illisible (" + e.getMessage() + ") : barème standard appliqué.");
+            return STANDARD;
+        }
+    }
+
+    /**
+     * Calcule les frais d'une transaction.
+     * @param accountClass Classe du compte source
+     * @param type Type de la transaction
+     * @param amount Montant de la transaction, en centimes
+     * @return Les frais en centimes, entre 0 et le montant (0 si aucun palier ne s'applique).
+     */
+    public long feeFor(AccountClass accountClass, TransactionType type, long amount) {
+        int cell = accountClass.ordinal() * TYPES.length + type.ordinal();
+        long[] from = thresholds[cell];
+        // Dernier palier dont le seuil est inférieur ou égal au montant
+        int low = 0;
+        int high = from.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (from[middle] <= amount) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (high < 0 || amount <= 0) {
+            return 0;
+        }
+        long[] tier = terms[cell];
+        int base = high * STRIDE;
+        long fee = tier[base + FIXED];
+        if (tier[base + RATE] != 0) {
+            fee += Money.applyRate(amount, tier[base + RATE], BankAccount.FEE_ROUNDING);
+        }
+        fee = Math.min(Math.max(fee, tier[base + MINIMUM]), tier[base + MAXIMUM]);
+        return Math.min(fee, amount);
+    }
+
+    /**
+     * @return Le nombre de règles dont le barème a été compilé.
+     */
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @return L'origine du barème (fichier, ou description donnée à la compilation).
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Compile une liste de règles en barème.
+     * @param source Description de l'origine des règles, reprise dans les messages
+     * @throws IllegalArgumentException si deux règles de même portée ont le même seuil
+     */
+    public static FeeSchedule compile(List<FeeRule> rules, String source) {
+        long[][] thresholds = new long[CLASSES.length * TYPES.length][];
+        long[][] terms = new long[thresholds.length][];
+        for (AccountClass accountClass : CLASSES) {
+            for (TransactionType type : TYPES) {
+                List<FeeRule> tiers = mostSpecific(rules, accountClass, type);
+                int cell = accountClass.ordinal() * TYPES.length + type.ordinal();
+                thresholds[cell] = tiers.isEmpty() ? NO_TIERS : new long[tiers.size()];
+                terms[cell] = tiers.isEmpty() ? NO_TIERS : new long[tiers.size() * STRIDE];
+                for (int i = 0; i < tiers.size(); i++) {
+                    FeeRule rule = tiers.get(i);
+                    if (i > 0 && rule.fromAmount() == tiers.get(i - 1).fromAmount()) {
+                        throw new IllegalArgumentException(source + " : deux règles (" + describe(accountClass, type, rule)
+                                + ") ont le même seuil " + Money.format(rule.fromAmount()) + ".");
+                    }
+                    thresholds[cell][i] = rule.fromAmount();
+                    terms[cell][i * STRIDE + RATE] = rule.basisPoints();
+                    terms[cell][i * STRIDE + FIXED] = rule.fixedFee();
+                    terms[cell][i * STRIDE + MINIMUM] = rule.minimumFee();
+                    terms[cell][i * STRIDE + MAXIMUM] = rule.maximumFee();
+                }
+            }
+        }
+        return new FeeSchedule(thresholds, terms, rules.size(), source);
+    }
+
+    /**
+     * @return Les règles de la portée la plus spécifique qui s'applique au couple, triées par seuil.
+     */
+    private static List<FeeRule> mostSpecific(List<FeeRule> rules, AccountClass accountClass, TransactionType type) {
+        List<FeeRule> best = new ArrayList<>();
+        int bestRank = Integer.MAX_VALUE;
+        for (FeeRule rule : rules) {
+            if ((rule.accountClass() != null && rule.accountClass() != accountClass) || (rule.type() != null && rule.type() != type)) {
+                continue;
+            }
+            // 0 : classe et type, 1 : type seul, 2 : classe seule, 3 : règle générale
+            int rank = rule.accountClass() != null ? (rule.type() != null ? 0 : 2) : (rule.type() != null ? 1 : 3);
+            if (rank < bestRank) {
+                best.clear();
+                bestRank = rank;
+            }
+            if (rank == bestRank) {
+                best.add(rule);
+            }
+        }
+        best.sort(Comparator.comparingLong(FeeRule::fromAmount));
+        return best;
+    }
+
+    private static String describe(AccountClass accountClass, TransactionType type, FeeRule rule) {
+        return (rule.accountClass() != null ? accountClass : "*") + " " + (rule.type() != null ? type : "*");
+    }
+
+    /**
+     * Lit un barème au format texte (voir {@link #parse(List)}).
+     */
+    public static FeeSchedule load(Path file) throws IOException {
+        return compile(parse(Files.readAllLines(file, StandardCharsets.UTF_8)), file.toString());
+    }
+
+    /**
+     * Analyse les lignes d'un barème. Une règle par ligne, champs séparés par des espaces, # pour les commentaires :
+     * <pre>
+     * # classe  type      à partir de  taux (pb)  [fixe  [minimum  [maximum]]]
+     * *         TRANSFER  0            200
+     * PREMIUM   TRANSFER  0            100        0      0         5.00
+     * BUSINESS  *         10000.00     50         1.00
+     * </pre>
+     * Les montants sont en euros (deux décimales au plus), * désigne toutes les classes ou tous les types.
+     * @throws IllegalArgumentException en cas de ligne invalide, avec son numéro
+     */
+    public static List<FeeRule> parse(List<String> lines) {
+        List<FeeRule> rules = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            String content = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (content.isEmpty()) {
+                continue;
+            }
+            String[] fields = content.split("\\s+");
+            try {
+                if (fields.length < 4 || fields.length > 7) {
+                    throw new IllegalArgumentException("de 4 à 7 champs attendus");
+                }
+                rules.add(new FeeRule(
+                        fields[0].equals("*") ? null : AccountClass.valueOf(fields[0]),
+                        fields[1].equals("*") ? null : TransactionType.valueOf(fields[1]),
+                        Money.parse(fields[2]),
+                        Long.parseLong(fields[3]),
+                        fields.length > 4 ? Money.parse(fields[4]) : 0,
+                        fields.length > 5 ? Money.parse(fields[5]) : 0,
+                        fields.length > 6 ? Money.parse(fields[6]) : Long.MAX_VALUE));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                throw new IllegalArgumentException("Ligne " + (i + 1) + " du barème invalide (" + e.getMessage() + ") : " + line, e);
+            }
+        }
+        return rules;
+    }
+
+    @Override
+    public String toString() {
+        return source + " (" + ruleCount + " règle(s), " + Arrays.stream(thresholds).mapToInt(tiers -> tiers.length).sum() + " palier(s))";
+    }
+}
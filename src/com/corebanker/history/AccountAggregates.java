@@ -0,0 +1,289 @@
+package com.corebanker.history;
+
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.enums.TransactionType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Agrégats d'un compte tenus à jour à chaque transaction réussie : totaux du jour et du mois (débits, crédits, frais,
+ * nombre de mouvements) et nombre de transferts émis sur une fenêtre glissante (par défaut 10 minutes).
+ * Les frais comptés sont ceux payés par le compte, quel que soit le type : source d'un transfert ou d'un retrait,
+ * cible d'un dépôt. Les retraits ne comptent pas dans la fenêtre glissante.
+ *
+ * La mémoire est fixe par compte : une période courante par granularité et un anneau de VELOCITY_BUCKETS compteurs.
+ * La fenêtre glissante avance par tranches de VELOCITY_WINDOW_MILLIS / VELOCITY_BUCKETS : un transfert en sort
+ * au plus une tranche après la fin exacte de la fenêtre.
+ *
+ * Le résultat ne dépend pas de l'ordre d'arrivée des mouvements (un mouvement d'une période déjà close est ignoré) :
+ * JournalRecovery peut ainsi rejouer le journal en parallèle. Les jours et les mois sont ceux du fuseau
+ * -Dcorebanker.aggregates.zone (par défaut celui du système). Les accès se font sous le verrou de la tranche du compte.
+ */
+public final class AccountAggregates {
+    /** Durée de la fenêtre glissante (-Dcorebanker.aggregates.velocityWindowSeconds). */
+    public static final long VELOCITY_WINDOW_MILLIS = Math.max(1, Long.getLong("corebanker.aggregates.velocityWindowSeconds", 600)) * 1_000;
+    static final int VELOCITY_BUCKETS = 20;
+    private static final long BUCKET_MILLIS = Math.max(1, VELOCITY_WINDOW_MILLIS / VELOCITY_BUCKETS);
+    private static final long NONE = Long.MIN_VALUE;
+    static final ZoneId ZONE = ZoneId.of(System.getProperty("corebanker.aggregates.zone", ZoneId.systemDefault().getId()));
+
+    /** Nombre de longs de l'état exporté (voir {@link #export(long[])}). */
+    public static final int STATE_LONGS = 22;
+    private static final int STATE_DAY = 0;
+    private static final int STATE_MONTH = 5;
+    private static final int STATE_BUCKET_MILLIS = 10;
+    private static final int STATE_NEWEST_BUCKET = 11;
+    private static final int STATE_COUNTS = 12; // Deux compteurs int par long
+
+    private final ReentrantLock lock;
+    private final Period day = new Period(false);
+    private final Period month = new Period(true);
+    private int[] transfers; // Transferts émis par tranche, indexés par tranche modulo VELOCITY_BUCKETS ; null tant qu'aucun
+    private long newestBucket = NONE;
+    private int recentTransfers; // Somme de l'anneau
+
+    /**
+     * Totaux d'une période : un jour ou un mois civil.
+     */
+    public record Totals(long outgoing, long incoming, long fees, int outgoingCount, int incomingCount) {
+        static final Totals EMPTY = new Totals(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Totaux de la période courante d'une granularité, bornés par [start, end).
+     */
+    private static final class Period {
+        private final boolean monthly;
+        private long start = NONE;
+        private long end = NONE;
+        private long outgoing;
+        private long incoming;
+        private long fees;
+        private int outgoingCount;
+        private int incomingCount;
+
+        Period(boolean monthly) {
+            this.monthly = monthly;
+        }
+
+        void add(long timestamp, long amount, long fee, TransactionType type, boolean isOutgoing) {
+            if (start == NONE || timestamp >= end) {
+                moveTo(timestamp);
+            } else if (timestamp < start) {
+                return; // Mouvement d'une période close
+            }
+            if (isOutgoing) {
+                outgoing += amount;
+                fees += fee;
+                outgoingCount++;
+            } else {
+                incoming += amount - fee;
+                incomingCount++;
+                if (type == TransactionType.DEPOSIT) {
+                    fees += fee; // Le déposant paie les frais sur le montant crédité
+                }
+            }
+        }
+
+        /**
+         * Ouvre la période contenant l'horodatage donné, sans totaux.
+         */
+        void moveTo(long timestamp) {
+            LocalDate date = Instant.ofEpochMilli(timestamp).atZone(ZONE).toLocalDate();
+            LocalDate first = monthly ? date.withDayOfMonth(1) : date;
+            start = first.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            end = (monthly ? first.plusMonths(1) : first.plusDays(1)).atStartOfDay(ZONE).toInstant().toEpochMilli();
+            outgoing = incoming = fees = 0;
+            outgoingCount = incomingCount = 0;
+        }
+
+        Totals totalsAt(long now) {
+            return start != NONE && now >= start && now < end
+                    ? new Totals(outgoing, incoming, fees, outgoingCount, incomingCount) : Totals.EMPTY;
+        }
+
+        void export(long[] state, int base) {
+            state[base] = start;
+            state[base + 1] = outgoing;
+            state[base + 2] = incoming;
+            state[base + 3] = fees;
+            state[base + 4] = (long) outgoingCount << 32 | (incomingCount & 0xFFFFFFFFL);
+        }
+
+        void restore(long[] state, int base) {
+            if (state[base] == NONE) {
+                start = end = NONE;
+                return;
+            }
+            moveTo(state[base]);
+            outgoing = state[base + 1];
+            incoming = state[base + 2];
+            fees = state[base + 3];
+            outgoingCount = (int) (state[base + 4] >>> 32);
+            incomingCount = (int) state[base + 4];
+        }
+    }
+
+    public AccountAggregates(String accountNumber) {
+        this.lock = AccountLocks.lockFor(accountNumber);
+    }
+
+    /**
+     * Intègre un mouvement réussi du compte.
+     * @param timestamp Horodatage de la transaction, en millisecondes
+     * @param amount Montant débité de la source, en centimes
+     * @param fee Frais prélevés, en centimes (le compte cible reçoit amount - fee)
+     * @param type Type de la transaction : seuls les transferts comptent dans la fenêtre glissante
+     * @param outgoing true si le compte est la source du mouvement
+     */
+    public void record(long timestamp, long amount, long fee, TransactionType type, boolean outgoing) {
+        lock.lock();
+        try {
+            day.add(timestamp, amount, fee, type, outgoing);
+            month.add(timestamp, amount, fee, type, outgoing);
+            if (outgoing && type == TransactionType.TRANSFER) {
+                countTransfer(Math.floorDiv(timestamp, BUCKET_MILLIS));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void countTransfer(long bucket) {
+        if (transfers == null) {
+            transfers = new int[VELOCITY_BUCKETS];
+        }
+        if (newestBucket == NONE || bucket > newestBucket) {
+            advance(bucket);
+        } else if (bucket <= newestBucket - VELOCITY_BUCKETS) {
+            return; // Hors de la fenêtre
+        }
+        transfers[Math.floorMod(bucket, VELOCITY_BUCKETS)]++;
+        recentTransfers++;
+    }
+
+    /**
+     * Fait glisser l'anneau jusqu'à la tranche donnée en vidant les tranches sorties de la fenêtre.
+     */
+    private void advance(long bucket) {
+        if (newestBucket == NONE || bucket - newestBucket >= VELOCITY_BUCKETS) {
+            Arrays.fill(transfers, 0);
+            recentTransfers = 0;
+        } else {
+            for (long b = newestBucket + 1; b <= bucket; b++) {
+                int slot = Math.floorMod(b, VELOCITY_BUCKETS);
+                recentTransfers -= transfers[slot];
+                transfers[slot] = 0;
+            }
+        }
+        newestBucket = bucket;
+    }
+
+    /**
+     * @return Les totaux du jour civil contenant l'instant donné.
+     */
+    public Totals getDailyTotals(long now) {
+        lock.lock();
+        try {
+            return day.totalsAt(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Les totaux du mois civil contenant l'instant donné.
+     */
+    public Totals getMonthlyTotals(long now) {
+        lock.lock();
+        try {
+            return month.totalsAt(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre de transferts émis dans la fenêtre glissante qui se termine à l'instant donné.
+     */
+    public int getRecentTransferCount(long now) {
+        lock.lock();
+        try {
+            if (transfers == null || newestBucket == NONE) {
+                return 0;
+            }
+            long bucket = Math.floorDiv(now, BUCKET_MILLIS);
+            if (bucket >= newestBucket) {
+                advance(bucket);
+                return recentTransfers;
+            }
+            // Instant antérieur au dernier mouvement (horloge reculée) : les tranches postérieures sont exclues
+            int count = 0;
+            for (long b = newestBucket - VELOCITY_BUCKETS + 1; b <= bucket; b++) {
+                count += transfers[Math.floorMod(b, VELOCITY_BUCKETS)];
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copie l'état des agrégats, pour un instantané.
+     * @param state Tableau d'au moins STATE_LONGS éléments
+     */
+    public void export(long[] state) {
+        lock.lock();
+        try {
+            day.export(state, STATE_DAY);
+            month.export(state, STATE_MONTH);
+            state[STATE_BUCKET_MILLIS] = BUCKET_MILLIS;
+            state[STATE_NEWEST_BUCKET] = transfers != null ? newestBucket : NONE;
+            for (int i = 0; i < VELOCITY_BUCKETS / 2; i++) {
+                state[STATE_COUNTS + i] = transfers != null
+                        ? (long) transfers[2 * i + 1] << 32 | (transfers[2 * i] & 0xFFFFFFFFL) : 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remplace l'état des agrégats par un état exporté. La fenêtre glissante est ignorée si la durée
+     * de ses tranches a changé depuis l'export.
+     */
+    public void restore(long[] state) {
+        lock.lock();
+        try {
+            day.restore(state, STATE_DAY);
+            month.restore(state, STATE_MONTH);
+            transfers = null;
+            newestBucket = NONE;
+            recentTransfers = 0;
+            if (state[STATE_BUCKET_MILLIS] == BUCKET_MILLIS && state[STATE_NEWEST_BUCKET] != NONE) {
+                transfers = new int[VELOCITY_BUCKETS];
+                for (int i = 0; i < VELOCITY_BUCKETS / 2; i++) {
+                    transfers[2 * i] = (int) state[STATE_COUNTS + i];
+                    transfers[2 * i + 1] = (int) (state[STATE_COUNTS + i] >>> 32);
+                    recentTransfers += transfers[2 * i] + transfers[2 * i + 1];
+                }
+                newestBucket = state[STATE_NEWEST_BUCKET];
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Le plus ancien horodatage qui peut encore compter dans les agrégats à l'instant donné :
+     *         un mouvement antérieur n'a pas à être relu.
+     */
+    public static long horizon(long now) {
+        LocalDate monthStart = Instant.ofEpochMilli(now).atZone(ZONE).toLocalDate().withDayOfMonth(1);
+        return Math.min(monthStart.atStartOfDay(ZONE).toInstant().toEpochMilli(), now - VELOCITY_WINDOW_MILLIS - BUCKET_MILLIS);
+    }
+}
@@ -0,0 +1,349 @@
+package com.corebanker.history;
+
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Historique borné d'un compte, à deux niveaux.
+ *
+ * Les entrées récentes sont conservées en mémoire dans un tableau de long (STRIDE long par entrée),
+ * sans référence vers les comptes ni objet Transaction. Quand la fenêtre est pleine, sa plus ancienne
+ * moitié est écrite dans le fichier de débordement (HistorySpill) et chaînée aux blocs précédents du compte.
+ *
+ * Les ajouts se font sous le verrou de la tranche du compte ; les lectures copient la partie en mémoire
+ * sous ce verrou, puis lisent les blocs sur disque hors verrou (un bloc écrit n'est jamais modifié).
+ *
+ * Un compte chargé à la demande (ColdAccounts) reçoit son historique antérieur au premier accès seulement
+ * (voir {@link #deferLoad}) ; un compte mis en sommeil (AccountCache) vide sa fenêtre sur disque (voir {@link #park}).
+ */
+public final class AccountHistory {
+    /** Nombre maximal d'entrées conservées en mémoire par compte (-Dcorebanker.history.hotWindow, puissance de deux). */
+    public static final int HOT_WINDOW = Integer.highestOneBit(Math.max(2, Integer.getInteger("corebanker.history.hotWindow", 64)));
+    /** Taille en octets d'une fenêtre pleine. */
+    public static final long HOT_WINDOW_BYTES = (long) HOT_WINDOW * AccountHistory.STRIDE * Long.BYTES;
+    /** Nombre d'entrées de chaque bloc écrit sur disque : la plus ancienne moitié de la fenêtre. */
+    private static final int SPILL_BLOCK = HOT_WINDOW / 2;
+    private static final int INITIAL_CAPACITY = 4;
+
+    static final int STRIDE = 9;
+    static final int ID_MSB = 0;
+    static final int ID_LSB = 1;
+    static final int TIMESTAMP = 2;
+    static final int SEQUENCE = 3;
+    static final int COUNTERPART_HI = 4;
+    static final int COUNTERPART_LO = 5;
+    static final int AMOUNT = 6;
+    static final int FEE = 7;
+    static final int FLAGS = 8; // Type (ordinal + 1) sur 8 bits, statut (ordinal + 1) sur 8 bits, puis le sens
+    private static final int OUTGOING_BIT = 16;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final ReentrantLock lock;
+    private long[] entries; // De la plus ancienne à la plus récente ; null tant que la fenêtre est vide
+    private int count;
+    private HistorySpill spill;
+    private long spillHead = HistorySpill.NONE;
+    private long spilledCount;
+    private long spilledMaxTimestamp = Long.MIN_VALUE;
+    private long droppedCount;
+    private Runnable pendingLoad; // Chargement de l'historique antérieur, exécuté au premier accès
+
+    public AccountHistory(String accountNumber) {
+        this.lock = AccountLocks.lockFor(accountNumber);
+    }
+
+    /**
+     * Ajoute une entrée à l'historique.
+     * @param counterpartAccountNumber L'autre compte de la transaction (null s'il n'y en a pas)
+     * @param amount Montant en centimes
+     * @param fee Frais en centimes
+     * @param outgoing true si le compte a été débité
+     */
+    public void append(long idMostSigBits, long idLeastSigBits, long timestamp, long sequence, String counterpartAccountNumber,
+                       long amount, long fee, TransactionType type, TransactionStatus status, boolean outgoing) {
+        lock.lock();
+        try {
+            loadPending();
+            if (entries == null) {
+                entries = new long[Math.min(INITIAL_CAPACITY, HOT_WINDOW) * STRIDE];
+            } else if (count * STRIDE == entries.length) {
+                if (count < HOT_WINDOW) {
+                    entries = Arrays.copyOf(entries, Math.min(HOT_WINDOW, count * 2) * STRIDE);
+                } else {
+                    spillOldest(SPILL_BLOCK);
+                }
+            }
+            encode(entries, count * STRIDE, idMostSigBits, idLeastSigBits, timestamp, sequence, counterpartAccountNumber,
+                    amount, fee, type, status, outgoing);
+            count++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Écrit une entrée au format compact (STRIDE long) à partir de l'indice base.
+     */
+    static void encode(long[] entries, int base, long idMostSigBits, long idLeastSigBits, long timestamp, long sequence,
+                       String counterpartAccountNumber, long amount, long fee, TransactionType type, TransactionStatus status,
+                       boolean outgoing) {
+        entries[base + ID_MSB] = idMostSigBits;
+        entries[base + ID_LSB] = idLeastSigBits;
+        entries[base + TIMESTAMP] = timestamp;
+        entries[base + SEQUENCE] = sequence;
+        entries[base + COUNTERPART_HI] = keyHalf(counterpartAccountNumber, 0);
+        entries[base + COUNTERPART_LO] = keyHalf(counterpartAccountNumber, 8);
+        entries[base + AMOUNT] = amount;
+        entries[base + FEE] = fee;
+        entries[base + FLAGS] = (type != null ? type.ordinal() + 1 : 0)
+                | (status != null ? status.ordinal() + 1 : 0) << 8
+                | (outgoing ? 1L : 0L) << OUTGOING_BIT;
+    }
+
+    /**
+     * Diffère le chargement de l'historique antérieur au premier ajout ou à la première lecture.
+     * @param loader Ajoute les entrées antérieures (par append), de la plus ancienne à la plus récente
+     */
+    public void deferLoad(Runnable loader) {
+        lock.lock();
+        try {
+            pendingLoad = loader;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Exécute le chargement différé ; appelée sous le verrou (les append du chargement le reprennent).
+     */
+    private void loadPending() {
+        Runnable loader = pendingLoad;
+        if (loader != null) {
+            pendingLoad = null;
+            loader.run();
+        }
+    }
+
+    /**
+     * Libère la fenêtre en mémoire en l'écrivant sur disque, par blocs d'au plus une demi-fenêtre.
+     * Rien n'est fait si le débordement est désactivé ou si le chargement différé n'a pas eu lieu.
+     * @return Le nombre d'octets libérés.
+     */
+    public long park() {
+        lock.lock();
+        try {
+            if (entries == null || pendingLoad != null) {
+                return 0;
+            }
+            if (spill == null) {
+                spill = HistorySpill.getDefault();
+            }
+            if (spill == null) {
+                return 0;
+            }
+            while (count > 0) {
+                spillOldest(Math.min(count, SPILL_BLOCK));
+            }
+            long freed = (long) entries.length * Long.BYTES;
+            entries = null;
+            return freed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return La taille en octets de la fenêtre en mémoire (estimation lue sans verrou).
+     */
+    public long footprint() {
+        long[] window = entries;
+        return window != null ? (long) window.length * Long.BYTES : 0;
+    }
+
+    /**
+     * Écrit les plus anciennes entrées de la fenêtre sur disque (ou les abandonne si le débordement est désactivé).
+     * @param spilled Nombre d'entrées, au plus une demi-fenêtre (taille de bloc attendue par {@link #page})
+     */
+    private void spillOldest(int spilled) {
+        if (spill == null) {
+            spill = HistorySpill.getDefault();
+        }
+        if (spill != null) {
+            try {
+                spillHead = spill.append(spillHead, spilledMaxTimestamp, entries, spilled);
+                for (int i = 0; i < spilled; i++) {
+                    spilledMaxTimestamp = Math.max(spilledMaxTimestamp, entries[i * STRIDE + TIMESTAMP]);
+                }
+                spilledCount += spilled;
+            } catch (IOException e) {
+                EventLog.log(EventCode.HISTORY_SPILL_FAILED, e.getMessage());
+                droppedCount += spilled;
+            }
+        } else {
+            droppedCount += spilled;
+        }
+        System.arraycopy(entries, spilled * STRIDE, entries, 0, (count - spilled) * STRIDE);
+        count -= spilled;
+    }
+
+    /**
+     * @return Le nombre d'entrées consultables (en mémoire et sur disque).
+     */
+    public long size() {
+        lock.lock();
+        try {
+            loadPending();
+            return spilledCount + count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre d'entrées abandonnées faute de fichier de débordement.
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retourne une page de l'historique, de la transaction la plus récente à la plus ancienne.
+     * Seuls les blocs sur disque couvrant la page sont lus ; les blocs sautés ne sont lus que par leur en-tête.
+     * @param page Numéro de page, à partir de 0
+     * @param pageSize Nombre d'entrées par page
+     */
+    public List<HistoryEntry> page(int page, int pageSize) throws IOException {
+        List<HistoryEntry> result = new ArrayList<>(Math.min(pageSize, HOT_WINDOW));
+        long skip = (long) page * pageSize;
+        long head;
+        HistorySpill store;
+        lock.lock();
+        try {
+            loadPending();
+            for (long i = count - 1 - skip; i >= 0 && result.size() < pageSize; i--) {
+                result.add(decode(entries, (int) i * STRIDE));
+            }
+            skip = Math.max(0, skip - count);
+            head = spillHead;
+            store = spill;
+        } finally {
+            lock.unlock();
+        }
+
+        for (long offset = head; offset != HistorySpill.NONE && result.size() < pageSize; ) {
+            // Les entrées d'un bloc entièrement sauté ne sont pas lues
+            HistorySpill.Block block = store.read(offset, skip < SPILL_BLOCK);
+            if (skip >= block.count()) {
+                skip -= block.count();
+            } else {
+                for (long i = block.count() - 1 - skip; i >= 0 && result.size() < pageSize; i--) {
+                    result.add(decode(block.entries(), (int) i * STRIDE));
+                }
+                skip = 0;
+            }
+            offset = block.previous();
+        }
+        return result;
+    }
+
+    /**
+     * Retourne les transactions dont l'horodatage est compris dans [from, to), de la plus récente à la plus ancienne.
+     * Les blocs sur disque hors de l'intervalle ne sont lus que par leur en-tête, et le parcours s'arrête
+     * dès que tous les blocs restants sont antérieurs à l'intervalle.
+     * @param from Début de l'intervalle (inclus), en millisecondes
+     * @param to Fin de l'intervalle (exclue), en millisecondes
+     * @param limit Nombre maximal d'entrées retournées
+     */
+    public List<HistoryEntry> between(long from, long to, int limit) throws IOException {
+        List<HistoryEntry> result = new ArrayList<>();
+        long head;
+        HistorySpill store;
+        lock.lock();
+        try {
+            loadPending();
+            for (int i = count - 1; i >= 0 && result.size() < limit; i--) {
+                long timestamp = entries[i * STRIDE + TIMESTAMP];
+                if (timestamp >= from && timestamp < to) {
+                    result.add(decode(entries, i * STRIDE));
+                }
+            }
+            head = spillHead;
+            store = spill;
+        } finally {
+            lock.unlock();
+        }
+
+        long offset = head;
+        while (offset != HistorySpill.NONE && result.size() < limit) {
+            HistorySpill.Block block = store.read(offset, false);
+            if (block.cumulativeMaxTimestamp() < from) {
+                break; // Ce bloc et tous les précédents sont antérieurs à l'intervalle
+            }
+            if (block.maxTimestamp() >= from && block.minTimestamp() < to) {
+                long[] blockEntries = store.read(offset, true).entries();
+                for (int i = block.count() - 1; i >= 0 && result.size() < limit; i--) {
+                    long timestamp = blockEntries[i * STRIDE + TIMESTAMP];
+                    if (timestamp >= from && timestamp < to) {
+                        result.add(decode(blockEntries, i * STRIDE));
+                    }
+                }
+            }
+            offset = block.previous();
+        }
+        return result;
+    }
+
+    static HistoryEntry decode(long[] entries, int base) {
+        long flags = entries[base + FLAGS];
+        int typeCode = (int) (flags & 0xFF);
+        int statusCode = (int) ((flags >>> 8) & 0xFF);
+        return new HistoryEntry(entries[base + ID_MSB], entries[base + ID_LSB], entries[base + TIMESTAMP], entries[base + SEQUENCE],
+                keyText(entries[base + COUNTERPART_HI], entries[base + COUNTERPART_LO]), entries[base + AMOUNT], entries[base + FEE],
+                typeCode > 0 ? TYPES[typeCode - 1] : null, statusCode > 0 ? STATUSES[statusCode - 1] : null,
+                (flags >>> OUTGOING_BIT & 1) != 0);
+    }
+
+    /**
+     * Encode un numéro de compte comme le journal : 16 octets ASCII complétés par des zéros, en deux long.
+     */
+    private static long keyHalf(String accountNumber, int from) {
+        if (accountNumber == null) {
+            return 0;
+        }
+        long half = 0;
+        for (int i = from; i < from + 8; i++) {
+            half = half << 8 | (i < accountNumber.length() ? accountNumber.charAt(i) & 0xFF : 0);
+        }
+        return half;
+    }
+
+    private static String keyText(long hi, long lo) {
+        if (hi == 0 && lo == 0) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(16).putLong(0, hi).putLong(8, lo);
+        int length = 0;
+        while (length < 16 && bytes.get(length) != 0) {
+            length++;
+        }
+        return new String(bytes.array(), 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,57 @@
+package com.corebanker.history;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Historique conservé uniquement dans le fichier de débordement, sans fenêtre en mémoire.
+ *
+ * Utilisé par le stockage en colonnes (AccountStore), qui ne garde par compte que des primitifs :
+ * la position du dernier bloc, le nombre d'entrées et le plus grand horodatage. Chaque ajout écrit
+ * un bloc d'une entrée, chaîné au précédent ; l'appelant sérialise les ajouts d'un même compte.
+ */
+public final class HistoryChain {
+    private HistoryChain() {
+    }
+
+    /**
+     * Écrit une entrée en tête de la chaîne d'un compte.
+     * @param head Position du dernier bloc du compte, ou HistorySpill.NONE
+     * @param maxTimestamp Plus grand horodatage des blocs existants (Long.MIN_VALUE si aucun)
+     * @return La position du nouveau bloc, nouvelle tête de la chaîne.
+     */
+    public static long append(HistorySpill spill, long head, long maxTimestamp, long idMostSigBits, long idLeastSigBits,
+                              long timestamp, long sequence, String counterpartAccountNumber, long amount, long fee,
+                              TransactionType type, TransactionStatus status, boolean outgoing) throws IOException {
+        long[] entry = new long[AccountHistory.STRIDE];
+        AccountHistory.encode(entry, 0, idMostSigBits, idLeastSigBits, timestamp, sequence, counterpartAccountNumber,
+                amount, fee, type, status, outgoing);
+        return spill.append(head, maxTimestamp, entry, 1);
+    }
+
+    /**
+     * Retourne une page de la chaîne, de l'entrée la plus récente à la plus ancienne.
+     * @param head Position du dernier bloc du compte, ou HistorySpill.NONE
+     */
+    public static List<HistoryEntry> page(HistorySpill spill, long head, int page, int pageSize) throws IOException {
+        List<HistoryEntry> result = new ArrayList<>(Math.min(pageSize, 64));
+        long skip = (long) page * pageSize;
+        for (long offset = head; offset != HistorySpill.NONE && result.size() < pageSize; ) {
+            HistorySpill.Block block = spill.read(offset, skip == 0); // Blocs d'une entrée : un bloc sauté n'est lu que par son en-tête
+            if (skip >= block.count()) {
+                skip -= block.count();
+            } else {
+                for (long i = block.count() - 1 - skip; i >= 0 && result.size() < pageSize; i--) {
+                    result.add(AccountHistory.decode(block.entries(), (int) i * AccountHistory.STRIDE));
+                }
+                skip = 0;
+            }
+            offset = block.previous();
+        }
+        return result;
+    }
+}
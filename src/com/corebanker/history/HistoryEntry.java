@@ -0,0 +1,96 @@
+package com.corebanker.history;
+
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+
+import java.util.UUID;
+
+/**
+ * Entrée d'historique vue depuis un compte, créée uniquement à la lecture.
+ * En mémoire comme sur disque, l'historique ne stocke que des long (voir AccountHistory).
+ */
+public final class HistoryEntry {
+    private final long idMostSigBits;
+    private final long idLeastSigBits;
+    private final long timestamp;
+    private final long sequence;
+    private final String counterpartAccountNumber;
+    private final long amount;
+    private final long fee;
+    private final TransactionType type;
+    private final TransactionStatus status;
+    private final boolean outgoing;
+
+    HistoryEntry(long idMostSigBits, long idLeastSigBits, long timestamp, long sequence, String counterpartAccountNumber,
+                 long amount, long fee, TransactionType type, TransactionStatus status, boolean outgoing) {
+        this.idMostSigBits = idMostSigBits;
+        this.idLeastSigBits = idLeastSigBits;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.counterpartAccountNumber = counterpartAccountNumber;
+        this.amount = amount;
+        this.fee = fee;
+        this.type = type;
+        this.status = status;
+        this.outgoing = outgoing;
+    }
+
+    public String getTransactionId() {
+        return new UUID(idMostSigBits, idLeastSigBits).toString();
+    }
+
+    public long getIdMostSigBits() {
+        return idMostSigBits;
+    }
+
+    public long getIdLeastSigBits() {
+        return idLeastSigBits;
+    }
+
+    /**
+     * @return L'horodatage de la transaction, en millisecondes.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Le numéro de l'autre compte de la transaction (null s'il n'y en a pas).
+     */
+    public String getCounterpartAccountNumber() {
+        return counterpartAccountNumber;
+    }
+
+    /**
+     * @return Le montant de la transaction, en centimes.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return Les frais prélevés, en centimes.
+     */
+    public long getFee() {
+        return fee;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true si le compte a été débité (expéditeur), false s'il a été crédité.
+     */
+    public boolean isOutgoing() {
+        return outgoing;
+    }
+}
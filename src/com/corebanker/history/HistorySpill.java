@@ -0,0 +1,183 @@
+package com.corebanker.history;
+
+import com.corebanker.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fichier de débordement partagé par les historiques de tous les comptes.
+ *
+ * Les entrées sorties de la fenêtre en mémoire d'un compte y sont écrites par blocs, en ajout seul.
+ * Chaque bloc pointe vers le bloc précédent du même compte : la chaîne, parcourue du plus récent au plus ancien,
+ * sert d'index par compte. L'en-tête d'un bloc (nombre d'entrées, bornes d'horodatage) permet de sauter
+ * des blocs entiers sans lire leurs entrées.
+ *
+ * Ce fichier n'est qu'un cache de l'exécution en cours : la source de vérité reste le journal,
+ * et il est recréé vide à chaque ouverture.
+ *
+ * <pre>
+ * En-tête de bloc (48 octets) :
+ * 0   long  position du bloc précédent du même compte (-1 si aucun)
+ * 8   int   nombre d'entrées
+ * 16  long  plus petit horodatage du bloc
+ * 24  long  plus grand horodatage du bloc
+ * 32  long  plus grand horodatage de ce bloc et de tous les blocs précédents
+ * puis les entrées, de la plus ancienne à la plus récente, au format de AccountHistory (STRIDE long chacune).
+ * </pre>
+ */
+public final class HistorySpill implements AutoCloseable {
+    /** Position signifiant l'absence de bloc. */
+    public static final long NONE = -1;
+    static final int HEADER_SIZE = 48;
+    static final int ENTRY_SIZE = AccountHistory.STRIDE * Long.BYTES;
+
+    private static volatile HistorySpill defaultSpill;
+    private static volatile boolean defaultDisabled = !Boolean.parseBoolean(System.getProperty("corebanker.history.spill", "true"));
+
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong end = new AtomicLong();
+
+    /**
+     * En-tête d'un bloc relu, et ses entrées si elles ont été demandées.
+     */
+    record Block(long offset, long previous, int count, long minTimestamp, long maxTimestamp,
+                 long cumulativeMaxTimestamp, long[] entries) {
+    }
+
+    private HistorySpill(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Crée (ou vide) le fichier de débordement.
+     */
+    public static HistorySpill open(Path path) throws IOException {
+        return new HistorySpill(path);
+    }
+
+    /**
+     * Retourne le fichier de débordement par défaut, créé à la première utilisation
+     * (-Dcorebanker.history.file, sinon un fichier temporaire supprimé à l'arrêt).
+     * @return Le fichier, ou null si le débordement est désactivé : les entrées les plus anciennes sont alors abandonnées.
+     */
+    public static HistorySpill getDefault() {
+        HistorySpill spill = defaultSpill;
+        if (spill != null || defaultDisabled) {
+            return spill;
+        }
+        synchronized (HistorySpill.class) {
+            if (defaultSpill == null && !defaultDisabled) {
+                try {
+                    String file = System.getProperty("corebanker.history.file");
+                    HistorySpill opened = open(file != null ? Paths.get(file) : Files.createTempFile("corebanker-history", ".spill"));
+                    Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "history-shutdown"));
+                    defaultSpill = opened;
+                } catch (IOException e) {
+                    System.out.println("Erreur lors de l'ouverture du fichier d'historique : " + e.getMessage());
+                    defaultDisabled = true;
+                }
+            }
+            return defaultSpill;
+        }
+    }
+
+    /**
+     * Remplace le fichier de débordement par défaut (null pour le désactiver).
+     */
+    public static synchronized void install(HistorySpill spill) {
+        defaultSpill = spill;
+        defaultDisabled = spill == null;
+    }
+
+    /**
+     * Écrit un bloc d'entrées à la fin du fichier. Sûr en accès concurrent : chaque bloc réserve sa propre zone.
+     * @param previous Position du bloc précédent du même compte, ou NONE
+     * @param cumulativeMaxTimestamp Plus grand horodatage de ce bloc et des précédents
+     * @param entries Entrées au format de AccountHistory, à partir de l'indice 0
+     * @param count Nombre d'entrées à écrire
+     * @return La position du bloc écrit.
+     */
+    long append(long previous, long cumulativeMaxTimestamp, long[] entries, int count) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + count * ENTRY_SIZE);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long timestamp = entries[i * AccountHistory.STRIDE + AccountHistory.TIMESTAMP];
+            min = Math.min(min, timestamp);
+            max = Math.max(max, timestamp);
+        }
+        block.putLong(0, previous);
+        block.putInt(8, count);
+        block.putLong(16, min);
+        block.putLong(24, max);
+        block.putLong(32, Math.max(cumulativeMaxTimestamp, max));
+        for (int i = 0; i < count * AccountHistory.STRIDE; i++) {
+            block.putLong(HEADER_SIZE + i * Long.BYTES, entries[i]);
+        }
+
+        long offset = end.getAndAdd(block.capacity());
+        while (block.hasRemaining()) {
+            block.position(block.position() + channel.write(block, offset + block.position()));
+        }
+        return offset;
+    }
+
+    /**
+     * Relit un bloc.
+     * @param withEntries false pour ne lire que l'en-tête
+     */
+    Block read(long offset, boolean withEntries) throws IOException {
+        long start = Metrics.start();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, offset);
+        int count = header.getInt(8);
+        long[] entries = null;
+        if (withEntries) {
+            ByteBuffer body = ByteBuffer.allocate(count * ENTRY_SIZE);
+            readFully(body, offset + HEADER_SIZE);
+            entries = new long[count * AccountHistory.STRIDE];
+            body.flip();
+            body.asLongBuffer().get(entries);
+        }
+        Metrics.recordHistoryReload(start);
+        return new Block(offset, header.getLong(0), count, header.getLong(16), header.getLong(24), header.getLong(32), entries);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fin inattendue du fichier d'historique à la position " + position);
+            }
+        }
+    }
+
+    /**
+     * @return La taille occupée sur disque, en octets.
+     */
+    public long size() {
+        return end.get();
+    }
+
+    /**
+     * Ferme et supprime le fichier.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("Erreur lors de la fermeture du fichier d'historique : " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.corebanker.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Catalogue des événements journalisés, avec leur niveau et leur message.
+ *
+ * Les messages sont des modèles dont les paramètres sont remplacés par le thread consommateur :
+ * {s1}, {s2}, {s3} pour les textes, {n1}, {n2} pour les entiers, {m1}, {m2} pour les mêmes entiers
+ * affichés comme montants en centimes. Le code appelant ne concatène donc jamais de chaîne.
+ */
+public enum EventCode {
+    ACCOUNT_INVALID(Level.WARN, "Erreur : Compte invalide."),
+    ACCOUNT_DUPLICATE(Level.WARN, "Erreur : Le compte {s1} existe déjà."),
+    ACCOUNT_ADDED(Level.INFO, "Compte ajouté : {s1}"),
+    ACCOUNTS_ADDED(Level.INFO, "{n1} compte(s) ajouté(s) sur {n2}."),
+
+    DEPOSIT_INVALID(Level.WARN, "Erreur : Le montant du dépôt doit être positif ({s1})."),
+    DEPOSIT_SUCCEEDED(Level.INFO, "Dépôt de {m1} € réussi sur {s1}. Nouveau solde : {m2}"),
+    WITHDRAWAL_INVALID(Level.WARN, "Erreur : Le montant du retrait doit être positif ({s1})."),
+    WITHDRAWAL_INSUFFICIENT_FUNDS(Level.WARN, "Erreur : Fonds insuffisants sur {s1} pour un retrait de {m1} €. Solde : {m2} €."),
+    WITHDRAWAL_SUCCEEDED(Level.INFO, "Retrait de {m1} € réussi sur {s1}. Nouveau solde : {m2}"),
+
+    TRANSACTION_ACCOUNT_MISSING(Level.WARN, "⚠️ Erreur : Impossible de retrouver un ou plusieurs comptes ! (transaction {s1})"),
+    TRANSACTION_AMOUNT_INVALID(Level.WARN, "❌ Erreur : Montant de transaction invalide ({s1})."),
+    TRANSACTION_INSUFFICIENT_FUNDS(Level.WARN, "❌ Échec de la transaction : fonds insuffisants sur le compte de {s1}"),
+    TRANSACTION_CANCELLED(Level.WARN, "❌ La transaction {s1} a été annulée."),
+    TRANSACTION_FEE(Level.INFO, "Frais de transaction : {m1} €. Montant après frais : {m2} €."),
+    TRANSACTION_SUCCEEDED(Level.INFO, "Transaction réussie. ID: {s1}"),
+    TRANSACTION_REJECTED(Level.WARN, "❌ Erreur : Fonds insuffisants pour effectuer la transaction {s1}."),
+    TRANSACTION_DUPLICATE(Level.INFO, "Transaction {s1} déjà soumise : résultat précédent retourné."),
+    TRANSACTION_KEY_CONFLICT(Level.WARN, "❌ Clé d'idempotence de la transaction {s1} réutilisée pour une autre demande : refusée."),
+    BATCH_EXECUTED(Level.INFO, "Lot de {n1} virement(s) exécuté : {n2} appliqué(s)."),
+    BATCH_REJECTED(Level.WARN, "Lot atomique de {n1} virement(s) rejeté : {s1}"),
+    SHARD_STEP_FAILED(Level.ERROR, "Erreur sur la partition {s1} : {s2}"),
+    PIPELINE_STEP_FAILED(Level.ERROR, "Erreur à l'étape {s1} du pipeline : {s2}"),
+    JOURNAL_WRITE_FAILED(Level.ERROR, "Erreur lors de l'écriture dans le journal des transactions : {s1}"),
+    JOURNAL_FAILED(Level.ERROR, "Journal des transactions en échec, écritures refusées : {s1}"),
+    JOURNAL_LISTENER_FAILED(Level.ERROR, "Erreur de l'observateur du journal, ignorée : {s1}"),
+    REPLICATION_STANDBY_CONNECTED(Level.INFO, "Nœud de secours connecté : {n1} compte(s) transmis, séquence {n2}."),
+    REPLICATION_STANDBY_LOST(Level.WARN, "Nœud de secours abandonné : {s1}"),
+    REPLICATION_DIVERGED(Level.ERROR, "Nœud de secours divergent, suivi interrompu : {s1}"),
+    REPLICATION_PRIMARY_LOST(Level.WARN, "Liaison avec le nœud principal perdue : {s1}"),
+    REPLICATION_PROMOTED(Level.INFO, "Nœud de secours promu en {n1} µs, après {n2} enregistrement(s) répliqué(s)."),
+
+    LEGACY_LOOKUP(Level.DEBUG, "🔍 Recherche des comptes pour la transaction {s1} : expéditeur {s2}, destinataire {s3}"),
+    LEGACY_DATE_INVALID(Level.WARN, "Erreur de format de date dans les logs : {s1}"),
+
+    HISTORY_SPILL_FAILED(Level.ERROR, "Erreur lors de l'écriture de l'historique sur disque : {s1}"),
+
+    SERVER_STARTED(Level.INFO, "Service HTTP démarré sur le port {n1} ({s1})."),
+    SERVER_REQUEST_FAILED(Level.ERROR, "Erreur lors du traitement de la requête {s1} : {s2}");
+
+    static final int TEXT = 0;
+    static final int S1 = 1;
+    static final int S2 = 2;
+    static final int S3 = 3;
+    static final int N1 = 4;
+    static final int N2 = 5;
+    static final int M1 = 6;
+    static final int M2 = 7;
+
+    private final Level level;
+    private final String template;
+    // Modèle découpé une fois pour toutes : parts[i] est un texte fixe si kinds[i] == TEXT, sinon un paramètre
+    private final String[] parts;
+    private final int[] kinds;
+
+    // Les constantes d'une énumération sont construites avant ses champs statiques : le tableau est donc porté par une classe imbriquée
+    private static final class Placeholders {
+        static final String[] NAMES = {null, "{s1}", "{s2}", "{s3}", "{n1}", "{n2}", "{m1}", "{m2}"};
+    }
+
+    EventCode(Level level, String template) {
+        this.level = level;
+        this.template = template;
+        List<String> parsedParts = new ArrayList<>();
+        List<Integer> parsedKinds = new ArrayList<>();
+        int from = 0;
+        while (from < template.length()) {
+            int next = template.length();
+            int kind = TEXT;
+            for (int k = S1; k < Placeholders.NAMES.length; k++) {
+                int index = template.indexOf(Placeholders.NAMES[k], from);
+                if (index >= 0 && index < next) {
+                    next = index;
+                    kind = k;
+                }
+            }
+            if (next > from) {
+                parsedParts.add(template.substring(from, next));
+                parsedKinds.add(TEXT);
+            }
+            if (kind != TEXT) {
+                parsedParts.add(null);
+                parsedKinds.add(kind);
+                next += Placeholders.NAMES[kind].length();
+            }
+            from = next;
+        }
+        this.parts = parsedParts.toArray(new String[0]);
+        this.kinds = parsedKinds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    String[] parts() {
+        return parts;
+    }
+
+    int[] kinds() {
+        return kinds;
+    }
+}
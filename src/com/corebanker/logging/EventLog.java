@@ -0,0 +1,251 @@
+package com.corebanker.logging;
+
+import com.corebanker.models.Money;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Journalisation asynchrone des événements applicatifs.
+ *
+ * Les threads métier ne formatent rien et n'écrivent rien : ils réservent un emplacement préalloué
+ * d'un tampon circulaire (un incrément atomique), y copient le code de l'événement et ses paramètres
+ * (références de chaînes existantes et long), puis le publient. Un thread consommateur unique formate
+ * les événements dans l'ordre et les transmet au LogSink.
+ *
+ * Un événement dont le niveau est désactivé coûte une lecture volatile et une comparaison.
+ * Si le tampon est plein, le producteur attend que le consommateur libère un emplacement : aucun événement n'est perdu.
+ *
+ * Configuration : -Dcorebanker.log.level (DEBUG, INFO, WARN, ERROR, OFF ; INFO par défaut),
+ * -Dcorebanker.log.bufferSize (puissance de deux, 8192 par défaut).
+ */
+public final class EventLog {
+    private static final int BUFFER_SIZE = Integer.highestOneBit(Math.max(2, Integer.getInteger("corebanker.log.bufferSize", 8192)));
+    private static final int MASK = BUFFER_SIZE - 1;
+    private static final int SPINS_BEFORE_PARK = 200;
+    private static final long PARK_NANOS = 200_000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.")
+            .withZone(ZoneId.systemDefault());
+
+    private static volatile int threshold = Level.valueOf(System.getProperty("corebanker.log.level", "INFO").toUpperCase()).ordinal();
+    private static volatile LogSink sink = new StreamSink(System.out);
+
+    private static final Event[] slots = new Event[BUFFER_SIZE];
+    private static final AtomicLong claimed = new AtomicLong(); // Prochaine séquence à réserver
+    private static volatile long consumed; // Toutes les séquences inférieures ont été formatées
+    private static volatile long flushed; // Toutes les séquences inférieures ont été transmises au LogSink et vidées
+    private static volatile Thread consumer;
+    // Utilisés par le seul thread consommateur : la date n'est reformatée qu'une fois par seconde
+    private static long formattedSecond = Long.MIN_VALUE;
+    private static String formattedPrefix;
+
+    /**
+     * Emplacement préalloué du tampon. Les champs sont écrits par le producteur avant la publication
+     * (écriture volatile de sequence) et lus par le consommateur après l'avoir observée.
+     */
+    private static final class Event {
+        volatile long sequence = -1;
+        EventCode code;
+        long timestamp;
+        String text1;
+        String text2;
+        String text3;
+        long number1;
+        long number2;
+    }
+
+    static {
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            slots[i] = new Event();
+        }
+    }
+
+    private EventLog() {
+    }
+
+    /**
+     * @return true si les événements de ce niveau sont journalisés.
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public static Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    /**
+     * Remplace la destination des événements ; les événements en attente sont d'abord transmis à l'ancienne.
+     */
+    public static synchronized void setSink(LogSink newSink) {
+        flush();
+        sink = newSink;
+    }
+
+    public static void log(EventCode code) {
+        if (code.getLevel().ordinal() >= threshold) {
+            publish(code, null, null, null, 0, 0);
+        }
+    }
+
+    public static void log(EventCode code, String text1) {
+        if (code.getLevel().ordinal() >= threshold) {
+            publish(code, text1, null, null, 0, 0);
+        }
+    }
+
+    public static void log(EventCode code, long number1, long number2) {
+        if (code.getLevel().ordinal() >= threshold) {
+            publish(code, null, null, null, number1, number2);
+        }
+    }
+
+    public static void log(EventCode code, String text1, long number1, long number2) {
+        if (code.getLevel().ordinal() >= threshold) {
+            publish(code, text1, null, null, number1, number2);
+        }
+    }
+
+    public static void log(EventCode code, String text1, String text2, String text3) {
+        if (code.getLevel().ordinal() >= threshold) {
+            publish(code, text1, text2, text3, 0, 0);
+        }
+    }
+
+    private static void publish(EventCode code, String text1, String text2, String text3, long number1, long number2) {
+        if (consumer == null) {
+            startConsumer();
+        }
+        long sequence = claimed.getAndIncrement();
+        // Attente tant que l'emplacement n'a pas été libéré par le consommateur
+        for (int spins = 0; sequence - consumed >= BUFFER_SIZE; spins++) {
+            if (spins < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        Event event = slots[(int) sequence & MASK];
+        event.code = code;
+        event.timestamp = System.currentTimeMillis();
+        event.text1 = text1;
+        event.text2 = text2;
+        event.text3 = text3;
+        event.number1 = number1;
+        event.number2 = number2;
+        event.sequence = sequence; // Publication
+    }
+
+    /**
+     * Attend que tous les événements publiés avant l'appel aient été écrits et vidés dans le LogSink.
+     * Utile avant un affichage direct sur la même sortie, ou avant l'arrêt.
+     */
+    public static void flush() {
+        long target = claimed.get();
+        if (consumer == null) {
+            return;
+        }
+        while (flushed < target) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private static synchronized void startConsumer() {
+        if (consumer != null) {
+            return;
+        }
+        Thread thread = new Thread(EventLog::consume, "event-log");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(EventLog::flush, "event-log-shutdown"));
+        consumer = thread;
+    }
+
+    /**
+     * Boucle du consommateur : formate les événements dans l'ordre des séquences, vide le LogSink dès que le tampon est vide.
+     */
+    private static void consume() {
+        StringBuilder line = new StringBuilder(256);
+        long next = 0;
+        int idle = 0;
+        boolean dirty = false;
+        while (true) {
+            Event event = slots[(int) next & MASK];
+            if (event.sequence != next) {
+                if (dirty) {
+                    flushSink();
+                    dirty = false;
+                }
+                flushed = next;
+                if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                continue;
+            }
+            idle = 0;
+            line.setLength(0);
+            format(event, line);
+            event.text1 = null; // Ne pas retenir les chaînes au-delà de leur utilisation
+            event.text2 = null;
+            event.text3 = null;
+            consumed = ++next;
+            try {
+                sink.write(line);
+                dirty = true;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erreur lors de l'écriture du journal applicatif : " + e.getMessage());
+            }
+        }
+    }
+
+    private static void flushSink() {
+        try {
+            sink.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erreur lors de l'écriture du journal applicatif : " + e.getMessage());
+        }
+    }
+
+    private static void format(Event event, StringBuilder line) {
+        EventCode code = event.code;
+        long second = Math.floorDiv(event.timestamp, 1000);
+        if (second != formattedSecond) {
+            formattedPrefix = TIME_FORMAT.format(Instant.ofEpochSecond(second));
+            formattedSecond = second;
+        }
+        int millis = Math.floorMod(event.timestamp, 1000);
+        line.append(formattedPrefix).append(millis < 100 ? (millis < 10 ? "00" : "0") : "").append(millis);
+        line.append(' ').append(code.getLevel().name());
+        for (int pad = code.getLevel().name().length(); pad < 5; pad++) {
+            line.append(' ');
+        }
+        line.append(' ').append(code.name()).append(' ');
+
+        String[] parts = code.parts();
+        int[] kinds = code.kinds();
+        for (int i = 0; i < parts.length; i++) {
+            switch (kinds[i]) {
+                case EventCode.TEXT -> line.append(parts[i]);
+                case EventCode.S1 -> line.append(event.text1);
+                case EventCode.S2 -> line.append(event.text2);
+                case EventCode.S3 -> line.append(event.text3);
+                case EventCode.N1 -> line.append(event.number1);
+                case EventCode.N2 -> line.append(event.number2);
+                case EventCode.M1 -> Money.appendTo(line, event.number1);
+                case EventCode.M2 -> Money.appendTo(line, event.number2);
+                default -> throw new IllegalStateException("Paramètre inconnu : " + kinds[i]);
+            }
+        }
+    }
+}
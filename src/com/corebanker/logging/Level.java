@@ -0,0 +1,13 @@
+package com.corebanker.logging;
+
+/**
+ * Niveaux de gravité des événements, du plus détaillé au plus grave.
+ * OFF désactive toute journalisation.
+ */
+public enum Level {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+}
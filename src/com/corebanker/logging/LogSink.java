@@ -0,0 +1,19 @@
+package com.corebanker.logging;
+
+import java.io.IOException;
+
+/**
+ * Destination des lignes formatées par le thread consommateur de EventLog.
+ * Les méthodes ne sont appelées que depuis ce thread : une implémentation n'a pas besoin d'être synchronisée.
+ */
+public interface LogSink {
+    /**
+     * Écrit une ligne (sans fin de ligne). Le tampon est réutilisé après l'appel.
+     */
+    void write(StringBuilder line) throws IOException;
+
+    /**
+     * Appelée lorsque le tampon d'événements est vide.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,28 @@
+package com.corebanker.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Écrit les lignes dans un flux (la sortie standard par défaut), via un tampon vidé à chaque accalmie.
+ */
+public final class StreamSink implements LogSink {
+    private final BufferedWriter writer;
+
+    public StreamSink(OutputStream stream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public void write(StringBuilder line) throws IOException {
+        writer.append(line).append('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,247 @@
+package com.corebanker.managers;
+
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.metrics.Metrics;
+import com.corebanker.models.BankAccount;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mise en sommeil des comptes peu utilisés, sous un budget d'historique (-Dcorebanker.accounts.historyBytes,
+ * un quart du tas par défaut). Ce n'est pas un budget de mémoire : seul l'historique est libéré, pas les comptes.
+ *
+ * Les comptes éveillés forment un anneau parcouru par une aiguille (algorithme CLOCK, approximation de LRU) :
+ * chaque accès (findAccountByNumber, transaction) positionne le bit de référence du compte ; l'aiguille l'efface
+ * au passage et endort les comptes qu'elle retrouve sans accès depuis son tour précédent. Un accès ne coûte
+ * qu'une lecture de champ quand le bit est déjà positionné : ni verrou, ni liste à réordonner.
+ *
+ * Un compte endormi reste enregistré, car des appelants peuvent encore le détenir et le modifier : seule sa fenêtre
+ * d'historique est écrite dans le fichier de débordement (AccountHistory.park) et relue à la demande. Le budget porte donc
+ * sur les fenêtres d'historique des comptes éveillés, recomptées quand elles grandissent et à chaque passage
+ * de l'aiguille. Les objets BankAccount eux-mêmes (solde, agrégats) ne sont ni comptés ni libérés :
+ * un compte chargé ne retourne jamais dans ColdAccounts, dont la table n'est pas tenue à jour des mouvements ultérieurs,
+ * et le recharger créerait une seconde copie à côté de celle que détient encore un appelant. Le nombre de comptes
+ * résidents croît donc avec l'ensemble des comptes touchés depuis le démarrage ; seul le chargement à la demande le borne.
+ */
+public final class AccountCache {
+    public static final long DEFAULT_BUDGET_BYTES = Long.getLong("corebanker.accounts.historyBytes", Runtime.getRuntime().maxMemory() / 4);
+
+    private static final double SWEEP_TARGET = 0.9; // L'aiguille s'arrête sous 90 % du budget
+
+    private static volatile AccountCache defaultCache = new AccountCache(DEFAULT_BUDGET_BYTES);
+
+    private final long budgetBytes;
+    private final ConcurrentLinkedQueue<BankAccount> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicInteger awake = new AtomicInteger();
+    private final ReentrantLock hand = new ReentrantLock();
+
+    /**
+     * @param budgetBytes Taille maximale des fenêtres d'historique des comptes éveillés, en octets
+     */
+    public AccountCache(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Le budget d'historique doit être positif");
+        }
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return Le cache utilisé par BankAccountManager, ou null si aucun compte n'est jamais endormi.
+     */
+    public static AccountCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Remplace le cache par défaut (null pour garder tous les comptes éveillés).
+     * À faire sur un registre vide : les comptes déjà enregistrés ne sont pas repris.
+     */
+    public static void install(AccountCache cache) {
+        defaultCache = cache;
+    }
+
+    /**
+     * Signale un accès au compte au cache par défaut (voir {@link #access}).
+     */
+    public static void touch(BankAccount account) {
+        AccountCache cache = defaultCache;
+        if (cache != null) {
+            cache.access(account);
+        }
+    }
+
+    /**
+     * Recompte la fenêtre d'historique d'un compte qui vient de grandir, dans le cache par défaut.
+     */
+    public static void grown(BankAccount account) {
+        AccountCache cache = defaultCache;
+        if (cache != null) {
+            cache.recharge(account);
+        }
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * @return La taille des fenêtres d'historique des comptes éveillés, en octets.
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public int getAwakeCount() {
+        return awake.get();
+    }
+
+    /**
+     * Ajoute un compte éveillé à l'anneau (compte créé, restauré ou chargé à la demande).
+     * Ne doit pas être appelée sous un verrou de compte : l'aiguille peut démarrer.
+     */
+    public void admit(BankAccount account) {
+        long charge = account.getHistory().footprint();
+        account.setChargedBytes(charge);
+        account.markReferenced();
+        awake.incrementAndGet();
+        clock.offer(account);
+        if (usedBytes.addAndGet(charge) > budgetBytes) {
+            sweep();
+        }
+    }
+
+    /**
+     * Enregistre un accès : positionne le bit de référence et réveille le compte s'il dormait.
+     * @return true si le compte a été réveillé.
+     */
+    public boolean access(BankAccount account) {
+        account.markReferenced();
+        if (!account.isDormant()) {
+            return false;
+        }
+        ReentrantLock lock = AccountLocks.lockFor(account.getAccountNumber());
+        lock.lock();
+        try {
+            if (!account.isDormant()) {
+                return false; // Réveillé entre-temps par un autre thread
+            }
+            account.setDormant(false);
+        } finally {
+            lock.unlock();
+        }
+        Metrics.recordAccountWake();
+        admit(account);
+        return true;
+    }
+
+    /**
+     * Recompte la fenêtre d'un compte éveillé sous le verrou de l'aiguille, comme le fait son passage.
+     * Si l'aiguille tourne déjà, elle recomptera le compte à son passage.
+     */
+    private void recharge(BankAccount account) {
+        if (!hand.tryLock()) {
+            return;
+        }
+        long used;
+        try {
+            if (account.isDormant() || account.getChargedBytes() < 0) {
+                return; // Compte endormi ou hors de l'anneau (non enregistré)
+            }
+            long charge = account.getHistory().footprint();
+            used = usedBytes.addAndGet(charge - account.getChargedBytes());
+            account.setChargedBytes(charge);
+        } finally {
+            hand.unlock();
+        }
+        if (used > budgetBytes) {
+            sweep();
+        }
+    }
+
+    /**
+     * Fait tourner l'aiguille jusqu'à repasser sous le budget. Un seul thread à la fois : les autres poursuivent.
+     */
+    private void sweep() {
+        if (!hand.tryLock()) {
+            return;
+        }
+        try {
+            long target = (long) (budgetBytes * SWEEP_TARGET);
+            int visits = 2 * awake.get() + 1; // Deux tours suffisent : le premier efface les bits de référence
+            while (usedBytes.get() > target && visits-- > 0) {
+                BankAccount account = clock.poll();
+                if (account == null) {
+                    break;
+                }
+                long charge = account.getHistory().footprint();
+                usedBytes.addAndGet(charge - account.getChargedBytes());
+                account.setChargedBytes(charge);
+                if (account.clearReferenced() || !sleep(account)) {
+                    clock.offer(account);
+                }
+            }
+        } finally {
+            hand.unlock();
+        }
+    }
+
+    /**
+     * Endort un compte sous son verrou, sans attendre : un compte verrouillé est en cours d'utilisation
+     * (et attendre exposerait à un interblocage avec le thread qui a déclenché l'aiguille).
+     * @return false si le compte est resté éveillé.
+     */
+    private boolean sleep(BankAccount account) {
+        ReentrantLock lock = AccountLocks.lockFor(account.getAccountNumber());
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            if (account.isReferenced()) {
+                return false; // Accès entre-temps
+            }
+            account.getHistory().park();
+            account.setDormant(true);
+        } finally {
+            lock.unlock();
+        }
+        usedBytes.addAndGet(-account.getChargedBytes());
+        account.setChargedBytes(0);
+        awake.decrementAndGet();
+        Metrics.recordAccountSleep();
+        return true;
+    }
+
+    /**
+     * Retire un compte de l'anneau (ouverture annulée, voir BankAccountManager). Parcours linéaire : réservé aux échecs.
+     */
+    public void forget(BankAccount account) {
+        hand.lock();
+        try {
+            if (clock.remove(account)) {
+                usedBytes.addAndGet(-account.getChargedBytes());
+                awake.decrementAndGet();
+            }
+            account.setChargedBytes(-1);
+        } finally {
+            hand.unlock();
+        }
+    }
+
+    /**
+     * Oublie tous les comptes (registre vidé).
+     */
+    public void clear() {
+        hand.lock();
+        try {
+            clock.clear();
+            usedBytes.set(0);
+            awake.set(0);
+        } finally {
+            hand.unlock();
+        }
+    }
+}
@@ -1,44 +1,346 @@
 package com.corebanker.managers;
 
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.metrics.Metrics;
 import com.corebanker.models.BankAccount;
+import com.corebanker.persistence.ColdAccounts;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.JournalWriteException;
+import com.corebanker.persistence.TransactionJournal;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BankAccountManager {
-    private final static List<BankAccount> accounts = new ArrayList<>();
+    // Index principal : numéro de compte → compte (table de hachage : la latence croît malgré tout avec la taille
+    // du registre, qui sort des caches du processeur ; voir AccountLookupBenchmark)
+    private final static Map<String, BankAccount> accounts = new ConcurrentHashMap<>();
+    // Index secondaire : propriétaire → comptes détenus
+    private final static Map<String, Set<BankAccount>> accountsByOwner = new ConcurrentHashMap<>();
+    // Comptes relus au démarrage et pas encore chargés (null si tous sont en mémoire)
+    private static volatile ColdAccounts cold;
 
 
     /**
      * Méthode pour ajouter un compte.
      * @param account Le compte à ajouter.
+     * @throws JournalWriteException si l'ouverture n'a pas pu être rendue durable (le compte est alors retiré du registre)
      */
     public static void addAccount(BankAccount account) {
-        if (account != null) {
-            accounts.add(account);
-            System.out.println("Compte ajouté : " + account.getAccountNumber());
+        if (account == null) {
+            EventLog.log(EventCode.ACCOUNT_INVALID);
+            return;
+        }
+
+        if (accounts.containsKey(account.getAccountNumber())) {
+            EventLog.log(EventCode.ACCOUNT_DUPLICATE, account.getAccountNumber());
+            return;
+        }
+
+        TransactionJournal journal = TransactionJournal.getDefault();
+        int move = journal != null ? journal.openMove() : 0;
+        JournalRecord opening = journal != null ? openingRecord(journal, account) : null;
+
+        if (register(account)) {
+            // Journalisé après l'enregistrement : un instantané pris entre-temps voit déjà le compte
+            if (opening != null) {
+                persistOpenings(journal, move, List.of(opening), List.of(account));
+            }
+            EventLog.log(EventCode.ACCOUNT_ADDED, account.getAccountNumber());
         } else {
-            System.out.println("Erreur : Compte invalide.");
+            if (journal != null) {
+                journal.closeMove(move, true);
+            }
+            EventLog.log(EventCode.ACCOUNT_DUPLICATE, account.getAccountNumber());
         }
     }
 
+    /**
+     * Enregistre un lot de comptes en une seule passe ; les ouvertures sont journalisées en une seule soumission.
+     * @param newAccounts Les comptes à ajouter.
+     * @return Le nombre de comptes effectivement enregistrés.
+     * @throws JournalWriteException si les ouvertures n'ont pas pu être rendues durables (les comptes du lot sont alors retirés du registre)
+     */
+    public static int addAccounts(Collection<BankAccount> newAccounts) {
+        TransactionJournal journal = TransactionJournal.getDefault();
+        int move = journal != null ? journal.openMove() : 0;
+        List<JournalRecord> openings = new ArrayList<>(newAccounts.size());
+        List<BankAccount> registered = new ArrayList<>(newAccounts.size());
+        int added = 0;
+        for (BankAccount account : newAccounts) {
+            if (account == null || accounts.containsKey(account.getAccountNumber())) {
+                continue;
+            }
+            JournalRecord opening = journal != null ? openingRecord(journal, account) : null;
+            if (register(account)) {
+                added++;
+                registered.add(account);
+                if (opening != null) {
+                    openings.add(opening);
+                }
+            }
+        }
+        if (journal != null) {
+            persistOpenings(journal, move, openings, registered); // Une seule soumission pour tout le lot
+        }
+
+        EventLog.log(EventCode.ACCOUNTS_ADDED, added, newAccounts.size());
+        return added;
+    }
+
+    /**
+     * Journalise des ouvertures déjà enregistrées et attend leur durabilité ; en cas d'échec, les comptes sont retirés
+     * du registre. Le mouvement déclaré au journal (openMove : un instantané voit le compte avant qu'il soit durable)
+     * est clos dans tous les cas.
+     */
+    private static void persistOpenings(TransactionJournal journal, int move, List<JournalRecord> openings, List<BankAccount> opened) {
+        boolean durable = false;
+        try {
+            journal.appendAll(openings).join();
+            durable = true;
+        } catch (CompletionException e) {
+            unregister(opened, e);
+        } finally {
+            journal.closeMove(move, durable);
+        }
+    }
+
+    /**
+     * Retire du registre des comptes dont l'ouverture n'a pas pu être journalisée, puis signale l'échec.
+     */
+    private static void unregister(List<BankAccount> opened, CompletionException failure) {
+        AccountCache cache = AccountCache.getDefault();
+        for (BankAccount account : opened) {
+            accounts.remove(account.getAccountNumber(), account);
+            Set<BankAccount> owned = accountsByOwner.get(account.getOwner());
+            if (owned != null) {
+                owned.remove(account);
+            }
+            if (cache != null) {
+                cache.forget(account);
+            }
+        }
+        EventLog.log(EventCode.JOURNAL_WRITE_FAILED, String.valueOf(failure.getCause().getMessage()));
+        throw new JournalWriteException(failure.getCause());
+    }
+
+    /**
+     * Réserve la séquence d'ouverture du compte et prépare l'enregistrement correspondant.
+     */
+    private static JournalRecord openingRecord(TransactionJournal journal, BankAccount account) {
+        ReentrantLock lock = AccountLocks.lockFor(account.getAccountNumber());
+        lock.lock();
+        try {
+            account.markApplied(journal.reserveSequence());
+            return JournalRecord.forAccountOpened(account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Réenregistre des comptes relus depuis le journal, sans les journaliser à nouveau.
+     * @param restored Les comptes reconstitués.
+     * @return Le nombre de comptes effectivement enregistrés.
+     */
+    public static int restoreAccounts(Collection<BankAccount> restored) {
+        int added = 0;
+        for (BankAccount account : restored) {
+            if (account != null && register(account)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Confie au registre les comptes relus au démarrage sans les charger (JournalRecovery) :
+     * chacun sera reconstruit à son premier accès.
+     * @return Le nombre de comptes confiés.
+     */
+    public static int restoreCold(ColdAccounts reserve) {
+        cold = reserve;
+        return reserve.remaining();
+    }
+
+    /**
+     * Insère le compte dans les deux index et le confie à AccountCache.
+     * @return false si un compte portant le même numéro est déjà enregistré (chargé ou non).
+     */
+    private static boolean register(BankAccount account) {
+        ColdAccounts reserve = cold;
+        if (reserve != null && reserve.contains(account.getAccountNumber())) {
+            return false;
+        }
+        if (!index(account)) {
+            return false;
+        }
+        AccountCache cache = AccountCache.getDefault();
+        if (cache != null) {
+            cache.admit(account);
+        }
+        return true;
+    }
+
+    private static boolean index(BankAccount account) {
+        if (accounts.putIfAbsent(account.getAccountNumber(), account) != null) {
+            return false;
+        }
+        accountsByOwner.computeIfAbsent(account.getOwner(), owner -> ConcurrentHashMap.newKeySet()).add(account);
+        return true;
+    }
+
+    /**
+     * Charge un compte pas encore reconstruit, sous le verrou de sa tranche.
+     * @return Le compte, ou null s'il n'existe pas.
+     */
+    private static BankAccount load(ColdAccounts reserve, String accountNumber) {
+        BankAccount account;
+        ReentrantLock lock = AccountLocks.lockFor(accountNumber);
+        lock.lock();
+        try {
+            account = accounts.get(accountNumber);
+            if (account != null) {
+                return account; // Chargé entre-temps par un autre thread
+            }
+            account = reserve.take(accountNumber);
+            if (account == null) {
+                return null;
+            }
+            index(account);
+        } finally {
+            lock.unlock();
+        }
+        Metrics.recordAccountLoad();
+        AccountCache cache = AccountCache.getDefault();
+        if (cache != null) {
+            cache.admit(account); // Hors verrou : l'aiguille peut démarrer
+        }
+        return account;
+    }
+
     /**
      * Méthode pour rechercher un compte par son numéro.
+     * Un compte relu au démarrage est reconstruit au premier appel ; un compte endormi par AccountCache est réveillé.
+     * Aucune sortie console : cette méthode est sur le chemin critique des transactions.
      * @param accountNumber L'identifiant du compte.
+     * @return Le compte, ou null s'il n'existe pas.
      */
     public static BankAccount findAccountByNumber(String accountNumber) {
-        if (accountNumber == null || accountNumber.isEmpty()) {
-            System.out.println("Erreur : Numéro de compte invalide.");
+        if (accountNumber == null) {
             return null;
         }
+        long start = Metrics.startLookup();
+        BankAccount account = accounts.get(accountNumber);
+        if (account != null) {
+            AccountCache cache = AccountCache.getDefault();
+            if (cache == null || !cache.access(account)) {
+                Metrics.recordAccountHit();
+            }
+        } else {
+            ColdAccounts reserve = cold;
+            if (reserve != null) {
+                account = load(reserve, accountNumber);
+            }
+        }
+        Metrics.recordLookup(account != null, start);
+        return account;
+    }
 
-        for (BankAccount account : accounts) {
-            System.out.println("Recherche du compte : " + account.getAccountNumber());
-            if (account.getAccountNumber().equals(accountNumber)) {
-                return account;
+    /**
+     * Méthode pour rechercher les comptes d'un propriétaire.
+     * @param owner Le nom du propriétaire.
+     * @return Une vue non modifiable des comptes, éventuellement vide.
+     */
+    public static Set<BankAccount> findAccountsByOwner(String owner) {
+        if (owner == null) {
+            return Collections.emptySet();
+        }
+        ColdAccounts reserve = cold;
+        if (reserve != null) {
+            for (String accountNumber : reserve.accountNumbersOf(owner)) {
+                findAccountByNumber(accountNumber); // Charge les comptes du propriétaire pas encore reconstruits
             }
         }
+        Set<BankAccount> owned = accountsByOwner.get(owner);
+        return owned != null ? Collections.unmodifiableSet(owned) : Collections.emptySet();
+    }
+
+    /**
+     * @return true si un compte porte ce numéro, chargé ou non (sans le charger ni le réveiller).
+     */
+    public static boolean isRegistered(String accountNumber) {
+        ColdAccounts reserve = cold;
+        return accounts.containsKey(accountNumber) || reserve != null && reserve.contains(accountNumber);
+    }
+
+    /**
+     * @return Le nombre de comptes enregistrés, chargés ou non.
+     */
+    public static int getAccountCount() {
+        ColdAccounts reserve = cold;
+        return accounts.size() + (reserve != null ? reserve.remaining() : 0);
+    }
+
+    /**
+     * @return Une copie de la liste des comptes chargés en mémoire.
+     */
+    public static List<BankAccount> getAllAccounts() {
+        return List.copyOf(accounts.values());
+    }
+
+    /**
+     * Parcourt tous les comptes sans les charger : ceux qui ne sont pas encore reconstruits sont fournis en copies
+     * non enregistrées (voir ColdAccounts.copies), puis viennent les comptes en mémoire.
+     * Un compte chargé pendant le parcours figure dans l'une ou l'autre partie.
+     */
+    public static Iterable<BankAccount> allAccounts() {
+        ColdAccounts reserve = cold;
+        if (reserve == null) {
+            return accounts.values();
+        }
+        return () -> new Iterator<>() {
+            private final Iterator<BankAccount> copies = reserve.copies();
+            private Iterator<BankAccount> loaded; // Créé après les copies, pour voir les comptes chargés entre-temps
+
+            @Override
+            public boolean hasNext() {
+                if (copies.hasNext()) {
+                    return true;
+                }
+                if (loaded == null) {
+                    loaded = accounts.values().iterator();
+                }
+                return loaded.hasNext();
+            }
 
-        System.out.println("Compte non trouvé : " + accountNumber);
-        return null; // Retourne null si le compte n'est pas trouvé
+            @Override
+            public BankAccount next() {
+                return hasNext() && loaded == null ? copies.next() : loaded.next();
+            }
+        };
+    }
+
+    /**
+     * Vide le registre (utilisé par les benchmarks et la récupération).
+     */
+    public static void clear() {
+        accounts.clear();
+        accountsByOwner.clear();
+        cold = null;
+        AccountCache cache = AccountCache.getDefault();
+        if (cache != null) {
+            cache.clear();
+        }
     }
 }
@@ -0,0 +1,113 @@
+package com.corebanker.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences à précision relative constante, dans l'esprit de HdrHistogram.
+ *
+ * Chaque puissance de deux est découpée en 32 sous-intervalles linéaires : une valeur est restituée à 3 % près,
+ * de la nanoseconde à la vingtaine de minutes, avec un tableau fixe d'environ 1 200 compteurs.
+ * L'enregistrement est sans verrou ni allocation (un incrément atomique par valeur) ; la lecture parcourt
+ * les compteurs sans bloquer les écrivains et peut donc refléter un enregistrement en cours.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40; // 2^41 ns ≈ 36 minutes : au-delà, la valeur est plafonnée
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Enregistre une durée.
+     * @param nanos Durée en nanosecondes (une valeur négative, due à un changement d'horloge, compte pour 0)
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return La somme des durées enregistrées, en nanosecondes.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return La plus grande durée enregistrée, en nanosecondes.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile Rang entre 0 et 1 (0,99 pour le 99e centile)
+     * @return La durée, en nanosecondes, sous laquelle se trouve la proportion demandée des valeurs (0 si vide).
+     */
+    public long valueAt(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Remet l'histogramme à zéro. Les enregistrements concurrents peuvent être perdus ou comptés partiellement.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long lowest = (long) ((bucket & (SUB_COUNT - 1)) | SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,455 @@
+package com.corebanker.metrics;
+
+import com.corebanker.enums.FailureReason;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation intégrée : compteurs et histogrammes de latence des chemins critiques.
+ *
+ * Les enregistrements sont sans verrou (LongAdder, LatencyHistogram) et sans allocation. Les métriques sont lues
+ * à la demande : par JMX (com.corebanker:type=Metrics, voir {@link #registerMBean()}) ou au format texte
+ * d'exposition Prometheus (voir {@link #writeText(StringBuilder)}, servi par BankingServer sur GET /metrics).
+ *
+ * Les compteurs sont exacts ; les latences des opérations brèves sont échantillonnées, la lecture de l'horloge
+ * (System.nanoTime, plusieurs dizaines de nanosecondes selon la machine) coûtant autant qu'une partie de l'opération.
+ *
+ * Propriétés système :
+ * corebanker.metrics.enabled (true par défaut) active l'instrumentation ;
+ * corebanker.metrics.transactionSampling (8 par défaut) : une transaction sur N est chronométrée ;
+ * corebanker.metrics.lookupSampling (64 par défaut) : une recherche de compte sur N est chronométrée.
+ */
+public final class Metrics {
+    public static final String OBJECT_NAME = "com.corebanker:type=Metrics";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final FailureReason[] REASONS = FailureReason.values();
+    private static final int TRANSACTION_SAMPLING = Math.max(1, Integer.getInteger("corebanker.metrics.transactionSampling", 8));
+    private static final int LOOKUP_SAMPLING = Math.max(1, Integer.getInteger("corebanker.metrics.lookupSampling", 64));
+
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("corebanker.metrics.enabled", "true"));
+
+    private static final LongAdder[][] TRANSACTION_COUNTS = new LongAdder[TYPES.length][STATUSES.length];
+    private static final LatencyHistogram[][] TRANSACTIONS = new LatencyHistogram[TYPES.length][STATUSES.length];
+    private static final LongAdder[] FAILURES = new LongAdder[REASONS.length];
+    private static final LongAdder DUPLICATES = new LongAdder();
+    private static final LongAdder LOOKUP_HITS = new LongAdder();
+    private static final LongAdder LOOKUP_MISSES = new LongAdder();
+    private static final LatencyHistogram LOOKUPS = new LatencyHistogram();
+    private static final LongAdder ACCOUNT_HITS = new LongAdder();
+    private static final LongAdder ACCOUNT_WAKES = new LongAdder();
+    private static final LongAdder ACCOUNT_LOADS = new LongAdder();
+    private static final LongAdder ACCOUNT_SLEEPS = new LongAdder();
+    private static final LongAdder JOURNAL_RECORDS = new LongAdder();
+    private static final LongAdder JOURNAL_FAILURES = new LongAdder();
+    private static final LatencyHistogram JOURNAL_WRITES = new LatencyHistogram();
+    private static final LatencyHistogram HISTORY_RELOADS = new LatencyHistogram();
+    private static final LatencyHistogram RECOVERIES = new LatencyHistogram();
+
+    static {
+        for (int t = 0; t < TYPES.length; t++) {
+            for (int s = 0; s < STATUSES.length; s++) {
+                TRANSACTION_COUNTS[t][s] = new LongAdder();
+                TRANSACTIONS[t][s] = new LatencyHistogram();
+            }
+        }
+        for (int r = 0; r < REASONS.length; r++) {
+            FAILURES[r] = new LongAdder();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Active ou désactive l'instrumentation (les valeurs déjà relevées sont conservées).
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * @return L'instant de début d'une opération chronométrée, ou 0 si l'instrumentation est désactivée.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return L'instant de début si cette transaction est échantillonnée pour l'histogramme, 0 sinon.
+     */
+    public static long startTransaction() {
+        return enabled && sampled(TRANSACTION_SAMPLING) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Compte une transaction exécutée selon son type et son statut final, et enregistre sa durée si elle est échantillonnée.
+     * @param start Valeur retournée par {@link #startTransaction()}
+     */
+    public static void recordTransaction(TransactionType type, TransactionStatus status, long start) {
+        if (!enabled || type == null || status == null) {
+            return;
+        }
+        TRANSACTION_COUNTS[type.ordinal()][status.ordinal()].increment();
+        if (start != 0) {
+            TRANSACTIONS[type.ordinal()][status.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    public static void recordFailure(FailureReason reason) {
+        if (enabled) {
+            FAILURES[reason.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Compte une soumission idempotente répétée, dont le résultat a été repris sans réexécution.
+     */
+    public static void recordDuplicate() {
+        if (enabled) {
+            DUPLICATES.increment();
+        }
+    }
+
+    /**
+     * @return L'instant de début si cette recherche est échantillonnée pour l'histogramme, 0 sinon.
+     */
+    public static long startLookup() {
+        return enabled && sampled(LOOKUP_SAMPLING) ? System.nanoTime() : 0;
+    }
+
+    private static boolean sampled(int rate) {
+        return rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+
+    public static void recordLookup(boolean found, long start) {
+        if (!enabled) {
+            return;
+        }
+        (found ? LOOKUP_HITS : LOOKUP_MISSES).increment();
+        if (start != 0) {
+            LOOKUPS.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Compte trouvé éveillé en mémoire (AccountCache).
+     */
+    public static void recordAccountHit() {
+        if (enabled) {
+            ACCOUNT_HITS.increment();
+        }
+    }
+
+    /**
+     * Compte endormi réveillé par un accès (AccountCache).
+     */
+    public static void recordAccountWake() {
+        if (enabled) {
+            ACCOUNT_WAKES.increment();
+        }
+    }
+
+    /**
+     * Compte chargé à la demande depuis l'état relu au démarrage (ColdAccounts).
+     */
+    public static void recordAccountLoad() {
+        if (enabled) {
+            ACCOUNT_LOADS.increment();
+        }
+    }
+
+    public static void recordAccountSleep() {
+        if (enabled) {
+            ACCOUNT_SLEEPS.increment();
+        }
+    }
+
+    /**
+     * @return La part des accès servis par un compte éveillé, sans rechargement (1 s'il n'y a eu aucun accès).
+     */
+    public static double getAccountCacheHitRatio() {
+        long hits = ACCOUNT_HITS.sum();
+        long total = hits + ACCOUNT_WAKES.sum() + ACCOUNT_LOADS.sum();
+        return total == 0 ? 1 : (double) hits / total;
+    }
+
+    /**
+     * Enregistre l'écriture d'un lot par le journal, fsync compris.
+     * @param records Nombre d'enregistrements du lot
+     * @param succeeded false si l'écriture a échoué
+     */
+    public static void recordJournalWrite(int records, boolean succeeded, long start) {
+        if (start == 0) {
+            return;
+        }
+        JOURNAL_WRITES.record(System.nanoTime() - start);
+        if (succeeded) {
+            JOURNAL_RECORDS.add(records);
+        } else {
+            JOURNAL_FAILURES.increment();
+        }
+    }
+
+    /**
+     * Enregistre la relecture d'un bloc d'historique sur disque.
+     */
+    public static void recordHistoryReload(long start) {
+        if (start != 0) {
+            HISTORY_RELOADS.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Enregistre la durée d'une reconstruction de l'état au démarrage (JournalRecovery).
+     */
+    public static void recordRecovery(long elapsedNanos) {
+        if (enabled) {
+            RECOVERIES.record(elapsedNanos);
+        }
+    }
+
+    public static long getTransactionCount(TransactionType type, TransactionStatus status) {
+        return TRANSACTION_COUNTS[type.ordinal()][status.ordinal()].sum();
+    }
+
+    public static LatencyHistogram transactionLatency(TransactionType type, TransactionStatus status) {
+        return TRANSACTIONS[type.ordinal()][status.ordinal()];
+    }
+
+    public static long getFailureCount(FailureReason reason) {
+        return FAILURES[reason.ordinal()].sum();
+    }
+
+    /**
+     * Remet toutes les métriques à zéro.
+     */
+    public static void reset() {
+        for (LongAdder[] row : TRANSACTION_COUNTS) {
+            for (LongAdder counter : row) {
+                counter.reset();
+            }
+        }
+        for (LatencyHistogram[] row : TRANSACTIONS) {
+            for (LatencyHistogram histogram : row) {
+                histogram.reset();
+            }
+        }
+        for (LongAdder failures : FAILURES) {
+            failures.reset();
+        }
+        for (LongAdder counter : new LongAdder[]{DUPLICATES, LOOKUP_HITS, LOOKUP_MISSES, ACCOUNT_HITS, ACCOUNT_WAKES,
+                ACCOUNT_LOADS, ACCOUNT_SLEEPS, JOURNAL_RECORDS, JOURNAL_FAILURES}) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : new LatencyHistogram[]{LOOKUPS, JOURNAL_WRITES, HISTORY_RELOADS, RECOVERIES}) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Écrit toutes les métriques au format texte d'exposition Prometheus (version 0.0.4).
+     * Les latences sont des résumés en secondes ; les combinaisons type/statut jamais observées sont omises.
+     */
+    public static void writeText(StringBuilder out) {
+        header(out, "corebanker_transactions_total", "counter", "Transactions exécutées par processTransaction, par type et statut final");
+        for (TransactionType type : TYPES) {
+            for (TransactionStatus status : STATUSES) {
+                long count = getTransactionCount(type, status);
+                if (count > 0) {
+                    out.append("corebanker_transactions_total{type=\"").append(type).append("\",status=\"").append(status)
+                            .append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+        header(out, "corebanker_transaction_latency_seconds", "summary",
+                "Durée de processTransaction par type et statut final (échantillon 1/" + TRANSACTION_SAMPLING + ")");
+        for (TransactionType type : TYPES) {
+            for (TransactionStatus status : STATUSES) {
+                LatencyHistogram histogram = transactionLatency(type, status);
+                if (histogram.getCount() > 0) {
+                    summary(out, "corebanker_transaction_latency_seconds", "type=\"" + type + "\",status=\"" + status + "\"", histogram);
+                }
+            }
+        }
+        header(out, "corebanker_transaction_failures_total", "counter", "Transactions refusées, par motif");
+        for (FailureReason reason : REASONS) {
+            out.append("corebanker_transaction_failures_total{reason=\"").append(reason).append("\"} ")
+                    .append(getFailureCount(reason)).append('\n');
+        }
+        counter(out, "corebanker_transaction_duplicates_total", "Soumissions idempotentes répétées, non réexécutées", DUPLICATES.sum());
+
+        header(out, "corebanker_account_lookups_total", "counter", "Recherches de compte par numéro");
+        out.append("corebanker_account_lookups_total{result=\"hit\"} ").append(LOOKUP_HITS.sum()).append('\n');
+        out.append("corebanker_account_lookups_total{result=\"miss\"} ").append(LOOKUP_MISSES.sum()).append('\n');
+        header(out, "corebanker_account_lookup_latency_seconds", "summary", "Durée de findAccountByNumber (échantillon 1/" + LOOKUP_SAMPLING + ")");
+        summary(out, "corebanker_account_lookup_latency_seconds", null, LOOKUPS);
+        header(out, "corebanker_account_cache_total", "counter", "Accès aux comptes : éveillé, réveillé ou chargé à la demande");
+        out.append("corebanker_account_cache_total{result=\"hit\"} ").append(ACCOUNT_HITS.sum()).append('\n');
+        out.append("corebanker_account_cache_total{result=\"wake\"} ").append(ACCOUNT_WAKES.sum()).append('\n');
+        out.append("corebanker_account_cache_total{result=\"load\"} ").append(ACCOUNT_LOADS.sum()).append('\n');
+        counter(out, "corebanker_account_cache_sleeps_total", "Comptes endormis sous le budget d'historique", ACCOUNT_SLEEPS.sum());
+        header(out, "corebanker_account_cache_hit_ratio", "gauge", "Part des accès servis sans rechargement");
+        out.append("corebanker_account_cache_hit_ratio ").append(getAccountCacheHitRatio()).append('\n');
+
+        counter(out, "corebanker_journal_records_total", "Enregistrements rendus durables par le journal", JOURNAL_RECORDS.sum());
+        counter(out, "corebanker_journal_write_failures_total", "Lots dont l'écriture a échoué", JOURNAL_FAILURES.sum());
+        header(out, "corebanker_journal_write_latency_seconds", "summary", "Durée d'écriture d'un lot du journal, fsync compris");
+        summary(out, "corebanker_journal_write_latency_seconds", null, JOURNAL_WRITES);
+
+        header(out, "corebanker_history_reload_latency_seconds", "summary", "Durée de relecture d'un bloc d'historique sur disque");
+        summary(out, "corebanker_history_reload_latency_seconds", null, HISTORY_RELOADS);
+        header(out, "corebanker_recovery_duration_seconds", "summary", "Durée de reconstruction de l'état au démarrage");
+        summary(out, "corebanker_recovery_duration_seconds", null, RECOVERIES);
+    }
+
+    /**
+     * @return Les métriques au format texte Prometheus.
+     */
+    public static String toText() {
+        StringBuilder out = new StringBuilder(8_192);
+        writeText(out);
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels != null ? labels + "," : "";
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(prefix).append("quantile=\"").append(quantile).append("\"} ");
+            seconds(out, histogram.valueAt(quantile)).append('\n');
+        }
+        String suffix = labels != null ? "{" + labels + "} " : " ";
+        seconds(out.append(name).append("_sum").append(suffix), histogram.getSum()).append('\n');
+        out.append(name).append("_count").append(suffix).append(histogram.getCount()).append('\n');
+    }
+
+    private static StringBuilder seconds(StringBuilder out, long nanos) {
+        return out.append(String.format(Locale.ROOT, "%.9f", nanos / 1e9));
+    }
+
+    /**
+     * Enregistre les métriques auprès du serveur JMX de la plateforme (sans effet si c'est déjà fait).
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Bean(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Impossible d'enregistrer les métriques JMX : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Vue JMX des métriques ; les latences sont exprimées en microsecondes.
+     */
+    private static final class Bean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean value) {
+            Metrics.setEnabled(value);
+        }
+
+        @Override
+        public long getTransactionCount() {
+            long total = 0;
+            for (LongAdder[] row : TRANSACTION_COUNTS) {
+                for (LongAdder counter : row) {
+                    total += counter.sum();
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public Map<String, Long> getFailureCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (FailureReason reason : REASONS) {
+                counts.put(reason.toString(), getFailureCount(reason));
+            }
+            counts.put("DUPLICATE", DUPLICATES.sum());
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getLatencyMicros() {
+            Map<String, Double> latencies = new LinkedHashMap<>();
+            for (TransactionType type : TYPES) {
+                for (TransactionStatus status : STATUSES) {
+                    LatencyHistogram histogram = transactionLatency(type, status);
+                    if (histogram.getCount() > 0) {
+                        percentiles(latencies, "transaction." + type + "." + status, histogram);
+                    }
+                }
+            }
+            percentiles(latencies, "lookup", LOOKUPS);
+            percentiles(latencies, "journalWrite", JOURNAL_WRITES);
+            percentiles(latencies, "historyReload", HISTORY_RELOADS);
+            return latencies;
+        }
+
+        @Override
+        public long getLookupCount() {
+            return LOOKUP_HITS.sum() + LOOKUP_MISSES.sum();
+        }
+
+        @Override
+        public double getAccountCacheHitRatio() {
+            return Metrics.getAccountCacheHitRatio();
+        }
+
+        @Override
+        public long getJournalRecordCount() {
+            return JOURNAL_RECORDS.sum();
+        }
+
+        @Override
+        public String getText() {
+            return toText();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+
+        private static void percentiles(Map<String, Double> latencies, String prefix, LatencyHistogram histogram) {
+            for (int q = 0; q < QUANTILES.length; q++) {
+                latencies.put(prefix + "." + QUANTILE_NAMES[q], histogram.valueAt(QUANTILES[q]) / 1e3);
+            }
+            latencies.put(prefix + ".max", histogram.getMax() / 1e3);
+        }
+    }
+}
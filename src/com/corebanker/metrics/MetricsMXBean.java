@@ -0,0 +1,43 @@
+package com.corebanker.metrics;
+
+import java.util.Map;
+
+/**
+ * Interface JMX des métriques (com.corebanker:type=Metrics), consultable avec JConsole ou VisualVM.
+ */
+public interface MetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return Le nombre de transactions exécutées par processTransaction, tous statuts confondus.
+     */
+    long getTransactionCount();
+
+    /**
+     * @return Les refus par motif, et le nombre de soumissions idempotentes répétées (DUPLICATE).
+     */
+    Map<String, Long> getFailureCounts();
+
+    /**
+     * @return Les centiles de latence en microsecondes, par exemple transaction.TRANSFER.SUCCEEDED.p99.
+     */
+    Map<String, Double> getLatencyMicros();
+
+    long getLookupCount();
+
+    /**
+     * @return La part des accès aux comptes servis sans rechargement (voir AccountCache).
+     */
+    double getAccountCacheHitRatio();
+
+    long getJournalRecordCount();
+
+    /**
+     * @return Toutes les métriques au format texte Prometheus, comme GET /metrics.
+     */
+    String getText();
+
+    void reset();
+}
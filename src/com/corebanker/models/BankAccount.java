@@ -1,34 +1,92 @@
 package com.corebanker.models;
 
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.enums.AccountClass;
 import com.corebanker.enums.TransactionStatus;
 import com.corebanker.enums.TransactionType;
+import com.corebanker.fees.FeeSchedule;
+import com.corebanker.history.AccountAggregates;
+import com.corebanker.history.AccountHistory;
+import com.corebanker.history.HistoryEntry;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.managers.AccountCache;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.persistence.JournalRecord;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BankAccount {
+    /** Frais de transfert du barème standard : 2 % du montant, arrondis au centime le plus proche (au pair en cas d'égalité). */
+    public static final long TRANSFER_FEE_BASIS_POINTS = 200;
+    public static final RoundingMode FEE_ROUNDING = RoundingMode.HALF_EVEN;
+
     private final String accountNumber;
     private final String owner;
-    private double balance;
-    private final List<Transaction> transactionHistory; // Historique des transactions
+    private final AccountClass accountClass; // Détermine le barème de frais, fixée à l'ouverture
+    private volatile long balance; // En centimes, modifié uniquement sous le verrou du compte (AccountLocks)
+    private volatile long lastSequence; // Séquence du dernier mouvement journalisé appliqué au compte
+    private final AccountHistory history; // Historique borné : fenêtre récente en mémoire, le reste sur disque
+    private final AccountAggregates aggregates; // Totaux du jour, du mois et fenêtre glissante, tenus à jour à chaque mouvement
+    // Tenus par AccountCache : accès depuis le dernier passage de l'aiguille, mise en sommeil, empreinte comptée
+    private volatile boolean referenced;
+    private volatile boolean dormant;
+    private long chargedBytes = -1; // -1 : jamais admis dans AccountCache
 
     /**
      * Constructeur du compte bancaire
      * @param owner Nom du propriétaire
-     * @param initialBalance Solde initial du compte
+     * @param initialBalance Solde initial du compte, en centimes (voir Money)
+     */
+    public BankAccount(String owner, long initialBalance) {
+        this(owner, initialBalance, AccountClass.STANDARD);
+    }
+
+    /**
+     * Constructeur d'un compte d'une classe donnée.
+     * @param accountClass Classe du compte, qui détermine ses frais (voir FeeSchedule)
+     * @throws IllegalArgumentException si le nom du propriétaire dépasse JournalRecord.MAX_OWNER_BYTES octets
+     */
+    public BankAccount(String owner, long initialBalance, AccountClass accountClass) {
+        this(generateAccountNumber(), checkOwner(owner), accountClass, initialBalance, 0);
+    }
+
+    /**
+     * Constructeur d'un compte dont le numéro est déjà connu.
+     * L'historique est reconstruit séparément, en une seule passe, par JournalRecovery.
      */
-    public BankAccount(String owner, double initialBalance) {
-        this.accountNumber = generateAccountNumber();
+    private BankAccount(String accountNumber, String owner, AccountClass accountClass, long balance, long lastSequence) {
+        this.accountNumber = accountNumber;
         this.owner = owner;
-        this.balance = initialBalance;
-        this.transactionHistory = new ArrayList<>(); // Initialisation de l'historique
+        this.accountClass = accountClass;
+        this.balance = balance;
+        this.lastSequence = lastSequence;
+        this.history = new AccountHistory(accountNumber); // Initialisation de l'historique
+        this.aggregates = new AccountAggregates(accountNumber);
+    }
 
-        // Charger les transactions sauvegardées
-        loadTransactionHistory();
+    /**
+     * Recrée un compte existant à partir de l'état relu dans le journal.
+     * @param accountNumber Numéro du compte
+     * @param owner Nom du propriétaire
+     * @param balance Solde reconstitué, en centimes
+     * @param lastSequence Séquence du dernier mouvement intégré au solde
+     */
+    public static BankAccount restore(String accountNumber, String owner, long balance, long lastSequence) {
+        return restore(accountNumber, owner, AccountClass.STANDARD, balance, lastSequence);
+    }
+
+    /**
+     * Recrée un compte existant d'une classe donnée à partir de l'état relu dans le journal.
+     */
+    public static BankAccount restore(String accountNumber, String owner, AccountClass accountClass, long balance, long lastSequence) {
+        return new BankAccount(accountNumber, owner, accountClass, balance, lastSequence);
     }
 
     // Méthode pour récupérer le numéro de compte, utilisée plus tard
@@ -40,142 +98,282 @@ public class BankAccount {
         return owner;
     }
 
-    public double getBalance() {
+    public AccountClass getAccountClass() {
+        return accountClass;
+    }
+
+    /**
+     * @return Le solde en centimes.
+     */
+    public long getBalance() {
         return balance;
     }
 
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
     /**
-     * Ajoute une transaction à l'historique du compte.
+     * Enregistre la séquence du journal attribuée au dernier mouvement du compte.
+     * Doit être appelée sous le verrou du compte, dans la même section critique que le mouvement.
+     * @param sequence La séquence réservée (ignorée si nulle : persistance désactivée).
+     */
+    public void markApplied(long sequence) {
+        if (sequence > lastSequence) {
+            lastSequence = sequence;
+        }
+    }
+
+    /**
+     * Ajoute une transaction à l'historique du compte, sous forme compacte, et l'intègre aux agrégats si elle a réussi.
+     * Compte pour un accès dans AccountCache, qui est averti si la fenêtre d'historique grandit.
      * @param transaction La transaction à ajouter.
      */
     public void addTransactionToHistory(Transaction transaction) {
-        transactionHistory.add(transaction);
-    }
-
-    /**
-     * Charge l’historique des transactions depuis le fichier transactions.log
-     */
-    private void loadTransactionHistory() {
-        try (BufferedReader br = new BufferedReader(new FileReader("transactions.log"))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Chaque ligne du fichier log est sous la forme : transactionId, timestamp, source, target, amount, type, status
-                String[] data = line.split(",");
-
-                if (data.length == 7) {
-                    String transactionId = data[0];  // ID de transaction
-                    String timestamp = data[1];      // Date de la transaction
-                    String sourceOwner = data[2];    // Propriétaire du compte source
-                    String targetOwner = data[3];    // Propriétaire du compte cible
-                    double amount = Double.parseDouble(data[4]); // Montant de la transaction
-                    TransactionType type = TransactionType.valueOf(data[5].toUpperCase()); // Type de la transaction (ex: TRANSFER)
-                    TransactionStatus status = TransactionStatus.valueOf(data[6].toUpperCase()); // Statut de la transaction (ex: PENDING)
-
-                    // Vérifie si cette transaction concerne CE compte
-                    BankAccount source = this.owner.equals(sourceOwner) ? this : null;
-                    BankAccount target = this.owner.equals(targetOwner) ? this : null;
-
-                    if (source != null || target != null) {
-                        // Utilise la méthode fromLog pour recréer la transaction
-                        Transaction transaction = Transaction.fromLog(transactionId, timestamp, sourceOwner, targetOwner, amount, type, status);
-                        if (transaction != null) {
-                            this.transactionHistory.add(transaction);
-                        }
-                    }
-                }
-            }
-        } catch (FileNotFoundException e) {
-            System.out.println("Aucune transaction enregistrée (fichier transactions.log introuvable).");
-        } catch (Exception e) {
-            System.out.println("Erreur lors du chargement de l'historique des transactions : " + e.getMessage());
+        AccountCache.touch(this);
+        long footprint = history.footprint();
+        UUID id = UUID.fromString(transaction.getTransactionId());
+        boolean outgoing = transaction.getSourceAccount() == this;
+        BankAccount counterpart = outgoing ? transaction.getTargetAccount() : transaction.getSourceAccount();
+        long timestamp = transaction.getTransactionDate().getTime();
+        history.append(id.getMostSignificantBits(), id.getLeastSignificantBits(), timestamp,
+                transaction.getSequence(), counterpart != null ? counterpart.getAccountNumber() : null,
+                transaction.getAmount(), transaction.getFee(), transaction.getTransactionType(), transaction.getStatus(), outgoing);
+        if (history.footprint() > footprint) {
+            AccountCache.grown(this); // Fenêtre agrandie ou historique différé relu
         }
+        if (transaction.getStatus() == TransactionStatus.SUCCEEDED) {
+            aggregates.record(timestamp, transaction.getAmount(), transaction.getFee(), transaction.getTransactionType(), outgoing);
+        }
+    }
+
+    public boolean isReferenced() {
+        return referenced;
+    }
+
+    /**
+     * Positionne le bit de référence d'AccountCache ; aucune écriture s'il l'est déjà.
+     */
+    public void markReferenced() {
+        if (!referenced) {
+            referenced = true;
+        }
+    }
+
+    /**
+     * Efface le bit de référence (passage de l'aiguille d'AccountCache).
+     * @return true si le compte avait été utilisé depuis le passage précédent.
+     */
+    public boolean clearReferenced() {
+        boolean wasReferenced = referenced;
+        if (wasReferenced) {
+            referenced = false;
+        }
+        return wasReferenced;
+    }
+
+    /**
+     * @return true si le compte est endormi par AccountCache (fenêtre d'historique sur disque).
+     */
+    public boolean isDormant() {
+        return dormant;
     }
 
+    /**
+     * Modifié par AccountCache, sous le verrou du compte.
+     */
+    public void setDormant(boolean dormant) {
+        this.dormant = dormant;
+    }
+
+    /**
+     * @return La taille de la fenêtre d'historique comptée par AccountCache pour ce compte, en octets (-1 s'il n'y a jamais été admis).
+     */
+    public long getChargedBytes() {
+        return chargedBytes;
+    }
+
+    public void setChargedBytes(long chargedBytes) {
+        this.chargedBytes = chargedBytes;
+    }
+
+    public AccountHistory getHistory() {
+        return history;
+    }
 
     /**
-     * Affiche l'historique des transactions du compte.
+     * @return Les agrégats du compte (totaux du jour et du mois, transferts récents), lisibles en temps constant.
      */
-    public void displayTransactionHistory() {
+    public AccountAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Retourne les dernières transactions de l'historique, de la plus récente à la plus ancienne.
+     * @param limit Nombre maximal de transactions retournées.
+     */
+    public List<HistoryEntry> getRecentHistory(int limit) throws IOException {
+        return history.page(0, limit);
+    }
+
+    /**
+     * Affiche une page de l'historique des transactions du compte, de la plus récente à la plus ancienne.
+     * @param page Numéro de page, à partir de 0
+     * @param pageSize Nombre de transactions par page
+     */
+    public void displayTransactionHistory(int page, int pageSize) {
         System.out.println("\n=== 📜 Historique des transactions pour " + owner + " 📜 ===");
 
-        if (transactionHistory == null || transactionHistory.isEmpty()) {
+        List<HistoryEntry> entries;
+        try {
+            entries = history.page(page, pageSize);
+        } catch (IOException e) {
+            System.out.println("Erreur lors de la lecture de l'historique : " + e.getMessage());
+            return;
+        }
+        if (entries.isEmpty()) {
             System.out.println("⚠️ Aucun historique de transaction disponible.");
             return;
         }
 
-        for (Transaction transaction : transactionHistory) {
+        long total = history.size();
+        System.out.println("Page " + (page + 1) + "/" + ((total + pageSize - 1) / pageSize) + " (" + total + " transaction(s))");
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (HistoryEntry entry : entries) {
+            String counterpart = describe(entry.getCounterpartAccountNumber());
+            String self = owner + " (" + accountNumber + ")";
             System.out.println("══════════════════════════════════════════════════");
-            System.out.println("🆔 ID de transaction : " + transaction.getTransactionId());
-            System.out.println("📅 Date et Heure    : " + transaction.getTransactionDate());
-            System.out.println("📤 Expéditeur       : " + transaction.getSourceOwner() + " (" + transaction.getSourceAccount().getAccountNumber() + ")");
-            System.out.println("📥 Destinataire     : " + transaction.getTargetOwner() + " (" + transaction.getTargetAccount().getAccountNumber() + ")");
-            System.out.println("💰 Montant Transféré: " + transaction.getAmount() + " €");
+            System.out.println("🆔 ID de transaction : " + entry.getTransactionId());
+            System.out.println("📅 Date et Heure    : " + format.format(new Date(entry.getTimestamp())));
+            System.out.println("📤 Expéditeur       : " + (entry.isOutgoing() ? self : counterpart));
+            System.out.println("📥 Destinataire     : " + (entry.isOutgoing() ? counterpart : self));
+            System.out.println("💰 Montant Transféré: " + Money.format(entry.getAmount()) + " " + Money.CURRENCY_SYMBOL);
             System.out.println("══════════════════════════════════════════════════");
         }
     }
 
+    private static String describe(String accountNumber) {
+        if (accountNumber == null) {
+            return "Guichet (dépôt ou retrait)";
+        }
+        BankAccount account = BankAccountManager.findAccountByNumber(accountNumber);
+        return (account != null ? account.getOwner() : "Compte inconnu") + " (" + accountNumber + ")";
+    }
 
-
+    /**
+     * Refuse un nom qui serait tronqué dans le journal : relu, le compte aurait un autre propriétaire.
+     */
+    private static String checkOwner(String owner) {
+        if (!JournalRecord.fitsOwner(owner)) {
+            throw new IllegalArgumentException("Nom du propriétaire trop long (" + JournalRecord.MAX_OWNER_BYTES + " octets au plus)");
+        }
+        return owner;
+    }
 
     /**
-     * Génère un numéro de compte unique au format CB-XXXXXXXX.
+     * Génère un numéro de compte au format CB-XXXXXXXX, absent du registre (comptes chargés ou non).
+     * Le numéro ne porte que 32 bits : au-delà de quelques dizaines de milliers de comptes, les tirages déjà attribués
+     * ne sont plus rares et sont retirés. Deux comptes créés en même temps peuvent encore tirer le même numéro :
+     * l'enregistrement refuse alors le second (ACCOUNT_DUPLICATE).
      */
-    private String generateAccountNumber() {
-        return "CB-" + UUID.randomUUID().toString().substring(0, 8);
+    private static String generateAccountNumber() {
+        String accountNumber;
+        do {
+            accountNumber = "CB-" + UUID.randomUUID().toString().substring(0, 8);
+        } while (BankAccountManager.isRegistered(accountNumber));
+        return accountNumber;
     }
 
     /**
-     * Dépose un montant sur le compte.
-     * @param amount Montant à déposer (doit être positif).
+     * Dépose un montant sur le compte. Le dépôt est exécuté et journalisé comme une transaction.
+     * @param amount Montant à déposer en centimes (doit être positif).
      */
-    public void deposit(double amount) {
+    public void deposit(long amount) {
         // Vérification que le montant est positif
         if (amount <= 0) {
-            System.out.println("Erreur : Le montant du dépôt doit être positif.");
-        } else {
-            // Si tout est ok, on ajoute le montant au solde du compte
-            balance += amount;
-            System.out.println("Dépôt de " + amount + " € réussi. Nouveau solde : " + balance);
+            EventLog.log(EventCode.DEPOSIT_INVALID, accountNumber);
+        } else if (new Transaction(null, this, amount, TransactionType.DEPOSIT, TransactionStatus.PENDING).processTransaction()) {
+            EventLog.log(EventCode.DEPOSIT_SUCCEEDED, accountNumber, amount, balance);
         }
     }
 
     /**
-     * Retire un montant du compte si le solde est suffisant.
-     * @param amount Montant à retirer.
+     * Retire un montant du compte si le solde est suffisant. Le retrait est exécuté et journalisé comme une transaction.
+     * @param amount Montant à retirer, en centimes.
      * @return true si le retrait a réussi, false sinon.
      */
-    public boolean withdraw(double amount) {
+    public boolean withdraw(long amount) {
         // Vérification que le montant est positif
         if (amount <= 0) {
-            System.out.println("Erreur : Le montant du retrait doit être positif.");
+            EventLog.log(EventCode.WITHDRAWAL_INVALID, accountNumber);
             return false; // On retourne false si le montant est invalide
         }
 
-        // Vérification que le solde est suffisant
-        if (amount > balance) {
-            System.out.println("Erreur : Fonds insuffisants.");
+        // La vérification du solde et le retrait se font sous le verrou du compte (TransferEngine.withdraw)
+        if (!new Transaction(this, null, amount, TransactionType.WITHDRAWAL, TransactionStatus.PENDING).processTransaction()) {
+            EventLog.log(EventCode.WITHDRAWAL_INSUFFICIENT_FUNDS, accountNumber, amount, balance);
             return false; // On retourne false si le solde est insuffisant
         }
 
-        // Si tout est ok, on effectue le retrait et on met à jour le solde
-        balance -= amount;
-        System.out.println("Retrait de " + amount + " € réussi. Nouveau solde : " + balance);
+        EventLog.log(EventCode.WITHDRAWAL_SUCCEEDED, accountNumber, amount, balance);
         return true; // La transaction a réussi, donc on retourne true
     }
 
     /**
-     * Calcule les frais de transaction.
-     * Si c'est un transfert, applique 2% de frais.
-     * @param amount Montant de la transaction
-     * @param type Type de la transaction (par exemple, TRANSFER)
-     * @return Montant des frais à appliquer
+     * Crédite le compte sans contrôle ni affichage (utilisé par le moteur de transfert).
+     * @param amount Montant à créditer, en centimes.
+     * @return Le nouveau solde.
      */
-    public double calculateTransactionFee(double amount, TransactionType type) {
-        // Si c'est un transfert, on applique 2% de frais
-        if (type == TransactionType.TRANSFER) {
-            return amount * 0.02; // 2% du montant
+    public long credit(long amount) {
+        ReentrantLock lock = AccountLocks.lockFor(accountNumber);
+        lock.lock();
+        try {
+            balance = Money.add(balance, amount);
+            return balance;
+        } finally {
+            lock.unlock();
         }
-        return 0; // Pas de frais pour les autres types de transactions
+    }
+
+    /**
+     * Débite le compte si le solde est suffisant, sans affichage (utilisé par le moteur de transfert).
+     * @param amount Montant à débiter, en centimes.
+     * @return true si le débit a été appliqué, false si les fonds sont insuffisants.
+     */
+    public boolean debit(long amount) {
+        ReentrantLock lock = AccountLocks.lockFor(accountNumber);
+        lock.lock();
+        try {
+            if (amount > balance) {
+                return false;
+            }
+            balance -= amount;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applique un mouvement déjà validé ailleurs, sans prendre de verrou : l'appelant tient déjà celui du compte (StandbyNode).
+     * Aucun contrôle de solde : les mouvements répliqués n'arrivent pas forcément dans l'ordre de leurs séquences,
+     * et le solde peut être négatif le temps qu'arrive un crédit qui le précédait.
+     * @param delta Montant crédité (positif) ou débité (négatif), en centimes.
+     * @throws ArithmeticException si le solde sortait de l'intervalle représentable (rien n'est alors modifié)
+     */
+    public void applyAsOwner(long delta) {
+        balance = Money.add(balance, delta);
+    }
+
+    /**
+     * Calcule les frais de transaction selon le barème en vigueur et la classe du compte.
+     * Avec le barème standard, un transfert coûte 2 % du montant, arrondis au centime selon FEE_ROUNDING.
+     * @param amount Montant de la transaction, en centimes
+     * @param type Type de la transaction (par exemple, TRANSFER)
+     * @return Montant des frais à appliquer, en centimes
+     */
+    public long calculateTransactionFee(long amount, TransactionType type) {
+        return FeeSchedule.getDefault().feeFor(accountClass, type, amount);
     }
 
 
@@ -185,6 +383,6 @@ public class BankAccount {
     public void displayAccountDetails() {
         System.out.println("Numéro de compte : " + accountNumber);
         System.out.println("Propriétaire : " + owner);
-        System.out.println("Solde : " + balance);
+        System.out.println("Solde : " + Money.format(balance) + " " + Money.CURRENCY_SYMBOL);
     }
 }
@@ -0,0 +1,123 @@
+package com.corebanker.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Montants en virgule fixe : un montant est un long exprimé en unités mineures (centimes d'euro).
+ *
+ * Aucun objet n'est créé pour représenter un montant : les soldes, montants et frais restent des long,
+ * et cette classe regroupe l'arithmétique (débordement contrôlé), les arrondis explicites et l'affichage.
+ */
+public final class Money {
+    /** Nombre de décimales de la devise. */
+    public static final int SCALE = 2;
+    /** Nombre d'unités mineures dans une unité de la devise. */
+    public static final long MINOR_UNITS = 100;
+    public static final String CURRENCY_SYMBOL = "€";
+    /** Dénominateur des taux exprimés en points de base (1 % = 100). */
+    public static final long BASIS_POINTS = 10_000;
+
+    private Money() {
+    }
+
+    /**
+     * @param units Montant en unités entières de la devise (euros)
+     * @return Le montant en centimes.
+     */
+    public static long ofMajor(long units) {
+        return Math.multiplyExact(units, MINOR_UNITS);
+    }
+
+    /**
+     * Convertit un montant décimal saisi (par exemple "12.5") en centimes.
+     * @throws ArithmeticException si le montant a plus de décimales que la devise n'en admet.
+     */
+    public static long parse(String text) {
+        return parse(text, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * Convertit un montant décimal en centimes, en arrondissant au centime selon le mode donné.
+     */
+    public static long parse(String text, RoundingMode mode) {
+        return new BigDecimal(text.trim()).setScale(SCALE, mode).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convertit un montant stocké en double (anciens journaux texte) en centimes.
+     */
+    public static long fromDouble(double amount, RoundingMode mode) {
+        return BigDecimal.valueOf(amount).setScale(SCALE, mode).unscaledValue().longValueExact();
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Applique un taux à un montant, en arithmétique entière.
+     * @param amount Montant en centimes
+     * @param basisPoints Taux en points de base (200 = 2 %)
+     * @param mode Arrondi au centime du résultat
+     */
+    public static long applyRate(long amount, long basisPoints, RoundingMode mode) {
+        return divide(Math.multiplyExact(amount, basisPoints), BASIS_POINTS, mode);
+    }
+
+    /**
+     * Division entière arrondie selon le mode donné, sans passer par BigDecimal.
+     * @param divisor Diviseur strictement positif
+     */
+    public static long divide(long dividend, long divisor, RoundingMode mode) {
+        if (divisor <= 0) {
+            throw new ArithmeticException("Le diviseur doit être strictement positif.");
+        }
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        long sign = dividend < 0 ? -1 : 1;
+        long magnitude = Math.abs(remainder);
+        int half = Long.compare(magnitude, divisor - magnitude); // Reste comparé à la moitié du diviseur
+        boolean awayFromZero = switch (mode) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> sign > 0;
+            case FLOOR -> sign < 0;
+            case HALF_UP -> half >= 0;
+            case HALF_DOWN -> half > 0;
+            case HALF_EVEN -> half > 0 || (half == 0 && (quotient & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("Arrondi nécessaire : " + dividend + " / " + divisor);
+        };
+        return awayFromZero ? quotient + sign : quotient;
+    }
+
+    /**
+     * @return Le montant au format "1234.56", sans symbole monétaire.
+     */
+    public static String format(long amount) {
+        return appendTo(new StringBuilder(24), amount).toString();
+    }
+
+    /**
+     * Écrit le montant au format "1234.56" à la suite du tampon, sans conversion en double.
+     */
+    public static StringBuilder appendTo(StringBuilder out, long amount) {
+        long units = amount / MINOR_UNITS;
+        long cents = Math.abs(amount % MINOR_UNITS);
+        if (amount < 0 && units == 0) {
+            out.append('-');
+        }
+        out.append(units).append('.');
+        if (cents < 10) {
+            out.append('0');
+        }
+        return out.append(cents);
+    }
+}
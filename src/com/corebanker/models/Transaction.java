@@ -1,33 +1,47 @@
 package com.corebanker.models;
 
+import com.corebanker.engine.IdempotencyCache;
+import com.corebanker.engine.IdempotencyConflictException;
+import com.corebanker.engine.TransferEngine;
+import com.corebanker.enums.FailureReason;
 import com.corebanker.enums.TransactionStatus;
 import com.corebanker.enums.TransactionType;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
 import com.corebanker.managers.BankAccountManager;
+import com.corebanker.metrics.Metrics;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.JournalWriteException;
+import com.corebanker.persistence.TransactionJournal;
 
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
 public class Transaction {
     private String transactionId; // Identifiant unique
     private final BankAccount sourceAccount; // Compte source
     private final BankAccount targetAccount; // Compte cible
-    private final double amount; // Montant de la transaction
+    private final long amount; // Montant de la transaction, en centimes
     private Date transactionDate; // Date de la transaction
     private TransactionType transactionType; // // Nouveau champ pour le type de la transaction
     private TransactionStatus status; // Nouveau champ pour le statut de la transaction
+    private long fee; // Frais prélevés lors de l'exécution, en centimes
+    private long sequence; // Séquence attribuée dans le journal
+    private boolean idempotent; // Identifiant dérivé d'une clé d'idempotence du client
+    private long idMostSigBits;
+    private long idLeastSigBits;
 
     /**
      * Constructeur de la classe Transaction
-     * @param sourceAccount Le compte source
-     * @param targetAccount Le compte cible
-     * @param amount Le montant à transférer
+     * Un dépôt n'a pas de compte source, un retrait pas de compte cible.
+     * @param sourceAccount Le compte source (débité : transfert et retrait)
+     * @param targetAccount Le compte cible (crédité : transfert et dépôt)
+     * @param amount Le montant à transférer, en centimes
      */
-    public Transaction(BankAccount sourceAccount, BankAccount targetAccount, double amount, TransactionType transactionType, TransactionStatus status) {
+    public Transaction(BankAccount sourceAccount, BankAccount targetAccount, long amount, TransactionType transactionType, TransactionStatus status) {
         this.transactionId = UUID.randomUUID().toString(); // Génère un ID unique pour la transaction
         this.sourceAccount = sourceAccount;
         this.targetAccount = targetAccount;
@@ -37,6 +51,20 @@ public class Transaction {
         this.status = status;
     }
 
+    /**
+     * Constructeur d'un transfert idempotent : l'identifiant est dérivé de la clé fournie par le client,
+     * et une nouvelle soumission de la même clé retourne le résultat de la première sans la réexécuter.
+     * @param idempotencyKey Clé d'idempotence du client (par exemple l'en-tête Idempotency-Key)
+     */
+    public Transaction(String idempotencyKey, BankAccount sourceAccount, BankAccount targetAccount, long amount, TransactionType transactionType, TransactionStatus status) {
+        this(sourceAccount, targetAccount, amount, transactionType, status);
+        UUID id = IdempotencyCache.transactionIdFor(idempotencyKey);
+        this.transactionId = id.toString();
+        this.idempotent = true;
+        this.idMostSigBits = id.getMostSignificantBits();
+        this.idLeastSigBits = id.getLeastSignificantBits();
+    }
+
     public String getTransactionId() {
         return transactionId;
     }
@@ -49,7 +77,7 @@ public class Transaction {
         return targetAccount;
     }
 
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
@@ -81,107 +109,207 @@ public class Transaction {
         return status;
     }
 
+    public long getFee() {
+        return fee;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
     public void setStatus(TransactionStatus status) {
         this.status = status;
     }
 
 
     /**
-     * Enregistre la transaction dans le fichier transactions.log
+     * Enregistre la transaction dans le journal binaire et attend qu'elle soit durable.
+     * Les transactions concurrentes sont regroupées par le journal en une seule écriture et un seul fsync.
+     * @param fee Les frais prélevés sur la transaction, en centimes
+     * @throws CompletionException si l'enregistrement n'a pas pu être rendu durable
      */
-    private void saveTransactionToFile() {
-        try (FileWriter fw = new FileWriter("transactions.log", true);
-             PrintWriter out = new PrintWriter(fw)) {
-
-            // Formatage de la date
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(transactionDate);
-
-            // Informations supplémentaires
-            String sourceOwner = sourceAccount.getOwner();
-            String targetOwner = targetAccount.getOwner();
-            String transactionType = this.transactionType.name(); // Utiliser `name()` pour l'enum
-            String status = this.status.name(); // Utiliser `name()` pour l'enum
-
-            // Ligne formatée avec des éléments visuels
-            String logEntry = "🆔 Transaction ID | " + transactionId + "\n" +
-                    "📅 Date & Heure   | " + timestamp + "\n" +
-                    "📤 Expéditeur     | " + sourceAccount.getAccountNumber() + " (" + sourceOwner + ")\n" +
-                    "📥 Destinataire   | " + targetAccount.getAccountNumber() + " (" + targetOwner + ")\n" +
-                    "💰 Montant        | " + amount + " €\n" +
-                    "🔄 Type de Trans.  | " + transactionType + "\n" +
-                    "✔️ Statut         | " + status + "\n";
-
-            // Ajout d'un séparateur pour la lisibilité
-            out.println("══════════════════════════════════════════════════════════════════════════════════════════════════════");
-            out.println(logEntry);
-            out.println("══════════════════════════════════════════════════════════════════════════════════════════════════════");
-        } catch (IOException e) {
-            System.out.println("Erreur lors de l'écriture dans le fichier transactions.log.");
+    private void saveTransactionToJournal(long fee) {
+        TransactionJournal journal = TransactionJournal.getDefault();
+        if (journal == null) {
+            return; // Persistance désactivée
         }
+        journal.append(JournalRecord.forTransaction(this, fee)).join();
     }
 
+    /**
+     * Marque la transaction comme exécutée au sein d'un lot (BatchTransfer).
+     * @param fee Les frais prélevés, en centimes
+     * @param sequence La séquence réservée dans le journal
+     */
+    public void markExecuted(long fee, long sequence) {
+        this.status = TransactionStatus.SUCCEEDED;
+        this.fee = fee;
+        this.sequence = sequence;
+    }
 
+    /**
+     * Ajoute la transaction exécutée à l'historique de chacun de ses comptes.
+     */
+    public void addToHistories() {
+        if (sourceAccount != null) {
+            sourceAccount.addTransactionToHistory(this);
+        }
+        if (targetAccount != null) {
+            targetAccount.addTransactionToHistory(this);
+        }
+    }
 
+    /**
+     * Calcule les frais de la transaction, à la charge du compte source (du compte crédité pour un dépôt).
+     * @return Les frais en centimes, compris dans le montant.
+     */
+    public long calculateFee() {
+        BankAccount payer = sourceAccount != null ? sourceAccount : targetAccount;
+        return payer.calculateTransactionFee(amount, transactionType);
+    }
 
     /**
      * Vérifie les préconditions avant de traiter la transaction.
+     * Le solde est vérifié sans verrou : il l'est de nouveau au moment du débit.
      * @return True si les conditions sont valides, sinon False.
      */
-    private boolean validateTransaction() {
+    public boolean validateTransaction() {
+        if (transactionType == null) {
+            Metrics.recordFailure(FailureReason.UNSUPPORTED_TYPE);
+            return false;
+        }
+        boolean debits = transactionType != TransactionType.DEPOSIT;
+        boolean credits = transactionType != TransactionType.WITHDRAWAL;
+
         // Vérifier si les comptes existent
-        if (sourceAccount == null || targetAccount == null) {
-            System.out.println("⚠️ Erreur : Impossible de retrouver un ou plusieurs comptes !");
+        if ((debits && sourceAccount == null) || (credits && targetAccount == null)) {
+            EventLog.log(EventCode.TRANSACTION_ACCOUNT_MISSING, transactionId);
+            Metrics.recordFailure(FailureReason.ACCOUNT_MISSING);
             return false;
         }
 
         // Vérifier si le montant est valide (positif)
         if (amount <= 0) {
-            System.out.println("❌ Erreur : Montant de transaction invalide.");
+            EventLog.log(EventCode.TRANSACTION_AMOUNT_INVALID, transactionId);
+            Metrics.recordFailure(FailureReason.AMOUNT_INVALID);
             return false;
         }
 
         // Vérifier si le solde du compte source est suffisant
-        if (sourceAccount.getBalance() < amount) {
-            System.out.println("❌ Échec de la transaction : fonds insuffisants sur le compte de " + sourceAccount.getOwner());
+        if (debits && sourceAccount.getBalance() < amount) {
+            EventLog.log(EventCode.TRANSACTION_INSUFFICIENT_FUNDS, sourceAccount.getOwner());
+            Metrics.recordFailure(FailureReason.INSUFFICIENT_FUNDS);
             return false;
         }
 
         return true; // Toutes les validations sont passées
     }
 
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
     /**
      * Exécute la transaction entre les comptes après validation.
+     * Pour un transfert idempotent déjà soumis, reprend le résultat mémorisé sans rien réexécuter :
+     * le statut vaut PROCESSING si la première soumission n'est pas encore terminée.
+     * @throws IdempotencyConflictException si la clé a déjà servi pour une autre demande (rien n'est exécuté)
+     * @throws JournalWriteException si le mouvement n'a pas pu être rendu durable (il est alors annulé, statut FAILED)
      */
     public boolean processTransaction() {
+        IdempotencyCache cache = idempotent ? IdempotencyCache.getDefault() : null;
+        if (cache == null) {
+            return execute();
+        }
+        long digest = IdempotencyCache.payloadDigest(sourceAccount != null ? sourceAccount.getAccountNumber() : null,
+                targetAccount != null ? targetAccount.getAccountNumber() : null, amount, transactionType);
+        IdempotencyCache.Outcome previous = cache.reserve(idMostSigBits, idLeastSigBits, digest);
+        if (previous != null && previous.digest() != digest) {
+            EventLog.log(EventCode.TRANSACTION_KEY_CONFLICT, transactionId);
+            throw new IdempotencyConflictException(transactionId);
+        }
+        if (previous != null) {
+            EventLog.log(EventCode.TRANSACTION_DUPLICATE, transactionId);
+            Metrics.recordDuplicate();
+            this.status = previous.status();
+            this.fee = previous.fee();
+            this.sequence = previous.sequence();
+            return previous.status() == TransactionStatus.SUCCEEDED;
+        }
+        try {
+            boolean succeeded = execute();
+            cache.complete(idMostSigBits, idLeastSigBits, digest, status, sequence, fee);
+            return succeeded;
+        } catch (RuntimeException | Error e) {
+            cache.release(idMostSigBits, idLeastSigBits); // Rien n'a été appliqué : une nouvelle soumission sera exécutée
+            throw e;
+        }
+    }
+
+    /**
+     * Exécute la transaction et la compte selon son type et son statut final (durée échantillonnée, voir Metrics).
+     */
+    private boolean execute() {
+        long start = Metrics.startTransaction();
+        try {
+            return apply();
+        } finally {
+            Metrics.recordTransaction(transactionType, status, start);
+        }
+    }
+
+    private boolean apply() {
         if (!validateTransaction()) {
-            System.out.println("❌ La transaction a été annulée.");
+            EventLog.log(EventCode.TRANSACTION_CANCELLED, transactionId);
             this.status = TransactionStatus.FAILED; // ❌ Échec de la transaction
             return false; // 🔴 Indique un échec
         }
 
-        double fee = sourceAccount.calculateTransactionFee(amount, transactionType);
-        double amountAfterFee = amount - fee;
-
-        if (transactionType == TransactionType.TRANSFER) {
-            System.out.println("Frais de transaction : " + fee + " €.");
-            System.out.println("Montant après frais : " + amountAfterFee + " €.");
+        long fee = calculateFee();
+        long amountAfterFee = amount - fee;
+        EventLog.log(EventCode.TRANSACTION_FEE, fee, amountAfterFee);
 
-            if (sourceAccount.withdraw(amount)) {
-                targetAccount.deposit(amountAfterFee);
-                System.out.println("Transaction réussie. ID: " + transactionId);
-                this.status = TransactionStatus.SUCCEEDED; // ✅ Succès de la transaction
-                sourceAccount.addTransactionToHistory(this);
-                targetAccount.addTransactionToHistory(this);
-                saveTransactionToFile();
-                return true; // 🟢 Indique un succès
-            } else {
-                System.out.println("❌ Erreur : Fonds insuffisants pour effectuer la transaction.");
+        // Mouvement déclaré au journal jusqu'à sa durabilité ou son annulation (voir CheckpointManager)
+        TransactionJournal journal = TransactionJournal.getDefault();
+        int move = journal != null ? journal.openMove() : 0;
+        boolean durable = true;
+        try {
+            long applied = switch (transactionType) {
+                // Débit et crédit atomiques sous les verrous des deux comptes
+                case TRANSFER -> TransferEngine.transfer(sourceAccount, targetAccount, amount, amountAfterFee);
+                case DEPOSIT -> TransferEngine.deposit(targetAccount, amountAfterFee);
+                case WITHDRAWAL -> TransferEngine.withdraw(sourceAccount, amount);
+            };
+            if (applied == TransferEngine.REJECTED) {
+                EventLog.log(EventCode.TRANSACTION_REJECTED, transactionId);
+                // Solde modifié entre la validation et le verrou, ou solde du dépôt hors limites
+                Metrics.recordFailure(transactionType == TransactionType.DEPOSIT ? FailureReason.AMOUNT_INVALID : FailureReason.INSUFFICIENT_FUNDS);
                 this.status = TransactionStatus.FAILED; // ❌ Échec de la transaction
                 return false; // 🔴 Indique un échec
             }
-        }
 
-        return false; // 🔴 Par défaut, on retourne false si le type de transaction n'est pas pris en charge
+            this.status = TransactionStatus.SUCCEEDED; // ✅ Succès de la transaction
+            this.fee = fee;
+            this.sequence = applied;
+            try {
+                saveTransactionToJournal(fee);
+            } catch (CompletionException e) {
+                // Mouvement non durable : annulé en mémoire, la transaction échoue et l'appelant en est averti
+                durable = false;
+                TransferEngine.revert(sourceAccount, targetAccount, amount, amountAfterFee);
+                EventLog.log(EventCode.JOURNAL_WRITE_FAILED, String.valueOf(e.getCause().getMessage()));
+                this.status = TransactionStatus.FAILED;
+                this.fee = 0;
+                throw new JournalWriteException(e.getCause());
+            }
+            EventLog.log(EventCode.TRANSACTION_SUCCEEDED, transactionId);
+            addToHistories();
+            return true; // 🟢 Indique un succès
+        } finally {
+            if (journal != null) {
+                journal.closeMove(move, durable);
+            }
+        }
     }
 
 
@@ -191,20 +319,18 @@ public class Transaction {
      * @param timestamp La date de la transaction sous forme de texte
      * @param sourceAccountNumber Le numéro de compte de l'expéditeur
      * @param targetAccountNumber Le numéro de compte du destinataire
-     * @param amount Le montant de la transaction
+     * @param amount Le montant de la transaction, en centimes
      * @return Une instance de Transaction reconstruite
      */
-    public static Transaction fromLog(String transactionId, String timestamp, String sourceAccountNumber, String targetAccountNumber, double amount, TransactionType type, TransactionStatus status) {
-        System.out.println("🔍 Recherche des comptes pour la transaction " + transactionId);
-        System.out.println("   - Expéditeur : " + sourceAccountNumber);
-        System.out.println("   - Destinataire : " + targetAccountNumber);
+    public static Transaction fromLog(String transactionId, String timestamp, String sourceAccountNumber, String targetAccountNumber, long amount, TransactionType type, TransactionStatus status) {
+        EventLog.log(EventCode.LEGACY_LOOKUP, transactionId, sourceAccountNumber, targetAccountNumber);
 
         // Recherche des comptes dans le gestionnaire
         BankAccount sourceAccount = BankAccountManager.findAccountByNumber(sourceAccountNumber);
         BankAccount targetAccount = BankAccountManager.findAccountByNumber(targetAccountNumber);
 
         if (sourceAccount == null || targetAccount == null) {
-            System.out.println("⚠️ Erreur : Impossible de retrouver un ou plusieurs comptes !");
+            EventLog.log(EventCode.TRANSACTION_ACCOUNT_MISSING, transactionId);
             return null;
         }
 
@@ -216,11 +342,30 @@ public class Transaction {
         try {
             transaction.transactionDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(timestamp);
         } catch (ParseException e) {
-            System.out.println("Erreur de format de date dans les logs : " + e.getMessage());
+            EventLog.log(EventCode.LEGACY_DATE_INVALID, e.getMessage());
         }
 
         return transaction;
     }
 
+    /**
+     * Recrée une transaction à partir d'un enregistrement du journal binaire.
+     * @param record L'enregistrement relu
+     * @return La transaction, ou null si l'un des comptes est inconnu (un dépôt n'a pas de source, un retrait pas de cible)
+     */
+    public static Transaction fromJournal(JournalRecord record) {
+        BankAccount sourceAccount = BankAccountManager.findAccountByNumber(record.getSourceAccountNumber());
+        BankAccount targetAccount = BankAccountManager.findAccountByNumber(record.getTargetAccountNumber());
+        if ((sourceAccount == null && record.getSourceAccountNumber() != null)
+                || (targetAccount == null && record.getTargetAccountNumber() != null)) {
+            return null;
+        }
 
+        Transaction transaction = new Transaction(sourceAccount, targetAccount, record.getAmount(), record.getType(), record.getStatus());
+        transaction.transactionId = record.getTransactionId();
+        transaction.transactionDate = new Date(record.getTimestamp());
+        transaction.fee = record.getFee();
+        transaction.sequence = record.getSequence();
+        return transaction;
+    }
 }
@@ -0,0 +1,257 @@
+package com.corebanker.persistence;
+
+import com.corebanker.enums.AccountClass;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table de hachage à adressage ouvert utilisée pendant la relecture du journal.
+ * Les comptes y sont identifiés par les 16 octets bruts de leur numéro (deux long),
+ * ce qui évite de créer une String par enregistrement relu.
+ */
+final class AccountTable {
+    // Chaque emplacement occupe 4 long contigus (clé haute, clé basse, variation, solde d'ouverture, en centimes) :
+    // une recherche ne touche qu'une ligne de cache
+    private static final int STRIDE = 4;
+    private static final int HI = 0;
+    private static final int LO = 1;
+    private static final int DELTA = 2;
+    private static final int OPENING = 3;
+
+    private long[] entries;
+    private String[] owners;
+    private AccountClass[] classes;
+    private boolean[] opened;
+    private LongList[] positions;
+    private long[] sequences; // Séquence maximale intégrée au solde de chaque compte
+    private int size;
+    private int mask;
+
+    AccountTable(int expectedAccounts) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedAccounts * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        entries = new long[capacity * STRIDE];
+        owners = new String[capacity];
+        classes = new AccountClass[capacity];
+        opened = new boolean[capacity];
+        positions = new LongList[capacity];
+        sequences = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Retourne l'emplacement du compte, en le créant au besoin.
+     * La clé (0, 0) est réservée aux champs de compte vides.
+     */
+    int slot(long hi, long lo) {
+        if (size * 2 >= owners.length) {
+            grow();
+        }
+        int index = hash(hi, lo) & mask;
+        while (true) {
+            int base = index * STRIDE;
+            long entryHi = entries[base + HI];
+            long entryLo = entries[base + LO];
+            if (entryHi == hi && entryLo == lo) {
+                return index;
+            }
+            if (entryHi == 0 && entryLo == 0) {
+                entries[base + HI] = hi;
+                entries[base + LO] = lo;
+                size++;
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * @return L'emplacement du compte, ou -1 s'il est absent.
+     */
+    int find(long hi, long lo) {
+        int index = hash(hi, lo) & mask;
+        while (isUsed(index)) {
+            int base = index * STRIDE;
+            if (entries[base + HI] == hi && entries[base + LO] == lo) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L + lo;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void grow() {
+        long[] oldEntries = entries;
+        String[] oldOwners = owners;
+        AccountClass[] oldClasses = classes;
+        boolean[] oldOpened = opened;
+        LongList[] oldPositions = positions;
+        long[] oldSequences = sequences;
+
+        allocate(oldOwners.length * 2);
+        for (int i = 0; i < oldOwners.length; i++) {
+            int oldBase = i * STRIDE;
+            if (oldEntries[oldBase + HI] != 0 || oldEntries[oldBase + LO] != 0) {
+                int slot = slot(oldEntries[oldBase + HI], oldEntries[oldBase + LO]);
+                System.arraycopy(oldEntries, oldBase, entries, slot * STRIDE, STRIDE);
+                owners[slot] = oldOwners[i];
+                classes[slot] = oldClasses[i];
+                opened[slot] = oldOpened[i];
+                positions[slot] = oldPositions[i];
+                sequences[slot] = oldSequences[i];
+            }
+        }
+    }
+
+    void open(int slot, String owner, AccountClass accountClass, long openingBalance, long sequence) {
+        owners[slot] = owner;
+        classes[slot] = accountClass;
+        entries[slot * STRIDE + OPENING] = openingBalance;
+        opened[slot] = true;
+        sequences[slot] = Math.max(sequences[slot], sequence);
+    }
+
+    void apply(int slot, long delta, long position, long sequence) {
+        adjust(slot, delta, sequence);
+        LongList list = positions[slot];
+        if (list == null) {
+            list = new LongList();
+            positions[slot] = list;
+        }
+        list.add(position);
+    }
+
+    /**
+     * Comme apply, sans entrée d'historique : débit compensé d'un transfert annulé.
+     */
+    void adjust(int slot, long delta, long sequence) {
+        entries[slot * STRIDE + DELTA] += delta;
+        sequences[slot] = Math.max(sequences[slot], sequence);
+    }
+
+    /**
+     * Fusionne une table partielle (issue d'un bloc relu en parallèle) dans celle-ci.
+     * Les tables doivent être fusionnées dans l'ordre du journal.
+     */
+    void merge(AccountTable other) {
+        for (int i = 0; i < other.owners.length; i++) {
+            if (!other.isUsed(i)) {
+                continue;
+            }
+            int otherBase = i * STRIDE;
+            int slot = slot(other.entries[otherBase + HI], other.entries[otherBase + LO]);
+            if (other.opened[i]) {
+                open(slot, other.owners[i], other.classes[i], other.entries[otherBase + OPENING], 0);
+            }
+            entries[slot * STRIDE + DELTA] += other.entries[otherBase + DELTA];
+            sequences[slot] = Math.max(sequences[slot], other.sequences[i]);
+            if (other.positions[i] != null) {
+                if (positions[slot] == null) {
+                    positions[slot] = other.positions[i];
+                } else {
+                    positions[slot].addAll(other.positions[i]);
+                }
+            }
+        }
+    }
+
+    int capacity() {
+        return owners.length;
+    }
+
+    boolean isUsed(int slot) {
+        int base = slot * STRIDE;
+        return entries[base + HI] != 0 || entries[base + LO] != 0;
+    }
+
+    boolean isOpened(int slot) {
+        return opened[slot];
+    }
+
+    long sequence(int slot) {
+        return sequences[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    String owner(int slot) {
+        return owners[slot];
+    }
+
+    AccountClass accountClass(int slot) {
+        return classes[slot];
+    }
+
+    long balance(int slot) {
+        int base = slot * STRIDE;
+        return entries[base + OPENING] + entries[base + DELTA];
+    }
+
+    long[] positions(int slot) {
+        LongList list = positions[slot];
+        return list != null ? list.toArray() : new long[0];
+    }
+
+    String accountNumber(int slot) {
+        ByteBuffer bytes = ByteBuffer.allocate(JournalRecord.ACCOUNT_FIELD);
+        bytes.putLong(entries[slot * STRIDE + HI]).putLong(entries[slot * STRIDE + LO]);
+        int length = 0;
+        while (length < JournalRecord.ACCOUNT_FIELD && bytes.get(length) != 0) {
+            length++;
+        }
+        return new String(bytes.array(), 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Encode un numéro de compte comme le fait JournalRecord : 16 octets ASCII complétés par des zéros.
+     * @return Les deux moitiés de la clé.
+     */
+    static long[] keyOf(String accountNumber) {
+        ByteBuffer bytes = ByteBuffer.allocate(JournalRecord.ACCOUNT_FIELD);
+        byte[] raw = accountNumber.getBytes(StandardCharsets.UTF_8);
+        bytes.put(raw, 0, Math.min(raw.length, JournalRecord.ACCOUNT_FIELD));
+        return new long[]{bytes.getLong(0), bytes.getLong(8)};
+    }
+
+    /**
+     * Liste extensible de long, sans boxing.
+     */
+    static final class LongList {
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
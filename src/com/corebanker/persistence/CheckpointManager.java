@@ -0,0 +1,334 @@
+package com.corebanker.persistence;
+
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.history.AccountAggregates;
+import com.corebanker.history.HistoryEntry;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Points de reprise : instantanés cohérents des comptes pris à chaud, puis archivage des segments couverts.
+ *
+ * La capture ne suspend pas les transferts : chaque compte est copié sous le seul verrou de sa tranche,
+ * avec la séquence du dernier mouvement qu'il a intégré. Au redémarrage, un enregistrement du journal
+ * n'est rejoué sur un compte que si sa séquence est supérieure à celle capturée pour ce compte.
+ * Avant d'écrire l'en-tête, la capture attend que chaque mouvement en cours (TransactionJournal.openMove) soit durable :
+ * l'instantané ne reflète ainsi que des mouvements journalisés. Le débit d'un transfert en deux étapes peut être capturé
+ * sans son crédit : l'enregistrement durable porte la séquence du crédit, rejoué sur la cible à la relecture.
+ * Si un mouvement a dû être annulé faute d'avoir pu être journalisé pendant la capture, l'instantané est abandonné.
+ *
+ * Format : un en-tête de 128 octets, puis pour chaque compte un enregistrement d'ouverture
+ * (solde et séquence capturés), l'état de ses agrégats et ses transactions récentes, au format de JournalRecord.
+ */
+public final class CheckpointManager implements AutoCloseable {
+    static final int SNAPSHOT_MAGIC = 0x43425331; // "CBS1"
+    static final int SNAPSHOT_VERSION = 3; // Même format d'enregistrement que le journal, plus les agrégats des comptes
+    private static final int SNAPSHOT_MIN_VERSION = 2; // Version 2 : sans agrégats, reconstruits depuis le journal restant
+    private static final int AGGREGATE_RECORDS = (AccountAggregates.STATE_LONGS + JournalRecord.PAYLOAD_LONGS - 1) / JournalRecord.PAYLOAD_LONGS;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String ARCHIVE_DIRECTORY = "archive";
+    private static final int RETAINED_SNAPSHOTS = 2;
+    private static final int WRITE_BUFFER_RECORDS = 1024;
+
+    private final TransactionJournal journal;
+    private final Path directory;
+    private final int historyPerAccount;
+    private final boolean deleteCompactedSegments;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param journal Le journal dont les segments sont couverts par les instantanés
+     * @param historyPerAccount Nombre de transactions récentes conservées par compte
+     * @param deleteCompactedSegments true pour supprimer les segments couverts, false pour les déplacer dans archive/
+     */
+    public CheckpointManager(TransactionJournal journal, int historyPerAccount, boolean deleteCompactedSegments) {
+        this.journal = journal;
+        this.directory = journal.getConfig().getDirectory();
+        this.historyPerAccount = historyPerAccount;
+        this.deleteCompactedSegments = deleteCompactedSegments;
+    }
+
+    /**
+     * Déclenche un point de reprise à intervalle régulier, sur un thread dédié.
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                System.out.println("Erreur lors du point de reprise : " + e.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prend un instantané de tous les comptes, puis archive les segments qu'il rend inutiles.
+     * @return La séquence couverte par l'instantané.
+     */
+    public synchronized long checkpoint() throws IOException {
+        // L'ordre compte : tout segment antérieur à firstLiveSegment est clos avant la lecture de la séquence,
+        // donc ne contient que des mouvements de séquence <= coveredSequence, tous visibles lors de la capture
+        long firstLiveSegment = journal.currentSegmentIndex();
+        long coveredSequence = journal.currentSequence();
+        long aborted = journal.abortedMoves();
+
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, coveredSequence, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        long accountCount = 0;
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_RECORDS * JournalRecord.SIZE);
+            long position = JournalRecord.SIZE; // L'en-tête est écrit en dernier
+            long[] aggregates = new long[AccountAggregates.STATE_LONGS];
+
+            for (BankAccount account : BankAccountManager.allAccounts()) { // Y compris les comptes pas encore chargés
+                List<JournalRecord> records = capture(account, aggregates);
+                for (int i = 0; i < records.size(); i++) {
+                    if (!buffer.hasRemaining()) {
+                        position += flush(channel, buffer, position);
+                    }
+                    records.get(i).encode(buffer, buffer.position());
+                    buffer.position(buffer.position() + JournalRecord.SIZE);
+                    if (i == 0) {
+                        position += putAggregates(channel, buffer, position, records.get(0).getSequence(), aggregates);
+                    }
+                }
+                accountCount++;
+            }
+            position += flush(channel, buffer, position);
+
+            // Mouvements capturés en cours d'écriture : l'instantané n'est validé qu'une fois tous durables
+            journal.awaitOpenMoves();
+            if (journal.abortedMoves() != aborted) {
+                throw new IOException("Mouvement annulé pendant la capture, instantané abandonné.");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(JournalRecord.SIZE);
+            header.putInt(0, SNAPSHOT_MAGIC);
+            header.putInt(4, SNAPSHOT_VERSION);
+            header.putLong(8, coveredSequence);
+            header.putLong(16, firstLiveSegment);
+            header.putLong(24, accountCount);
+            header.putLong(32, (position - JournalRecord.SIZE) / JournalRecord.SIZE);
+            header.putLong(40, System.currentTimeMillis());
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        compact();
+        return coveredSequence;
+    }
+
+    /**
+     * Copie l'état d'un compte sous le verrou de sa tranche.
+     * L'historique est écrit de la transaction la plus ancienne à la plus récente.
+     * @param aggregates Reçoit l'état des agrégats du compte, capturé sous le même verrou
+     */
+    private List<JournalRecord> capture(BankAccount account, long[] aggregates) throws IOException {
+        ReentrantLock lock = AccountLocks.lockFor(account.getAccountNumber());
+        lock.lock();
+        try {
+            List<JournalRecord> records = new ArrayList<>();
+            records.add(JournalRecord.forAccountOpened(account));
+            account.getAggregates().export(aggregates);
+            List<HistoryEntry> recent = account.getRecentHistory(historyPerAccount);
+            Collections.reverse(recent);
+            for (HistoryEntry entry : recent) {
+                records.add(JournalRecord.forHistoryEntry(account.getAccountNumber(), entry));
+            }
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ajoute au tampon les enregistrements d'agrégats d'un compte, qui suivent son enregistrement d'ouverture.
+     * @return Le nombre d'octets écrits sur disque pour libérer le tampon.
+     */
+    private static long putAggregates(FileChannel channel, ByteBuffer buffer, long position, long sequence, long[] aggregates) throws IOException {
+        long written = 0;
+        for (int part = 0; part < AGGREGATE_RECORDS; part++) {
+            if (!buffer.hasRemaining()) {
+                written += flush(channel, buffer, position + written);
+            }
+            JournalRecord.encodeAggregates(buffer, buffer.position(), sequence, aggregates, part);
+            buffer.position(buffer.position() + JournalRecord.SIZE);
+        }
+        return written;
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    /**
+     * Ne conserve que les derniers instantanés et archive les segments couverts par le plus ancien d'entre eux,
+     * afin qu'un instantané corrompu puisse toujours être remplacé par le précédent.
+     */
+    private void compact() throws IOException {
+        List<Path> snapshots = listSnapshots(directory);
+        for (int i = RETAINED_SNAPSHOTS; i < snapshots.size(); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        Path oldestRetained = snapshots.get(Math.min(RETAINED_SNAPSHOTS, snapshots.size()) - 1);
+        long firstLiveSegment = readHeader(oldestRetained).getLong(16);
+
+        Path archive = directory.resolve(ARCHIVE_DIRECTORY);
+        for (Path segment : TransactionJournal.listSegments(directory)) {
+            if (TransactionJournal.segmentIndexOf(segment) >= firstLiveSegment) {
+                break;
+            }
+            if (deleteCompactedSegments) {
+                Files.delete(segment);
+            } else {
+                Files.createDirectories(archive);
+                Files.move(segment, archive.resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * @return Les instantanés du répertoire, du plus récent au plus ancien.
+     */
+    static List<Path> listSnapshots(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted(Comparator.reverseOrder())
+                    .toList());
+        }
+    }
+
+    private static ByteBuffer readHeader(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(JournalRecord.SIZE);
+            channel.read(header, 0);
+            return header;
+        }
+    }
+
+    /**
+     * Charge le plus récent instantané intègre du répertoire.
+     * @return L'instantané, ou null s'il n'y en a aucun d'utilisable.
+     */
+    static Snapshot loadLatest(Path directory) throws IOException {
+        for (Path path : listSnapshots(directory)) {
+            Snapshot snapshot = load(path);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            System.out.println("Instantané ignoré (incomplet ou corrompu) : " + path);
+        }
+        return null;
+    }
+
+    private static Snapshot load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < JournalRecord.SIZE || channel.size() % JournalRecord.SIZE != 0) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != SNAPSHOT_MAGIC || buffer.getInt(4) < SNAPSHOT_MIN_VERSION || buffer.getInt(4) > SNAPSHOT_VERSION) {
+                return null;
+            }
+            long expectedAccounts = buffer.getLong(24);
+            long expectedRecords = buffer.getLong(32);
+            if (expectedRecords != channel.size() / JournalRecord.SIZE - 1) {
+                return null;
+            }
+
+            AccountTable accounts = new AccountTable((int) Math.min(Integer.MAX_VALUE / 4, expectedAccounts));
+            Map<String, List<JournalRecord>> history = new HashMap<>();
+            Map<String, long[]> aggregates = new HashMap<>();
+            List<JournalRecord> currentHistory = null;
+            String currentAccount = null;
+            long accountCount = 0;
+            for (int offset = JournalRecord.SIZE; offset < buffer.capacity(); offset += JournalRecord.SIZE) {
+                if (buffer.get(offset + JournalRecord.OFF_KIND) == JournalRecord.KIND_AGGREGATES) {
+                    if (!JournalRecord.isValid(buffer, offset)) {
+                        return null;
+                    }
+                    if (currentAccount != null) {
+                        JournalRecord.decodeAggregates(buffer, offset,
+                                aggregates.computeIfAbsent(currentAccount, account -> new long[AccountAggregates.STATE_LONGS]));
+                    }
+                    continue;
+                }
+                JournalRecord record = JournalRecord.decode(buffer, offset);
+                if (record == null) {
+                    return null;
+                }
+                if (record.getKind() == JournalRecord.KIND_ACCOUNT_OPENED) {
+                    int slot = accounts.slot(buffer.getLong(offset + JournalRecord.OFF_TARGET),
+                            buffer.getLong(offset + JournalRecord.OFF_TARGET + 8));
+                    accounts.open(slot, record.getOwner(), record.getAccountClass(), record.getAmount(), record.getSequence());
+                    currentAccount = record.getTargetAccountNumber();
+                    currentHistory = new ArrayList<>();
+                    history.put(currentAccount, currentHistory);
+                    accountCount++;
+                } else if (currentHistory != null) {
+                    currentHistory.add(record);
+                }
+            }
+            if (accountCount != expectedAccounts) {
+                return null;
+            }
+            return new Snapshot(buffer.getLong(8), buffer.getLong(16), accounts, history, aggregates);
+        }
+    }
+
+    /**
+     * Arrête les points de reprise périodiques.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.corebanker.persistence;
+
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.history.AccountAggregates;
+import com.corebanker.models.BankAccount;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Comptes relus au démarrage mais pas encore chargés en mémoire.
+ *
+ * JournalRecovery conserve la table reconstituée (solde, séquence et positions des transactions de chaque compte
+ * dans les segments projetés) au lieu de créer un BankAccount par compte. Un compte n'est reconstruit qu'à son premier
+ * accès, avec ses agrégats ; son historique récent n'est relu qu'à la première consultation (AccountHistory.deferLoad).
+ *
+ * L'état d'un compte froid ne change pas : tout mouvement passe par son chargement préalable
+ * (BankAccountManager.findAccountByNumber). Chargement et copie se font sous le verrou de la tranche du compte ;
+ * l'indicateur de chargement est lu sans verrou, en lecture volatile.
+ *
+ * Les comptes d'un propriétaire sont retrouvés par un index construit une fois pour toutes : les emplacements
+ * triés par empreinte du nom de propriétaire, parcourus par recherche dichotomique.
+ */
+public final class ColdAccounts {
+    private static final VarHandle LOADED = MethodHandles.arrayElementVarHandle(boolean[].class);
+
+    private final AccountTable table;
+    private final ByteBuffer[] segments;
+    private final Snapshot snapshot;
+    private final int historyWindow;
+    private final boolean[] loaded; // Par emplacement de la table, écrit sous le verrou du compte, lu par LOADED
+    private final long[] byOwner; // hashCode du propriétaire << 32 | emplacement, trié
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    ColdAccounts(AccountTable table, ByteBuffer[] segments, Snapshot snapshot, int historyWindow) {
+        this.table = table;
+        this.segments = segments;
+        this.snapshot = snapshot;
+        this.historyWindow = historyWindow;
+        this.loaded = new boolean[table.capacity()];
+        long[] owners = new long[table.capacity()];
+        int count = 0;
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            if (table.isUsed(slot) && table.isOpened(slot)) {
+                owners[count++] = (long) hashOf(table.owner(slot)) << 32 | slot;
+            } else {
+                loaded[slot] = true; // Mouvements d'un compte dont l'ouverture n'a pas été relue : ignorés, comme à la relecture complète
+            }
+        }
+        remaining.set(count);
+        this.byOwner = Arrays.copyOf(owners, count);
+        Arrays.parallelSort(byOwner);
+    }
+
+    /**
+     * @return Le nombre de comptes pas encore chargés.
+     */
+    public int remaining() {
+        return remaining.get();
+    }
+
+    /**
+     * @return true si le compte existe et n'a pas encore été chargé.
+     */
+    public boolean contains(String accountNumber) {
+        int slot = slotOf(accountNumber);
+        return slot >= 0 && !isLoaded(slot);
+    }
+
+    /**
+     * Retire un compte de la réserve et le reconstruit. À appeler sous le verrou du compte.
+     * @return Le compte, ou null s'il est inconnu ou déjà chargé.
+     */
+    public BankAccount take(String accountNumber) {
+        int slot = slotOf(accountNumber);
+        if (slot < 0 || isLoaded(slot)) {
+            return null;
+        }
+        LOADED.setVolatile(loaded, slot, true);
+        remaining.decrementAndGet();
+        return build(slot, accountNumber);
+    }
+
+    /**
+     * @return Les numéros des comptes pas encore chargés d'un propriétaire.
+     */
+    public List<String> accountNumbersOf(String owner) {
+        List<String> numbers = new ArrayList<>();
+        long hash = hashOf(owner);
+        // Première entrée de l'empreinte : les emplacements, positifs, occupent les 32 bits de poids faible
+        int i = Arrays.binarySearch(byOwner, hash << 32);
+        for (i = i >= 0 ? i : -i - 1; i < byOwner.length && (byOwner[i] >> 32) == hash; i++) {
+            int slot = (int) byOwner[i];
+            if (!isLoaded(slot) && owner.equals(table.owner(slot))) {
+                numbers.add(table.accountNumber(slot));
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Parcourt les comptes pas encore chargés, chacun reconstruit dans une copie non enregistrée
+     * (instantanés, réplication). Un compte chargé entre-temps est sauté : il figure alors dans le registre.
+     */
+    public Iterator<BankAccount> copies() {
+        return new Iterator<>() {
+            private int slot = -1;
+            private BankAccount next = advance();
+
+            private BankAccount advance() {
+                while (++slot < loaded.length) {
+                    if (isLoaded(slot)) {
+                        continue;
+                    }
+                    String accountNumber = table.accountNumber(slot);
+                    ReentrantLock lock = AccountLocks.lockFor(accountNumber);
+                    lock.lock();
+                    try {
+                        if (!isLoaded(slot)) {
+                            return build(slot, accountNumber);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public BankAccount next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                BankAccount current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    private boolean isLoaded(int slot) {
+        return (boolean) LOADED.getVolatile(loaded, slot);
+    }
+
+    private static int hashOf(String owner) {
+        return owner != null ? owner.hashCode() : 0;
+    }
+
+    private int slotOf(String accountNumber) {
+        long[] key = AccountTable.keyOf(accountNumber);
+        return table.find(key[0], key[1]);
+    }
+
+    /**
+     * Reconstruit un compte comme JournalRecovery.restoreAll : solde et séquence, agrégats de l'instantané complétés
+     * par les mouvements relus encore dans leurs périodes ; l'historique récent est différé.
+     */
+    private BankAccount build(int slot, String accountNumber) {
+        BankAccount account = BankAccount.restore(accountNumber, table.owner(slot), table.accountClass(slot),
+                table.balance(slot), table.sequence(slot));
+        long[] positions = table.positions(slot);
+        long horizon = AccountAggregates.horizon(System.currentTimeMillis());
+        if (snapshot != null) {
+            JournalRecovery.restoreCapturedAggregates(account, snapshot, horizon);
+        }
+        for (long position : positions) {
+            JournalRecord record = JournalRecovery.decodeAt(segments, position);
+            if (record.getTimestamp() >= horizon) {
+                account.getAggregates().record(record.getTimestamp(), record.getAmount(), record.getFee(), record.getType(),
+                        accountNumber.equals(record.getSourceAccountNumber()));
+            }
+        }
+        if (historyWindow > 0) {
+            account.getHistory().deferLoad(() -> JournalRecovery.restoreHistory(account, snapshot, segments, positions, historyWindow));
+        }
+        return account;
+    }
+}
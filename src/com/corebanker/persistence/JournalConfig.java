@@ -0,0 +1,72 @@
+package com.corebanker.persistence;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Paramètres du journal des transactions.
+ */
+public final class JournalConfig {
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxBatchRecords;
+    private final long maxBatchDelayMicros;
+    private final boolean fsync;
+
+    /**
+     * @param directory Répertoire contenant les segments du journal
+     * @param segmentSize Taille (en octets) au-delà de laquelle un nouveau segment est ouvert (2 Go au plus,
+     *                    pour que chaque segment puisse être projeté en mémoire d'un seul tenant)
+     * @param maxBatchRecords Nombre maximal d'enregistrements par validation groupée
+     * @param maxBatchDelayMicros Attente maximale pour compléter un lot (0 = aucun délai ajouté)
+     * @param fsync true pour forcer l'écriture sur disque à chaque lot
+     */
+    public JournalConfig(Path directory, long segmentSize, int maxBatchRecords, long maxBatchDelayMicros, boolean fsync) {
+        if (segmentSize < JournalRecord.SIZE * 2L || segmentSize > Integer.MAX_VALUE || maxBatchRecords < 1 || maxBatchDelayMicros < 0) {
+            throw new IllegalArgumentException("Configuration du journal invalide.");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBatchRecords = maxBatchRecords;
+        this.maxBatchDelayMicros = maxBatchDelayMicros;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Configuration par défaut, surchargeable par propriétés système :
+     * corebanker.journal.dir, corebanker.journal.segmentSize, corebanker.journal.batchRecords,
+     * corebanker.journal.batchDelayMicros, corebanker.journal.fsync.
+     */
+    public static JournalConfig defaults() {
+        return new JournalConfig(
+                Paths.get(System.getProperty("corebanker.journal.dir", "journal")),
+                Long.getLong("corebanker.journal.segmentSize", 64L * 1024 * 1024),
+                Integer.getInteger("corebanker.journal.batchRecords", 1024),
+                Long.getLong("corebanker.journal.batchDelayMicros", 0),
+                Boolean.parseBoolean(System.getProperty("corebanker.journal.fsync", "true")));
+    }
+
+    public JournalConfig withDirectory(Path directory) {
+        return new JournalConfig(directory, segmentSize, maxBatchRecords, maxBatchDelayMicros, fsync);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getMaxBatchRecords() {
+        return maxBatchRecords;
+    }
+
+    public long getMaxBatchDelayMicros() {
+        return maxBatchDelayMicros;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+}
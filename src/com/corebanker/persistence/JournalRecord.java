@@ -0,0 +1,451 @@
+package com.corebanker.persistence;
+
+import com.corebanker.enums.AccountClass;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.history.HistoryEntry;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Enregistrement binaire de taille fixe (128 octets) du journal des transactions.
+ *
+ * <pre>
+ * 0   int    CRC32C des octets 4..127
+ * 4   byte   nature (ouverture de compte, transaction)
+ * 5   byte   TransactionType (ordinal + 1, 0 si absent)
+ * 6   byte   TransactionStatus (ordinal + 1, 0 si absent)
+ * 7   byte   AccountClass (ordinal + 1, ouverture de compte uniquement ; 0 : STANDARD)
+ * 8   long   numéro de séquence attribué par le journal
+ * 16  long   identifiant de transaction (bits de poids fort)
+ * 24  long   identifiant de transaction (bits de poids faible)
+ * 32  long   horodatage en millisecondes
+ * 40  16 o.  compte source (ASCII, complété par des zéros)
+ * 56  16 o.  compte cible (ASCII, complété par des zéros)
+ * 72  long   montant en centimes
+ * 80  long   frais en centimes
+ * 88  40 o.  propriétaire (UTF-8, ouverture de compte uniquement)
+ * 88  long   transaction en deux étapes : séquence de la seconde étape (0 : celle de l'octet 8)
+ * </pre>
+ *
+ * Un transfert exécuté en deux étapes (TransactionPipeline, ShardedEngine) réserve une séquence sous le verrou
+ * de chacun de ses comptes : celle du débit (octet 8) pour la source, celle du crédit (octet 88) pour la cible.
+ * Un transfert compensé (statut CANCELLED) porte la séquence du débit et celle du remboursement de la source ;
+ * son compte cible n'est pas touché.
+ *
+ * Les instantanés utilisent en plus des enregistrements d'agrégats (KIND_AGGREGATES) : l'octet 7 porte le numéro
+ * de la tranche, et les octets 16..127 une partie de l'état exporté par AccountAggregates, sous forme de longs bruts.
+ *
+ * Les enregistrements soumis ensemble (TransactionJournal.appendAll) sont précédés d'un en-tête de groupe (KIND_GROUP) :
+ * l'octet 72 porte le nombre d'enregistrements du groupe, l'octet 80 le CRC32C de leurs CRC, dans l'ordre.
+ * Un groupe dont un membre manque ou est corrompu (arrêt brutal pendant son écriture) est écarté en entier à la relecture.
+ */
+public final class JournalRecord {
+    public static final int SIZE = 128;
+    public static final byte KIND_ACCOUNT_OPENED = 1;
+    public static final byte KIND_TRANSACTION = 2;
+    /** Réservé aux instantanés : état des agrégats du compte qui précède. */
+    public static final byte KIND_AGGREGATES = 3;
+    /** En-tête des enregistrements soumis ensemble, relus tous ou aucun. */
+    public static final byte KIND_GROUP = 4;
+
+    static final int OFF_CRC = 0;
+    static final int OFF_KIND = 4;
+    static final int OFF_TYPE = 5;
+    static final int OFF_STATUS = 6;
+    static final int OFF_FLAGS = 7;
+    static final int OFF_SEQUENCE = 8;
+    static final int OFF_ID_MSB = 16;
+    static final int OFF_ID_LSB = 24;
+    static final int OFF_TIMESTAMP = 32;
+    static final int OFF_SOURCE = 40;
+    static final int OFF_TARGET = 56;
+    static final int OFF_AMOUNT = 72;
+    static final int OFF_FEE = 80;
+    static final int OFF_OWNER = 88;
+    static final int OFF_SECOND_SEQUENCE = 88;
+    static final int OFF_PAYLOAD = 16;
+    static final int PAYLOAD_LONGS = (SIZE - OFF_PAYLOAD) / Long.BYTES;
+    static final int ACCOUNT_FIELD = 16;
+    static final int OWNER_FIELD = 40;
+    /** Longueur maximale du nom d'un propriétaire, en octets UTF-8 : au-delà, il ne tiendrait pas dans le journal. */
+    public static final int MAX_OWNER_BYTES = OWNER_FIELD;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final AccountClass[] CLASSES = AccountClass.values();
+
+    private final byte kind;
+    private long sequence;
+    private final long idMostSigBits;
+    private final long idLeastSigBits;
+    private final long timestamp;
+    private final String sourceAccountNumber;
+    private final String targetAccountNumber;
+    private final long amount;
+    private final long fee;
+    private final TransactionType type;
+    private final TransactionStatus status;
+    private final String owner;
+    private final AccountClass accountClass;
+    private final long secondSequence;
+
+    JournalRecord(byte kind, long sequence, long idMostSigBits, long idLeastSigBits, long timestamp,
+                  String sourceAccountNumber, String targetAccountNumber, long amount, long fee,
+                  TransactionType type, TransactionStatus status, String owner, AccountClass accountClass) {
+        this(kind, sequence, idMostSigBits, idLeastSigBits, timestamp, sourceAccountNumber, targetAccountNumber, amount, fee,
+                type, status, owner, accountClass, 0);
+    }
+
+    private JournalRecord(byte kind, long sequence, long idMostSigBits, long idLeastSigBits, long timestamp,
+                  String sourceAccountNumber, String targetAccountNumber, long amount, long fee,
+                  TransactionType type, TransactionStatus status, String owner, AccountClass accountClass, long secondSequence) {
+        this.kind = kind;
+        this.sequence = sequence;
+        this.idMostSigBits = idMostSigBits;
+        this.idLeastSigBits = idLeastSigBits;
+        this.timestamp = timestamp;
+        this.sourceAccountNumber = sourceAccountNumber;
+        this.targetAccountNumber = targetAccountNumber;
+        this.amount = amount;
+        this.fee = fee;
+        this.type = type;
+        this.status = status;
+        this.owner = owner;
+        this.accountClass = accountClass;
+        this.secondSequence = secondSequence;
+    }
+
+    /**
+     * Crée l'enregistrement d'une transaction exécutée, avec la séquence qui lui a été réservée.
+     * @param transaction La transaction à journaliser
+     * @param fee Les frais prélevés, en centimes
+     */
+    public static JournalRecord forTransaction(Transaction transaction, long fee) {
+        return forTransaction(transaction, fee, transaction.getSequence(), 0, transaction.getStatus());
+    }
+
+    /**
+     * Crée l'enregistrement d'un transfert exécuté en deux étapes.
+     * @param creditSequence La séquence réservée sous le verrou du compte cible, au crédit
+     */
+    public static JournalRecord forTransaction(Transaction transaction, long fee, long creditSequence) {
+        return forTransaction(transaction, fee, transaction.getSequence(), creditSequence, transaction.getStatus());
+    }
+
+    /**
+     * Crée l'enregistrement d'une opération dont le débit a été compensé (statut CANCELLED) : la source a été débitée
+     * puis remboursée, la cible n'a pas été touchée.
+     * @param debitSequence La séquence réservée au débit
+     * @param refundSequence La séquence réservée au remboursement
+     */
+    public static JournalRecord forCompensation(Transaction transaction, long fee, long debitSequence, long refundSequence) {
+        return forTransaction(transaction, fee, debitSequence, refundSequence, TransactionStatus.CANCELLED);
+    }
+
+    private static JournalRecord forTransaction(Transaction transaction, long fee, long sequence, long secondSequence,
+                                                TransactionStatus status) {
+        UUID id = UUID.fromString(transaction.getTransactionId());
+        return new JournalRecord(KIND_TRANSACTION, sequence, id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                transaction.getTransactionDate().getTime(),
+                transaction.getSourceAccount() != null ? transaction.getSourceAccount().getAccountNumber() : null,
+                transaction.getTargetAccount() != null ? transaction.getTargetAccount().getAccountNumber() : null,
+                transaction.getAmount(), fee, transaction.getTransactionType(), status, null, null, secondSequence);
+    }
+
+    /**
+     * Recrée l'enregistrement d'une transaction à partir d'une entrée de l'historique d'un compte.
+     * @param accountNumber Le compte auquel appartient l'historique
+     * @param entry L'entrée de l'historique
+     */
+    public static JournalRecord forHistoryEntry(String accountNumber, HistoryEntry entry) {
+        String counterpart = entry.getCounterpartAccountNumber();
+        return new JournalRecord(KIND_TRANSACTION, entry.getSequence(), entry.getIdMostSigBits(), entry.getIdLeastSigBits(),
+                entry.getTimestamp(), entry.isOutgoing() ? accountNumber : counterpart, entry.isOutgoing() ? counterpart : accountNumber,
+                entry.getAmount(), entry.getFee(), entry.getType(), entry.getStatus(), null, null);
+    }
+
+    /**
+     * @return true si le nom du propriétaire tient entier dans un enregistrement (voir MAX_OWNER_BYTES).
+     */
+    public static boolean fitsOwner(String owner) {
+        return owner.getBytes(StandardCharsets.UTF_8).length <= MAX_OWNER_BYTES;
+    }
+
+    /**
+     * Crée l'enregistrement d'ouverture d'un compte, avec son solde au moment de l'enregistrement.
+     * Les instantanés réutilisent ce format pour l'état de chaque compte (séquence = dernier mouvement intégré).
+     * @param account Le compte ouvert
+     */
+    public static JournalRecord forAccountOpened(BankAccount account) {
+        return new JournalRecord(KIND_ACCOUNT_OPENED, account.getLastSequence(), 0, 0, System.currentTimeMillis(),
+                null, account.getAccountNumber(), account.getBalance(), 0, null, null, account.getOwner(),
+                account.getAccountClass());
+    }
+
+    public byte getKind() {
+        return kind;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return La séquence de la seconde étape d'un transfert en deux étapes (crédit de la cible, ou remboursement
+     *         de la source s'il a été compensé) ; sinon la séquence de l'enregistrement.
+     */
+    public long getSecondSequence() {
+        return secondSequence != 0 ? secondSequence : sequence;
+    }
+
+    /**
+     * Lecture sans allocation de {@link #getSecondSequence()}.
+     */
+    static long secondSequenceAt(ByteBuffer buffer, int offset) {
+        long second = buffer.get(offset + OFF_KIND) == KIND_TRANSACTION ? buffer.getLong(offset + OFF_SECOND_SEQUENCE) : 0;
+        return second != 0 ? second : buffer.getLong(offset + OFF_SEQUENCE);
+    }
+
+    /**
+     * @return La plus grande séquence portée par l'enregistrement situé à la position donnée.
+     */
+    static long maxSequenceAt(ByteBuffer buffer, int offset) {
+        return Math.max(buffer.getLong(offset + OFF_SEQUENCE), secondSequenceAt(buffer, offset));
+    }
+
+    public String getTransactionId() {
+        return new UUID(idMostSigBits, idLeastSigBits).toString();
+    }
+
+    public long getIdMostSigBits() {
+        return idMostSigBits;
+    }
+
+    public long getIdLeastSigBits() {
+        return idLeastSigBits;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getSourceAccountNumber() {
+        return sourceAccountNumber;
+    }
+
+    public String getTargetAccountNumber() {
+        return targetAccountNumber;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getFee() {
+        return fee;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return La classe du compte (ouverture de compte uniquement, null sinon).
+     */
+    public AccountClass getAccountClass() {
+        return accountClass;
+    }
+
+    /**
+     * Écrit l'enregistrement à la position absolue donnée du tampon.
+     */
+    public void encode(ByteBuffer buffer, int offset) {
+        buffer.put(offset + OFF_KIND, kind);
+        buffer.put(offset + OFF_TYPE, (byte) (type != null ? type.ordinal() + 1 : 0));
+        buffer.put(offset + OFF_STATUS, (byte) (status != null ? status.ordinal() + 1 : 0));
+        buffer.put(offset + OFF_FLAGS, (byte) (accountClass != null ? accountClass.ordinal() + 1 : 0));
+        buffer.putLong(offset + OFF_SEQUENCE, sequence);
+        buffer.putLong(offset + OFF_ID_MSB, idMostSigBits);
+        buffer.putLong(offset + OFF_ID_LSB, idLeastSigBits);
+        buffer.putLong(offset + OFF_TIMESTAMP, timestamp);
+        putText(buffer, offset + OFF_SOURCE, ACCOUNT_FIELD, sourceAccountNumber);
+        putText(buffer, offset + OFF_TARGET, ACCOUNT_FIELD, targetAccountNumber);
+        buffer.putLong(offset + OFF_AMOUNT, amount);
+        buffer.putLong(offset + OFF_FEE, fee);
+        putText(buffer, offset + OFF_OWNER, OWNER_FIELD, owner);
+        if (kind == KIND_TRANSACTION) {
+            buffer.putLong(offset + OFF_SECOND_SEQUENCE, secondSequence);
+        }
+        buffer.putInt(offset + OFF_CRC, checksum(buffer, offset));
+    }
+
+    /**
+     * Lit l'enregistrement situé à la position absolue donnée.
+     * @return L'enregistrement, ou null si l'emplacement est vide ou corrompu.
+     */
+    public static JournalRecord decode(ByteBuffer buffer, int offset) {
+        if (!isValid(buffer, offset)) {
+            return null;
+        }
+        int typeCode = buffer.get(offset + OFF_TYPE);
+        int statusCode = buffer.get(offset + OFF_STATUS);
+        byte kind = buffer.get(offset + OFF_KIND);
+        int classCode = buffer.get(offset + OFF_FLAGS);
+        return new JournalRecord(kind,
+                buffer.getLong(offset + OFF_SEQUENCE),
+                buffer.getLong(offset + OFF_ID_MSB),
+                buffer.getLong(offset + OFF_ID_LSB),
+                buffer.getLong(offset + OFF_TIMESTAMP),
+                getText(buffer, offset + OFF_SOURCE, ACCOUNT_FIELD),
+                getText(buffer, offset + OFF_TARGET, ACCOUNT_FIELD),
+                buffer.getLong(offset + OFF_AMOUNT),
+                buffer.getLong(offset + OFF_FEE),
+                typeCode > 0 ? TYPES[typeCode - 1] : null,
+                statusCode > 0 ? STATUSES[statusCode - 1] : null,
+                kind == KIND_ACCOUNT_OPENED ? getText(buffer, offset + OFF_OWNER, OWNER_FIELD) : null,
+                kind != KIND_ACCOUNT_OPENED ? null : classCode > 0 ? CLASSES[classCode - 1] : AccountClass.STANDARD,
+                kind == KIND_TRANSACTION ? buffer.getLong(offset + OFF_SECOND_SEQUENCE) : 0);
+    }
+
+    /**
+     * Écrit une tranche de l'état des agrégats d'un compte (PAYLOAD_LONGS longs à partir de part * PAYLOAD_LONGS).
+     * @param sequence La séquence capturée pour le compte
+     */
+    static void encodeAggregates(ByteBuffer buffer, int offset, long sequence, long[] state, int part) {
+        buffer.put(offset + OFF_KIND, KIND_AGGREGATES);
+        buffer.put(offset + OFF_TYPE, (byte) 0);
+        buffer.put(offset + OFF_STATUS, (byte) 0);
+        buffer.put(offset + OFF_FLAGS, (byte) part);
+        buffer.putLong(offset + OFF_SEQUENCE, sequence);
+        for (int i = 0; i < PAYLOAD_LONGS; i++) {
+            int index = part * PAYLOAD_LONGS + i;
+            buffer.putLong(offset + OFF_PAYLOAD + i * Long.BYTES, index < state.length ? state[index] : 0);
+        }
+        buffer.putInt(offset + OFF_CRC, checksum(buffer, offset));
+    }
+
+    /**
+     * Relit la tranche d'agrégats située à la position donnée dans l'état, à l'emplacement indiqué par son numéro.
+     */
+    static void decodeAggregates(ByteBuffer buffer, int offset, long[] state) {
+        int part = buffer.get(offset + OFF_FLAGS);
+        for (int i = 0; i < PAYLOAD_LONGS; i++) {
+            int index = part * PAYLOAD_LONGS + i;
+            if (index >= 0 && index < state.length) {
+                state[index] = buffer.getLong(offset + OFF_PAYLOAD + i * Long.BYTES);
+            }
+        }
+    }
+
+    /**
+     * @return true si l'emplacement contient un enregistrement dont le CRC est correct.
+     */
+    public static boolean isValid(ByteBuffer buffer, int offset) {
+        byte kind = buffer.get(offset + OFF_KIND);
+        if (kind != KIND_ACCOUNT_OPENED && kind != KIND_TRANSACTION && kind != KIND_AGGREGATES && kind != KIND_GROUP) {
+            return false;
+        }
+        return buffer.getInt(offset + OFF_CRC) == checksum(buffer, offset);
+    }
+
+    /**
+     * Écrit l'en-tête d'un groupe dont les count membres sont déjà encodés à sa suite.
+     */
+    static void encodeGroup(ByteBuffer buffer, int offset, int count) {
+        for (int i = OFF_KIND; i < SIZE; i += Integer.BYTES) {
+            buffer.putInt(offset + i, 0);
+        }
+        buffer.put(offset + OFF_KIND, KIND_GROUP);
+        buffer.putLong(offset + OFF_AMOUNT, count);
+        buffer.putInt(offset + OFF_FEE, membersChecksum(buffer, offset, count));
+        buffer.putInt(offset + OFF_CRC, checksum(buffer, offset));
+    }
+
+    /**
+     * @return true si l'enregistrement (supposé intègre) situé à la position donnée est un en-tête de groupe.
+     */
+    public static boolean isGroup(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + OFF_KIND) == KIND_GROUP;
+    }
+
+    /**
+     * @return Le nombre de membres annoncé par un en-tête de groupe.
+     */
+    public static long groupCount(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + OFF_AMOUNT);
+    }
+
+    /**
+     * Vérifie qu'un groupe est entier : tous ses membres sont présents avant la limite du tampon, intègres,
+     * et forment bien la suite inscrite dans l'en-tête.
+     */
+    public static boolean isCompleteGroup(ByteBuffer buffer, int offset) {
+        long count = groupCount(buffer, offset);
+        if (count <= 0 || offset + (count + 1) * SIZE > buffer.limit()) {
+            return false;
+        }
+        for (int member = offset + SIZE; member <= offset + count * SIZE; member += SIZE) {
+            if (!isValid(buffer, member) || isGroup(buffer, member)) {
+                return false;
+            }
+        }
+        return buffer.getInt(offset + OFF_FEE) == membersChecksum(buffer, offset, (int) count);
+    }
+
+    private static int membersChecksum(ByteBuffer buffer, int offset, int count) {
+        CRC32C crc = new CRC32C();
+        for (int i = 1; i <= count; i++) {
+            crc.update(buffer.slice(offset + i * SIZE + OFF_CRC, Integer.BYTES));
+        }
+        return (int) crc.getValue();
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + OFF_KIND, SIZE - OFF_KIND));
+        return (int) crc.getValue();
+    }
+
+    private static void putText(ByteBuffer buffer, int offset, int width, String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = Math.min(bytes.length, width);
+        // Ne jamais couper un caractère UTF-8 multi-octets en deux
+        while (length > 0 && length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        for (int i = 0; i < width; i++) {
+            buffer.put(offset + i, i < length ? bytes[i] : 0);
+        }
+    }
+
+    private static String getText(ByteBuffer buffer, int offset, int width) {
+        int length = 0;
+        while (length < width && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
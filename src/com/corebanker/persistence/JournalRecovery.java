@@ -0,0 +1,480 @@
+package com.corebanker.persistence;
+
+import com.corebanker.engine.IdempotencyCache;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.history.AccountAggregates;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.metrics.Metrics;
+import com.corebanker.models.BankAccount;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Reconstruction de l'état au démarrage en une seule lecture du journal.
+ * Le dernier instantané intègre (voir CheckpointManager) sert de point de départ : seuls les segments
+ * qu'il ne couvre pas sont relus, et un mouvement n'est appliqué à un compte que s'il est postérieur
+ * à l'état capturé pour ce compte.
+ * Les segments sont projetés en mémoire et découpés en blocs analysés en parallèle ;
+ * chaque bloc produit une table partielle (soldes, positions d'historique) fusionnée ensuite dans l'ordre.
+ * Les transferts idempotents encore dans leur délai de conservation sont remis dans l'IdempotencyCache lors de la fusion.
+ * Les agrégats des comptes (AccountAggregates) repartent de l'état capturé puis intègrent, en parallèle,
+ * les mouvements relus qui tombent encore dans leurs périodes.
+ *
+ * Par défaut (-Dcorebanker.accounts.lazy=true), aucun compte n'est créé au démarrage : la table reconstituée est confiée
+ * à BankAccountManager (ColdAccounts) et chaque compte n'est reconstruit, agrégats et historique compris, qu'à son premier accès.
+ */
+public final class JournalRecovery {
+    /** Comptes reconstruits à leur premier accès plutôt qu'au démarrage. */
+    public static final boolean LAZY = Boolean.parseBoolean(System.getProperty("corebanker.accounts.lazy", "true"));
+
+    private static final int MIN_CHUNK_RECORDS = 1 << 16;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final byte SUCCEEDED_CODE = (byte) (TransactionStatus.SUCCEEDED.ordinal() + 1);
+    private static final byte CANCELLED_CODE = (byte) (TransactionStatus.CANCELLED.ordinal() + 1);
+
+    private JournalRecovery() {
+    }
+
+    /**
+     * Bloc d'enregistrements d'un segment, analysé indépendamment.
+     */
+    private record Chunk(int segment, ByteBuffer buffer, int firstRecord, int endRecord) {
+    }
+
+    /**
+     * Résultat partiel de l'analyse d'un bloc.
+     */
+    private record ChunkResult(Chunk chunk, AccountTable table, long records, long lastSequence, boolean truncated, int[] keyed) {
+    }
+
+    /**
+     * Bilan de la reconstruction et index d'historique par compte.
+     */
+    public static final class Result {
+        private final AccountTable table;
+        private final ByteBuffer[] segments;
+        private final int accountsRestored;
+        private final long recordsRead;
+        private final long lastSequence;
+        private final long snapshotSequence;
+        private final long elapsedNanos;
+
+        private Result(AccountTable table, ByteBuffer[] segments, int accountsRestored, long recordsRead,
+                       long lastSequence, long snapshotSequence, long elapsedNanos) {
+            this.table = table;
+            this.segments = segments;
+            this.accountsRestored = accountsRestored;
+            this.recordsRead = recordsRead;
+            this.lastSequence = lastSequence;
+            this.snapshotSequence = snapshotSequence;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getAccountsRestored() {
+            return accountsRestored;
+        }
+
+        public long getRecordsRead() {
+            return recordsRead;
+        }
+
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        /**
+         * @return La séquence couverte par l'instantané chargé, ou 0 si tout le journal a été relu.
+         */
+        public long getSnapshotSequence() {
+            return snapshotSequence;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return Les positions, dans le journal, des transactions du compte relues après l'instantané (ordre chronologique).
+         */
+        public long[] historyPositions(String accountNumber) {
+            long[] key = AccountTable.keyOf(accountNumber);
+            int slot = table.find(key[0], key[1]);
+            return slot >= 0 ? table.positions(slot) : new long[0];
+        }
+
+        /**
+         * Relit l'enregistrement situé à une position renvoyée par {@link #historyPositions(String)}.
+         */
+        public JournalRecord readRecord(long position) {
+            return decodeAt(segments, position);
+        }
+    }
+
+    /**
+     * Charge le dernier instantané, relit la fin du journal, reconstitue les comptes dans BankAccountManager
+     * et recharge leur historique récent (au premier accès de chaque compte en mode LAZY).
+     * @param directory Répertoire des segments et des instantanés
+     * @param historyWindow Nombre maximal de transactions rechargées dans l'historique de chaque compte
+     */
+    public static Result recover(Path directory, int historyWindow) throws IOException {
+        return recover(directory, historyWindow, LAZY);
+    }
+
+    /**
+     * @param lazy true pour ne reconstruire chaque compte qu'à son premier accès (voir LAZY)
+     */
+    public static Result recover(Path directory, int historyWindow, boolean lazy) throws IOException {
+        long start = System.nanoTime();
+
+        Snapshot snapshot = CheckpointManager.loadLatest(directory);
+        AccountTable floors = snapshot != null ? snapshot.getAccounts() : null;
+        List<Path> segmentPaths = TransactionJournal.listSegments(directory);
+        if (snapshot != null) {
+            segmentPaths.removeIf(path -> TransactionJournal.segmentIndexOf(path) < snapshot.getFirstLiveSegment());
+        }
+
+        ByteBuffer[] segments = mapSegments(segmentPaths);
+        long totalRecords = 0;
+        for (ByteBuffer segment : segments) {
+            totalRecords += segment != null ? segment.capacity() / JournalRecord.SIZE : 0;
+        }
+        // Quelques blocs par cœur : assez pour équilibrer la charge, peu pour limiter le coût des fusions
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int chunkRecords = (int) Math.max(MIN_CHUNK_RECORDS, Math.min(Integer.MAX_VALUE, totalRecords / (parallelism * 4L)));
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (int s = 0; s < segments.length; s++) {
+            if (segments[s] == null) {
+                continue;
+            }
+            int records = segments[s].capacity() / JournalRecord.SIZE;
+            for (int first = 1; first < records; first += chunkRecords) {
+                chunks.add(new Chunk(s, segments[s], first, (int) Math.min(records, (long) first + chunkRecords)));
+            }
+        }
+
+        IdempotencyCache idempotency = IdempotencyCache.getDefault();
+        if (snapshot != null && idempotency != null) {
+            snapshot.forEachRecentRecord(record -> rememberIdempotent(idempotency, record));
+        }
+
+        // Analyse parallèle, fusion séquentielle dans l'ordre du journal
+        List<ChunkResult> results = chunks.parallelStream().map(chunk -> parseChunk(chunk, floors, idempotency != null)).toList();
+        // La table fusionnée est au moins aussi grande que chaque table partielle : insérer des clés
+        // dans l'ordre des emplacements d'une table plus grande provoquerait un regroupement pathologique
+        int largest = floors != null ? Math.max(1024, floors.capacity() / 2) : 1024;
+        for (ChunkResult result : results) {
+            largest = Math.max(largest, result.table().capacity() / 2);
+        }
+        AccountTable table = new AccountTable(largest);
+        if (floors != null) {
+            table.merge(floors);
+        }
+        long recordsRead = 0;
+        long lastSequence = snapshot != null ? snapshot.getCoveredSequence() : 0;
+        int truncatedSegment = -1;
+        List<ChunkResult> merged = new ArrayList<>(results.size());
+        for (ChunkResult result : results) {
+            if (result.chunk().segment() == truncatedSegment) {
+                continue; // Tout ce qui suit un enregistrement invalide dans un segment est ignoré
+            }
+            merged.add(result);
+            table.merge(result.table());
+            for (int index : result.keyed()) {
+                rememberIdempotent(idempotency, result.chunk().buffer(), index * JournalRecord.SIZE);
+            }
+            recordsRead += result.records();
+            lastSequence = Math.max(lastSequence, result.lastSequence());
+            if (result.truncated()) {
+                truncatedSegment = result.chunk().segment();
+            }
+        }
+
+        int accountsRestored = lazy
+                ? BankAccountManager.restoreCold(new ColdAccounts(table, segments, snapshot, historyWindow))
+                : restoreAll(table, segments, snapshot, floors, merged, historyWindow);
+
+        long elapsed = System.nanoTime() - start;
+        Metrics.recordRecovery(elapsed);
+        return new Result(table, segments, accountsRestored, recordsRead, lastSequence,
+                snapshot != null ? snapshot.getCoveredSequence() : 0, elapsed);
+    }
+
+    /**
+     * Crée tous les comptes de la table, avec leurs agrégats et leur historique récent (-Dcorebanker.accounts.lazy=false).
+     * @return Le nombre de comptes enregistrés.
+     */
+    private static int restoreAll(AccountTable table, ByteBuffer[] segments, Snapshot snapshot, AccountTable floors,
+                                  List<ChunkResult> merged, int historyWindow) {
+        List<BankAccount> restored = new ArrayList<>();
+        List<Integer> restoredSlots = new ArrayList<>();
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            if (table.isUsed(slot) && table.isOpened(slot)) {
+                restored.add(BankAccount.restore(table.accountNumber(slot), table.owner(slot), table.accountClass(slot),
+                        table.balance(slot), table.sequence(slot)));
+                restoredSlots.add(slot);
+            }
+        }
+        int accountsRestored = BankAccountManager.restoreAccounts(restored);
+        rebuildAggregates(snapshot, floors, table, restored, restoredSlots, merged);
+
+        // Historique récent : entrées compactes, au-delà de la fenêtre en mémoire elles débordent sur disque
+        if (historyWindow > 0) {
+            IntStream.range(0, restored.size()).parallel().forEach(i ->
+                    restoreHistory(restored.get(i), snapshot, segments, table.positions(restoredSlots.get(i)), historyWindow));
+        }
+        return accountsRestored;
+    }
+
+    /**
+     * Recharge l'historique récent d'un compte : fin de l'historique capturé dans l'instantané, puis transactions relues.
+     * @param positions Positions des transactions du compte relues après l'instantané
+     */
+    static void restoreHistory(BankAccount account, Snapshot snapshot, ByteBuffer[] segments, long[] positions, int historyWindow) {
+        if (snapshot != null && positions.length < historyWindow) {
+            // Complète avec l'historique capturé dans l'instantané, antérieur à la fin du journal
+            List<JournalRecord> captured = snapshot.getRecentHistory(account.getAccountNumber());
+            int needed = historyWindow - positions.length;
+            for (JournalRecord record : captured.subList(Math.max(0, captured.size() - needed), captured.size())) {
+                appendToHistory(account, record);
+            }
+        }
+        for (int p = Math.max(0, positions.length - historyWindow); p < positions.length; p++) {
+            appendToHistory(account, decodeAt(segments, positions[p]));
+        }
+    }
+
+    /**
+     * Reconstitue les agrégats des comptes : état capturé dans l'instantané, puis mouvements relus postérieurs
+     * à cet état et encore dans les périodes courantes. Les agrégats ne dépendant pas de l'ordre des mouvements,
+     * les blocs sont parcourus en parallèle.
+     */
+    private static void rebuildAggregates(Snapshot snapshot, AccountTable floors, AccountTable table, List<BankAccount> restored,
+                                          List<Integer> restoredSlots, List<ChunkResult> merged) {
+        long horizon = AccountAggregates.horizon(System.currentTimeMillis());
+        BankAccount[] bySlot = new BankAccount[table.capacity()];
+        for (int i = 0; i < restored.size(); i++) {
+            BankAccount account = restored.get(i);
+            bySlot[restoredSlots.get(i)] = account;
+            if (snapshot == null) {
+                continue;
+            }
+            restoreCapturedAggregates(account, snapshot, horizon);
+        }
+        merged.parallelStream().forEach(result -> {
+            ByteBuffer buffer = result.chunk().buffer();
+            int first = result.chunk().firstRecord();
+            for (int index = first; index < first + result.records(); index++) {
+                int offset = index * JournalRecord.SIZE;
+                if (buffer.get(offset + JournalRecord.OFF_KIND) != JournalRecord.KIND_TRANSACTION
+                        || buffer.get(offset + JournalRecord.OFF_STATUS) != SUCCEEDED_CODE
+                        || buffer.getLong(offset + JournalRecord.OFF_TIMESTAMP) < horizon) {
+                    continue;
+                }
+                long timestamp = buffer.getLong(offset + JournalRecord.OFF_TIMESTAMP);
+                long sequence = buffer.getLong(offset + JournalRecord.OFF_SEQUENCE);
+                long amount = buffer.getLong(offset + JournalRecord.OFF_AMOUNT);
+                long fee = buffer.getLong(offset + JournalRecord.OFF_FEE);
+                byte typeCode = buffer.get(offset + JournalRecord.OFF_TYPE);
+                TransactionType type = typeCode > 0 && typeCode <= TYPES.length ? TYPES[typeCode - 1] : null;
+                recordAggregate(floors, table, bySlot, buffer, offset + JournalRecord.OFF_SOURCE, sequence, timestamp, amount, fee, type, true);
+                recordAggregate(floors, table, bySlot, buffer, offset + JournalRecord.OFF_TARGET,
+                        JournalRecord.secondSequenceAt(buffer, offset), timestamp, amount, fee, type, false);
+            }
+        });
+    }
+
+    /**
+     * Agrégats d'un compte capturés dans l'instantané.
+     */
+    static void restoreCapturedAggregates(BankAccount account, Snapshot snapshot, long horizon) {
+        long[] state = snapshot.getAggregates(account.getAccountNumber());
+        if (state != null) {
+            account.getAggregates().restore(state);
+        } else {
+            // Instantané sans agrégats : à défaut, l'historique récent capturé
+            for (JournalRecord record : snapshot.getRecentHistory(account.getAccountNumber())) {
+                if (record.getStatus() == TransactionStatus.SUCCEEDED && record.getTimestamp() >= horizon) {
+                    account.getAggregates().record(record.getTimestamp(), record.getAmount(), record.getFee(), record.getType(),
+                            account.getAccountNumber().equals(record.getSourceAccountNumber()));
+                }
+            }
+        }
+    }
+
+    private static void recordAggregate(AccountTable floors, AccountTable table, BankAccount[] bySlot, ByteBuffer buffer, int field,
+                                        long sequence, long timestamp, long amount, long fee, TransactionType type, boolean outgoing) {
+        long hi = buffer.getLong(field);
+        long lo = buffer.getLong(field + 8);
+        if ((hi == 0 && lo == 0) || covered(floors, hi, lo, sequence)) {
+            return;
+        }
+        int slot = table.find(hi, lo);
+        if (slot >= 0 && bySlot[slot] != null) {
+            bySlot[slot].getAggregates().record(timestamp, amount, fee, type, outgoing);
+        }
+    }
+
+    /**
+     * Ajoute une transaction relue à l'historique compact d'un compte, sans recréer d'objet Transaction.
+     */
+    static void appendToHistory(BankAccount account, JournalRecord record) {
+        boolean outgoing = account.getAccountNumber().equals(record.getSourceAccountNumber());
+        account.getHistory().append(record.getIdMostSigBits(), record.getIdLeastSigBits(), record.getTimestamp(), record.getSequence(),
+                outgoing ? record.getTargetAccountNumber() : record.getSourceAccountNumber(), record.getAmount(), record.getFee(),
+                record.getType(), record.getStatus(), outgoing);
+    }
+
+    /**
+     * Remet dans le cache de déduplication un transfert idempotent capturé dans l'instantané.
+     */
+    private static void rememberIdempotent(IdempotencyCache cache, JournalRecord record) {
+        if (record.getKind() == JournalRecord.KIND_TRANSACTION && IdempotencyCache.isKeyed(record.getIdMostSigBits()) && record.getStatus() != null) {
+            cache.remember(record.getIdMostSigBits(), record.getIdLeastSigBits(), payloadDigest(record), record.getStatus(),
+                    record.getSequence(), record.getFee(), record.getTimestamp());
+        }
+    }
+
+    /**
+     * @return L'empreinte de la demande d'origine d'un transfert idempotent, pour IdempotencyCache.
+     */
+    static long payloadDigest(JournalRecord record) {
+        return IdempotencyCache.payloadDigest(record.getSourceAccountNumber(), record.getTargetAccountNumber(),
+                record.getAmount(), record.getType());
+    }
+
+    /**
+     * Projette chaque segment en mémoire ; un segment à l'en-tête invalide est ignoré.
+     */
+    private static ByteBuffer[] mapSegments(List<Path> paths) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+            try (FileChannel channel = FileChannel.open(paths.get(i), StandardOpenOption.READ)) {
+                long usable = channel.size() / JournalRecord.SIZE * JournalRecord.SIZE;
+                if (usable < JournalRecord.SIZE) {
+                    continue;
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, usable);
+                if (mapped.getInt(0) != TransactionJournal.SEGMENT_MAGIC || mapped.getInt(4) != TransactionJournal.FORMAT_VERSION) {
+                    System.out.println("Segment de journal ignoré (en-tête invalide ou format " + mapped.getInt(4) + " non pris en charge) : " + paths.get(i));
+                    continue;
+                }
+                segments[i] = mapped;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Analyse un bloc sans créer d'objet par enregistrement.
+     * @param floors Comptes de l'instantané (lecture seule) ; un mouvement déjà intégré à un compte capturé est ignoré
+     * @param collectKeyed true pour relever les transferts idempotents, remis dans le cache lors de la fusion
+     */
+    private static ChunkResult parseChunk(Chunk chunk, AccountTable floors, boolean collectKeyed) {
+        ByteBuffer buffer = chunk.buffer();
+        AccountTable table = new AccountTable(1024);
+        int[] keyed = new int[16];
+        int keyedCount = 0;
+        long records = 0;
+        long lastSequence = 0;
+
+        for (int index = chunk.firstRecord(); index < chunk.endRecord(); index++) {
+            int offset = index * JournalRecord.SIZE;
+            if (!JournalRecord.isValid(buffer, offset)
+                    || (JournalRecord.isGroup(buffer, offset) && !JournalRecord.isCompleteGroup(buffer, offset))) {
+                // Un groupe incomplet est écarté en entier ; ses membres peuvent déborder sur le bloc suivant
+                return new ChunkResult(chunk, table, records, lastSequence, true, Arrays.copyOf(keyed, keyedCount));
+            }
+            records++;
+            if (JournalRecord.isGroup(buffer, offset)) {
+                continue;
+            }
+            long sequence = buffer.getLong(offset + JournalRecord.OFF_SEQUENCE);
+            long secondSequence = JournalRecord.secondSequenceAt(buffer, offset); // Crédit d'un transfert en deux étapes
+            lastSequence = Math.max(lastSequence, Math.max(sequence, secondSequence));
+            long position = ((long) chunk.segment() << 32) | index;
+            byte kind = buffer.get(offset + JournalRecord.OFF_KIND);
+            long targetHi = buffer.getLong(offset + JournalRecord.OFF_TARGET);
+            long targetLo = buffer.getLong(offset + JournalRecord.OFF_TARGET + 8);
+
+            if (collectKeyed && kind == JournalRecord.KIND_TRANSACTION && IdempotencyCache.isKeyed(buffer.getLong(offset + JournalRecord.OFF_ID_MSB))) {
+                if (keyedCount == keyed.length) {
+                    keyed = Arrays.copyOf(keyed, keyedCount * 2);
+                }
+                keyed[keyedCount++] = index;
+            }
+            if (kind == JournalRecord.KIND_ACCOUNT_OPENED) {
+                if (!covered(floors, targetHi, targetLo, sequence)) {
+                    int slot = table.slot(targetHi, targetLo);
+                    JournalRecord opening = JournalRecord.decode(buffer, offset);
+                    table.open(slot, opening.getOwner(), opening.getAccountClass(),
+                            buffer.getLong(offset + JournalRecord.OFF_AMOUNT), sequence);
+                }
+            } else if (buffer.get(offset + JournalRecord.OFF_STATUS) == SUCCEEDED_CODE) {
+                long amount = buffer.getLong(offset + JournalRecord.OFF_AMOUNT);
+                long fee = buffer.getLong(offset + JournalRecord.OFF_FEE);
+                long sourceHi = buffer.getLong(offset + JournalRecord.OFF_SOURCE);
+                long sourceLo = buffer.getLong(offset + JournalRecord.OFF_SOURCE + 8);
+                if ((sourceHi != 0 || sourceLo != 0) && !covered(floors, sourceHi, sourceLo, sequence)) {
+                    table.apply(table.slot(sourceHi, sourceLo), -amount, position, sequence);
+                }
+                if ((targetHi != 0 || targetLo != 0) && !covered(floors, targetHi, targetLo, secondSequence)) {
+                    table.apply(table.slot(targetHi, targetLo), amount - fee, position, secondSequence);
+                }
+            } else if (buffer.get(offset + JournalRecord.OFF_STATUS) == CANCELLED_CODE && secondSequence != sequence) {
+                // Débit compensé : chaque mouvement de la source est relu s'il suit l'état capturé du compte
+                long sourceHi = buffer.getLong(offset + JournalRecord.OFF_SOURCE);
+                long sourceLo = buffer.getLong(offset + JournalRecord.OFF_SOURCE + 8);
+                long amount = buffer.getLong(offset + JournalRecord.OFF_AMOUNT);
+                long delta = (covered(floors, sourceHi, sourceLo, sequence) ? 0 : -amount)
+                        + (covered(floors, sourceHi, sourceLo, secondSequence) ? 0 : amount);
+                if ((sourceHi != 0 || sourceLo != 0) && !covered(floors, sourceHi, sourceLo, secondSequence)) {
+                    table.adjust(table.slot(sourceHi, sourceLo), delta, secondSequence);
+                }
+            }
+        }
+        return new ChunkResult(chunk, table, records, lastSequence, false, Arrays.copyOf(keyed, keyedCount));
+    }
+
+    /**
+     * Remet dans le cache de déduplication un transfert idempotent relu dans un segment. L'enregistrement n'est décodé
+     * (numéros de compte compris, pour l'empreinte de la demande) que s'il n'a pas expiré.
+     */
+    private static void rememberIdempotent(IdempotencyCache cache, ByteBuffer buffer, int offset) {
+        if (buffer.getLong(offset + JournalRecord.OFF_TIMESTAMP) >= System.currentTimeMillis() - cache.getTtlMillis()) {
+            JournalRecord record = JournalRecord.decode(buffer, offset);
+            if (record != null) {
+                rememberIdempotent(cache, record);
+            }
+        }
+    }
+
+    /**
+     * Chaque mouvement porte la séquence réservée sous le verrou de son compte (voir JournalRecord) : pour un compte,
+     * l'ordre des séquences est celui des mouvements, et tout mouvement au-delà de la séquence capturée reste à relire.
+     * @return true si le mouvement est déjà intégré à l'état du compte capturé dans l'instantané.
+     */
+    private static boolean covered(AccountTable floors, long hi, long lo, long sequence) {
+        if (floors == null) {
+            return false;
+        }
+        int slot = floors.find(hi, lo);
+        return slot >= 0 && sequence <= floors.sequence(slot);
+    }
+
+    static JournalRecord decodeAt(ByteBuffer[] segments, long position) {
+        int segment = (int) (position >>> 32);
+        int index = (int) position;
+        return JournalRecord.decode(segments[segment], index * JournalRecord.SIZE);
+    }
+}
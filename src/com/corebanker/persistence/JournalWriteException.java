@@ -0,0 +1,12 @@
+package com.corebanker.persistence;
+
+/**
+ * Un mouvement (ou une ouverture de compte) n'a pas pu être rendu durable dans le journal : il a été annulé en mémoire et l'opération a échoué.
+ */
+public final class JournalWriteException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public JournalWriteException(Throwable cause) {
+        super("Écriture dans le journal impossible : " + cause.getMessage(), cause);
+    }
+}
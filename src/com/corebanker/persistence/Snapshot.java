@@ -0,0 +1,67 @@
+package com.corebanker.persistence;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Instantané relu depuis le disque : état de chaque compte, agrégats et historique récent,
+ * ainsi que la position du journal à partir de laquelle la relecture doit reprendre.
+ */
+final class Snapshot {
+    private final long coveredSequence;
+    private final long firstLiveSegment;
+    private final AccountTable accounts;
+    private final Map<String, List<JournalRecord>> recentHistory;
+    private final Map<String, long[]> aggregates;
+
+    Snapshot(long coveredSequence, long firstLiveSegment, AccountTable accounts, Map<String, List<JournalRecord>> recentHistory,
+             Map<String, long[]> aggregates) {
+        this.coveredSequence = coveredSequence;
+        this.firstLiveSegment = firstLiveSegment;
+        this.accounts = accounts;
+        this.recentHistory = recentHistory;
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * @return La séquence réservée au début de la capture : tout mouvement de séquence inférieure ou égale y figure.
+     */
+    long getCoveredSequence() {
+        return coveredSequence;
+    }
+
+    /**
+     * @return L'indice du premier segment à relire ; les segments antérieurs sont entièrement couverts.
+     */
+    long getFirstLiveSegment() {
+        return firstLiveSegment;
+    }
+
+    /**
+     * @return Les comptes capturés (solde d'ouverture = solde capturé, séquence = dernier mouvement intégré).
+     */
+    AccountTable getAccounts() {
+        return accounts;
+    }
+
+    List<JournalRecord> getRecentHistory(String accountNumber) {
+        return recentHistory.getOrDefault(accountNumber, List.of());
+    }
+
+    /**
+     * @return L'état des agrégats capturé pour le compte (voir AccountAggregates.export), ou null (instantané de version 2).
+     */
+    long[] getAggregates(String accountNumber) {
+        return aggregates.get(accountNumber);
+    }
+
+    /**
+     * Parcourt tout l'historique capturé ; un transfert figure une fois par compte concerné.
+     */
+    void forEachRecentRecord(Consumer<JournalRecord> action) {
+        for (List<JournalRecord> records : recentHistory.values()) {
+            records.forEach(action);
+        }
+    }
+}
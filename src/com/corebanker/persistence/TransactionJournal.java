@@ -0,0 +1,648 @@
+package com.corebanker.persistence;
+
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Journal binaire en ajout seul, découpé en segments.
+ * Un unique thread écrivain regroupe les enregistrements soumis en concurrence :
+ * chaque lot donne lieu à une seule écriture et à un seul fsync (validation groupée).
+ * Chaque appelant reçoit un futur complété avec son numéro de séquence une fois l'enregistrement durable.
+ * Les numéros de séquence sont réservés par les appelants ({@link #reserveSequence()}), si besoin sous les
+ * verrous des comptes concernés : l'ordre d'écriture dans le fichier peut donc légèrement différer de l'ordre des séquences.
+ *
+ * Un lot est écrit d'un seul tenant dans un même segment. Si son écriture ou son fsync échoue, le segment est tronqué
+ * au début du lot, pour qu'aucun enregistrement signalé en échec ne soit relu au redémarrage ; si la troncature échoue
+ * à son tour, le journal passe en échec et refuse toute nouvelle écriture.
+ *
+ * Les moteurs déclarent aussi leurs mouvements en cours ({@link #openMove()}, {@link #closeMove(int, boolean)}) : du premier
+ * solde modifié jusqu'à l'enregistrement durable, ou jusqu'à l'annulation en mémoire. Un point de reprise attend ainsi
+ * que tout mouvement qu'il a pu capturer soit durable (voir CheckpointManager).
+ */
+public final class TransactionJournal implements AutoCloseable {
+    static final int SEGMENT_MAGIC = 0x43424A31; // "CBJ1"
+    static final int FORMAT_VERSION = 2; // 2 : montants et frais en centimes (long)
+    static final int HEADER_MAX_SEQUENCE = 16; // Séquence maximale du segment, écrite à sa clôture
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static volatile TransactionJournal defaultJournal;
+    private static volatile boolean defaultDisabled = !Boolean.parseBoolean(System.getProperty("corebanker.journal.enabled", "true"));
+
+    private final JournalConfig config;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private ByteBuffer batchBuffer;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private volatile WriteListener listener;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private FileChannel channel;
+    private volatile long segmentIndex;
+    private long segmentPosition;
+    private long segmentMaxSequence;
+
+    // Mouvements en cours, comptés par époque : un point de reprise change d'époque puis attend que l'ancienne se vide
+    private final AtomicLong[] openMoves = {new AtomicLong(), new AtomicLong()};
+    private final AtomicLong abortedMoves = new AtomicLong();
+    private final Object epochLock = new Object();
+    private volatile int moveEpoch;
+
+    /**
+     * Enregistrement(s) en attente d'écriture et futur de leur appelant.
+     * Les enregistrements d'une même soumission sont écrits de façon contiguë.
+     */
+    private static final class PendingWrite {
+        final List<JournalRecord> records;
+        final CompletableFuture<Long> durable = new CompletableFuture<>();
+
+        PendingWrite(List<JournalRecord> records) {
+            this.records = records;
+        }
+    }
+
+    /**
+     * Observateur des écritures (réplication, voir JournalReplicator). Toutes les méthodes sont appelées
+     * sur le thread écrivain : elles retardent les lots suivants et doivent rester brèves, sans entrée-sortie bloquante.
+     * Une exception levée par l'observateur est journalisée puis ignorée : elle n'interrompt pas le thread écrivain.
+     */
+    public interface WriteListener {
+        /**
+         * Appelé entre deux lots, au moins toutes les 50 ms : aucun enregistrement n'est alors en cours d'écriture.
+         */
+        void idle();
+
+        /**
+         * Enregistrements encodés d'un lot qui vient d'être écrit et forcé sur disque : un lot en échec n'est jamais transmis.
+         * Le tampon n'est valable que pendant l'appel.
+         */
+        void written(ByteBuffer records);
+
+        /**
+         * Fin d'un lot, juste après {@link #written(ByteBuffer)} et avant la complétion des futurs de ses appelants.
+         */
+        void committed();
+    }
+
+    private TransactionJournal(JournalConfig config) throws IOException {
+        this.config = config;
+        this.batchBuffer = ByteBuffer.allocateDirect(config.getMaxBatchRecords() * JournalRecord.SIZE);
+        Files.createDirectories(config.getDirectory());
+        openTail();
+
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Ouvre (ou crée) le journal décrit par la configuration.
+     */
+    public static TransactionJournal open(JournalConfig config) throws IOException {
+        return new TransactionJournal(config);
+    }
+
+    /**
+     * Retourne le journal par défaut, ouvert à la première utilisation.
+     * @return Le journal, ou null si la persistance est désactivée.
+     */
+    public static TransactionJournal getDefault() {
+        TransactionJournal journal = defaultJournal;
+        if (journal != null || defaultDisabled) {
+            return journal;
+        }
+        synchronized (TransactionJournal.class) {
+            if (defaultJournal == null && !defaultDisabled) {
+                try {
+                    TransactionJournal opened = open(JournalConfig.defaults());
+                    Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "journal-shutdown"));
+                    defaultJournal = opened;
+                } catch (IOException e) {
+                    System.out.println("Erreur lors de l'ouverture du journal des transactions : " + e.getMessage());
+                    defaultDisabled = true;
+                }
+            }
+            return defaultJournal;
+        }
+    }
+
+    /**
+     * Remplace le journal par défaut (null pour désactiver la persistance).
+     */
+    public static synchronized void install(TransactionJournal journal) {
+        defaultJournal = journal;
+        defaultDisabled = journal == null;
+    }
+
+    /**
+     * Soumet un enregistrement au journal.
+     * Le futur est complété par le thread écrivain : les traitements chaînés sans exécuteur
+     * explicite s'exécutent donc sur ce thread et doivent rester brefs.
+     * @return Un futur complété avec le numéro de séquence une fois l'enregistrement durable.
+     */
+    public CompletableFuture<Long> append(JournalRecord record) {
+        assignSequence(record);
+        return submit(List.of(record));
+    }
+
+    /**
+     * Soumet plusieurs enregistrements, écrits de façon contiguë et rendus durables ensemble.
+     * Ils sont précédés d'un en-tête de groupe (voir JournalRecord) : au redémarrage, ils sont relus tous ou aucun.
+     * @return Un futur complété avec la séquence du dernier enregistrement.
+     */
+    public CompletableFuture<Long> appendAll(List<JournalRecord> records) {
+        if (records.isEmpty()) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        for (JournalRecord record : records) {
+            assignSequence(record);
+        }
+        return submit(List.copyOf(records));
+    }
+
+    /**
+     * Réserve le prochain numéro de séquence.
+     * Le moteur de transfert l'appelle sous les verrous des comptes, pour que la séquence
+     * reflète l'ordre d'application des mouvements.
+     */
+    public long reserveSequence() {
+        return sequence.incrementAndGet();
+    }
+
+    /**
+     * @return Le dernier numéro de séquence réservé.
+     */
+    public long currentSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * @return L'indice du segment en cours d'écriture.
+     */
+    public long currentSegmentIndex() {
+        return segmentIndex;
+    }
+
+    /**
+     * Déclare un mouvement, avant la modification du premier solde qu'il touche.
+     * @return Le jeton à rendre à {@link #closeMove(int, boolean)}, une fois le mouvement durable ou annulé.
+     */
+    public int openMove() {
+        while (true) {
+            int epoch = moveEpoch;
+            openMoves[epoch].incrementAndGet();
+            if (moveEpoch == epoch) {
+                return epoch; // Compté avant tout changement d'époque ultérieur : attendu par le point de reprise
+            }
+            openMoves[epoch].decrementAndGet(); // Époque changée entre-temps : compté dans la nouvelle
+        }
+    }
+
+    /**
+     * Clôt un mouvement déclaré par {@link #openMove()}.
+     * @param durable false si le mouvement a été annulé en mémoire faute d'avoir pu être journalisé
+     */
+    public void closeMove(int ticket, boolean durable) {
+        if (!durable) {
+            abortedMoves.incrementAndGet(); // Avant la clôture : visible de qui attend ce mouvement
+        }
+        openMoves[ticket].decrementAndGet();
+    }
+
+    /**
+     * @return Le nombre de mouvements annulés faute d'avoir pu être journalisés depuis l'ouverture.
+     */
+    long abortedMoves() {
+        return abortedMoves.get();
+    }
+
+    /**
+     * Attend la clôture de tous les mouvements déclarés avant l'appel : tout solde lu auparavant sous le verrou de son compte
+     * ne reflète plus alors que des mouvements durables, ou annulés (voir {@link #abortedMoves()}).
+     */
+    void awaitOpenMoves() {
+        synchronized (epochLock) {
+            int previous = moveEpoch;
+            moveEpoch = previous ^ 1;
+            while (openMoves[previous].get() != 0) {
+                LockSupport.parkNanos(100_000);
+            }
+        }
+    }
+
+    private void assignSequence(JournalRecord record) {
+        if (record.getSequence() == 0) {
+            record.setSequence(reserveSequence());
+        } else {
+            advanceSequence(Math.max(record.getSequence(), record.getSecondSequence())); // Séquences réservées, ou réplication
+        }
+    }
+
+    private CompletableFuture<Long> submit(List<JournalRecord> records) {
+        PendingWrite pending = new PendingWrite(records);
+        if (failed) {
+            pending.durable.completeExceptionally(failedException());
+            return pending.durable;
+        }
+        if (!running) {
+            pending.durable.completeExceptionally(closedException());
+            return pending.durable;
+        }
+        queue.add(pending);
+        // Fermeture concurrente : si l'écrivain et la purge de close() ont déjà vidé la file, l'écriture est retirée
+        // et échoue ici ; sinon l'un des deux la complète
+        if (!running && queue.remove(pending)) {
+            pending.durable.completeExceptionally(closedException());
+        }
+        return pending.durable;
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("Journal fermé.");
+    }
+
+    private static IOException failedException() {
+        return new IOException("Journal en échec : un lot n'a pu être ni écrit ni retiré du segment.");
+    }
+
+    /**
+     * @return true si le journal refuse les écritures après un échec qu'il n'a pu annuler.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Garantit que les séquences réservées ensuite dépassent floor (nœud de secours alimenté par un autre journal).
+     */
+    public void advanceSequence(long floor) {
+        if (floor > sequence.get()) {
+            sequence.accumulateAndGet(floor, Math::max);
+        }
+    }
+
+    /**
+     * Installe l'observateur des écritures (null pour le retirer).
+     */
+    public void setWriteListener(WriteListener listener) {
+        this.listener = listener;
+    }
+
+    public JournalConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Boucle du thread écrivain : constitue les lots puis les écrit.
+     */
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(config.getMaxBatchRecords());
+        long maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(config.getMaxBatchDelayMicros());
+        int maxRecords = config.getMaxBatchRecords();
+
+        while (running || !queue.isEmpty()) {
+            WriteListener observer = listener;
+            if (observer != null) {
+                try {
+                    observer.idle();
+                } catch (RuntimeException e) {
+                    listenerFailed(e);
+                }
+            }
+            try {
+                PendingWrite first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxRecords - batch.size());
+
+                // Attente bornée pour compléter le lot
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxRecords && maxDelayNanos > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxRecords - batch.size());
+                }
+
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Encode le lot, l'écrit d'un seul tenant puis force sa persistance une seule fois.
+     * L'observateur ne reçoit le lot qu'une fois celui-ci durable.
+     */
+    private void writeBatch(List<PendingWrite> batch) {
+        long start = Metrics.start();
+        int records = 0;
+        int groups = 0;
+        for (PendingWrite pending : batch) {
+            records += pending.records.size();
+            groups += pending.records.size() > 1 ? 1 : 0;
+        }
+        if (failed) {
+            fail(batch, records, start, failedException());
+            return;
+        }
+        long bytes = (long) (records + groups) * JournalRecord.SIZE;
+        try {
+            // Changement de segment entre deux lots seulement : un segment peut dépasser sa taille d'au plus un lot
+            if (segmentPosition + bytes > config.getSegmentSize() && segmentPosition > JournalRecord.SIZE) {
+                rollSegment();
+            }
+        } catch (IOException e) {
+            markFailed(e);
+            fail(batch, records, start, e);
+            return;
+        }
+
+        long batchStart = segmentPosition;
+        long previousMaxSequence = segmentMaxSequence;
+        ByteBuffer buffer = bufferFor(bytes);
+        try {
+            for (PendingWrite pending : batch) {
+                int header = buffer.position();
+                if (pending.records.size() > 1) {
+                    buffer.position(header + JournalRecord.SIZE); // En-tête écrit une fois les membres encodés
+                }
+                for (JournalRecord record : pending.records) {
+                    segmentMaxSequence = Math.max(segmentMaxSequence, Math.max(record.getSequence(), record.getSecondSequence()));
+                    record.encode(buffer, buffer.position());
+                    buffer.position(buffer.position() + JournalRecord.SIZE);
+                }
+                if (pending.records.size() > 1) {
+                    JournalRecord.encodeGroup(buffer, header, pending.records.size());
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                segmentPosition += channel.write(buffer, segmentPosition);
+            }
+            if (config.isFsync()) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            discard(batchStart, previousMaxSequence);
+            fail(batch, records, start, e);
+            return;
+        }
+
+        WriteListener observer = listener;
+        if (observer != null) {
+            try {
+                observer.written(buffer.flip());
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+            try {
+                observer.committed();
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+        Metrics.recordJournalWrite(records, true, start);
+
+        for (PendingWrite pending : batch) {
+            pending.durable.complete(pending.records.get(pending.records.size() - 1).getSequence());
+        }
+    }
+
+    /**
+     * @return Le tampon d'encodage, agrandi si le lot dépasse sa capacité, prêt à être rempli.
+     */
+    private ByteBuffer bufferFor(long bytes) {
+        if (bytes > batchBuffer.capacity()) {
+            batchBuffer = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, Math.max(bytes, 2L * batchBuffer.capacity())));
+        }
+        return batchBuffer.clear();
+    }
+
+    /**
+     * Retire du segment un lot en échec : ses enregistrements ne doivent pas être relus au redémarrage.
+     */
+    private void discard(long batchStart, long previousMaxSequence) {
+        try {
+            channel.truncate(batchStart);
+            if (config.isFsync()) {
+                channel.force(true);
+            }
+            segmentPosition = batchStart;
+            segmentMaxSequence = previousMaxSequence;
+        } catch (IOException e) {
+            markFailed(e);
+        }
+    }
+
+    private void markFailed(IOException cause) {
+        failed = true;
+        EventLog.log(EventCode.JOURNAL_FAILED, String.valueOf(cause));
+    }
+
+    private static void fail(List<PendingWrite> batch, int records, long start, IOException cause) {
+        Metrics.recordJournalWrite(records, false, start);
+        for (PendingWrite pending : batch) {
+            pending.durable.completeExceptionally(cause);
+        }
+    }
+
+    private static void listenerFailed(RuntimeException e) {
+        EventLog.log(EventCode.JOURNAL_LISTENER_FAILED, String.valueOf(e));
+    }
+
+    /**
+     * Se positionne en fin du dernier segment valide, ou crée le premier segment.
+     */
+    private void openTail() throws IOException {
+        List<Path> segments = listSegments(config.getDirectory());
+        if (segments.isEmpty()) {
+            createSegment(1);
+            return;
+        }
+
+        Path last = segments.get(segments.size() - 1);
+        segmentIndex = segmentIndexOf(last);
+        channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(JournalRecord.SIZE);
+        channel.read(header, 0);
+        if (header.getInt(4) != FORMAT_VERSION) {
+            // Segment d'un format antérieur : il n'est jamais complété, l'écriture reprend dans un nouveau segment
+            channel.close();
+            sequence.set(maxSequenceOf(last));
+            createSegment(segmentIndex + 1);
+            return;
+        }
+
+        // Recherche du dernier enregistrement intègre ; une fin tronquée ou corrompue est écartée
+        ByteBuffer slot = ByteBuffer.allocate(JournalRecord.SIZE);
+        long position = JournalRecord.SIZE;
+        long size = channel.size();
+        while (position + JournalRecord.SIZE <= size) {
+            slot.clear();
+            while (slot.hasRemaining() && channel.read(slot, position + slot.position()) > 0) {
+                // lecture complète de l'emplacement
+            }
+            if (!JournalRecord.isValid(slot, 0)) {
+                break;
+            }
+            if (JournalRecord.isGroup(slot, 0)) {
+                // Un groupe incomplet (arrêt pendant son écriture) est écarté en entier
+                long length = (JournalRecord.groupCount(slot, 0) + 1) * JournalRecord.SIZE;
+                if (length <= JournalRecord.SIZE || position + length > size) {
+                    break;
+                }
+                ByteBuffer group = ByteBuffer.allocate((int) length);
+                while (group.hasRemaining() && channel.read(group, position + group.position()) > 0) {
+                    // lecture complète du groupe
+                }
+                if (!JournalRecord.isCompleteGroup(group.clear(), 0)) {
+                    break;
+                }
+                for (int member = JournalRecord.SIZE; member < length; member += JournalRecord.SIZE) {
+                    segmentMaxSequence = Math.max(segmentMaxSequence, JournalRecord.maxSequenceAt(group, member));
+                }
+                position += length;
+                continue;
+            }
+            segmentMaxSequence = Math.max(segmentMaxSequence, JournalRecord.maxSequenceAt(slot, 0));
+            position += JournalRecord.SIZE;
+        }
+        channel.truncate(position);
+        segmentPosition = position;
+
+        long previousMax = segments.size() > 1 ? maxSequenceOf(segments.get(segments.size() - 2)) : 0;
+        sequence.set(Math.max(segmentMaxSequence, previousMax));
+    }
+
+    /**
+     * Lit la séquence maximale d'un segment clos, inscrite dans son en-tête.
+     * Si la clôture n'a pas eu lieu (arrêt brutal pendant le changement de segment), le segment est parcouru.
+     */
+    static long maxSequenceOf(Path segment) throws IOException {
+        try (FileChannel previous = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer slot = ByteBuffer.allocate(JournalRecord.SIZE);
+            previous.read(slot, 0);
+            long max = slot.getLong(HEADER_MAX_SEQUENCE);
+            if (max != 0) {
+                return max;
+            }
+            for (long position = JournalRecord.SIZE; position + JournalRecord.SIZE <= previous.size(); position += JournalRecord.SIZE) {
+                slot.clear();
+                previous.read(slot, position);
+                if (!JournalRecord.isValid(slot, 0)) {
+                    break;
+                }
+                max = Math.max(max, JournalRecord.maxSequenceAt(slot, 0));
+            }
+            return max;
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        ByteBuffer maxSequence = ByteBuffer.allocate(Long.BYTES);
+        maxSequence.putLong(0, segmentMaxSequence);
+        channel.write(maxSequence, HEADER_MAX_SEQUENCE);
+        channel.force(true);
+        channel.close();
+        createSegment(segmentIndex + 1);
+    }
+
+    private void createSegment(long index) throws IOException {
+        Path path = config.getDirectory().resolve(segmentName(index));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(JournalRecord.SIZE);
+        header.putInt(0, SEGMENT_MAGIC);
+        header.putInt(4, FORMAT_VERSION);
+        header.putLong(8, index);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+        segmentIndex = index;
+        segmentPosition = JournalRecord.SIZE;
+        segmentMaxSequence = 0;
+    }
+
+    static String segmentName(long index) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @return Les segments du répertoire, triés dans l'ordre d'écriture.
+     */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    /**
+     * Termine les écritures en attente puis ferme le segment courant.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+            // Écritures soumises pendant la fermeture, après le dernier passage de l'écrivain
+            PendingWrite leftover;
+            while ((leftover = queue.poll()) != null) {
+                leftover.durable.completeExceptionally(closedException());
+            }
+            channel.force(true);
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Erreur lors de la fermeture du journal : " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.corebanker.replication;
+
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.enums.ReplicationMode;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Côté nœud principal : diffuse le journal des transactions vers un nœud de secours (StandbyNode)
+ * par une socket de domaine Unix.
+ *
+ * Le thread écrivain du journal n'écrit jamais sur la socket : il copie chaque lot écrit dans une file d'envoi bornée
+ * (corebanker.replication.queueBatches lots), vidée par un thread d'envoi propre à la connexion. Quand la file déborde,
+ * ou qu'une écriture sur la socket dure plus que corebanker.replication.timeoutMillis, le nœud de secours est abandonné.
+ *
+ * À la connexion, la file est ouverte entre deux lots, puis le thread d'envoi transmet l'état de tous les comptes (solde et
+ * séquence du dernier mouvement intégré, capturés sous le verrou de chaque compte, y compris ceux qui ne sont pas encore
+ * chargés), par rafales préfixées de leur nombre d'enregistrements et terminées par une rafale vide, puis les lots de la file,
+ * tels quels. Un mouvement journalisé avant l'ouverture de la file est reflété dans l'état capturé ; un mouvement appliqué
+ * avant la capture mais journalisé après est envoyé aussi : le nœud de secours l'ignore grâce à la séquence du compte,
+ * comme le fait la relecture d'un instantané.
+ *
+ * Le nœud de secours renvoie le nombre d'enregistrements qu'il a rendus durables. En mode SYNC, une fois l'état initial
+ * transmis, le lot n'est confirmé à ses appelants (processTransaction) qu'après cet accusé ; passé le délai
+ * corebanker.replication.timeoutMillis, ou à la moindre erreur, le nœud de secours est abandonné et le nœud principal continue seul.
+ */
+public final class JournalReplicator implements TransactionJournal.WriteListener, AutoCloseable {
+    public static final long ACK_TIMEOUT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("corebanker.replication.timeoutMillis", 1000));
+
+    /** Nombre de lots en attente d'envoi au-delà duquel le nœud de secours est abandonné. */
+    public static final int QUEUE_BATCHES = Math.max(1, Integer.getInteger("corebanker.replication.queueBatches", 1024));
+
+    private static final int CATCH_UP_RECORDS = 1024;
+
+    private final TransactionJournal journal;
+    private final ReplicationMode mode;
+    private final Path socketPath;
+    private final ServerSocketChannel server;
+    private final Thread acceptor;
+
+    private volatile SocketChannel pending; // Accepté, en attente de l'état initial
+    private volatile boolean lost;
+    private volatile long acknowledged;
+    private volatile Thread waiter;
+
+    // Modifiés par le thread écrivain du journal uniquement
+    private volatile SocketChannel standby;
+    private volatile Sender sender;
+    private volatile long sent;
+
+    /**
+     * Thread d'envoi d'une connexion : transmet l'état initial, puis les lots de la file dans leur ordre d'écriture.
+     */
+    private final class Sender implements Runnable {
+        private final SocketChannel channel;
+        private final long sequence;
+        private final BlockingQueue<ByteBuffer> outbox = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+        private final Thread thread = new Thread(this, "replication-send");
+        private volatile boolean caughtUp;
+        private volatile boolean sending;
+        private volatile long sendStart;
+
+        Sender(SocketChannel channel, long sequence) {
+            this.channel = channel;
+            this.sequence = sequence;
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                long accountCount = sendState();
+                caughtUp = true;
+                Thread reader = new Thread(() -> readAcks(channel), "replication-ack");
+                reader.setDaemon(true);
+                reader.start();
+                EventLog.log(EventCode.REPLICATION_STANDBY_CONNECTED, accountCount, sequence);
+                while (true) {
+                    send(outbox.take());
+                }
+            } catch (IOException e) {
+                fail(channel);
+            } catch (InterruptedException e) {
+                // Nœud de secours abandonné par le thread écrivain
+            }
+        }
+
+        /**
+         * Envoie l'état courant de tous les comptes.
+         * @return Le nombre de comptes transmis
+         */
+        private long sendState() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            header.putLong(sequence).flip();
+            send(header);
+
+            // Le nombre de comptes n'est connu qu'à la fin du parcours (comptes chargés à la demande)
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + CATCH_UP_RECORDS * JournalRecord.SIZE);
+            buffer.position(Long.BYTES);
+            long accountCount = 0;
+            for (BankAccount account : BankAccountManager.allAccounts()) {
+                if (!buffer.hasRemaining()) {
+                    sendBurst(buffer);
+                }
+                capture(account).encode(buffer, buffer.position());
+                buffer.position(buffer.position() + JournalRecord.SIZE);
+                accountCount++;
+            }
+            if (buffer.position() > Long.BYTES) {
+                sendBurst(buffer);
+            }
+            sendBurst(buffer); // Rafale vide : fin de l'état initial
+            return accountCount;
+        }
+
+        /**
+         * Envoie les enregistrements accumulés après leur nombre, puis prépare la rafale suivante.
+         */
+        private void sendBurst(ByteBuffer buffer) throws IOException {
+            buffer.putLong(0, (buffer.position() - Long.BYTES) / JournalRecord.SIZE);
+            send(buffer.flip());
+            buffer.clear().position(Long.BYTES);
+        }
+
+        private void send(ByteBuffer buffer) throws IOException {
+            sendStart = System.nanoTime();
+            sending = true;
+            writeFully(channel, buffer);
+            sending = false;
+        }
+
+        /**
+         * @return true si une écriture sur la socket dure depuis plus que le délai : le nœud de secours ne lit plus.
+         */
+        boolean isStalled() {
+            return sending && System.nanoTime() - sendStart > ACK_TIMEOUT_NANOS;
+        }
+    }
+
+    private JournalReplicator(TransactionJournal journal, ReplicationMode mode, Path socketPath) throws IOException {
+        this.journal = journal;
+        this.mode = mode;
+        this.socketPath = socketPath;
+        Files.deleteIfExists(socketPath); // Socket laissée par un processus arrêté brutalement
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        this.acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+    }
+
+    /**
+     * Ouvre la socket et branche la réplication sur le journal.
+     * @param journal Le journal du nœud principal
+     * @param socketPath Chemin de la socket de domaine Unix
+     * @param mode ASYNC ou SYNC
+     */
+    public static JournalReplicator start(TransactionJournal journal, Path socketPath, ReplicationMode mode) throws IOException {
+        JournalReplicator replicator = new JournalReplicator(journal, mode, socketPath);
+        journal.setWriteListener(replicator);
+        replicator.acceptor.start();
+        return replicator;
+    }
+
+    public ReplicationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return Le nombre d'enregistrements envoyés mais pas encore confirmés par le nœud de secours (0 sans nœud de secours).
+     */
+    public long getLag() {
+        return standby != null ? Math.max(0, sent - acknowledged) : 0;
+    }
+
+    /**
+     * Un seul nœud de secours à la fois : une connexion surnuméraire est refusée.
+     */
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                if (pending != null || (standby != null && !lost)) {
+                    channel.close();
+                } else {
+                    pending = channel;
+                }
+            } catch (IOException e) {
+                return; // Socket fermée
+            }
+        }
+    }
+
+    @Override
+    public void idle() {
+        Sender current = sender;
+        if (lost) {
+            drop("liaison interrompue");
+        } else if (current != null && current.isStalled()) {
+            drop("envoi bloqué au-delà du délai");
+        }
+        SocketChannel channel = pending;
+        if (channel != null) {
+            pending = null;
+            if (standby != null) {
+                drop("remplacé par une nouvelle connexion");
+            }
+            connect(channel);
+        }
+    }
+
+    /**
+     * Ouvre la file d'envoi de la connexion. Appelé entre deux lots : tout enregistrement déjà écrit est reflété
+     * dans l'état que capturera le thread d'envoi, tout enregistrement écrit ensuite passe par la file.
+     */
+    private void connect(SocketChannel channel) {
+        sent = 0;
+        acknowledged = 0;
+        lost = false;
+        standby = channel;
+        Sender next = new Sender(channel, journal.currentSequence());
+        sender = next;
+        next.thread.start();
+    }
+
+    /**
+     * Solde et séquence lus ensemble, sous le verrou du compte.
+     */
+    private static JournalRecord capture(BankAccount account) {
+        ReentrantLock lock = AccountLocks.lockFor(account.getAccountNumber());
+        lock.lock();
+        try {
+            return JournalRecord.forAccountOpened(account);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copie les enregistrements dans la file d'envoi, sans attendre la socket.
+     */
+    @Override
+    public void written(ByteBuffer records) {
+        Sender current = sender;
+        if (current == null) {
+            return;
+        }
+        if (current.isStalled()) {
+            drop("envoi bloqué au-delà du délai");
+            return;
+        }
+        long count = records.remaining() / JournalRecord.SIZE;
+        ByteBuffer copy = ByteBuffer.allocate(records.remaining()).put(records).flip();
+        if (!current.outbox.offer(copy)) {
+            drop("file d'envoi pleine");
+            return;
+        }
+        sent += count;
+    }
+
+    @Override
+    public void committed() {
+        Sender current = sender;
+        if (mode != ReplicationMode.SYNC || current == null || !current.caughtUp) {
+            return;
+        }
+        long deadline = System.nanoTime() + ACK_TIMEOUT_NANOS;
+        waiter = Thread.currentThread();
+        try {
+            while (acknowledged < sent) {
+                long remaining = deadline - System.nanoTime();
+                if (lost || remaining <= 0) {
+                    drop(lost ? "liaison interrompue" : "accusé de réception non reçu dans le délai");
+                    return;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Lit les accusés de réception : le nombre cumulé d'enregistrements rendus durables par le nœud de secours.
+     */
+    private void readAcks(SocketChannel channel) {
+        ByteBuffer ack = ByteBuffer.allocate(Long.BYTES);
+        try {
+            while (true) {
+                ack.clear();
+                while (ack.hasRemaining()) {
+                    if (channel.read(ack) < 0) {
+                        throw new EOFException();
+                    }
+                }
+                acknowledged = ack.getLong(0);
+                LockSupport.unpark(waiter);
+            }
+        } catch (IOException e) {
+            fail(channel);
+        }
+    }
+
+    /**
+     * Signale au thread écrivain une liaison perdue ; il abandonnera le nœud de secours.
+     */
+    private void fail(SocketChannel channel) {
+        if (standby == channel) {
+            lost = true;
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private void drop(String reason) {
+        SocketChannel channel = standby;
+        Sender current = sender;
+        standby = null;
+        sender = null;
+        lost = false;
+        if (current != null) {
+            current.thread.interrupt();
+        }
+        if (channel != null) {
+            closeQuietly(channel);
+            EventLog.log(EventCode.REPLICATION_STANDBY_LOST, reason);
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Déjà fermée
+        }
+    }
+
+    /**
+     * Débranche la réplication ; le nœud de secours constate la fermeture et prend le relais.
+     */
+    @Override
+    public void close() {
+        journal.setWriteListener(null);
+        try {
+            server.close();
+            Files.deleteIfExists(socketPath);
+        } catch (IOException ignored) {
+            // Fermeture au mieux
+        }
+        SocketChannel channel = pending;
+        if (channel != null) {
+            closeQuietly(channel);
+        }
+        channel = standby;
+        if (channel != null) {
+            closeQuietly(channel);
+        }
+        Sender current = sender;
+        if (current != null) {
+            current.thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.corebanker.replication;
+
+import com.corebanker.api.BankingServer;
+import com.corebanker.engine.AccountLocks;
+import com.corebanker.engine.IdempotencyCache;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.managers.BankAccountManager;
+import com.corebanker.models.BankAccount;
+import com.corebanker.models.Transaction;
+import com.corebanker.persistence.CheckpointManager;
+import com.corebanker.persistence.JournalConfig;
+import com.corebanker.persistence.JournalRecord;
+import com.corebanker.persistence.TransactionJournal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Nœud de secours : suit le journal diffusé par un JournalReplicator et applique chaque enregistrement
+ * dès sa réception, sur ses propres comptes et dans son propre journal.
+ *
+ * À la connexion, l'état des comptes reçu du nœud principal est enregistré puis figé dans un instantané du journal local.
+ * Ensuite, chaque rafale d'enregistrements est appliquée (un mouvement déjà intégré à l'état reçu, d'après la séquence
+ * du compte à la connexion, est ignoré), ajoutée au journal local, puis confirmée au nœud principal une fois durable.
+ * Les membres d'un groupe (enregistrements soumis ensemble, voir JournalRecord) sont conservés jusqu'à réception
+ * du groupe entier : un groupe n'est jamais appliqué en partie.
+ *
+ * La perte de la liaison vaut défaillance du nœud principal : il suffit alors d'installer le journal local
+ * comme journal par défaut, l'état en mémoire étant déjà à jour. Aucune relecture n'est nécessaire.
+ *
+ * Chaque mouvement reçu est appliqué tel quel, comme le fait la relecture du journal : le nœud principal l'a déjà validé,
+ * et un solde peut être négatif le temps qu'arrive un crédit de séquence antérieure écrit plus tard. Un mouvement qui ne
+ * peut pas être appliqué (solde hors de l'intervalle représentable) révèle un état divergent : le nœud cesse alors de suivre,
+ * ferme la liaison (le nœud principal l'abandonne) et refuse d'être promu. Il doit être reconstruit depuis le nœud principal,
+ * avec un journal local vide.
+ *
+ * Usage : java -Dcorebanker.journal.dir=... com.corebanker.replication.StandbyNode socket [port]
+ */
+public final class StandbyNode implements AutoCloseable {
+    private static final int BURST_RECORDS = 1024;
+
+    private final SocketChannel channel;
+    private final TransactionJournal journal;
+    private final Thread follower;
+    // Séquence de chaque compte dans l'état reçu (ou à son ouverture) : les séquences n'arrivent pas dans l'ordre
+    private final Map<String, Long> floors;
+    private volatile boolean promoted;
+    private volatile boolean diverged;
+    private volatile long applied;
+
+    private StandbyNode(SocketChannel channel, TransactionJournal journal, Map<String, Long> floors) {
+        this.channel = channel;
+        this.journal = journal;
+        this.floors = floors;
+        this.follower = new Thread(this::followLoop, "standby-follower");
+        follower.setDaemon(true);
+    }
+
+    /**
+     * Se connecte au nœud principal, reçoit l'état des comptes et commence à suivre son journal.
+     * Le répertoire du journal local doit être vide : le nœud de secours repart toujours de l'état du nœud principal.
+     * @param socketPath Socket de domaine Unix du JournalReplicator
+     * @param config Configuration du journal local
+     */
+    public static StandbyNode connect(Path socketPath, JournalConfig config) throws IOException {
+        if (!TransactionJournal.listSegments(config.getDirectory()).isEmpty()) {
+            throw new IllegalStateException("Le répertoire du journal du nœud de secours doit être vide : " + config.getDirectory());
+        }
+        TransactionJournal.install(null); // Rien n'est journalisé hors du journal local tant que le nœud n'est pas promu
+        BankAccountManager.clear();
+
+        SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        TransactionJournal journal = null;
+        Map<String, Long> floors = new HashMap<>();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            readFully(channel, header);
+            long primarySequence = header.getLong(0);
+
+            // Rafales [nombre][enregistrements], jusqu'à une rafale vide
+            ByteBuffer buffer = ByteBuffer.allocate(BURST_RECORDS * JournalRecord.SIZE);
+            List<BankAccount> accounts = new ArrayList<>();
+            while (true) {
+                header.clear();
+                readFully(channel, header);
+                long burst = header.getLong(0);
+                if (burst == 0) {
+                    break;
+                }
+                if (burst < 0 || burst > BURST_RECORDS) {
+                    throw new IOException("rafale d'état initial invalide : " + burst);
+                }
+                buffer.clear().limit((int) burst * JournalRecord.SIZE);
+                readFully(channel, buffer);
+                for (int i = 0; i < burst; i++) {
+                    JournalRecord record = decode(buffer, i * JournalRecord.SIZE);
+                    accounts.add(BankAccount.restore(record.getTargetAccountNumber(), record.getOwner(), record.getAccountClass(),
+                            record.getAmount(), record.getSequence()));
+                }
+            }
+            BankAccountManager.restoreAccounts(accounts);
+            for (BankAccount account : accounts) {
+                floors.put(account.getAccountNumber(), account.getLastSequence());
+            }
+
+            journal = TransactionJournal.open(config);
+            journal.advanceSequence(primarySequence);
+            // L'instantané porte la séquence de chaque compte : relu plus tard, le journal local ne compte aucun mouvement deux fois
+            new CheckpointManager(journal, 0, false).checkpoint();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (journal != null) {
+                journal.close();
+            }
+            throw e;
+        }
+        StandbyNode node = new StandbyNode(channel, journal, floors);
+        node.follower.start();
+        return node;
+    }
+
+    /**
+     * @return Le nombre d'enregistrements reçus depuis la connexion, appliqués et durables.
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    /**
+     * @return true si un mouvement répliqué n'a pas pu être appliqué : l'état du nœud n'est plus celui du nœud principal.
+     */
+    public boolean isDiverged() {
+        return diverged;
+    }
+
+    /**
+     * Attend la perte de la liaison avec le nœud principal.
+     */
+    public void awaitPrimaryLoss() throws InterruptedException {
+        follower.join();
+    }
+
+    private void followLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(BURST_RECORDS * JournalRecord.SIZE);
+        ByteBuffer ack = ByteBuffer.allocate(Long.BYTES);
+        List<JournalRecord> records = new ArrayList<>(BURST_RECORDS);
+        try {
+            while (!promoted) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("fermée par le nœud principal");
+                }
+                buffer.flip();
+                int complete = completeRecords(buffer);
+                if (complete == 0) {
+                    buffer.compact();
+                    if (!buffer.hasRemaining()) {
+                        // Groupe plus grand que le tampon
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                    }
+                    continue;
+                }
+                records.clear();
+                for (int i = 0; i < complete; i++) {
+                    JournalRecord record = decode(buffer, i * JournalRecord.SIZE);
+                    if (record.getKind() != JournalRecord.KIND_GROUP) {
+                        apply(record);
+                        records.add(record); // Le journal local regroupe la rafale sous son propre en-tête
+                    }
+                }
+                buffer.position(complete * JournalRecord.SIZE);
+                buffer.compact(); // Conserve un enregistrement reçu en partie, ou un groupe incomplet
+
+                journal.appendAll(records).join();
+                applied += complete;
+                ack.clear();
+                ack.putLong(applied).flip();
+                while (ack.hasRemaining()) {
+                    channel.write(ack);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (diverged) {
+                EventLog.log(EventCode.REPLICATION_DIVERGED, String.valueOf(e.getMessage()));
+                close(); // Le nœud principal abandonne ce nœud de secours
+            } else if (!promoted) {
+                EventLog.log(EventCode.REPLICATION_PRIMARY_LOST, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * @return Le nombre d'enregistrements applicables en tête du tampon : enregistrements reçus en entier,
+     *         jusqu'au dernier groupe reçu en entier.
+     */
+    private static int completeRecords(ByteBuffer buffer) throws IOException {
+        int received = buffer.limit() / JournalRecord.SIZE;
+        int complete = 0;
+        while (complete < received) {
+            int offset = complete * JournalRecord.SIZE;
+            if (!JournalRecord.isValid(buffer, offset) || !JournalRecord.isGroup(buffer, offset)) {
+                complete++; // Un enregistrement invalide est signalé au décodage
+                continue;
+            }
+            long count = JournalRecord.groupCount(buffer, offset);
+            if (count > 0 && complete + 1 + count > received) {
+                break; // Groupe pas encore reçu en entier
+            }
+            if (!JournalRecord.isCompleteGroup(buffer, offset)) {
+                throw new IOException("groupe répliqué invalide");
+            }
+            complete += 1 + (int) count;
+        }
+        return complete;
+    }
+
+    /**
+     * Applique un enregistrement reçu aux comptes, comme la relecture du journal après un instantané :
+     * un compte ignore tout mouvement dont la séquence ne dépasse pas celle qu'il avait dans l'état reçu.
+     * Le crédit d'un transfert en deux étapes est comparé à sa propre séquence (voir JournalRecord).
+     */
+    private void apply(JournalRecord record) throws IOException {
+        if (record.getKind() == JournalRecord.KIND_ACCOUNT_OPENED) {
+            if (BankAccountManager.findAccountByNumber(record.getTargetAccountNumber()) == null) {
+                BankAccountManager.restoreAccounts(List.of(BankAccount.restore(record.getTargetAccountNumber(), record.getOwner(),
+                        record.getAccountClass(), record.getAmount(), record.getSequence())));
+                floors.put(record.getTargetAccountNumber(), record.getSequence());
+            }
+            return;
+        }
+        if (record.getKind() != JournalRecord.KIND_TRANSACTION) {
+            return;
+        }
+        if (record.getStatus() == TransactionStatus.CANCELLED) {
+            refund(record);
+            return;
+        }
+        if (record.getStatus() != TransactionStatus.SUCCEEDED) {
+            return;
+        }
+        BankAccount source = BankAccountManager.findAccountByNumber(record.getSourceAccountNumber());
+        BankAccount target = BankAccountManager.findAccountByNumber(record.getTargetAccountNumber());
+        boolean debited = source != null && move(source, -record.getAmount(), record.getSequence());
+        boolean credited = target != null && move(target, record.getAmount() - record.getFee(), record.getSecondSequence());
+        if (debited || credited) {
+            Transaction transaction = Transaction.fromJournal(record);
+            if (transaction != null) {
+                if (debited) {
+                    source.addTransactionToHistory(transaction);
+                }
+                if (credited) {
+                    target.addTransactionToHistory(transaction);
+                }
+            }
+            IdempotencyCache idempotency = IdempotencyCache.getDefault();
+            if (idempotency != null && IdempotencyCache.isKeyed(record.getIdMostSigBits())) {
+                idempotency.remember(record.getIdMostSigBits(), record.getIdLeastSigBits(),
+                        IdempotencyCache.payloadDigest(record.getSourceAccountNumber(), record.getTargetAccountNumber(),
+                                record.getAmount(), record.getType()),
+                        record.getStatus(), record.getSequence(), record.getFee(), record.getTimestamp());
+            }
+        }
+    }
+
+    /**
+     * Débit compensé (statut CANCELLED) : la source a été débitée puis remboursée, chaque mouvement avec sa séquence.
+     * Seuls ceux qui suivent l'état reçu sont appliqués, en un seul mouvement net et sans entrée d'historique.
+     */
+    private void refund(JournalRecord record) throws IOException {
+        BankAccount source = BankAccountManager.findAccountByNumber(record.getSourceAccountNumber());
+        if (source == null || record.getSecondSequence() == record.getSequence()) {
+            return;
+        }
+        long floor = floors.getOrDefault(source.getAccountNumber(), 0L);
+        long delta = (record.getSequence() <= floor ? 0 : -record.getAmount()) + record.getAmount();
+        move(source, delta, record.getSecondSequence());
+    }
+
+    /**
+     * @return false si le mouvement est déjà intégré à l'état reçu.
+     * @throws IOException si le mouvement ne peut pas être appliqué : le nœud a divergé du nœud principal
+     */
+    private boolean move(BankAccount account, long delta, long sequence) throws IOException {
+        if (sequence <= floors.getOrDefault(account.getAccountNumber(), 0L)) {
+            return false;
+        }
+        ReentrantLock lock = AccountLocks.lockFor(account.getAccountNumber());
+        lock.lock();
+        try {
+            account.applyAsOwner(delta);
+            account.markApplied(sequence);
+            return true;
+        } catch (ArithmeticException e) {
+            diverged = true; // Rien n'est marqué appliqué : le nœud ne suit plus
+            throw new IOException("mouvement " + sequence + " inapplicable sur " + account.getAccountNumber()
+                    + " (solde " + account.getBalance() + ", mouvement " + delta + ")", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Prend le relais du nœud principal : cesse de suivre la liaison et installe le journal local par défaut.
+     * @return La durée de la bascule, en nanosecondes.
+     */
+    public long promote() throws InterruptedException {
+        if (diverged) {
+            throw new IllegalStateException("Nœud de secours divergent : il doit être reconstruit depuis le nœud principal.");
+        }
+        long start = System.nanoTime();
+        promoted = true;
+        close();
+        follower.join();
+        TransactionJournal.install(journal);
+        long elapsed = System.nanoTime() - start;
+        EventLog.log(EventCode.REPLICATION_PROMOTED, elapsed / 1_000, applied);
+        return elapsed;
+    }
+
+    /**
+     * Ferme la liaison ; le journal local reste ouvert (il devient le journal par défaut à la promotion).
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Fermeture au mieux
+        }
+    }
+
+    private static JournalRecord decode(ByteBuffer buffer, int offset) throws IOException {
+        if (!JournalRecord.isValid(buffer, offset)) {
+            throw new IOException("enregistrement répliqué invalide");
+        }
+        return JournalRecord.decode(buffer, offset);
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Liaison fermée par le nœud principal");
+            }
+        }
+    }
+
+    /**
+     * Suit le nœud principal jusqu'à sa défaillance, puis prend le relais et sert l'API HTTP.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage : StandbyNode socket [port]");
+            return;
+        }
+        Path socketPath = Paths.get(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8081;
+
+        StandbyNode node = connect(socketPath, JournalConfig.defaults());
+        System.out.printf("Nœud de secours connecté à %s : %d compte(s).%n", socketPath, BankAccountManager.getAccountCount());
+        node.awaitPrimaryLoss();
+        long elapsed = node.promote();
+        System.out.printf("Nœud principal perdu : relais pris en %.3f ms après %d enregistrement(s) répliqué(s).%n",
+                elapsed / 1e6, node.getApplied());
+        BankingServer.serve(port);
+    }
+}
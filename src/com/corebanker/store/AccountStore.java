@@ -0,0 +1,553 @@
+package com.corebanker.store;
+
+import com.corebanker.enums.AccountClass;
+import com.corebanker.enums.AccountStatus;
+import com.corebanker.enums.TransactionStatus;
+import com.corebanker.enums.TransactionType;
+import com.corebanker.fees.FeeSchedule;
+import com.corebanker.history.HistoryChain;
+import com.corebanker.history.HistoryEntry;
+import com.corebanker.history.HistorySpill;
+import com.corebanker.logging.EventCode;
+import com.corebanker.logging.EventLog;
+import com.corebanker.models.Money;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stockage des comptes en colonnes hors tas, pour des dizaines de millions de comptes.
+ *
+ * Un compte est désigné par un identifiant entier compact (0, 1, 2...) et n'existe sur le tas que le temps
+ * d'une consultation, sous forme de vue (AccountView). Chaque attribut est une colonne de primitifs dans
+ * un fichier projeté en mémoire (ou dans des tampons directs) : le ramasse-miettes n'a rien à parcourir,
+ * quelle que soit la taille du registre. Le numéro de compte CB-XXXXXXXX est stocké sous forme de ses
+ * 32 bits hexadécimaux ; l'index numéro → identifiant est lui aussi une table hors tas.
+ *
+ * Les soldes sont modifiés par compare-and-set, sans verrou. L'historique est chaîné dans le fichier de
+ * débordement (HistoryChain) : le stockage n'en garde que la position du dernier bloc et le nombre d'entrées.
+ *
+ * Les mouvements ne passent pas par le journal des transactions : la durabilité est celle du fichier,
+ * assurée par {@link #sync()} (et {@link #close()}). Le nombre de comptes et la fin de la zone des propriétaires
+ * sont reportés dans l'en-tête à chaque création, avant la publication du compte dans l'index : après un arrêt
+ * brutal du processus, aucun identifiant déjà publié n'est réattribué.
+ *
+ * <pre>
+ * En-tête (4096 octets) :
+ * 0   int   MAGIC
+ * 4   int   version
+ * 8   int   ordre des octets (1 = petit-boutiste)
+ * 12  int   capacité (nombre maximal de comptes)
+ * 16  long  nombre de comptes
+ * 24  long  octets utilisés dans la zone des propriétaires
+ * puis les colonnes, chacune alignée sur 8 octets : numéro (int), statut (octet), propriétaire (long : position
+ * << 16 | longueur), solde, tête d'historique (position + 1), taille d'historique, plus grand horodatage (long) ;
+ * l'index (long par emplacement : numéro << 32 | identifiant + 1) ; la zone des propriétaires (UTF-8).
+ * </pre>
+ */
+public final class AccountStore implements AutoCloseable {
+    /** Capacité maximale (2^26) : chaque colonne et l'index (2^27 emplacements de 8 octets) tiennent dans un tampon de moins de 2 Go. */
+    public static final int MAX_CAPACITY = 1 << 26;
+    /** Valeur retournée par {@link #find(String)} pour un compte inconnu. */
+    public static final int NOT_FOUND = -1;
+
+    private static final int MAGIC = 0x43425354; // "CBST"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+    private static final int OWNER_BYTES_PER_ACCOUNT = 24;
+    private static final int MAX_OWNER_BYTES = 0xFFFF;
+    private static final int HISTORY_LOCKS = 64;
+    private static final AccountStatus[] STATUSES = AccountStatus.values();
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel; // null pour un stockage en mémoire
+    private final int capacity;
+    private final ByteBuffer header;
+    private final ByteBuffer numbers;
+    private final ByteBuffer statuses;
+    private final ByteBuffer owners;
+    private final ByteBuffer balances;
+    private final ByteBuffer historyHeads;
+    private final ByteBuffer historyCounts;
+    private final ByteBuffer historyMaxTimestamps;
+    private final ByteBuffer index;
+    private final ByteBuffer names;
+    private final int indexMask;
+    private final AtomicInteger size;
+    private final AtomicLong namesEnd;
+    private final ReentrantLock[] historyLocks = new ReentrantLock[HISTORY_LOCKS];
+
+    /**
+     * Taille de chaque zone, calculée à partir de la capacité.
+     */
+    private record Layout(int capacity, int indexCapacity, int namesCapacity) {
+        static Layout of(int capacity) {
+            if (capacity <= 0 || capacity > MAX_CAPACITY) {
+                throw new IllegalArgumentException("Capacité invalide : " + capacity);
+            }
+            int indexCapacity = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            int namesCapacity = (int) Math.min((long) capacity * OWNER_BYTES_PER_ACCOUNT, Integer.MAX_VALUE - 8);
+            return new Layout(capacity, indexCapacity, namesCapacity);
+        }
+
+        long[] sizes() {
+            long longs = (long) capacity * Long.BYTES;
+            return new long[]{HEADER_SIZE, align((long) capacity * Integer.BYTES), align(capacity), longs, longs, longs, longs, longs,
+                    (long) indexCapacity * Long.BYTES, align(namesCapacity)};
+        }
+
+        private static long align(long bytes) {
+            return (bytes + 7) & ~7L;
+        }
+    }
+
+    private AccountStore(FileChannel channel, Layout layout, boolean created) throws IOException {
+        this.channel = channel;
+        this.capacity = layout.capacity();
+        this.indexMask = layout.indexCapacity() - 1;
+        long[] sizes = layout.sizes();
+        ByteBuffer[] regions = new ByteBuffer[sizes.length];
+        long offset = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            regions[i] = channel != null
+                    ? channel.map(FileChannel.MapMode.READ_WRITE, offset, sizes[i])
+                    : ByteBuffer.allocateDirect((int) sizes[i]);
+            regions[i].order(ByteOrder.nativeOrder());
+            offset += sizes[i];
+        }
+        header = regions[0];
+        numbers = regions[1];
+        statuses = regions[2];
+        owners = regions[3];
+        balances = regions[4];
+        historyHeads = regions[5];
+        historyCounts = regions[6];
+        historyMaxTimestamps = regions[7];
+        index = regions[8];
+        names = regions[9];
+        for (int i = 0; i < HISTORY_LOCKS; i++) {
+            historyLocks[i] = new ReentrantLock();
+        }
+
+        if (created) {
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1 : 0)
+                    .putInt(12, capacity).putLong(16, 0).putLong(24, 0);
+        }
+        this.size = new AtomicInteger((int) header.getLong(16));
+        this.namesEnd = new AtomicLong(header.getLong(24));
+    }
+
+    /**
+     * Ouvre le fichier de stockage, ou le crée avec la capacité donnée.
+     * Un fichier existant conserve sa propre capacité.
+     */
+    public static AccountStore open(Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                return new AccountStore(channel, Layout.of(capacity), true);
+            }
+            ByteBuffer existing = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+            while (existing.hasRemaining()) {
+                if (channel.read(existing, existing.position()) < 0) {
+                    throw new IOException("En-tête de stockage tronqué : " + path);
+                }
+            }
+            int endianness = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1 : 0;
+            if (existing.getInt(0) != MAGIC || existing.getInt(4) != VERSION || existing.getInt(8) != endianness) {
+                throw new IOException("Fichier de stockage incompatible : " + path);
+            }
+            return new AccountStore(channel, Layout.of(existing.getInt(12)), false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Crée un stockage non persistant, dans des tampons directs (hors tas, limités par -XX:MaxDirectMemorySize).
+     */
+    public static AccountStore inMemory(int capacity) {
+        try {
+            return new AccountStore(null, Layout.of(capacity), true);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Aucune entrée-sortie sans fichier
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Crée un compte avec un nouveau numéro CB-XXXXXXXX.
+     * @param initialBalance Solde initial, en centimes
+     * @return L'identifiant du compte.
+     */
+    public int create(String owner, long initialBalance) {
+        int id = allocate(owner, initialBalance);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!publish(id, random.nextInt())) {
+            // Numéro déjà attribué : on en tire un autre
+        }
+        return id;
+    }
+
+    /**
+     * Ajoute un compte existant (par exemple repris du modèle objet), en conservant son numéro.
+     * @return L'identifiant du compte.
+     * @throws IllegalArgumentException si le numéro n'est pas au format CB-XXXXXXXX ou s'il existe déjà.
+     */
+    public int add(String accountNumber, String owner, long balance) {
+        long code = parseNumber(accountNumber);
+        if (code < 0) {
+            throw new IllegalArgumentException("Numéro de compte non pris en charge : " + accountNumber);
+        }
+        if (find(accountNumber) != NOT_FOUND) {
+            throw new IllegalArgumentException("Le compte " + accountNumber + " existe déjà.");
+        }
+        int id = allocate(owner, balance);
+        if (!publish(id, (int) code)) {
+            // Ajout concurrent du même numéro : l'emplacement réservé reste inutilisé
+            statuses.put(id, (byte) AccountStatus.CLOSED.ordinal());
+            throw new IllegalArgumentException("Le compte " + accountNumber + " existe déjà.");
+        }
+        return id;
+    }
+
+    /**
+     * Réserve la place du nom puis un identifiant, et écrit les colonnes du compte, avant sa publication dans l'index.
+     * Le nom est réservé en premier : une zone des propriétaires pleine ne laisse aucun identifiant sans colonnes.
+     */
+    private int allocate(String owner, long balance) {
+        if (balance < 0) {
+            throw new IllegalArgumentException("Le solde initial doit être positif");
+        }
+        byte[] ownerBytes = owner.getBytes(StandardCharsets.UTF_8);
+        if (ownerBytes.length > MAX_OWNER_BYTES) {
+            throw new IllegalArgumentException("Nom de propriétaire trop long");
+        }
+        if (size.get() >= capacity) {
+            throw new IllegalStateException("Capacité du stockage atteinte : " + capacity + " comptes");
+        }
+        long position;
+        do {
+            position = namesEnd.get();
+            if (position + ownerBytes.length > names.capacity()) {
+                throw new IllegalStateException("Zone des propriétaires pleine");
+            }
+        } while (!namesEnd.compareAndSet(position, position + ownerBytes.length));
+        persistMax(24, position + ownerBytes.length);
+
+        int id;
+        do {
+            id = size.get();
+            if (id >= capacity) {
+                // Course perdue sur la dernière place : le nom réservé reste inutilisé
+                throw new IllegalStateException("Capacité du stockage atteinte : " + capacity + " comptes");
+            }
+        } while (!size.compareAndSet(id, id + 1));
+        persistMax(16, id + 1L);
+
+        names.put((int) position, ownerBytes);
+        owners.putLong(id * Long.BYTES, position << 16 | ownerBytes.length);
+        statuses.put(id, (byte) AccountStatus.ACTIVE.ordinal());
+        historyHeads.putLong(id * Long.BYTES, 0);
+        historyCounts.putLong(id * Long.BYTES, 0);
+        historyMaxTimestamps.putLong(id * Long.BYTES, Long.MIN_VALUE);
+        LONGS.setRelease(balances, id * Long.BYTES, balance);
+        return id;
+    }
+
+    /**
+     * Reporte dans l'en-tête une valeur croissante (nombre de comptes, fin de la zone des propriétaires),
+     * sans jamais la faire reculer sous l'effet de créations concurrentes.
+     */
+    private void persistMax(int offset, long value) {
+        long current;
+        do {
+            current = (long) LONGS.getVolatile(header, offset);
+        } while (current < value && !LONGS.compareAndSet(header, offset, current, value));
+    }
+
+    /**
+     * Attribue le numéro au compte et le publie dans l'index (compare-and-set : les colonnes écrites avant sont visibles).
+     * @return false si le numéro est déjà attribué.
+     */
+    private boolean publish(int id, int code) {
+        numbers.putInt(id * Integer.BYTES, code);
+        long entry = (long) code << 32 | (id + 1L);
+        int slot = mix(code) & indexMask;
+        while (true) {
+            long current = (long) LONGS.getVolatile(index, slot * Long.BYTES);
+            if (current == 0) {
+                if (LONGS.compareAndSet(index, slot * Long.BYTES, 0L, entry)) {
+                    return true;
+                }
+                continue; // Emplacement pris entre-temps : on le relit
+            }
+            if ((int) (current >>> 32) == code) {
+                return false;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    /**
+     * @return L'identifiant du compte, ou {@link #NOT_FOUND}.
+     */
+    public int find(String accountNumber) {
+        long code = parseNumber(accountNumber);
+        if (code < 0) {
+            return NOT_FOUND;
+        }
+        int slot = mix((int) code) & indexMask;
+        while (true) {
+            long current = (long) LONGS.getVolatile(index, slot * Long.BYTES);
+            if (current == 0) {
+                return NOT_FOUND;
+            }
+            if ((int) (current >>> 32) == (int) code) {
+                return (int) current - 1;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    /**
+     * @return La vue du compte, ou null s'il est inconnu.
+     */
+    public AccountView findView(String accountNumber) {
+        int id = find(accountNumber);
+        return id != NOT_FOUND ? new AccountView(this, id) : null;
+    }
+
+    public AccountView view(int id) {
+        checkId(id);
+        return new AccountView(this, id);
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size.get()) {
+            throw new IndexOutOfBoundsException("Compte inconnu : " + id);
+        }
+    }
+
+    /**
+     * Extrait les 32 bits d'un numéro CB-XXXXXXXX, sans allocation.
+     * @return Le numéro sous forme d'entier non signé, ou -1 si le format n'est pas reconnu.
+     */
+    private static long parseNumber(String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != 11 || !accountNumber.startsWith("CB-")) {
+            return -1;
+        }
+        long code = 0;
+        for (int i = 3; i < 11; i++) {
+            int digit = Character.digit(accountNumber.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            code = code << 4 | digit;
+        }
+        return code;
+    }
+
+    private static int mix(int code) {
+        int h = code * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public String getAccountNumber(int id) {
+        return String.format("CB-%08x", numbers.getInt(id * Integer.BYTES));
+    }
+
+    public String getOwner(int id) {
+        long reference = owners.getLong(id * Long.BYTES);
+        byte[] bytes = new byte[(int) (reference & 0xFFFF)];
+        names.get((int) (reference >>> 16), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Le solde, en centimes.
+     */
+    public long getBalance(int id) {
+        return (long) LONGS.getVolatile(balances, id * Long.BYTES);
+    }
+
+    public AccountStatus getStatus(int id) {
+        VarHandle.acquireFence();
+        return STATUSES[statuses.get(id)];
+    }
+
+    public void setStatus(int id, AccountStatus status) {
+        checkId(id);
+        statuses.put(id, (byte) status.ordinal());
+        VarHandle.fullFence();
+    }
+
+    /**
+     * Crédite un compte actif, sans verrou.
+     * @return false si le compte n'est pas actif.
+     */
+    public boolean credit(int id, long amount) {
+        checkId(id);
+        if (getStatus(id) != AccountStatus.ACTIVE) {
+            return false;
+        }
+        int offset = id * Long.BYTES;
+        long current;
+        do {
+            current = (long) LONGS.getVolatile(balances, offset);
+        } while (!LONGS.compareAndSet(balances, offset, current, Money.add(current, amount)));
+        return true;
+    }
+
+    /**
+     * Débite un compte actif si le solde est suffisant, sans verrou.
+     * @return false si le compte n'est pas actif ou si les fonds sont insuffisants.
+     */
+    public boolean debit(int id, long amount) {
+        checkId(id);
+        if (getStatus(id) != AccountStatus.ACTIVE) {
+            return false;
+        }
+        int offset = id * Long.BYTES;
+        long current;
+        do {
+            current = (long) LONGS.getVolatile(balances, offset);
+            if (current < amount) {
+                return false;
+            }
+        } while (!LONGS.compareAndSet(balances, offset, current, current - amount));
+        return true;
+    }
+
+    /**
+     * Transfère un montant entre deux comptes, frais de transfert déduits du montant crédité.
+     * Le débit puis le crédit sont chacun atomiques ; si le crédit est refusé, le débit est compensé.
+     * @return true si le transfert a été appliqué.
+     */
+    public boolean transfer(int sourceId, int targetId, long amount) {
+        checkId(sourceId);
+        checkId(targetId);
+        if (amount <= 0) {
+            return false;
+        }
+        // Les comptes hors tas n'ont pas de classe : le barème en vigueur leur applique celui des comptes STANDARD
+        long fee = FeeSchedule.getDefault().feeFor(AccountClass.STANDARD, TransactionType.TRANSFER, amount);
+        if (!debit(sourceId, amount)) {
+            return false;
+        }
+        boolean credited;
+        try {
+            credited = credit(targetId, amount - fee);
+        } catch (ArithmeticException e) {
+            credited = false; // Solde cible hors limites
+        }
+        if (!credited) {
+            credit(sourceId, amount); // Compensation : le compte source était actif au moment du débit
+            return false;
+        }
+
+        HistorySpill spill = HistorySpill.getDefault();
+        if (spill != null) {
+            UUID id = UUID.randomUUID();
+            long timestamp = System.currentTimeMillis();
+            appendHistory(spill, sourceId, id, timestamp, getAccountNumber(targetId), amount, fee, true);
+            appendHistory(spill, targetId, id, timestamp, getAccountNumber(sourceId), amount, fee, false);
+        }
+        return true;
+    }
+
+    private void appendHistory(HistorySpill spill, int id, UUID transactionId, long timestamp, String counterpart,
+                               long amount, long fee, boolean outgoing) {
+        int offset = id * Long.BYTES;
+        ReentrantLock lock = historyLocks[id & (HISTORY_LOCKS - 1)];
+        lock.lock();
+        try {
+            long maxTimestamp = historyMaxTimestamps.getLong(offset);
+            long head = HistoryChain.append(spill, historyHeads.getLong(offset) - 1, maxTimestamp,
+                    transactionId.getMostSignificantBits(), transactionId.getLeastSignificantBits(), timestamp, 0, counterpart,
+                    amount, fee, TransactionType.TRANSFER, TransactionStatus.SUCCEEDED, outgoing);
+            historyHeads.putLong(offset, head + 1);
+            historyCounts.putLong(offset, historyCounts.getLong(offset) + 1);
+            historyMaxTimestamps.putLong(offset, Math.max(maxTimestamp, timestamp));
+        } catch (IOException e) {
+            EventLog.log(EventCode.HISTORY_SPILL_FAILED, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Le nombre d'entrées d'historique du compte.
+     */
+    public long getHistorySize(int id) {
+        ReentrantLock lock = historyLocks[id & (HISTORY_LOCKS - 1)];
+        lock.lock();
+        try {
+            return historyCounts.getLong(id * Long.BYTES);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retourne une page de l'historique du compte, de la transaction la plus récente à la plus ancienne.
+     */
+    public List<HistoryEntry> getHistory(int id, int page, int pageSize) throws IOException {
+        long head;
+        ReentrantLock lock = historyLocks[id & (HISTORY_LOCKS - 1)];
+        lock.lock();
+        try {
+            head = historyHeads.getLong(id * Long.BYTES) - 1;
+        } finally {
+            lock.unlock();
+        }
+        HistorySpill spill = HistorySpill.getDefault();
+        return spill != null && head != HistorySpill.NONE ? HistoryChain.page(spill, head, page, pageSize) : new ArrayList<>();
+    }
+
+    /**
+     * Force l'écriture du fichier sur disque, en-tête compris.
+     */
+    public synchronized void sync() {
+        persistMax(16, size.get());
+        persistMax(24, namesEnd.get());
+        if (channel != null) {
+            for (ByteBuffer region : new ByteBuffer[]{header, numbers, statuses, owners, balances, historyHeads, historyCounts,
+                    historyMaxTimestamps, index, names}) {
+                ((MappedByteBuffer) region).force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
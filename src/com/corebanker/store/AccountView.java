@@ -0,0 +1,98 @@
+package com.corebanker.store;
+
+import com.corebanker.enums.AccountStatus;
+import com.corebanker.history.HistoryEntry;
+import com.corebanker.models.Money;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Vue légère d'un compte de l'AccountStore : un identifiant et une référence au stockage.
+ * Aucune donnée du compte n'est copiée ; chaque accès lit la colonne correspondante.
+ */
+public final class AccountView {
+    private final AccountStore store;
+    private final int id;
+
+    AccountView(AccountStore store, int id) {
+        this.store = store;
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getAccountNumber() {
+        return store.getAccountNumber(id);
+    }
+
+    public String getOwner() {
+        return store.getOwner(id);
+    }
+
+    /**
+     * @return Le solde, en centimes.
+     */
+    public long getBalance() {
+        return store.getBalance(id);
+    }
+
+    public AccountStatus getStatus() {
+        return store.getStatus(id);
+    }
+
+    /**
+     * Dépose un montant positif sur le compte.
+     * @return false si le montant est invalide ou si le compte n'est pas actif.
+     */
+    public boolean deposit(long amount) {
+        return amount > 0 && store.credit(id, amount);
+    }
+
+    /**
+     * Retire un montant positif si le solde est suffisant.
+     * @return false si le montant est invalide, si le compte n'est pas actif ou si les fonds sont insuffisants.
+     */
+    public boolean withdraw(long amount) {
+        return amount > 0 && store.debit(id, amount);
+    }
+
+    /**
+     * Transfère un montant vers un autre compte du même stockage, frais de transfert déduits.
+     * @return true si le transfert a été appliqué.
+     */
+    public boolean transferTo(AccountView target, long amount) {
+        if (target.store != store) {
+            throw new IllegalArgumentException("Les deux comptes doivent appartenir au même stockage");
+        }
+        return store.transfer(id, target.id, amount);
+    }
+
+    /**
+     * Retourne une page de l'historique, de la transaction la plus récente à la plus ancienne.
+     */
+    public List<HistoryEntry> getHistory(int page, int pageSize) throws IOException {
+        return store.getHistory(id, page, pageSize);
+    }
+
+    /**
+     * Affiche les détails du compte, comme BankAccount.displayAccountDetails.
+     */
+    public void displayAccountDetails() {
+        System.out.println("Numéro de compte : " + getAccountNumber());
+        System.out.println("Propriétaire : " + getOwner());
+        System.out.println("Solde : " + Money.format(getBalance()) + " " + Money.CURRENCY_SYMBOL);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof AccountView view && view.store == store && view.id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+}
@@ -0,0 +1,149 @@
+package com.corebanker.workload;
+
+import com.corebanker.enums.TransactionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Charge enregistrée : les comptes à ouvrir, puis une suite d'opérations désignant les comptes par leur rang.
+ *
+ * Le fichier est projeté en mémoire d'un seul tenant et lu par positions absolues : plusieurs threads rejouent
+ * la même charge sans verrou ni allocation.
+ *
+ * <pre>
+ * En-tête (64 octets) :
+ * 0   int   magique "CBWL"
+ * 4   int   version
+ * 8   long  graine du profil
+ * 16  int   nombre de comptes
+ * 24  long  solde d'ouverture (centimes)
+ * 32  long  nombre d'opérations
+ * Opération (24 octets) :
+ * 0   byte  type (ordinal de TransactionType)
+ * 4   int   rang du compte débité (-1 pour un dépôt)
+ * 8   int   rang du compte crédité (-1 pour un retrait)
+ * 16  long  montant (centimes)
+ * </pre>
+ */
+public final class WorkloadFile implements AutoCloseable {
+    static final int MAGIC = 0x4357424C; // "CBWL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int OPERATION_SIZE = 24;
+    /** Une seule projection : le fichier ne dépasse pas 2 Go. Une charge plus longue est rejouée en boucle. */
+    public static final long MAX_OPERATIONS = (Integer.MAX_VALUE - HEADER_SIZE) / OPERATION_SIZE;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer operations;
+    private final long seed;
+    private final int accounts;
+    private final long initialBalance;
+    private final int count;
+
+    private WorkloadFile(FileChannel channel, ByteBuffer operations, long seed, int accounts, long initialBalance, int count) {
+        this.channel = channel;
+        this.operations = operations;
+        this.seed = seed;
+        this.accounts = accounts;
+        this.initialBalance = initialBalance;
+        this.count = count;
+    }
+
+    /**
+     * Ouvre une charge enregistrée par WorkloadGenerator.
+     */
+    public static WorkloadFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Lecture de l'en-tête complet
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Fichier de charge invalide : " + file);
+            }
+            long declared = header.getLong(32);
+            // Un fichier tronqué est lu jusqu'à sa dernière opération complète
+            int count = (int) Math.min(declared, Math.min(MAX_OPERATIONS, (channel.size() - HEADER_SIZE) / OPERATION_SIZE));
+            if (count == 0) {
+                throw new IOException("Fichier de charge vide : " + file);
+            }
+            ByteBuffer operations = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) count * OPERATION_SIZE);
+            return new WorkloadFile(channel, operations, header.getLong(8), header.getInt(16), header.getLong(24), count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Écrit l'en-tête au début d'un tampon de HEADER_SIZE octets.
+     */
+    static void encodeHeader(ByteBuffer buffer, WorkloadProfile profile, long operations) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, profile.getSeed());
+        buffer.putInt(16, profile.getAccounts());
+        buffer.putLong(24, profile.getInitialBalance());
+        buffer.putLong(32, operations);
+    }
+
+    static void encodeOperation(ByteBuffer buffer, int offset, TransactionType type, int source, int target, long amount) {
+        buffer.put(offset, (byte) type.ordinal());
+        buffer.putInt(offset + 4, source);
+        buffer.putInt(offset + 8, target);
+        buffer.putLong(offset + 16, amount);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public long getInitialBalance() {
+        return initialBalance;
+    }
+
+    /**
+     * @return Le nombre d'opérations enregistrées.
+     */
+    public int size() {
+        return count;
+    }
+
+    public TransactionType type(int operation) {
+        return TYPES[operations.get(operation * OPERATION_SIZE)];
+    }
+
+    /**
+     * @return Le rang du compte débité, ou -1 pour un dépôt.
+     */
+    public int source(int operation) {
+        return operations.getInt(operation * OPERATION_SIZE + 4);
+    }
+
+    /**
+     * @return Le rang du compte crédité, ou -1 pour un retrait.
+     */
+    public int target(int operation) {
+        return operations.getInt(operation * OPERATION_SIZE + 8);
+    }
+
+    public long amount(int operation) {
+        return operations.getLong(operation * OPERATION_SIZE + 16);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,161 @@
+package com.corebanker.workload;
+
+import com.corebanker.enums.TransactionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Génère une suite d'opérations réaliste et reproductible à partir d'un WorkloadProfile.
+ *
+ * Les comptes sont tirés selon une loi de Zipf : quelques comptes concentrent l'essentiel du trafic, comme les comptes
+ * de commerçants ou de trésorerie. Le rang de popularité est attribué aux comptes par une permutation tirée de la graine,
+ * pour que les comptes les plus sollicités ne soient pas les premiers créés. Entre les opérations ordinaires
+ * (dépôts, retraits, transferts) s'intercalent des rafales de découverts : un même compte tente une série de retraits
+ * et de transferts très supérieurs à son solde, qui doivent tous être refusés sans effet.
+ */
+public final class WorkloadGenerator {
+    private static final int WRITE_OPERATIONS = 4096;
+    private static final long OVERDRAFT_FACTOR = 100; // Rafales : 100 fois le solde d'ouverture
+
+    private final WorkloadProfile profile;
+    private final SplittableRandom random;
+    private final double[] cumulative; // Loi de Zipf par rang, null si les comptes sont équiprobables
+    private final int[] accountOfRank;
+    private long generated;
+    private int burstRemaining;
+    private int burstAccount;
+
+    public WorkloadGenerator(WorkloadProfile profile) {
+        this.profile = profile;
+        this.random = new SplittableRandom(profile.getSeed());
+        int accounts = profile.getAccounts();
+        accountOfRank = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountOfRank[i] = i;
+        }
+        for (int i = accounts - 1; i > 0; i--) { // Fisher-Yates
+            int j = random.nextInt(i + 1);
+            int swap = accountOfRank[i];
+            accountOfRank[i] = accountOfRank[j];
+            accountOfRank[j] = swap;
+        }
+        if (profile.getZipfExponent() > 0) {
+            cumulative = new double[accounts];
+            double total = 0;
+            for (int rank = 0; rank < accounts; rank++) {
+                total += 1 / Math.pow(rank + 1, profile.getZipfExponent());
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < accounts; rank++) {
+                cumulative[rank] /= total;
+            }
+        } else {
+            cumulative = null;
+        }
+    }
+
+    /**
+     * Génère une charge et l'enregistre dans un fichier (remplacé s'il existe).
+     * @param operations Nombre d'opérations, au plus WorkloadFile.MAX_OPERATIONS
+     */
+    public static void record(Path file, WorkloadProfile profile, long operations) throws IOException {
+        if (operations < 1 || operations > WorkloadFile.MAX_OPERATIONS) {
+            throw new IllegalArgumentException("Nombre d'opérations invalide : " + operations);
+        }
+        WorkloadGenerator generator = new WorkloadGenerator(profile);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(WorkloadFile.HEADER_SIZE);
+            WorkloadFile.encodeHeader(header, profile, operations);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_OPERATIONS * WorkloadFile.OPERATION_SIZE);
+            for (long written = 0; written < operations; ) {
+                int batch = (int) Math.min(WRITE_OPERATIONS, operations - written);
+                buffer.clear();
+                for (int i = 0; i < batch; i++) {
+                    generator.next(buffer, i * WorkloadFile.OPERATION_SIZE);
+                }
+                buffer.limit(batch * WorkloadFile.OPERATION_SIZE);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += batch;
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Écrit l'opération suivante dans le tampon, au format de WorkloadFile.
+     */
+    public void next(ByteBuffer buffer, int offset) {
+        if (profile.getBurstEvery() > 0 && profile.getBurstLength() > 0 && ++generated % profile.getBurstEvery() == 0) {
+            burstRemaining = profile.getBurstLength();
+            burstAccount = account();
+        }
+        if (burstRemaining > 0) {
+            burstRemaining--;
+            long amount = OVERDRAFT_FACTOR * Math.max(profile.getInitialBalance(), profile.getMaxAmount()) + amount();
+            if (random.nextBoolean()) {
+                WorkloadFile.encodeOperation(buffer, offset, TransactionType.WITHDRAWAL, burstAccount, -1, amount);
+            } else {
+                WorkloadFile.encodeOperation(buffer, offset, TransactionType.TRANSFER, burstAccount, otherThan(burstAccount), amount);
+            }
+            return;
+        }
+
+        int kind = random.nextInt(100);
+        if (kind < profile.getDepositPercent()) {
+            WorkloadFile.encodeOperation(buffer, offset, TransactionType.DEPOSIT, -1, account(), amount());
+        } else if (kind < profile.getDepositPercent() + profile.getWithdrawalPercent()) {
+            WorkloadFile.encodeOperation(buffer, offset, TransactionType.WITHDRAWAL, account(), -1, amount());
+        } else {
+            int source = account();
+            WorkloadFile.encodeOperation(buffer, offset, TransactionType.TRANSFER, source, otherThan(source), amount());
+        }
+    }
+
+    /**
+     * @return Le rang d'un compte tiré selon la loi de Zipf du profil.
+     */
+    private int account() {
+        if (cumulative == null) {
+            return random.nextInt(accountOfRank.length);
+        }
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < u) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return accountOfRank[low];
+    }
+
+    /**
+     * Compte crédité d'un transfert, distinct du compte débité.
+     */
+    private int otherThan(int source) {
+        int target = account();
+        return target != source ? target : (target + 1) % accountOfRank.length;
+    }
+
+    /**
+     * Montant au centime près, le plus souvent petit : près d'un tiers des opérations ne dépasse pas le dixième du maximum.
+     */
+    private long amount() {
+        double u = random.nextDouble();
+        return 1 + (long) (u * u * (profile.getMaxAmount() - 1));
+    }
+}
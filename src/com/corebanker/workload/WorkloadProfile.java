@@ -0,0 +1,105 @@
+package com.corebanker.workload;
+
+import com.corebanker.models.Money;
+
+/**
+ * Paramètres d'une charge synthétique (voir WorkloadGenerator).
+ */
+public final class WorkloadProfile {
+    private final int accounts;
+    private final long initialBalance;
+    private final double zipfExponent;
+    private final int depositPercent;
+    private final int withdrawalPercent;
+    private final long maxAmount;
+    private final int burstEvery;
+    private final int burstLength;
+    private final long seed;
+
+    /**
+     * @param accounts Nombre de comptes, tous ouverts avec le même solde
+     * @param initialBalance Solde d'ouverture, en centimes
+     * @param zipfExponent Concentration des accès (loi de Zipf) : 0 pour des comptes équiprobables, au-delà de 1 quelques comptes dominent
+     * @param depositPercent Part des dépôts, en %
+     * @param withdrawalPercent Part des retraits, en % (le reste est fait de transferts)
+     * @param maxAmount Montant maximal d'une opération ordinaire, en centimes
+     * @param burstEvery Nombre d'opérations entre deux rafales de découverts (0 = aucune rafale)
+     * @param burstLength Nombre de retraits et transferts impossibles à couvrir dans une rafale, depuis un même compte
+     * @param seed Graine : un même profil produit toujours la même suite d'opérations
+     */
+    public WorkloadProfile(int accounts, long initialBalance, double zipfExponent, int depositPercent, int withdrawalPercent,
+                           long maxAmount, int burstEvery, int burstLength, long seed) {
+        if (accounts < 2 || initialBalance < 0 || zipfExponent < 0 || depositPercent < 0 || withdrawalPercent < 0
+                || depositPercent + withdrawalPercent > 100 || maxAmount < 1 || burstEvery < 0 || burstLength < 0) {
+            throw new IllegalArgumentException("Profil de charge invalide.");
+        }
+        this.accounts = accounts;
+        this.initialBalance = initialBalance;
+        this.zipfExponent = zipfExponent;
+        this.depositPercent = depositPercent;
+        this.withdrawalPercent = withdrawalPercent;
+        this.maxAmount = maxAmount;
+        this.burstEvery = burstEvery;
+        this.burstLength = burstLength;
+        this.seed = seed;
+    }
+
+    /**
+     * 100 000 comptes, accès concentrés (Zipf 1,1), 10 % de dépôts, 10 % de retraits, montants jusqu'à 500 €,
+     * une rafale de 200 découverts toutes les 50 000 opérations.
+     */
+    public static WorkloadProfile defaults() {
+        return new WorkloadProfile(100_000, Money.ofMajor(10_000), 1.1, 10, 10, Money.ofMajor(500), 50_000, 200, 42);
+    }
+
+    public WorkloadProfile withAccounts(int accounts) {
+        return new WorkloadProfile(accounts, initialBalance, zipfExponent, depositPercent, withdrawalPercent, maxAmount,
+                burstEvery, burstLength, seed);
+    }
+
+    public WorkloadProfile withZipfExponent(double zipfExponent) {
+        return new WorkloadProfile(accounts, initialBalance, zipfExponent, depositPercent, withdrawalPercent, maxAmount,
+                burstEvery, burstLength, seed);
+    }
+
+    public WorkloadProfile withSeed(long seed) {
+        return new WorkloadProfile(accounts, initialBalance, zipfExponent, depositPercent, withdrawalPercent, maxAmount,
+                burstEvery, burstLength, seed);
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public long getInitialBalance() {
+        return initialBalance;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    public int getDepositPercent() {
+        return depositPercent;
+    }
+
+    public int getWithdrawalPercent() {
+        return withdrawalPercent;
+    }
+
+    public long getMaxAmount() {
+        return maxAmount;
+    }
+
+    public int getBurstEvery() {
+        return burstEvery;
+    }
+
+    public int getBurstLength() {
+        return burstLength;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}